@@ -0,0 +1,239 @@
+#include "FrameAnalyzerHostObject.h"
+#include "JNIHelpers.h"
+#include <algorithm>
+#include <vector>
+
+namespace RNSkiaVideo {
+using namespace facebook::jni;
+
+namespace {
+// the pixels of a frame, copied out of the buffer of the analyzer so that the
+// buffer can receive the next frames while JS reads this one
+class FramePixels : public jsi::MutableBuffer {
+public:
+  FramePixels(const uint8_t* bytes, size_t size)
+      : pixels(bytes, bytes + size) {}
+  size_t size() const override {
+    return pixels.size();
+  }
+  uint8_t* data() override {
+    return pixels.data();
+  }
+
+private:
+  std::vector<uint8_t> pixels;
+};
+} // namespace
+
+local_ref<JByteBuffer> AnalyzedFrame::getBuffer() const {
+  static const auto getBufferMethod =
+      getClass()->getMethod<local_ref<JByteBuffer>()>("getBuffer");
+  return getBufferMethod(self());
+}
+
+jlong AnalyzedFrame::getTimeUs() const {
+  static const auto getTimeUsMethod =
+      getClass()->getMethod<jlong()>("getTimeUs");
+  return getTimeUsMethod(self());
+}
+
+local_ref<FrameAnalyzer>
+FrameAnalyzer::create(alias_ref<VideoCompositionItem> item, jint width,
+                      jint height, jint format, jdouble frameRate) {
+  return newInstance(item, width, height, format, frameRate);
+}
+
+void FrameAnalyzer::setMaxInFlightFrames(jint maxInFlightFrames) const {
+  static const auto setMaxInFlightFramesMethod =
+      getClass()->getMethod<void(jint)>("setMaxInFlightFrames");
+  setMaxInFlightFramesMethod(self(), maxInFlightFrames);
+}
+
+void FrameAnalyzer::setEventDispatcher(
+    alias_ref<NativeEventDispatcher> dispatcher) const {
+  static const auto setEventDispatcherMethod =
+      getClass()->getMethod<void(alias_ref<NativeEventDispatcher>)>(
+          "setEventDispatcher");
+  setEventDispatcherMethod(self(), dispatcher);
+}
+
+jint FrameAnalyzer::getFrameSize() const {
+  static const auto getFrameSizeMethod =
+      getClass()->getMethod<jint()>("getFrameSize");
+  return getFrameSizeMethod(self());
+}
+
+jint FrameAnalyzer::getRotation() const {
+  static const auto getRotationMethod =
+      getClass()->getMethod<jint()>("getRotation");
+  return getRotationMethod(self());
+}
+
+void FrameAnalyzer::start() const {
+  static const auto startMethod = getClass()->getMethod<void()>("start");
+  startMethod(self());
+}
+
+void FrameAnalyzer::queueBuffer(alias_ref<JByteBuffer> buffer) const {
+  static const auto queueBufferMethod =
+      getClass()->getMethod<void(alias_ref<JByteBuffer>)>("queueBuffer");
+  queueBufferMethod(self(), buffer);
+}
+
+void FrameAnalyzer::release() const {
+  static const auto releaseMethod = getClass()->getMethod<void()>("release");
+  releaseMethod(self());
+}
+
+FrameAnalyzerHostObject::FrameAnalyzerHostObject(jsi::Runtime& runtime,
+                                                 jsi::Object& jsItem,
+                                                 jsi::Object& options)
+    : EventEmitter(runtime, JNIHelpers::getCallInvoker()) {
+  auto width = (int)options.getProperty(runtime, "width").asNumber();
+  auto height = (int)options.getProperty(runtime, "height").asNumber();
+  // the formats of the java analyzer, FORMAT_I420 and FORMAT_RGBA
+  int format = 0;
+  auto formatValue = options.getProperty(runtime, "format");
+  if (formatValue.isString()) {
+    auto formatName = formatValue.asString(runtime).utf8(runtime);
+    if (formatName == "rgba") {
+      format = 1;
+    } else if (formatName != "i420") {
+      throw jsi::JSError(runtime, "FrameAnalyzer unsupported format: " +
+                                      formatName);
+    }
+  }
+  double frameRate = 0;
+  auto frameRateValue = options.getProperty(runtime, "frameRate");
+  if (frameRateValue.isNumber()) {
+    frameRate = frameRateValue.asNumber();
+  }
+  auto maxInFlightFramesValue =
+      options.getProperty(runtime, "maxInFlightFrames");
+  if (maxInFlightFramesValue.isNumber()) {
+    maxInFlightFrames = std::max(1, (int)maxInFlightFramesValue.asNumber());
+  }
+  auto item = VideoCompositionItem::fromJSIObject(runtime, jsItem);
+  try {
+    analyzer = make_global(
+        FrameAnalyzer::create(item, width, height, format, frameRate));
+  } catch (const std::exception& e) {
+    throw jsi::JSError(runtime, e.what());
+  }
+  jEventDispatcher = make_global(NativeEventDispatcher::create(this));
+  analyzer->setMaxInFlightFrames(maxInFlightFrames);
+  analyzer->setEventDispatcher(jEventDispatcher);
+  frameSize = analyzer->getFrameSize();
+}
+
+FrameAnalyzerHostObject::~FrameAnalyzerHostObject() {
+  this->release();
+}
+
+std::vector<jsi::PropNameID>
+FrameAnalyzerHostObject::getPropertyNames(jsi::Runtime& rt) {
+  std::vector<jsi::PropNameID> result;
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("start")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("rotation")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("on")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("dispose")));
+  return result;
+}
+
+jsi::Value FrameAnalyzerHostObject::get(jsi::Runtime& runtime,
+                                        const jsi::PropNameID& propNameId) {
+  auto propName = propNameId.utf8(runtime);
+  if (propName == "start") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "start"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (!released.test() && !started.test_and_set()) {
+            analyzer->start();
+            // the number of buffers bounds the frames waiting to be read by
+            // JS, the decoding being throttled until they are queued again
+            for (int i = 0; i < maxInFlightFrames; i++) {
+              analyzer->queueBuffer(JByteBuffer::allocateDirect(frameSize));
+            }
+          }
+          return jsi::Value::undefined();
+        });
+  } else if (propName == "rotation") {
+    return {released.test() ? 0 : analyzer->getRotation()};
+  } else if (propName == "on") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "on"), 2,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (released.test()) {
+            return jsi::Function::createFromHostFunction(
+                runtime, jsi::PropNameID::forAscii(runtime, "on"), 2,
+                [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+                   const jsi::Value* arguments, size_t count) -> jsi::Value {
+                  return jsi::Value::undefined();
+                });
+          }
+          auto name = arguments[0].asString(runtime).utf8(runtime);
+          auto handler = arguments[1].asObject(runtime).asFunction(runtime);
+          return this->on(name, std::move(handler));
+        });
+  } else if (propName == "dispose") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "dispose"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          this->release();
+          return jsi::Value::undefined();
+        });
+  }
+  return jsi::Value::undefined();
+}
+
+void FrameAnalyzerHostObject::handleEvent(std::string eventName,
+                                          alias_ref<jobject> data) {
+  if (released.test()) {
+    return;
+  }
+  if (eventName == "frame") {
+    auto frame = static_ref_cast<AnalyzedFrame>(data);
+    auto buffer = make_global(frame->getBuffer());
+    auto timeUs = frame->getTimeUs();
+    auto frameAnalyzer = analyzer;
+    auto size = frameSize;
+    // the buffer is queued again once its frame is copied on the JS thread
+    emit("frame", [=](jsi::Runtime& runtime) -> jsi::Value {
+      auto pixels =
+          std::make_shared<FramePixels>(buffer->getDirectBytes(), size);
+      frameAnalyzer->queueBuffer(buffer);
+      auto result = jsi::Object(runtime);
+      result.setProperty(runtime, "data",
+                         jsi::ArrayBuffer(runtime, std::move(pixels)));
+      result.setProperty(runtime, "time",
+                         jsi::Value((double)timeUs / 1000000));
+      return result;
+    });
+  } else if (eventName == "error") {
+    auto message = data != nullptr
+                       ? static_ref_cast<JString>(data)->toStdString()
+                       : std::string("Unknown error");
+    emit("error", [=](jsi::Runtime& runtime) -> jsi::Value {
+      auto result = jsi::Object(runtime);
+      result.setProperty(runtime, "message",
+                         jsi::String::createFromUtf8(runtime, message));
+      return result;
+    });
+  } else {
+    emit(eventName);
+  }
+}
+
+void FrameAnalyzerHostObject::release() {
+  if (!released.test_and_set()) {
+    removeAllListeners();
+    analyzer->release();
+    analyzer = nullptr;
+    jEventDispatcher = nullptr;
+  }
+}
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,69 @@
+#pragma once
+
+#include "NativeEventDispatcher.h"
+#include "VideoComposition.h"
+#include <fbjni/ByteBuffer.h>
+#include <fbjni/fbjni.h>
+#include <jsi/jsi.h>
+
+namespace RNSkiaVideo {
+using namespace facebook;
+using namespace jni;
+
+struct AnalyzedFrame : public jni::JavaClass<AnalyzedFrame> {
+
+public:
+  static constexpr auto kJavaDescriptor =
+      "Lcom/azzapp/rnskv/FrameAnalyzer$Frame;";
+
+  local_ref<JByteBuffer> getBuffer() const;
+
+  jlong getTimeUs() const;
+};
+
+struct FrameAnalyzer : public jni::JavaClass<FrameAnalyzer> {
+
+public:
+  static constexpr auto kJavaDescriptor = "Lcom/azzapp/rnskv/FrameAnalyzer;";
+
+  static local_ref<FrameAnalyzer> create(alias_ref<VideoCompositionItem> item,
+                                         jint width, jint height, jint format,
+                                         jdouble frameRate);
+
+  void setMaxInFlightFrames(jint maxInFlightFrames) const;
+
+  void setEventDispatcher(alias_ref<NativeEventDispatcher> dispatcher) const;
+
+  jint getFrameSize() const;
+
+  jint getRotation() const;
+
+  void start() const;
+
+  void queueBuffer(alias_ref<JByteBuffer> buffer) const;
+
+  void release() const;
+};
+
+class JSI_EXPORT FrameAnalyzerHostObject : public jsi::HostObject,
+                                           EventEmitter,
+                                           JEventReceiver {
+public:
+  FrameAnalyzerHostObject(jsi::Runtime& runtime, jsi::Object& jsItem,
+                          jsi::Object& options);
+  ~FrameAnalyzerHostObject() override;
+  jsi::Value get(jsi::Runtime&, const jsi::PropNameID& name) override;
+  std::vector<jsi::PropNameID> getPropertyNames(jsi::Runtime& rt) override;
+  void handleEvent(std::string eventName, alias_ref<jobject> data) override;
+
+private:
+  global_ref<NativeEventDispatcher> jEventDispatcher;
+  global_ref<FrameAnalyzer> analyzer;
+  int maxInFlightFrames = 2;
+  size_t frameSize = 0;
+  std::atomic_flag started = ATOMIC_FLAG_INIT;
+  std::atomic_flag released = ATOMIC_FLAG_INIT;
+  void release();
+};
+
+} // namespace RNSkiaVideo
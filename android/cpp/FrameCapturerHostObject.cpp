@@ -0,0 +1,203 @@
+#include "FrameCapturerHostObject.h"
+#include "GLFence.h"
+#include "JNIHelpers.h"
+#include <cstdint>
+
+namespace RNSkiaVideo {
+using namespace facebook::jni;
+
+local_ref<FrameCapturer>
+FrameCapturer::create(alias_ref<NativeEventDispatcher> dispatcher) {
+  return newInstance(dispatcher);
+}
+
+void FrameCapturer::prepare() const {
+  static const auto prepareMethod = getClass()->getMethod<void()>("prepare");
+  prepareMethod(self());
+}
+
+void FrameCapturer::capture(jint texture, jint width, jint height,
+                            std::string& path, std::string& format,
+                            jint quality, jlong fence) const {
+  static const auto captureMethod =
+      getClass()
+          ->getMethod<void(jint, jint, jint, std::string, std::string, jint,
+                           jlong)>("capture");
+  captureMethod(self(), texture, width, height, path, format, quality, fence);
+}
+
+jint FrameCapturer::poll() const {
+  static const auto pollMethod = getClass()->getMethod<jint()>("poll");
+  return pollMethod(self());
+}
+
+void FrameCapturer::flush() const {
+  static const auto flushMethod = getClass()->getMethod<void()>("flush");
+  flushMethod(self());
+}
+
+void FrameCapturer::release() const {
+  static const auto releaseMethod = getClass()->getMethod<void()>("release");
+  releaseMethod(self());
+}
+
+FrameCapturerHostObject::FrameCapturerHostObject(jsi::Runtime& runtime)
+    : EventEmitter(runtime, JNIHelpers::getCallInvoker()) {
+  jEventDispatcher = make_global(NativeEventDispatcher::create(this));
+  capturer = make_global(FrameCapturer::create(jEventDispatcher));
+}
+
+FrameCapturerHostObject::~FrameCapturerHostObject() {
+  this->release();
+}
+
+std::vector<jsi::PropNameID>
+FrameCapturerHostObject::getPropertyNames(jsi::Runtime& rt) {
+  std::vector<jsi::PropNameID> result;
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("capture")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("poll")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("flush")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("on")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("dispose")));
+  return result;
+}
+
+jsi::Value FrameCapturerHostObject::get(jsi::Runtime& runtime,
+                                        const jsi::PropNameID& propNameId) {
+  auto propName = propNameId.utf8(runtime);
+  if (propName == "capture") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "capture"), 4,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (!released.test()) {
+            capture(runtime, arguments, count);
+          }
+          return jsi::Value::undefined();
+        });
+  } else if (propName == "poll") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "poll"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (released.test() || !prepared.test()) {
+            return {0};
+          }
+          return {capturer->poll()};
+        });
+  } else if (propName == "flush") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "flush"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (!released.test() && prepared.test()) {
+            capturer->flush();
+          }
+          return jsi::Value::undefined();
+        });
+  } else if (propName == "on") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "on"), 2,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (released.test()) {
+            return jsi::Function::createFromHostFunction(
+                runtime, jsi::PropNameID::forAscii(runtime, "on"), 2,
+                [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+                   const jsi::Value* arguments, size_t count) -> jsi::Value {
+                  return jsi::Value::undefined();
+                });
+          }
+          auto name = arguments[0].asString(runtime).utf8(runtime);
+          auto handler = arguments[1].asObject(runtime).asFunction(runtime);
+          return this->on(name, std::move(handler));
+        });
+  } else if (propName == "dispose") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "dispose"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          this->release();
+          return jsi::Value::undefined();
+        });
+  }
+  return jsi::Value::undefined();
+}
+
+void FrameCapturerHostObject::capture(jsi::Runtime& runtime,
+                                      const jsi::Value* arguments,
+                                      size_t count) {
+  if (count < 4 || !arguments[0].isObject() || !arguments[3].isObject()) {
+    throw jsi::JSError(runtime, "FrameCapturer.capture(..) expects four "
+                                "arguments (texture, number, number, "
+                                "object)!");
+  }
+  auto texture = arguments[0]
+                     .asObject(runtime)
+                     .getProperty(runtime, "glID")
+                     .asNumber();
+  auto width = (int)arguments[1].asNumber();
+  auto height = (int)arguments[2].asNumber();
+  auto options = arguments[3].asObject(runtime);
+  auto path =
+      options.getProperty(runtime, "path").asString(runtime).utf8(runtime);
+  std::string format = "jpeg";
+  auto formatValue = options.getProperty(runtime, "format");
+  if (formatValue.isString()) {
+    format = formatValue.asString(runtime).utf8(runtime);
+    if (format != "jpeg" && format != "png" && format != "webp") {
+      throw jsi::JSError(runtime, "FrameCapturer.capture(..) unsupported "
+                                  "format: " + format);
+    }
+  }
+  int quality = 90;
+  auto qualityValue = options.getProperty(runtime, "quality");
+  if (qualityValue.isNumber()) {
+    quality = (int)qualityValue.asNumber();
+  }
+  if (!prepared.test_and_set()) {
+    capturer->prepare();
+  }
+  // the capturer context waits on the GPU for the frame drawn by Skia
+  auto fence = GLFence::insert();
+  capturer->capture((int)texture, width, height, path, format, quality,
+                    static_cast<jlong>(reinterpret_cast<intptr_t>(fence)));
+}
+
+void FrameCapturerHostObject::handleEvent(std::string eventName,
+                                          alias_ref<jobject> data) {
+  if (eventName == "capture") {
+    auto path = static_ref_cast<JString>(data)->toStdString();
+    emit("capture", [=](jsi::Runtime& runtime) -> jsi::Value {
+      auto result = jsi::Object(runtime);
+      result.setProperty(runtime, "path",
+                         jsi::String::createFromUtf8(runtime, path));
+      return result;
+    });
+  } else if (eventName == "error") {
+    auto values = static_ref_cast<JArrayClass<JString>>(data);
+    auto path = values->getElement(0)->toStdString();
+    auto message = values->getElement(1) != nullptr
+                       ? values->getElement(1)->toStdString()
+                       : std::string("Unknown error");
+    emit("error", [=](jsi::Runtime& runtime) -> jsi::Value {
+      auto result = jsi::Object(runtime);
+      result.setProperty(runtime, "path",
+                         jsi::String::createFromUtf8(runtime, path));
+      result.setProperty(runtime, "message",
+                         jsi::String::createFromUtf8(runtime, message));
+      return result;
+    });
+  }
+}
+
+void FrameCapturerHostObject::release() {
+  if (!released.test_and_set()) {
+    removeAllListeners();
+    capturer->release();
+    capturer = nullptr;
+    jEventDispatcher = nullptr;
+  }
+}
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,51 @@
+#pragma once
+
+#include "NativeEventDispatcher.h"
+#include <fbjni/fbjni.h>
+#include <jsi/jsi.h>
+
+namespace RNSkiaVideo {
+using namespace facebook;
+using namespace jni;
+
+struct FrameCapturer : public jni::JavaClass<FrameCapturer> {
+
+public:
+  static constexpr auto kJavaDescriptor = "Lcom/azzapp/rnskv/FrameCapturer;";
+
+  local_ref<FrameCapturer> static create(
+      alias_ref<NativeEventDispatcher> dispatcher);
+
+  void prepare() const;
+
+  void capture(jint texture, jint width, jint height, std::string& path,
+               std::string& format, jint quality, jlong fence) const;
+
+  jint poll() const;
+
+  void flush() const;
+
+  void release() const;
+};
+
+class JSI_EXPORT FrameCapturerHostObject : public jsi::HostObject,
+                                           EventEmitter,
+                                           JEventReceiver {
+public:
+  explicit FrameCapturerHostObject(jsi::Runtime& runtime);
+  ~FrameCapturerHostObject() override;
+  jsi::Value get(jsi::Runtime&, const jsi::PropNameID& name) override;
+  std::vector<jsi::PropNameID> getPropertyNames(jsi::Runtime& rt) override;
+  void handleEvent(std::string eventName, alias_ref<jobject> data) override;
+
+private:
+  global_ref<NativeEventDispatcher> jEventDispatcher;
+  global_ref<FrameCapturer> capturer;
+  std::atomic_flag prepared = ATOMIC_FLAG_INIT;
+  std::atomic_flag released = ATOMIC_FLAG_INIT;
+  void capture(jsi::Runtime& runtime, const jsi::Value* arguments,
+               size_t count);
+  void release();
+};
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,50 @@
+#include "GLFence.h"
+
+#include <EGL/egl.h>
+#include <GLES3/gl3.h>
+
+#include <cstdint>
+#include <cstring>
+
+namespace RNSkiaVideo {
+
+bool GLFence::isSupported() {
+  // checked once per context, the version being parsed from
+  // "OpenGL ES <major>.<minor> <vendor-specific information>"
+  thread_local EGLContext checkedContext = EGL_NO_CONTEXT;
+  thread_local bool supported = false;
+  auto context = eglGetCurrentContext();
+  if (context != checkedContext) {
+    checkedContext = context;
+    auto version = reinterpret_cast<const char*>(glGetString(GL_VERSION));
+    const char* prefix = "OpenGL ES ";
+    auto prefixLength = strlen(prefix);
+    supported = version != nullptr &&
+                strncmp(version, prefix, prefixLength) == 0 &&
+                version[prefixLength] >= '3' && version[prefixLength] <= '9';
+  }
+  return supported;
+}
+
+GLsync GLFence::insert() {
+  GLsync fence = nullptr;
+  if (isSupported()) {
+    fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+  }
+  glFlush();
+  return fence;
+}
+
+void GLFence::waitAndDelete(GLsync fence) {
+  if (fence == nullptr) {
+    return;
+  }
+  glWaitSync(fence, 0, GL_TIMEOUT_IGNORED);
+  glDeleteSync(fence);
+}
+
+GLsync GLFence::fromJava(jlong fence) {
+  return reinterpret_cast<GLsync>(static_cast<intptr_t>(fence));
+}
+
+} // namespace RNSkiaVideo
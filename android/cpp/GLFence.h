@@ -0,0 +1,43 @@
+#pragma once
+
+#include <fbjni/fbjni.h>
+
+// declared like in GLES3/gl3.h, which is only included by the sources using
+// OpenGL ES 3.0 so that it does not clash with the other GL headers
+typedef struct __GLsync* GLsync;
+
+namespace RNSkiaVideo {
+
+/**
+ * Hands textures over between EGL contexts sharing them. The producer inserts
+ * a fence after its draw calls and the consumer makes its GPU wait for the
+ * fence before sampling the textures, so that neither blocks the CPU.
+ * Fences require OpenGL ES 3.0, the ordering relying on the flush of the
+ * producer otherwise.
+ */
+class GLFence {
+public:
+  /**
+   * Inserts a fence after the commands issued in the current context and
+   * flushes them.
+   *
+   * @return the fence, or nullptr if the context does not support fences
+   */
+  static GLsync insert();
+
+  /**
+   * Makes the current context wait on the GPU for a fence, then deletes it.
+   * Does nothing if the fence is null.
+   */
+  static void waitAndDelete(GLsync fence);
+
+  /**
+   * Converts a fence created with android.opengl.GLES30.glFenceSync.
+   */
+  static GLsync fromJava(jlong fence);
+
+private:
+  static bool isSupported();
+};
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,32 @@
+#include "LatencyHistogram.h"
+
+namespace RNSkiaVideo {
+
+jlong LatencyHistogram::getCount() const {
+  static const auto getCountMethod =
+      getClass()->getMethod<jlong()>("getCount");
+  return getCountMethod(self());
+}
+
+jlong LatencyHistogram::getMax() const {
+  static const auto getMaxMethod = getClass()->getMethod<jlong()>("getMax");
+  return getMaxMethod(self());
+}
+
+jlong LatencyHistogram::getValueAtPercentile(jdouble percentile) const {
+  static const auto getValueAtPercentileMethod =
+      getClass()->getMethod<jlong(jdouble)>("getValueAtPercentile");
+  return getValueAtPercentileMethod(self(), percentile);
+}
+
+jsi::Value LatencyHistogram::toJS(jsi::Runtime& runtime, double scale) const {
+  auto jsObject = jsi::Object(runtime);
+  jsObject.setProperty(runtime, "count", (double)getCount());
+  jsObject.setProperty(runtime, "p50",
+                       (double)getValueAtPercentile(50) * scale);
+  jsObject.setProperty(runtime, "p95",
+                       (double)getValueAtPercentile(95) * scale);
+  jsObject.setProperty(runtime, "max", (double)getMax() * scale);
+  return jsObject;
+}
+} // namespace RNSkiaVideo
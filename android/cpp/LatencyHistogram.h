@@ -0,0 +1,25 @@
+#pragma once
+
+#include <fbjni/fbjni.h>
+#include <jsi/jsi.h>
+
+namespace RNSkiaVideo {
+
+using namespace facebook;
+using namespace jni;
+
+struct LatencyHistogram : JavaClass<LatencyHistogram> {
+public:
+  static constexpr auto kJavaDescriptor =
+      "Lcom/azzapp/rnskv/LatencyHistogram;";
+  jlong getCount() const;
+  jlong getMax() const;
+  jlong getValueAtPercentile(jdouble percentile) const;
+
+  /**
+   * Converts the histogram to a { count, p50, p95, max } object,
+   * recorded values being multiplied by the given scale.
+   */
+  jsi::Value toJS(jsi::Runtime& runtime, double scale) const;
+};
+} // namespace RNSkiaVideo
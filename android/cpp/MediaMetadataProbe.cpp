@@ -0,0 +1,60 @@
+#include "MediaMetadataProbe.h"
+
+namespace RNSkiaVideo {
+
+std::string MediaMetadata::getMimeType() const {
+  static const auto getMimeTypeMethod =
+      getClass()->getMethod<jstring()>("getMimeType");
+  auto mimeType = getMimeTypeMethod(self());
+  return mimeType ? mimeType->toStdString() : "";
+}
+
+jlong MediaMetadata::getDurationUs() const {
+  static const auto getDurationUsMethod =
+      getClass()->getMethod<jlong()>("getDurationUs");
+  return getDurationUsMethod(self());
+}
+
+jint MediaMetadata::getWidth() const {
+  static const auto getWidthMethod = getClass()->getMethod<jint()>("getWidth");
+  return getWidthMethod(self());
+}
+
+jint MediaMetadata::getHeight() const {
+  static const auto getHeightMethod =
+      getClass()->getMethod<jint()>("getHeight");
+  return getHeightMethod(self());
+}
+
+jint MediaMetadata::getRotation() const {
+  static const auto getRotationMethod =
+      getClass()->getMethod<jint()>("getRotation");
+  return getRotationMethod(self());
+}
+
+jfloat MediaMetadata::getFrameRate() const {
+  static const auto getFrameRateMethod =
+      getClass()->getMethod<jfloat()>("getFrameRate");
+  return getFrameRateMethod(self());
+}
+
+jlong MediaMetadata::getKeyFrameIntervalUs() const {
+  static const auto getKeyFrameIntervalUsMethod =
+      getClass()->getMethod<jlong()>("getKeyFrameIntervalUs");
+  return getKeyFrameIntervalUsMethod(self());
+}
+
+jni::local_ref<JList<MediaMetadata>>
+MediaMetadataProbe::probeAll(const std::vector<std::string>& paths) {
+  static const auto cls = javaClassStatic();
+  static const auto probeAllMethod =
+      cls->getStaticMethod<jni::local_ref<JList<MediaMetadata>>(
+          jni::alias_ref<JList<JString>>)>("probeAll");
+  auto jPaths = JArrayList<JString>::create(paths.size());
+  for (const auto& path : paths) {
+    jPaths->add(jni::make_jstring(path));
+  }
+  return probeAllMethod(cls, jPaths);
+}
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,31 @@
+#pragma once
+
+#include <fbjni/fbjni.h>
+#include <jsi/jsi.h>
+
+namespace RNSkiaVideo {
+using namespace facebook;
+using namespace jni;
+
+struct MediaMetadata : JavaClass<MediaMetadata> {
+public:
+  static constexpr auto kJavaDescriptor =
+      "Lcom/azzapp/rnskv/MediaMetadataProbe$MediaMetadata;";
+  std::string getMimeType() const;
+  jlong getDurationUs() const;
+  jint getWidth() const;
+  jint getHeight() const;
+  jint getRotation() const;
+  jfloat getFrameRate() const;
+  jlong getKeyFrameIntervalUs() const;
+};
+
+struct MediaMetadataProbe : JavaClass<MediaMetadataProbe> {
+public:
+  static constexpr auto kJavaDescriptor =
+      "Lcom/azzapp/rnskv/MediaMetadataProbe;";
+  static jni::local_ref<JList<MediaMetadata>>
+  probeAll(const std::vector<std::string>& paths);
+};
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,178 @@
+#include "PlaybackStats.h"
+
+#include <map>
+
+namespace RNSkiaVideo {
+
+namespace {
+struct LatencyValues {
+  double count;
+  double p50;
+  double p95;
+  double max;
+};
+
+// durations are recorded in microseconds, stats are reported in milliseconds
+LatencyValues readLatencyValues(alias_ref<LatencyHistogram> histogram) {
+  return {(double)histogram->getCount(),
+          (double)histogram->getValueAtPercentile(50) * 0.001,
+          (double)histogram->getValueAtPercentile(95) * 0.001,
+          (double)histogram->getMax() * 0.001};
+}
+
+jsi::Object latencyValuesToJS(jsi::Runtime& runtime,
+                              const LatencyValues& values) {
+  auto jsObject = jsi::Object(runtime);
+  jsObject.setProperty(runtime, "count", values.count);
+  jsObject.setProperty(runtime, "p50", values.p50);
+  jsObject.setProperty(runtime, "p95", values.p95);
+  jsObject.setProperty(runtime, "max", values.max);
+  return jsObject;
+}
+} // namespace
+
+jlong FrameCacheStats::getHits() const {
+  static const auto getHitsMethod = getClass()->getMethod<jlong()>("getHits");
+  return getHitsMethod(self());
+}
+
+jlong FrameCacheStats::getMisses() const {
+  static const auto getMissesMethod =
+      getClass()->getMethod<jlong()>("getMisses");
+  return getMissesMethod(self());
+}
+
+jlong FrameCacheStats::getUsedBytes() const {
+  static const auto getUsedBytesMethod =
+      getClass()->getMethod<jlong()>("getUsedBytes");
+  return getUsedBytesMethod(self());
+}
+
+jlong FrameCacheStats::getBudgetBytes() const {
+  static const auto getBudgetBytesMethod =
+      getClass()->getMethod<jlong()>("getBudgetBytes");
+  return getBudgetBytesMethod(self());
+}
+
+jint FrameCacheStats::getFrameCount() const {
+  static const auto getFrameCountMethod =
+      getClass()->getMethod<jint()>("getFrameCount");
+  return getFrameCountMethod(self());
+}
+
+jlong PlaybackStats::getRenderedFrames() const {
+  static const auto getRenderedFramesMethod =
+      getClass()->getMethod<jlong()>("getRenderedFrames");
+  return getRenderedFramesMethod(self());
+}
+
+jlong PlaybackStats::getDroppedFrames() const {
+  static const auto getDroppedFramesMethod =
+      getClass()->getMethod<jlong()>("getDroppedFrames");
+  return getDroppedFramesMethod(self());
+}
+
+jlong PlaybackStats::getLateFrames() const {
+  static const auto getLateFramesMethod =
+      getClass()->getMethod<jlong()>("getLateFrames");
+  return getLateFramesMethod(self());
+}
+
+jlong PlaybackStats::getLoopOverruns() const {
+  static const auto getLoopOverrunsMethod =
+      getClass()->getMethod<jlong()>("getLoopOverruns");
+  return getLoopOverrunsMethod(self());
+}
+
+local_ref<LatencyHistogram> PlaybackStats::getDisplayLatencyHistogram() const {
+  static const auto getDisplayLatencyHistogramMethod =
+      getClass()->getMethod<LatencyHistogram()>("getDisplayLatencyHistogram");
+  return getDisplayLatencyHistogramMethod(self());
+}
+
+local_ref<JMap<JString, LatencyHistogram>>
+PlaybackStats::getItemsDisplayLatencyHistograms() const {
+  static const auto getItemsDisplayLatencyHistogramsMethod =
+      getClass()->getMethod<JMap<JString, LatencyHistogram>()>(
+          "getItemsDisplayLatencyHistograms");
+  return getItemsDisplayLatencyHistogramsMethod(self());
+}
+
+local_ref<FrameCacheStats> PlaybackStats::getFrameCacheStats() const {
+  static const auto getFrameCacheStatsMethod =
+      getClass()->getMethod<FrameCacheStats()>("getFrameCacheStats");
+  return getFrameCacheStatsMethod(self());
+}
+
+std::function<jsi::Value(jsi::Runtime&)> PlaybackStats::snapshot() const {
+  auto renderedFrames = (double)getRenderedFrames();
+  auto droppedFrames = (double)getDroppedFrames();
+  auto lateFrames = (double)getLateFrames();
+  auto loopOverruns = (double)getLoopOverruns();
+  bool hasDisplayLatency = false;
+  LatencyValues displayLatency{};
+  auto displayLatencyHistogram = getDisplayLatencyHistogram();
+  if (displayLatencyHistogram) {
+    hasDisplayLatency = true;
+    displayLatency = readLatencyValues(displayLatencyHistogram);
+  }
+  bool hasItemsDisplayLatency = false;
+  std::map<std::string, LatencyValues> itemsDisplayLatency;
+  auto itemsHistograms = getItemsDisplayLatencyHistograms();
+  if (itemsHistograms) {
+    hasItemsDisplayLatency = true;
+    for (auto& entry : *itemsHistograms) {
+      itemsDisplayLatency[entry.first->toStdString()] =
+          readLatencyValues(entry.second);
+    }
+  }
+  bool hasFrameCache = false;
+  double frameCacheHits = 0;
+  double frameCacheMisses = 0;
+  double frameCacheUsedBytes = 0;
+  double frameCacheBudgetBytes = 0;
+  double frameCacheFrameCount = 0;
+  auto frameCacheStats = getFrameCacheStats();
+  if (frameCacheStats) {
+    hasFrameCache = true;
+    frameCacheHits = (double)frameCacheStats->getHits();
+    frameCacheMisses = (double)frameCacheStats->getMisses();
+    frameCacheUsedBytes = (double)frameCacheStats->getUsedBytes();
+    frameCacheBudgetBytes = (double)frameCacheStats->getBudgetBytes();
+    frameCacheFrameCount = (double)frameCacheStats->getFrameCount();
+  }
+  return [=](jsi::Runtime& runtime) -> jsi::Value {
+    auto jsObject = jsi::Object(runtime);
+    jsObject.setProperty(runtime, "renderedFrames", renderedFrames);
+    jsObject.setProperty(runtime, "droppedFrames", droppedFrames);
+    jsObject.setProperty(runtime, "lateFrames", lateFrames);
+    jsObject.setProperty(runtime, "loopOverruns", loopOverruns);
+    if (hasDisplayLatency) {
+      jsObject.setProperty(runtime, "displayLatency",
+                           latencyValuesToJS(runtime, displayLatency));
+    }
+    if (hasItemsDisplayLatency) {
+      auto jsItems = jsi::Object(runtime);
+      for (auto& entry : itemsDisplayLatency) {
+        jsItems.setProperty(runtime, entry.first.c_str(),
+                            latencyValuesToJS(runtime, entry.second));
+      }
+      jsObject.setProperty(runtime, "itemsDisplayLatency", jsItems);
+    }
+    if (hasFrameCache) {
+      auto jsFrameCache = jsi::Object(runtime);
+      jsFrameCache.setProperty(runtime, "hits", frameCacheHits);
+      jsFrameCache.setProperty(runtime, "misses", frameCacheMisses);
+      auto lookups = frameCacheHits + frameCacheMisses;
+      jsFrameCache.setProperty(runtime, "hitRate",
+                               lookups > 0 ? frameCacheHits / lookups : 0);
+      jsFrameCache.setProperty(runtime, "usedBytes", frameCacheUsedBytes);
+      jsFrameCache.setProperty(runtime, "budgetBytes", frameCacheBudgetBytes);
+      jsFrameCache.setProperty(runtime, "frameCount", frameCacheFrameCount);
+      jsObject.setProperty(runtime, "frameCache", jsFrameCache);
+    }
+    return jsObject;
+  };
+}
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,43 @@
+#pragma once
+
+#include <fbjni/fbjni.h>
+#include <functional>
+#include <jsi/jsi.h>
+
+#include "LatencyHistogram.h"
+
+namespace RNSkiaVideo {
+
+using namespace facebook;
+using namespace jni;
+
+struct FrameCacheStats : JavaClass<FrameCacheStats> {
+public:
+  static constexpr auto kJavaDescriptor =
+      "Lcom/azzapp/rnskv/FrameTextureCache$Stats;";
+  jlong getHits() const;
+  jlong getMisses() const;
+  jlong getUsedBytes() const;
+  jlong getBudgetBytes() const;
+  jint getFrameCount() const;
+};
+
+struct PlaybackStats : JavaClass<PlaybackStats> {
+public:
+  static constexpr auto kJavaDescriptor = "Lcom/azzapp/rnskv/PlaybackStats;";
+  jlong getRenderedFrames() const;
+  jlong getDroppedFrames() const;
+  jlong getLateFrames() const;
+  jlong getLoopOverruns() const;
+  local_ref<LatencyHistogram> getDisplayLatencyHistogram() const;
+  local_ref<JMap<JString, LatencyHistogram>>
+  getItemsDisplayLatencyHistograms() const;
+  local_ref<FrameCacheStats> getFrameCacheStats() const;
+
+  /**
+   * Reads the stats and returns a function converting them to a JS object,
+   * which can be called later on the JS thread.
+   */
+  std::function<jsi::Value(jsi::Runtime&)> snapshot() const;
+};
+} // namespace RNSkiaVideo
@@ -0,0 +1,25 @@
+#include "ProxyCache.h"
+
+namespace RNSkiaVideo {
+
+void ProxyCache::setEnabled(bool enabled) {
+  static const auto cls = javaClassStatic();
+  static const auto setEnabledMethod =
+      cls->getStaticMethod<void(jboolean)>("setEnabled");
+  setEnabledMethod(cls, enabled);
+}
+
+void ProxyCache::setMaxCacheSize(jlong maxCacheSize) {
+  static const auto cls = javaClassStatic();
+  static const auto setMaxCacheSizeMethod =
+      cls->getStaticMethod<void(jlong)>("setMaxCacheSize");
+  setMaxCacheSizeMethod(cls, maxCacheSize);
+}
+
+void ProxyCache::clear() {
+  static const auto cls = javaClassStatic();
+  static const auto clearMethod = cls->getStaticMethod<void()>("clear");
+  clearMethod(cls);
+}
+
+} // namespace RNSkiaVideo
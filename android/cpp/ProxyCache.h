@@ -0,0 +1,18 @@
+#pragma once
+
+#include <fbjni/fbjni.h>
+
+namespace RNSkiaVideo {
+
+using namespace facebook;
+using namespace jni;
+
+struct ProxyCache : public JavaClass<ProxyCache> {
+  static constexpr auto kJavaDescriptor = "Lcom/azzapp/rnskv/ProxyCache;";
+
+  static void setEnabled(bool enabled);
+  static void setMaxCacheSize(jlong maxCacheSize);
+  static void clear();
+};
+
+} // namespace RNSkiaVideo
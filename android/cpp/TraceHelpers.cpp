@@ -0,0 +1,12 @@
+#include "TraceHelpers.h"
+
+namespace RNSkiaVideo {
+
+void TraceHelpers::setEnabled(bool enabled) {
+  static const auto cls = javaClassStatic();
+  static const auto setEnabledMethod =
+      cls->getStaticMethod<void(jboolean)>("setEnabled");
+  setEnabledMethod(cls, enabled);
+}
+
+} // namespace RNSkiaVideo
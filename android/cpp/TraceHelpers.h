@@ -0,0 +1,16 @@
+#pragma once
+
+#include <fbjni/fbjni.h>
+
+namespace RNSkiaVideo {
+
+using namespace facebook;
+using namespace jni;
+
+struct TraceHelpers : public JavaClass<TraceHelpers> {
+  static constexpr auto kJavaDescriptor = "Lcom/azzapp/rnskv/TraceHelpers;";
+
+  static void setEnabled(bool enabled);
+};
+
+} // namespace RNSkiaVideo
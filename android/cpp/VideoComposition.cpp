@@ -47,6 +47,59 @@ jdouble VideoCompositionItem::getDuration() const {
   return getDurationMethod(self());
 }
 
+local_ref<VideoCompositionItem>
+VideoCompositionItem::fromJSIObject(jsi::Runtime& runtime,
+                                    jsi::Object& jsItem) {
+  auto id = jsItem.getProperty(runtime, "id").asString(runtime).utf8(runtime);
+  auto path =
+      jsItem.getProperty(runtime, "path").asString(runtime).utf8(runtime);
+  auto compositionStartTime =
+      jsItem.getProperty(runtime, "compositionStartTime").asNumber();
+  auto startTime = jsItem.getProperty(runtime, "startTime").asNumber();
+  auto duration = jsItem.getProperty(runtime, "duration").asNumber();
+  auto item = VideoCompositionItem::create(id, path, compositionStartTime,
+                                           startTime, duration);
+
+  if (jsItem.hasProperty(runtime, "resolution")) {
+    auto resProp = jsItem.getProperty(runtime, "resolution");
+    if (resProp.isObject()) {
+      auto res = resProp.asObject(runtime);
+      auto itemCls = VideoCompositionItem::javaClassStatic();
+      item->setFieldValue(itemCls->getField<jint>("width"),
+                          (int)res.getProperty(runtime, "width").asNumber());
+      item->setFieldValue(itemCls->getField<jint>("height"),
+                          (int)res.getProperty(runtime, "height").asNumber());
+    }
+  }
+  auto itemCls = VideoCompositionItem::javaClassStatic();
+  if (jsItem.hasProperty(runtime, "speed")) {
+    auto speedProp = jsItem.getProperty(runtime, "speed");
+    if (speedProp.isNumber()) {
+      item->setFieldValue(itemCls->getField<jdouble>("speed"),
+                          speedProp.asNumber());
+    }
+  }
+  if (jsItem.hasProperty(runtime, "timeRemap")) {
+    auto timeRemapProp = jsItem.getProperty(runtime, "timeRemap");
+    if (timeRemapProp.isObject()) {
+      auto jsPoints = timeRemapProp.asObject(runtime).asArray(runtime);
+      auto pointsCount = jsPoints.size(runtime);
+      std::vector<jdouble> points;
+      points.reserve(pointsCount * 2);
+      for (int j = 0; j < pointsCount; j++) {
+        auto jsPoint = jsPoints.getValueAtIndex(runtime, j).asObject(runtime);
+        points.push_back(jsPoint.getProperty(runtime, "time").asNumber());
+        points.push_back(jsPoint.getProperty(runtime, "sourceTime").asNumber());
+      }
+      auto timeRemap = JArrayDouble::newArray(points.size());
+      timeRemap->setRegion(0, points.size(), points.data());
+      item->setFieldValue(itemCls->getField<jdoubleArray>("timeRemap"),
+                          timeRemap.get());
+    }
+  }
+  return item;
+}
+
 local_ref<VideoComposition>
 VideoComposition::create(jdouble duration,
                          alias_ref<JList<VideoCompositionItem>> items) {
@@ -65,28 +118,7 @@ VideoComposition::fromJSIObject(jsi::Runtime& runtime,
       JArrayList<VideoCompositionItem>::create(size);
   for (int i = 0; i < size; i++) {
     auto jsItem = jsItems.getValueAtIndex(runtime, i).asObject(runtime);
-    auto id = jsItem.getProperty(runtime, "id").asString(runtime).utf8(runtime);
-    auto path =
-        jsItem.getProperty(runtime, "path").asString(runtime).utf8(runtime);
-    auto compositionStartTime =
-        jsItem.getProperty(runtime, "compositionStartTime").asNumber();
-    auto startTime = jsItem.getProperty(runtime, "startTime").asNumber();
-    auto duration = jsItem.getProperty(runtime, "duration").asNumber();
-    auto item = VideoCompositionItem::create(id, path, compositionStartTime,
-                                             startTime, duration);
-
-    if (jsItem.hasProperty(runtime, "resolution")) {
-      auto resProp = jsItem.getProperty(runtime, "resolution");
-      if (resProp.isObject()) {
-        auto res = resProp.asObject(runtime);
-        auto itemCls = VideoCompositionItem::javaClassStatic();
-        item->setFieldValue(itemCls->getField<jint>("width"),
-                            (int)res.getProperty(runtime, "width").asNumber());
-        item->setFieldValue(itemCls->getField<jint>("height"),
-                            (int)res.getProperty(runtime, "height").asNumber());
-      }
-    }
-    items->add(item);
+    items->add(VideoCompositionItem::fromJSIObject(runtime, jsItem));
   }
   return VideoComposition::create(duration, items);
 }
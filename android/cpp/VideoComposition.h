@@ -16,6 +16,8 @@ struct VideoCompositionItem : public JavaClass<VideoCompositionItem> {
   static local_ref<VideoCompositionItem>
   create(std::string& id, std::string& path, double compositionStartTime,
          double startTime, double duration);
+  static local_ref<VideoCompositionItem> fromJSIObject(jsi::Runtime& runtime,
+                                                       jsi::Object& jsItem);
 
   std::string getId() const;
   std::string getPath() const;
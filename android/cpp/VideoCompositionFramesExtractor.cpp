@@ -30,12 +30,31 @@ void VideoCompositionFramesExtractor::seekTo(jlong position) const {
   seekToMethod(self(), position);
 }
 
+void VideoCompositionFramesExtractor::update(
+    alias_ref<VideoComposition> composition) const {
+  static const auto updateMethod =
+      getClass()->getMethod<void(alias_ref<VideoComposition>)>("update");
+  updateMethod(self(), composition);
+}
+
 jboolean VideoCompositionFramesExtractor::getIsPlaying() const {
   static const auto getIsPlayingMethod =
       getClass()->getMethod<jboolean()>("getIsPlaying");
   return getIsPlayingMethod(self());
 }
 
+jlong VideoCompositionFramesExtractor::getDroppedFrames() const {
+  static const auto getDroppedFramesMethod =
+      getClass()->getMethod<jlong()>("getDroppedFrames");
+  return getDroppedFramesMethod(self());
+}
+
+local_ref<PlaybackStats> VideoCompositionFramesExtractor::getStats() const {
+  static const auto getStatsMethod =
+      getClass()->getMethod<PlaybackStats()>("getStats");
+  return getStatsMethod(self());
+}
+
 jboolean VideoCompositionFramesExtractor::getIsLooping() const {
   static const auto getIsLoopingMethod =
       getClass()->getMethod<jboolean()>("getIsLooping");
@@ -48,17 +67,29 @@ void VideoCompositionFramesExtractor::setIsLooping(jboolean isLooping) const {
   setIsLoopingMethod(self(), isLooping);
 }
 
+jfloat VideoCompositionFramesExtractor::getPlaybackSpeed() const {
+  static const auto getPlaybackSpeedMethod =
+      getClass()->getMethod<jfloat()>("getPlaybackSpeed");
+  return getPlaybackSpeedMethod(self());
+}
+
+void VideoCompositionFramesExtractor::setPlaybackSpeed(
+    jfloat playbackSpeed) const {
+  static const auto setPlaybackSpeedMethod =
+      getClass()->getMethod<void(jfloat)>("setPlaybackSpeed");
+  setPlaybackSpeedMethod(self(), playbackSpeed);
+}
+
 jlong VideoCompositionFramesExtractor::getCurrentPosition() const {
   static const auto getCurrentPositionMethod =
       getClass()->getMethod<jlong()>("getCurrentPosition");
   return getCurrentPositionMethod(self());
 }
 
-local_ref<JMap<JString, VideoFrame>>
+local_ref<VideoFrameTable>
 VideoCompositionFramesExtractor::decodeCompositionFrames() {
   static const auto decodeCompositionFramesMethod =
-      getClass()->getMethod<JMap<JString, VideoFrame>()>(
-          "decodeCompositionFrames");
+      getClass()->getMethod<VideoFrameTable()>("decodeCompositionFrames");
   return decodeCompositionFramesMethod(self());
 }
 
@@ -3,8 +3,9 @@
 #include <fbjni/fbjni.h>
 
 #include "NativeEventDispatcher.h"
+#include "PlaybackStats.h"
 #include "VideoComposition.h"
-#include "VideoFrame.h"
+#include "VideoFrameTable.h"
 
 namespace RNSkiaVideo {
 
@@ -30,15 +31,25 @@ public:
 
   void seekTo(jlong position) const;
 
+  void update(alias_ref<VideoComposition> composition) const;
+
   jboolean getIsPlaying() const;
 
   jlong getCurrentPosition() const;
 
+  jlong getDroppedFrames() const;
+
+  local_ref<PlaybackStats> getStats() const;
+
   jboolean getIsLooping() const;
 
+  jfloat getPlaybackSpeed() const;
+
+  void setPlaybackSpeed(jfloat playbackSpeed) const;
+
   void setIsLooping(jboolean isLooping) const;
 
-  local_ref<JMap<JString, VideoFrame>> decodeCompositionFrames();
+  local_ref<VideoFrameTable> decodeCompositionFrames();
 
   void release() const;
 };
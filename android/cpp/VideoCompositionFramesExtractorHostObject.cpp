@@ -25,6 +25,7 @@ VideoCompositionFramesExtractorHostObject::getPropertyNames(jsi::Runtime& rt) {
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("play")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("pause")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("seekTo")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("update")));
   result.push_back(
       jsi::PropNameID::forUtf8(rt, std::string("decodeCompositionFrames")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("on")));
@@ -32,6 +33,9 @@ VideoCompositionFramesExtractorHostObject::getPropertyNames(jsi::Runtime& rt) {
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("currentTime")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("isLooping")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("isPlaying")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("playbackSpeed")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("droppedFrames")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("getStats")));
   return result;
 }
 
@@ -56,18 +60,13 @@ jsi::Value VideoCompositionFramesExtractorHostObject::get(
         0,
         [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
                const jsi::Value* arguments, size_t count) -> jsi::Value {
-          auto result = jsi::Object(runtime);
           if (released.test() || !prepared.test()) {
-            return result;
-          }
-          auto frames = player->decodeCompositionFrames();
-          for (auto& entry : *frames) {
-            auto id = entry.first->toStdString();
-            auto frame = entry.second;
-            auto jsFrame = frame->toJS(runtime);
-            result.setProperty(runtime, id.c_str(), std::move(jsFrame));
+            return jsi::Object(runtime);
           }
+          auto frameTable = player->decodeCompositionFrames();
+          auto result = frameTableReader.toJS(runtime, frameTable);
           skiaContextHolder->makeCurrent();
+          frameTableReader.waitForFrames();
           return result;
         });
   } else if (propName == "play") {
@@ -107,6 +106,29 @@ jsi::Value VideoCompositionFramesExtractorHostObject::get(
           }
           return jsi::Value::undefined();
         });
+  } else if (propName == "update") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "update"), 1,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (!released.test()) {
+            if (count != 1) {
+              throw jsi::JSError(runtime,
+                                 "VideoCompositionFramesExtractorHostObject."
+                                 "update(..) expects 1 arguments (object)!");
+            }
+            auto jsComposition = arguments[0].asObject(runtime);
+            auto composition =
+                VideoComposition::fromJSIObject(runtime, jsComposition);
+            player->update(composition);
+            // the update makes the context of the decoder current to create
+            // the image readers of the added items
+            if (prepared.test()) {
+              skiaContextHolder->makeCurrent();
+            }
+          }
+          return jsi::Value::undefined();
+        });
   } else if (propName == "on") {
     return jsi::Function::createFromHostFunction(
         runtime, jsi::PropNameID::forAscii(runtime, "on"), 2,
@@ -124,6 +146,16 @@ jsi::Value VideoCompositionFramesExtractorHostObject::get(
           auto handler = arguments[1].asObject(runtime).asFunction(runtime);
           return this->on(name, std::move(handler));
         });
+  } else if (propName == "getStats") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "getStats"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (released.test()) {
+            return jsi::Value::null();
+          }
+          return player->getStats()->snapshot()(runtime);
+        });
   } else if (propName == "dispose") {
     return jsi::Function::createFromHostFunction(
         runtime, jsi::PropNameID::forAscii(runtime, "dispose"), 0,
@@ -139,6 +171,10 @@ jsi::Value VideoCompositionFramesExtractorHostObject::get(
     return {!released.test() && player->getIsLooping()};
   } else if (propName == "isPlaying") {
     return {!released.test() && player->getIsPlaying()};
+  } else if (propName == "playbackSpeed") {
+    return {released.test() ? 1 : (double)player->getPlaybackSpeed()};
+  } else if (propName == "droppedFrames") {
+    return {released.test() ? 0 : (double)player->getDroppedFrames()};
   }
   return jsi::Value::undefined();
 }
@@ -153,6 +189,8 @@ void VideoCompositionFramesExtractorHostObject::set(
   auto propName = propNameId.utf8(runtime);
   if (propName == "isLooping") {
     player->setIsLooping(value.asBool());
+  } else if (propName == "playbackSpeed") {
+    player->setPlaybackSpeed(value.asNumber());
   }
 }
 
@@ -166,6 +204,14 @@ void VideoCompositionFramesExtractorHostObject::handleEvent(
                              jsi::String::createFromUtf8(runtime, message));
       return dimensions;
     });
+  } else if (eventName == "itemReady") {
+    auto itemId = static_ref_cast<JString>(data)->toStdString();
+    emit("itemReady", [=](jsi::Runtime& runtime) -> jsi::Value {
+      return jsi::String::createFromUtf8(runtime, itemId);
+    });
+  } else if (eventName == "stats") {
+    auto snapshot = static_ref_cast<PlaybackStats>(data)->snapshot();
+    emitLatest("stats", snapshot);
   } else {
     emit(eventName);
   }
@@ -176,6 +222,7 @@ void VideoCompositionFramesExtractorHostObject::release() {
     removeAllListeners();
     player->release();
     player = nullptr;
+    frameTableReader.reset();
     jEventDispatcher = nullptr;
   }
 }
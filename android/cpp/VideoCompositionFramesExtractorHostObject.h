@@ -3,6 +3,7 @@
 #include "NativeEventDispatcher.h"
 #include "SkiaContextHolder.h"
 #include "VideoCompositionFramesExtractor.h"
+#include "VideoFrameTable.h"
 #include <fbjni/fbjni.h>
 #include <jsi/jsi.h>
 #include <map>
@@ -28,6 +29,7 @@ private:
   global_ref<NativeEventDispatcher> jEventDispatcher;
   global_ref<VideoCompositionFramesExtractor> player;
   std::shared_ptr<SkiaContextHolder> skiaContextHolder;
+  VideoFrameTableReader frameTableReader;
   std::atomic_flag prepared = ATOMIC_FLAG_INIT;
   std::atomic_flag released = ATOMIC_FLAG_INIT;
   void release();
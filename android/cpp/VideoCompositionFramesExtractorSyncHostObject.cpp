@@ -5,8 +5,8 @@ using namespace facebook::jni;
 
 local_ref<VideoCompositionFramesExtractorSync>
 VideoCompositionFramesExtractorSync::create(
-    alias_ref<VideoComposition> composition) {
-  return newInstance(composition);
+    alias_ref<VideoComposition> composition, jboolean offline) {
+  return newInstance(composition, offline);
 }
 
 void VideoCompositionFramesExtractorSync::start() const {
@@ -14,14 +14,41 @@ void VideoCompositionFramesExtractorSync::start() const {
   startMethod(self());
 }
 
-local_ref<JMap<JString, VideoFrame>>
+void VideoCompositionFramesExtractorSync::seekTo(jdouble time) const {
+  static const auto seekToMethod =
+      getClass()->getMethod<void(jdouble)>("seekTo");
+  seekToMethod(self(), time);
+}
+
+local_ref<VideoFrameTable>
 VideoCompositionFramesExtractorSync::decodeCompositionFrames(jdouble time) {
   static const auto decodeCompositionFramesMethod =
-      getClass()->getMethod<JMap<JString, VideoFrame>(jdouble)>(
+      getClass()->getMethod<VideoFrameTable(jdouble)>(
           "decodeCompositionFrames");
   return decodeCompositionFramesMethod(self(), time);
 }
 
+local_ref<LatencyHistogram>
+VideoCompositionFramesExtractorSync::getDecodeWaitHistogram() const {
+  static const auto getDecodeWaitHistogramMethod =
+      getClass()->getMethod<LatencyHistogram()>("getDecodeWaitHistogram");
+  return getDecodeWaitHistogramMethod(self());
+}
+
+local_ref<JMap<JString, LatencyHistogram>>
+VideoCompositionFramesExtractorSync::getItemsDecodeWaitHistograms() const {
+  static const auto getItemsDecodeWaitHistogramsMethod =
+      getClass()->getMethod<JMap<JString, LatencyHistogram>()>(
+          "getItemsDecodeWaitHistograms");
+  return getItemsDecodeWaitHistogramsMethod(self());
+}
+
+jlong VideoCompositionFramesExtractorSync::getDroppedFrames() const {
+  static const auto getDroppedFramesMethod =
+      getClass()->getMethod<jlong()>("getDroppedFrames");
+  return getDroppedFramesMethod(self());
+}
+
 void VideoCompositionFramesExtractorSync::release() const {
   static const auto releaseMethod = getClass()->getMethod<void()>("release");
   releaseMethod(self());
@@ -29,10 +56,11 @@ void VideoCompositionFramesExtractorSync::release() const {
 
 VideoCompositionFramesExtractorSyncHostObject::
     VideoCompositionFramesExtractorSyncHostObject(jsi::Runtime& runtime,
-                                                  jsi::Object jsComposition) {
+                                                  jsi::Object jsComposition,
+                                                  bool offline) {
   auto composition = VideoComposition::fromJSIObject(runtime, jsComposition);
-  framesExtractor =
-      make_global(VideoCompositionFramesExtractorSync::create(composition));
+  framesExtractor = make_global(
+      VideoCompositionFramesExtractorSync::create(composition, offline));
 }
 
 VideoCompositionFramesExtractorSyncHostObject::
@@ -45,6 +73,8 @@ VideoCompositionFramesExtractorSyncHostObject::getPropertyNames(
     jsi::Runtime& rt) {
   std::vector<jsi::PropNameID> result;
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("start")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("seekTo")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("getStats")));
   result.push_back(
       jsi::PropNameID::forUtf8(rt, std::string("decodeCompositionFrames")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("dispose")));
@@ -60,18 +90,15 @@ jsi::Value VideoCompositionFramesExtractorSyncHostObject::get(
         1,
         [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
                const jsi::Value* arguments, size_t count) -> jsi::Value {
-          auto result = jsi::Object(runtime);
           if (released.test()) {
-            return result;
+            return jsi::Object(runtime);
           }
           auto time = arguments[0].asNumber();
-          auto frames = framesExtractor->decodeCompositionFrames(time);
-          for (auto& entry : *frames) {
-            auto id = entry.first->toStdString();
-            auto frame = entry.second;
-            auto jsFrame = frame->toJS(runtime);
-            result.setProperty(runtime, id.c_str(), std::move(jsFrame));
-          }
+          auto frameTable = framesExtractor->decodeCompositionFrames(time);
+          auto result = frameTableReader.toJS(runtime, frameTable);
+          // the frames are decoded on another thread, the context of the
+          // caller is still current
+          frameTableReader.waitForFrames();
           return result;
         });
   } else if (propName == "start") {
@@ -84,6 +111,23 @@ jsi::Value VideoCompositionFramesExtractorSyncHostObject::get(
           }
           return jsi::Value::undefined();
         });
+  } else if (propName == "seekTo") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "seekTo"), 1,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (!released.test()) {
+            framesExtractor->seekTo(arguments[0].asNumber());
+          }
+          return jsi::Value::undefined();
+        });
+  } else if (propName == "getStats") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "getStats"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          return this->getStats(runtime);
+        });
   }
   if (propName == "dispose") {
     return jsi::Function::createFromHostFunction(
@@ -97,10 +141,34 @@ jsi::Value VideoCompositionFramesExtractorSyncHostObject::get(
   return jsi::Value::undefined();
 }
 
+jsi::Value VideoCompositionFramesExtractorSyncHostObject::getStats(
+    jsi::Runtime& runtime) {
+  if (released.test()) {
+    return jsi::Value::null();
+  }
+  // durations are recorded in microseconds, stats are reported in milliseconds
+  auto result = jsi::Object(runtime);
+  result.setProperty(
+      runtime, "decodeWait",
+      framesExtractor->getDecodeWaitHistogram()->toJS(runtime, 0.001));
+  auto itemsDecodeWait = jsi::Object(runtime);
+  auto histograms = framesExtractor->getItemsDecodeWaitHistograms();
+  for (auto& entry : *histograms) {
+    auto id = entry.first->toStdString();
+    itemsDecodeWait.setProperty(runtime, id.c_str(),
+                                entry.second->toJS(runtime, 0.001));
+  }
+  result.setProperty(runtime, "itemsDecodeWait", itemsDecodeWait);
+  result.setProperty(runtime, "droppedFrames",
+                     (double)framesExtractor->getDroppedFrames());
+  return result;
+}
+
 void VideoCompositionFramesExtractorSyncHostObject::release() {
   if (!released.test_and_set()) {
     framesExtractor->release();
     framesExtractor = nullptr;
+    frameTableReader.reset();
   }
 }
 
@@ -1,7 +1,8 @@
 #pragma once
 
+#include "LatencyHistogram.h"
 #include "VideoComposition.h"
-#include "VideoFrame.h"
+#include "VideoFrameTable.h"
 #include <fbjni/fbjni.h>
 #include <jsi/jsi.h>
 
@@ -17,11 +18,20 @@ public:
       "Lcom/azzapp/rnskv/VideoCompositionFramesExtractorSync;";
 
   local_ref<VideoCompositionFramesExtractorSync> static create(
-      alias_ref<VideoComposition> composition);
+      alias_ref<VideoComposition> composition, jboolean offline);
 
   void start() const;
 
-  local_ref<JMap<JString, VideoFrame>> decodeCompositionFrames(jdouble time);
+  void seekTo(jdouble time) const;
+
+  local_ref<VideoFrameTable> decodeCompositionFrames(jdouble time);
+
+  local_ref<LatencyHistogram> getDecodeWaitHistogram() const;
+
+  local_ref<JMap<JString, LatencyHistogram>>
+  getItemsDecodeWaitHistograms() const;
+
+  jlong getDroppedFrames() const;
 
   void release() const;
 };
@@ -30,14 +40,17 @@ class JSI_EXPORT VideoCompositionFramesExtractorSyncHostObject
     : public jsi::HostObject {
 public:
   VideoCompositionFramesExtractorSyncHostObject(jsi::Runtime& runtime,
-                                                jsi::Object composition);
+                                                jsi::Object composition,
+                                                bool offline);
   ~VideoCompositionFramesExtractorSyncHostObject();
   jsi::Value get(jsi::Runtime&, const jsi::PropNameID& name) override;
   std::vector<jsi::PropNameID> getPropertyNames(jsi::Runtime& rt) override;
 
 private:
   global_ref<VideoCompositionFramesExtractorSync> framesExtractor;
+  VideoFrameTableReader frameTableReader;
   std::atomic_flag released = ATOMIC_FLAG_INIT;
+  jsi::Value getStats(jsi::Runtime& runtime);
   void release();
 };
 
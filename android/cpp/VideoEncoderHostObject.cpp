@@ -8,6 +8,29 @@
 namespace RNSkiaVideo {
 using namespace facebook::jni;
 
+jint VideoEncoderSegment::getIndex() const {
+  static const auto getIndexMethod = getClass()->getMethod<jint()>("getIndex");
+  return getIndexMethod(self());
+}
+
+std::string VideoEncoderSegment::getLocation() const {
+  static const auto getLocationMethod =
+      getClass()->getMethod<jstring()>("getLocation");
+  return getLocationMethod(self())->toStdString();
+}
+
+jlong VideoEncoderSegment::getStartTimeUs() const {
+  static const auto getStartTimeUsMethod =
+      getClass()->getMethod<jlong()>("getStartTimeUs");
+  return getStartTimeUsMethod(self());
+}
+
+jlong VideoEncoderSegment::getDurationUs() const {
+  static const auto getDurationUsMethod =
+      getClass()->getMethod<jlong()>("getDurationUs");
+  return getDurationUsMethod(self());
+}
+
 local_ref<VideoEncoder>
 VideoEncoder::create(std::string& outPath, int width, int height, int frameRate,
                      int bitRate, std::optional<std::string> encoderName) {
@@ -15,6 +38,53 @@ VideoEncoder::create(std::string& outPath, int width, int height, int frameRate,
                      encoderName.has_value() ? encoderName.value() : nullptr);
 }
 
+void VideoEncoder::setSegmentDuration(jdouble segmentDuration) const {
+  static const auto setSegmentDurationMethod =
+      getClass()->getMethod<void(jdouble)>("setSegmentDuration");
+  setSegmentDurationMethod(self(), segmentDuration);
+}
+
+void VideoEncoder::setCheckpointPath(std::string& checkpointPath) const {
+  static const auto setCheckpointPathMethod =
+      getClass()->getMethod<void(std::string)>("setCheckpointPath");
+  setCheckpointPathMethod(self(), checkpointPath);
+}
+
+void VideoEncoder::setCheckpointKey(std::string& checkpointKey) const {
+  static const auto setCheckpointKeyMethod =
+      getClass()->getMethod<void(std::string)>("setCheckpointKey");
+  setCheckpointKeyMethod(self(), checkpointKey);
+}
+
+void VideoEncoder::setOffline(jboolean offline) const {
+  static const auto setOfflineMethod =
+      getClass()->getMethod<void(jboolean)>("setOffline");
+  setOfflineMethod(self(), offline);
+}
+
+void VideoEncoder::addRendition(const VideoEncoderRendition& rendition) const {
+  static const auto addRenditionMethod =
+      getClass()
+          ->getMethod<void(std::string, jint, jint, jint, jstring, jstring)>(
+              "addRendition");
+  // the optional values are passed as null strings, defaulted on the java side
+  auto mimeType = rendition.mimeType.has_value()
+                      ? make_jstring(rendition.mimeType.value())
+                      : local_ref<JString>();
+  auto encoderName = rendition.encoderName.has_value()
+                         ? make_jstring(rendition.encoderName.value())
+                         : local_ref<JString>();
+  addRenditionMethod(self(), rendition.outPath, rendition.width,
+                     rendition.height, rendition.bitRate, mimeType.get(),
+                     encoderName.get());
+}
+
+jdouble VideoEncoder::getResumeTime() const {
+  static const auto getResumeTimeMethod =
+      getClass()->getMethod<jdouble()>("getResumeTime");
+  return getResumeTimeMethod(self());
+}
+
 void VideoEncoder::prepare() const {
   static const auto prepareMethod = getClass()->getMethod<void()>("prepare");
   prepareMethod(self());
@@ -26,10 +96,11 @@ void VideoEncoder::makeGLContextCurrent() const {
   makeGLContextCurrentMethod(self());
 }
 
-void VideoEncoder::encodeFrame(jint texture, jdouble time) const {
+void VideoEncoder::encodeFrame(jint texture, jdouble time, jint textureWidth,
+                               jint textureHeight) const {
   static const auto encodeFrameMethod =
-      getClass()->getMethod<void(jint, jdouble)>("encodeFrame");
-  encodeFrameMethod(self(), texture, time);
+      getClass()->getMethod<void(jint, jdouble, jint, jint)>("encodeFrame");
+  encodeFrameMethod(self(), texture, time, textureWidth, textureHeight);
 }
 
 void VideoEncoder::release() const {
@@ -43,11 +114,55 @@ void VideoEncoder::finishWriting() const {
   finishWritingMethod(self());
 }
 
+local_ref<JList<VideoEncoderSegment>>
+VideoEncoder::pollCompletedSegments() const {
+  static const auto pollCompletedSegmentsMethod =
+      getClass()->getMethod<JList<VideoEncoderSegment>()>(
+          "pollCompletedSegments");
+  return pollCompletedSegmentsMethod(self());
+}
+
+local_ref<LatencyHistogram> VideoEncoder::getEncodeHistogram() const {
+  static const auto getEncodeHistogramMethod =
+      getClass()->getMethod<LatencyHistogram()>("getEncodeHistogram");
+  return getEncodeHistogramMethod(self());
+}
+
+local_ref<LatencyHistogram> VideoEncoder::getDrainHistogram() const {
+  static const auto getDrainHistogramMethod =
+      getClass()->getMethod<LatencyHistogram()>("getDrainHistogram");
+  return getDrainHistogramMethod(self());
+}
+
+local_ref<LatencyHistogram> VideoEncoder::getQueueDepthHistogram() const {
+  static const auto getQueueDepthHistogramMethod =
+      getClass()->getMethod<LatencyHistogram()>("getQueueDepthHistogram");
+  return getQueueDepthHistogramMethod(self());
+}
+
 VideoEncoderHostObject::VideoEncoderHostObject(
     std::string& outPath, int width, int height, int frameRate, int bitRate,
-    std::optional<std::string> encoderName) {
+    std::optional<std::string> encoderName, double segmentDuration,
+    std::optional<std::string> checkpointPath,
+    std::optional<std::string> checkpointKey,
+    std::vector<VideoEncoderRendition>& renditions, bool offline) {
   framesExtractor = make_global(VideoEncoder::create(
       outPath, width, height, frameRate, bitRate, encoderName));
+  if (segmentDuration > 0) {
+    framesExtractor->setSegmentDuration(segmentDuration);
+  }
+  if (checkpointPath.has_value()) {
+    framesExtractor->setCheckpointPath(checkpointPath.value());
+  }
+  if (checkpointKey.has_value()) {
+    framesExtractor->setCheckpointKey(checkpointKey.value());
+  }
+  for (auto& rendition : renditions) {
+    framesExtractor->addRendition(rendition);
+  }
+  if (offline) {
+    framesExtractor->setOffline(true);
+  }
 }
 
 VideoEncoderHostObject::~VideoEncoderHostObject() {
@@ -60,6 +175,10 @@ VideoEncoderHostObject::getPropertyNames(jsi::Runtime& rt) {
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("prepare")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("encodeFrame")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("finishWriting")));
+  result.push_back(
+      jsi::PropNameID::forUtf8(rt, std::string("getCompletedSegments")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("resumeTime")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("getStats")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("dispose")));
   return result;
 }
@@ -72,13 +191,24 @@ jsi::Value VideoEncoderHostObject::get(jsi::Runtime& runtime,
         runtime, jsi::PropNameID::forAscii(runtime, "encodeFrame"), 2,
         [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
                const jsi::Value* arguments, size_t count) -> jsi::Value {
+          // the encoder context waits on the GPU for the frame drawn by Skia
+          auto fence = GLFence::insert();
           framesExtractor->makeGLContextCurrent();
+          GLFence::waitAndDelete(fence);
           auto texId = arguments[0]
                            .asObject(runtime)
                            .getProperty(runtime, "glID")
                            .asNumber();
-
-          framesExtractor->encodeFrame((int)texId, arguments[1].asNumber());
+          // a texture of unknown size is drawn instead of blitted
+          int textureWidth = 0;
+          int textureHeight = 0;
+          if (count >= 4 && arguments[2].isNumber() &&
+              arguments[3].isNumber()) {
+            textureWidth = (int)arguments[2].asNumber();
+            textureHeight = (int)arguments[3].asNumber();
+          }
+          framesExtractor->encodeFrame((int)texId, arguments[1].asNumber(),
+                                       textureWidth, textureHeight);
           skiaContextHolder->makeCurrent();
           return jsi::Value::undefined();
         });
@@ -104,6 +234,25 @@ jsi::Value VideoEncoderHostObject::get(jsi::Runtime& runtime,
           }
           return jsi::Value::undefined();
         });
+  } else if (propName == "getCompletedSegments") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "getCompletedSegments"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (released.test()) {
+            return jsi::Array(runtime, 0);
+          }
+          return pollCompletedSegments(runtime);
+        });
+  } else if (propName == "resumeTime") {
+    return {released.test() ? 0 : framesExtractor->getResumeTime()};
+  } else if (propName == "getStats") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "getStats"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          return getStats(runtime);
+        });
   }
   if (propName == "dispose") {
     return jsi::Function::createFromHostFunction(
@@ -117,6 +266,47 @@ jsi::Value VideoEncoderHostObject::get(jsi::Runtime& runtime,
   return jsi::Value::undefined();
 }
 
+jsi::Value
+VideoEncoderHostObject::pollCompletedSegments(jsi::Runtime& runtime) {
+  auto segments = framesExtractor->pollCompletedSegments();
+  auto result = jsi::Array(runtime, segments->size());
+  size_t i = 0;
+  for (const auto& segment : *segments) {
+    auto jsSegment = jsi::Object(runtime);
+    jsSegment.setProperty(runtime, "index", jsi::Value(segment->getIndex()));
+    jsSegment.setProperty(
+        runtime, "path",
+        jsi::String::createFromUtf8(runtime, segment->getLocation()));
+    jsSegment.setProperty(
+        runtime, "startTime",
+        jsi::Value((double)segment->getStartTimeUs() / 1000000.0));
+    jsSegment.setProperty(
+        runtime, "duration",
+        jsi::Value((double)segment->getDurationUs() / 1000000.0));
+    result.setValueAtIndex(runtime, i, jsSegment);
+    i++;
+  }
+  return result;
+}
+
+jsi::Value VideoEncoderHostObject::getStats(jsi::Runtime& runtime) {
+  if (released.test()) {
+    return jsi::Value::null();
+  }
+  // durations are recorded in microseconds, stats are reported in milliseconds
+  auto result = jsi::Object(runtime);
+  result.setProperty(
+      runtime, "encode",
+      framesExtractor->getEncodeHistogram()->toJS(runtime, 0.001));
+  result.setProperty(
+      runtime, "drain",
+      framesExtractor->getDrainHistogram()->toJS(runtime, 0.001));
+  result.setProperty(
+      runtime, "encoderQueueDepth",
+      framesExtractor->getQueueDepthHistogram()->toJS(runtime, 1));
+  return result;
+}
+
 void VideoEncoderHostObject::release() {
   if (!released.test_and_set()) {
     framesExtractor->release();
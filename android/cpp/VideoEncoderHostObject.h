@@ -1,5 +1,6 @@
 #pragma once
 
+#include "LatencyHistogram.h"
 #include "SkiaContextHolder.h"
 #include "VideoComposition.h"
 #include <EGL/egl.h>
@@ -10,6 +11,30 @@ namespace RNSkiaVideo {
 using namespace facebook;
 using namespace jni;
 
+struct VideoEncoderSegment : public jni::JavaClass<VideoEncoderSegment> {
+
+public:
+  static constexpr auto kJavaDescriptor =
+      "Lcom/azzapp/rnskv/SegmentedMuxer$Segment;";
+
+  jint getIndex() const;
+
+  std::string getLocation() const;
+
+  jlong getStartTimeUs() const;
+
+  jlong getDurationUs() const;
+};
+
+struct VideoEncoderRendition {
+  std::string outPath;
+  int width;
+  int height;
+  int bitRate;
+  std::optional<std::string> mimeType;
+  std::optional<std::string> encoderName;
+};
+
 struct VideoEncoder : public jni::JavaClass<VideoEncoder> {
 
 public:
@@ -19,14 +44,35 @@ public:
                                         int height, int frameRate, int bitRate,
                                         std::optional<std::string> encoderName);
 
+  void setSegmentDuration(jdouble segmentDuration) const;
+
+  void setCheckpointPath(std::string& checkpointPath) const;
+
+  void setCheckpointKey(std::string& checkpointKey) const;
+
+  void setOffline(jboolean offline) const;
+
+  void addRendition(const VideoEncoderRendition& rendition) const;
+
+  jdouble getResumeTime() const;
+
   void prepare() const;
 
   void makeGLContextCurrent() const;
 
-  void encodeFrame(jint texture, jdouble time) const;
+  void encodeFrame(jint texture, jdouble time, jint textureWidth,
+                   jint textureHeight) const;
 
   void finishWriting() const;
 
+  local_ref<JList<VideoEncoderSegment>> pollCompletedSegments() const;
+
+  local_ref<LatencyHistogram> getEncodeHistogram() const;
+
+  local_ref<LatencyHistogram> getDrainHistogram() const;
+
+  local_ref<LatencyHistogram> getQueueDepthHistogram() const;
+
   void release() const;
 };
 
@@ -34,7 +80,12 @@ class JSI_EXPORT VideoEncoderHostObject : public jsi::HostObject {
 public:
   VideoEncoderHostObject(std::string& outPath, int width, int height,
                          int frameRate, int bitRate,
-                         std::optional<std::string> encoderName);
+                         std::optional<std::string> encoderName,
+                         double segmentDuration,
+                         std::optional<std::string> checkpointPath,
+                         std::optional<std::string> checkpointKey,
+                         std::vector<VideoEncoderRendition>& renditions,
+                         bool offline);
   ~VideoEncoderHostObject() override;
   jsi::Value get(jsi::Runtime&, const jsi::PropNameID& name) override;
   std::vector<jsi::PropNameID> getPropertyNames(jsi::Runtime& rt) override;
@@ -43,6 +94,8 @@ private:
   global_ref<VideoEncoder> framesExtractor;
   std::atomic_flag released = ATOMIC_FLAG_INIT;
   std::shared_ptr<SkiaContextHolder> skiaContextHolder;
+  jsi::Value pollCompletedSegments(jsi::Runtime& runtime);
+  jsi::Value getStats(jsi::Runtime& runtime);
   void release();
 };
 
@@ -32,6 +32,11 @@ jint VideoFrame::getRotation() {
   return getRotationMethod(self());
 }
 
+jlong VideoFrame::getFence() {
+  static const auto getFenceMethod = getClass()->getMethod<jlong()>("getFence");
+  return getFenceMethod(self());
+}
+
 jsi::Value VideoFrame::toJS(jsi::Runtime& runtime) {
   auto texture = getTexture();
   auto width = getWidth();
@@ -43,14 +48,17 @@ jsi::Value VideoFrame::toJS(jsi::Runtime& runtime) {
   jsObject.setProperty(runtime, "height", height);
   jsObject.setProperty(runtime, "rotation", rotation);
 
+  jsObject.setProperty(runtime, "texture", textureInfoToJS(runtime, texture));
+
+  return jsObject;
+}
+
+jsi::Object VideoFrame::textureInfoToJS(jsi::Runtime& runtime, jint texture) {
   jsi::Object jsiTextureInfo = jsi::Object(runtime);
   jsiTextureInfo.setProperty(runtime, "glTarget", (int)GL_TEXTURE_2D);
   jsiTextureInfo.setProperty(runtime, "glFormat", (int)GR_GL_RGBA8);
   jsiTextureInfo.setProperty(runtime, "glID", (int)texture);
   jsiTextureInfo.setProperty(runtime, "glProtected", 0);
-
-  jsObject.setProperty(runtime, "texture", jsiTextureInfo);
-
-  return jsObject;
+  return jsiTextureInfo;
 }
 } // namespace RNSkiaVideo
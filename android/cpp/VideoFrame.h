@@ -17,7 +17,10 @@ public:
   jint getWidth();
   jint getHeight();
   jint getRotation();
+  jlong getFence();
 
   jsi::Value toJS(jsi::Runtime& jsRuntime);
+
+  static jsi::Object textureInfoToJS(jsi::Runtime& jsRuntime, jint texture);
 };
 } // namespace RNSkiaVideo
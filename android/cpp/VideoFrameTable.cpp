@@ -0,0 +1,147 @@
+#include "VideoFrameTable.h"
+#include "VideoFrame.h"
+
+#include <GLES3/gl3.h>
+#include <cstring>
+
+namespace RNSkiaVideo {
+
+// must match the layout written by VideoFrameTable.java
+static constexpr size_t HEADER_SIZE = 16;
+static constexpr size_t RECORD_SIZE = 16;
+
+local_ref<JByteBuffer> VideoFrameTable::getBuffer() const {
+  static const auto getBufferMethod =
+      getClass()->getMethod<JByteBuffer()>("getBuffer");
+  return getBufferMethod(self());
+}
+
+local_ref<JArrayClass<JString>> VideoFrameTable::getItemIds() const {
+  static const auto getItemIdsMethod =
+      getClass()->getMethod<JArrayClass<JString>()>("getItemIds");
+  return getItemIdsMethod(self());
+}
+
+jint VideoFrameTableReader::readInt(size_t offset) const {
+  jint value;
+  std::memcpy(&value, bytes + offset, sizeof(jint));
+  return value;
+}
+
+jlong VideoFrameTableReader::readLong(size_t offset) const {
+  jlong value;
+  std::memcpy(&value, bytes + offset, sizeof(jlong));
+  return value;
+}
+
+void VideoFrameTableReader::readLayout(alias_ref<VideoFrameTable> table) {
+  buffer = make_global(table->getBuffer());
+  bytes = buffer->getDirectBytes();
+  // the version is read before the ids, so that a layout changed in between
+  // is read again on the next frame
+  layoutVersion = readInt(0);
+  auto itemIds = table->getItemIds();
+  slots.clear();
+  slots.resize(itemIds->size());
+  for (size_t i = 0; i < slots.size(); i++) {
+    slots[i].id = itemIds->getElement(i)->toStdString();
+  }
+  jsFrames = nullptr;
+}
+
+jsi::Value VideoFrameTableReader::toJS(jsi::Runtime& runtime,
+                                       alias_ref<VideoFrameTable> table) {
+  if (bytes == nullptr || readInt(0) != layoutVersion) {
+    readLayout(table);
+  }
+  if (jsRuntime != &runtime) {
+    jsRuntime = &runtime;
+    jsFrames = nullptr;
+    for (auto& slot : slots) {
+      slot.jsFrame = nullptr;
+      slot.jsTexture = nullptr;
+    }
+  }
+  // the fence is handed over by the table, a fence not waited for is replaced
+  // by the new one which is signaled after it
+  auto fence = GLFence::fromJava(readLong(8));
+  if (fence != nullptr) {
+    if (pendingFence != nullptr) {
+      glDeleteSync(pendingFence);
+    }
+    pendingFence = fence;
+  }
+  size_t slotCount = std::min(slots.size(), (size_t)readInt(4));
+  bool rebuild = jsFrames == nullptr;
+  for (size_t i = 0; i < slotCount; i++) {
+    auto& slot = slots[i];
+    size_t offset = HEADER_SIZE + i * RECORD_SIZE;
+    jint texture = readInt(offset);
+    bool present = texture != 0;
+    if (present != slot.present) {
+      // the frames object only contains the items that have a frame
+      slot.present = present;
+      rebuild = true;
+    }
+    if (!present) {
+      continue;
+    }
+    jint width = readInt(offset + 4);
+    jint height = readInt(offset + 8);
+    jint rotation = readInt(offset + 12);
+    if (slot.jsFrame == nullptr) {
+      slot.jsFrame = std::make_shared<jsi::Object>(runtime);
+      slot.jsTexture = std::make_shared<jsi::Object>(
+          VideoFrame::textureInfoToJS(runtime, texture));
+      slot.jsFrame->setProperty(runtime, "width", width);
+      slot.jsFrame->setProperty(runtime, "height", height);
+      slot.jsFrame->setProperty(runtime, "rotation", rotation);
+      slot.jsFrame->setProperty(runtime, "texture", *slot.jsTexture);
+    } else {
+      if (texture != slot.texture) {
+        slot.jsTexture->setProperty(runtime, "glID", (int)texture);
+      }
+      if (width != slot.width) {
+        slot.jsFrame->setProperty(runtime, "width", width);
+      }
+      if (height != slot.height) {
+        slot.jsFrame->setProperty(runtime, "height", height);
+      }
+      if (rotation != slot.rotation) {
+        slot.jsFrame->setProperty(runtime, "rotation", rotation);
+      }
+    }
+    slot.texture = texture;
+    slot.width = width;
+    slot.height = height;
+    slot.rotation = rotation;
+  }
+  if (rebuild) {
+    jsFrames = std::make_shared<jsi::Object>(runtime);
+    for (size_t i = 0; i < slotCount; i++) {
+      if (slots[i].present) {
+        jsFrames->setProperty(runtime, slots[i].id.c_str(), *slots[i].jsFrame);
+      }
+    }
+  }
+  return jsi::Value(runtime, *jsFrames);
+}
+
+void VideoFrameTableReader::waitForFrames() {
+  GLFence::waitAndDelete(pendingFence);
+  pendingFence = nullptr;
+}
+
+void VideoFrameTableReader::reset() {
+  slots.clear();
+  jsFrames = nullptr;
+  jsRuntime = nullptr;
+  if (pendingFence != nullptr) {
+    glDeleteSync(pendingFence);
+    pendingFence = nullptr;
+  }
+  bytes = nullptr;
+  buffer = nullptr;
+}
+
+} // namespace RNSkiaVideo
@@ -0,0 +1,66 @@
+#pragma once
+
+#include "GLFence.h"
+#include <fbjni/ByteBuffer.h>
+#include <fbjni/fbjni.h>
+#include <jsi/jsi.h>
+#include <memory>
+#include <vector>
+
+namespace RNSkiaVideo {
+
+using namespace facebook;
+using namespace jni;
+
+struct VideoFrameTable : JavaClass<VideoFrameTable> {
+public:
+  static constexpr auto kJavaDescriptor = "Lcom/azzapp/rnskv/VideoFrameTable;";
+  local_ref<JByteBuffer> getBuffer() const;
+  local_ref<JArrayClass<JString>> getItemIds() const;
+};
+
+/**
+ * Converts the frames of a VideoFrameTable to JS. The records are read from
+ * the shared buffer of the table, and the JS objects are reused across frames,
+ * so that no JNI call is made unless the items of the composition change.
+ */
+class VideoFrameTableReader {
+public:
+  jsi::Value toJS(jsi::Runtime& runtime, alias_ref<VideoFrameTable> table);
+
+  /**
+   * Makes the current context wait for the rendering of the frames read by the
+   * last call to toJS, must be called with the drawing context current.
+   */
+  void waitForFrames();
+
+  /**
+   * Releases the cached buffer and JS objects.
+   */
+  void reset();
+
+private:
+  struct Slot {
+    std::string id;
+    bool present = false;
+    jint texture = 0;
+    jint width = 0;
+    jint height = 0;
+    jint rotation = 0;
+    std::shared_ptr<jsi::Object> jsFrame;
+    std::shared_ptr<jsi::Object> jsTexture;
+  };
+
+  global_ref<JByteBuffer> buffer;
+  const uint8_t* bytes = nullptr;
+  jint layoutVersion = 0;
+  GLsync pendingFence = nullptr;
+  std::vector<Slot> slots;
+  jsi::Runtime* jsRuntime = nullptr;
+  std::shared_ptr<jsi::Object> jsFrames;
+
+  jint readInt(size_t offset) const;
+  jlong readLong(size_t offset) const;
+  void readLayout(alias_ref<VideoFrameTable> table);
+};
+} // namespace RNSkiaVideo
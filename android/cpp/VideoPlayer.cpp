@@ -82,6 +82,12 @@ void VideoPlayer::setPlaybackSpeed(jfloat playbackSpeed) {
   setPlaybackSpeedMethod(self(), playbackSpeed);
 }
 
+local_ref<PlaybackStats> VideoPlayer::getStats() {
+  static const auto getStatsMethod =
+      getClass()->getMethod<PlaybackStats()>("getStats");
+  return getStatsMethod(self());
+}
+
 local_ref<VideoFrame> VideoPlayer::decodeNextFrame() {
   static const auto decodeNextFrameMethod =
       getClass()->getMethod<VideoFrame()>("decodeNextFrame");
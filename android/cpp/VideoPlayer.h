@@ -4,6 +4,7 @@
 #include <fbjni/fbjni.h>
 
 #include "NativeEventDispatcher.h"
+#include "PlaybackStats.h"
 #include "VideoFrame.h"
 
 namespace RNSkiaVideo {
@@ -45,6 +46,8 @@ public:
 
   void setPlaybackSpeed(jfloat playbackSpeed);
 
+  local_ref<PlaybackStats> getStats();
+
   local_ref<VideoFrame> decodeNextFrame();
 
   void release();
@@ -1,4 +1,5 @@
 #include "VideoPlayerHostObject.h"
+#include "GLFence.h"
 #include "JNIHelpers.h"
 
 namespace RNSkiaVideo {
@@ -31,6 +32,7 @@ VideoPlayerHostObject::getPropertyNames(jsi::Runtime& rt) {
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("isPlaying")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("dispose")));
   result.push_back(jsi::PropNameID::forUtf8(rt, std::string("on")));
+  result.push_back(jsi::PropNameID::forUtf8(rt, std::string("getStats")));
   return result;
 }
 
@@ -56,6 +58,7 @@ jsi::Value VideoPlayerHostObject::get(jsi::Runtime& runtime,
           if (!frame) {
             return jsi::Value::null();
           }
+          GLFence::waitAndDelete(GLFence::fromJava(frame->getFence()));
           return frame->toJS(runtime);
         });
   } else if (propName == "play") {
@@ -122,6 +125,16 @@ jsi::Value VideoPlayerHostObject::get(jsi::Runtime& runtime,
           auto handler = arguments[1].asObject(runtime).asFunction(runtime);
           return this->on(name, std::move(handler));
         });
+  } else if (propName == "getStats") {
+    return jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "getStats"), 0,
+        [this](jsi::Runtime& runtime, const jsi::Value& thisValue,
+               const jsi::Value* arguments, size_t count) -> jsi::Value {
+          if (released.test()) {
+            return jsi::Value::null();
+          }
+          return player->getStats()->snapshot()(runtime);
+        });
   } else if (propName == "dispose") {
     return jsi::Function::createFromHostFunction(
         runtime, jsi::PropNameID::forAscii(runtime, "dispose"), 0,
@@ -174,7 +187,7 @@ void VideoPlayerHostObject::handleEvent(std::string eventName,
     });
   } else if (eventName == "bufferingUpdate") {
     auto bufferedDuration = (double)static_ref_cast<JLong>(data)->value();
-    emit("bufferingUpdate", [=](jsi::Runtime& runtime) -> jsi::Value {
+    emitLatest("bufferingUpdate", [=](jsi::Runtime& runtime) -> jsi::Value {
       auto range = jsi::Object(runtime);
       range.setProperty(runtime, "start", jsi::Value(0));
       range.setProperty(runtime, "duration",
@@ -189,6 +202,9 @@ void VideoPlayerHostObject::handleEvent(std::string eventName,
                         "playingStatusChange %d", playing);
     emit("playingStatusChange",
          [=](jsi::Runtime&) { return jsi::Value(playing); });
+  } else if (eventName == "stats") {
+    auto snapshot = static_ref_cast<PlaybackStats>(data)->snapshot();
+    emitLatest("stats", snapshot);
   } else {
     emit(eventName);
   }
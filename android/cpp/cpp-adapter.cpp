@@ -1,4 +1,10 @@
+#include "FrameAnalyzerHostObject.h"
+#include "FrameCapturerHostObject.h"
+#include "JNIHelpers.h"
+#include "MediaMetadataProbe.h"
 #include "NativeEventDispatcher.h"
+#include "ProxyCache.h"
+#include "TraceHelpers.h"
 #include "VideoCapabilities.h"
 #include "VideoCompositionFramesExtractorHostObject.h"
 #include "VideoCompositionFramesExtractorSyncHostObject.h"
@@ -7,10 +13,114 @@
 #include <fbjni/fbjni.h>
 #include <jni.h>
 #include <jsi/jsi.h>
+#include <optional>
+#include <thread>
 
 using namespace facebook;
 using namespace RNSkiaVideo;
 
+static bool isOfflineCodecProfile(jsi::Runtime& runtime,
+                                  const jsi::Object& options) {
+  if (!options.hasProperty(runtime, "codecProfile")) {
+    return false;
+  }
+  auto value = options.getProperty(runtime, "codecProfile");
+  return value.isString() &&
+         value.asString(runtime).utf8(runtime) == "offline";
+}
+
+struct ProbedMediaMetadata {
+  std::string mimeType;
+  jlong durationUs;
+  jint width;
+  jint height;
+  jint rotation;
+  jfloat frameRate;
+  jlong keyFrameIntervalUs;
+};
+
+static jsi::Value
+probedMediaMetadataToJS(jsi::Runtime& runtime, const std::string& path,
+                        const std::optional<ProbedMediaMetadata>& metadata) {
+  if (!metadata.has_value()) {
+    return jsi::Value::null();
+  }
+  auto jsObject = jsi::Object(runtime);
+  jsObject.setProperty(runtime, "path",
+                       jsi::String::createFromUtf8(runtime, path));
+  jsObject.setProperty(
+      runtime, "mimeType",
+      jsi::String::createFromUtf8(runtime, metadata->mimeType));
+  jsObject.setProperty(
+      runtime, "duration",
+      metadata->durationUs < 0
+          ? jsi::Value::null()
+          : jsi::Value((double)metadata->durationUs / 1000000));
+  jsObject.setProperty(runtime, "width", jsi::Value(metadata->width));
+  jsObject.setProperty(runtime, "height", jsi::Value(metadata->height));
+  jsObject.setProperty(runtime, "rotation", jsi::Value(metadata->rotation));
+  jsObject.setProperty(runtime, "frameRate", jsi::Value(metadata->frameRate));
+  jsObject.setProperty(
+      runtime, "keyFrameInterval",
+      metadata->keyFrameIntervalUs < 0
+          ? jsi::Value::null()
+          : jsi::Value((double)metadata->keyFrameIntervalUs / 1000000));
+  return jsObject;
+}
+
+// probes the videos on a background thread, the promise being settled on the
+// javascript thread
+static void probeMediaMetadataAsync(jsi::Runtime& runtime,
+                                    std::vector<std::string> paths,
+                                    std::shared_ptr<jsi::Value> resolve,
+                                    std::shared_ptr<jsi::Value> reject) {
+  auto callInvoker = JNIHelpers::getCallInvoker();
+  auto runtimePtr = &runtime;
+  std::thread([=]() mutable {
+    std::vector<std::optional<ProbedMediaMetadata>> results;
+    std::string error;
+    jni::ThreadScope::WithClassLoader([&]() {
+      try {
+        auto metadataList = MediaMetadataProbe::probeAll(paths);
+        for (const auto& metadata : *metadataList) {
+          if (!metadata) {
+            results.emplace_back(std::nullopt);
+            continue;
+          }
+          results.emplace_back(ProbedMediaMetadata{
+              metadata->getMimeType(), metadata->getDurationUs(),
+              metadata->getWidth(), metadata->getHeight(),
+              metadata->getRotation(), metadata->getFrameRate(),
+              metadata->getKeyFrameIntervalUs()});
+        }
+      } catch (const std::exception& e) {
+        error = e.what();
+      }
+    });
+    // the javascript values are only released on the javascript thread
+    callInvoker->invokeAsync([runtimePtr, paths, results, error,
+                              resolve = std::move(resolve),
+                              reject = std::move(reject)]() {
+      auto& runtime = *runtimePtr;
+      if (!error.empty()) {
+        auto jsError =
+            runtime.global()
+                .getPropertyAsFunction(runtime, "Error")
+                .callAsConstructor(
+                    runtime, jsi::String::createFromUtf8(runtime, error));
+        reject->asObject(runtime).asFunction(runtime).call(runtime, jsError);
+        return;
+      }
+      auto result = jsi::Array(runtime, paths.size());
+      for (size_t i = 0; i < results.size(); i++) {
+        result.setValueAtIndex(
+            runtime, i, probedMediaMetadataToJS(runtime, paths[i], results[i]));
+      }
+      resolve->asObject(runtime).asFunction(runtime).call(runtime, result);
+    });
+  }).detach();
+}
+
 void install(jsi::Runtime& jsiRuntime) {
 
   auto RNSVModule = jsi::Object(jsiRuntime);
@@ -69,18 +179,23 @@ void install(jsi::Runtime& jsiRuntime) {
           jsiRuntime,
           jsi::PropNameID::forAscii(
               jsiRuntime, "createVideoCompositionFramesExtractorSync"),
-          1,
+          2,
           [](jsi::Runtime& runtime, const jsi::Value& thisValue,
              const jsi::Value* arguments, size_t count) -> jsi::Value {
-            if (count != 1 || !arguments[0].isObject()) {
+            if (count < 1 || !arguments[0].isObject()) {
               throw jsi::JSError(runtime,
                                  "createVideoCompositionFramesExtractorSync(.."
                                  ") expects one arguments (object)!");
             }
+            bool offline = false;
+            if (count > 1 && arguments[1].isObject()) {
+              offline = isOfflineCodecProfile(runtime,
+                                              arguments[1].asObject(runtime));
+            }
 
             auto instance =
                 std::make_shared<VideoCompositionFramesExtractorSyncHostObject>(
-                    runtime, arguments[0].asObject(runtime));
+                    runtime, arguments[0].asObject(runtime), offline);
             return jsi::Object::createFromHostObject(runtime, instance);
           });
 
@@ -115,14 +230,101 @@ void install(jsi::Runtime& jsiRuntime) {
             encoderName = value.asString(runtime).utf8(runtime);
           }
         }
+        double segmentDuration = 0;
+        if (options.hasProperty(runtime, "segmentDuration")) {
+          auto value = options.getProperty(runtime, "segmentDuration");
+          if (value.isNumber()) {
+            segmentDuration = value.asNumber();
+          }
+        }
+        std::optional<std::string> checkpointPath = std::nullopt;
+        if (options.hasProperty(runtime, "checkpointPath")) {
+          auto value = options.getProperty(runtime, "checkpointPath");
+          if (value.isString()) {
+            checkpointPath = value.asString(runtime).utf8(runtime);
+          }
+        }
+        std::optional<std::string> checkpointKey = std::nullopt;
+        if (options.hasProperty(runtime, "checkpointKey")) {
+          auto value = options.getProperty(runtime, "checkpointKey");
+          if (value.isString()) {
+            checkpointKey = value.asString(runtime).utf8(runtime);
+          }
+        }
+        std::vector<VideoEncoderRendition> renditions;
+        if (options.hasProperty(runtime, "renditions")) {
+          auto value = options.getProperty(runtime, "renditions");
+          if (value.isObject()) {
+            auto jsRenditions = value.asObject(runtime).asArray(runtime);
+            for (size_t i = 0; i < jsRenditions.size(runtime); i++) {
+              auto jsRendition =
+                  jsRenditions.getValueAtIndex(runtime, i).asObject(runtime);
+              VideoEncoderRendition rendition;
+              rendition.outPath = jsRendition.getProperty(runtime, "outPath")
+                                      .asString(runtime)
+                                      .utf8(runtime);
+              rendition.width =
+                  (int)jsRendition.getProperty(runtime, "width").asNumber();
+              rendition.height =
+                  (int)jsRendition.getProperty(runtime, "height").asNumber();
+              rendition.bitRate =
+                  (int)jsRendition.getProperty(runtime, "bitRate").asNumber();
+              auto mimeType = jsRendition.getProperty(runtime, "mimeType");
+              if (mimeType.isString()) {
+                rendition.mimeType = mimeType.asString(runtime).utf8(runtime);
+              }
+              auto renditionEncoderName =
+                  jsRendition.getProperty(runtime, "encoderName");
+              if (renditionEncoderName.isString()) {
+                rendition.encoderName =
+                    renditionEncoderName.asString(runtime).utf8(runtime);
+              }
+              renditions.push_back(rendition);
+            }
+          }
+        }
+
+        auto offline = isOfflineCodecProfile(runtime, options);
 
         auto instance = std::make_shared<VideoEncoderHostObject>(
-            outPath, width, height, frameRate, bitRate, encoderName);
+            outPath, width, height, frameRate, bitRate, encoderName,
+            segmentDuration, checkpointPath, checkpointKey, renditions,
+            offline);
         return jsi::Object::createFromHostObject(runtime, instance);
       });
   RNSVModule.setProperty(jsiRuntime, "createVideoEncoder",
                          std::move(createVideoEncoder));
 
+  auto createFrameCapturer = jsi::Function::createFromHostFunction(
+      jsiRuntime, jsi::PropNameID::forAscii(jsiRuntime, "createFrameCapturer"),
+      0,
+      [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+         const jsi::Value* arguments, size_t count) -> jsi::Value {
+        auto instance = std::make_shared<FrameCapturerHostObject>(runtime);
+        return jsi::Object::createFromHostObject(runtime, instance);
+      });
+  RNSVModule.setProperty(jsiRuntime, "createFrameCapturer",
+                         std::move(createFrameCapturer));
+
+  auto createFrameAnalyzer = jsi::Function::createFromHostFunction(
+      jsiRuntime, jsi::PropNameID::forAscii(jsiRuntime, "createFrameAnalyzer"),
+      2,
+      [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+         const jsi::Value* arguments, size_t count) -> jsi::Value {
+        if (count != 2 || !arguments[0].isObject() ||
+            !arguments[1].isObject()) {
+          throw jsi::JSError(runtime, "RNSkiaVideo.createFrameAnalyzer(..) "
+                                      "expects 2 arguments (object, object)!");
+        }
+        auto jsItem = arguments[0].asObject(runtime);
+        auto options = arguments[1].asObject(runtime);
+        auto instance =
+            std::make_shared<FrameAnalyzerHostObject>(runtime, jsItem, options);
+        return jsi::Object::createFromHostObject(runtime, instance);
+      });
+  RNSVModule.setProperty(jsiRuntime, "createFrameAnalyzer",
+                         std::move(createFrameAnalyzer));
+
   auto getDecodingCapabilitiesFor = jsi::Function::createFromHostFunction(
       jsiRuntime,
       jsi::PropNameID::forAscii(jsiRuntime, "getDecodingCapabilitiesFor"), 1,
@@ -193,6 +395,83 @@ void install(jsi::Runtime& jsiRuntime) {
   RNSVModule.setProperty(jsiRuntime, "getValidEncoderConfigurations",
                          std::move(getValidEncoderConfigurations));
 
+  auto probeMediaMetadata = jsi::Function::createFromHostFunction(
+      jsiRuntime, jsi::PropNameID::forAscii(jsiRuntime, "probeMediaMetadata"),
+      1,
+      [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+         const jsi::Value* arguments, size_t count) -> jsi::Value {
+        if (count != 1) {
+          throw jsi::JSError(runtime, "RNSkiaVideo.probeMediaMetadata(..) "
+                                      "expects 1 arguments (array)!");
+        }
+        auto jsPaths = arguments[0].asObject(runtime).asArray(runtime);
+        std::vector<std::string> paths;
+        for (size_t i = 0; i < jsPaths.size(runtime); i++) {
+          paths.push_back(
+              jsPaths.getValueAtIndex(runtime, i).asString(runtime).utf8(
+                  runtime));
+        }
+        auto promiseExecutor = jsi::Function::createFromHostFunction(
+            runtime, jsi::PropNameID::forAscii(runtime, "executor"), 2,
+            [paths](jsi::Runtime& runtime, const jsi::Value& thisValue,
+                    const jsi::Value* arguments, size_t count) -> jsi::Value {
+              auto resolve =
+                  std::make_shared<jsi::Value>(runtime, arguments[0]);
+              auto reject =
+                  std::make_shared<jsi::Value>(runtime, arguments[1]);
+              probeMediaMetadataAsync(runtime, paths, resolve, reject);
+              return jsi::Value::undefined();
+            });
+        return runtime.global()
+            .getPropertyAsFunction(runtime, "Promise")
+            .callAsConstructor(runtime, promiseExecutor);
+      });
+  RNSVModule.setProperty(jsiRuntime, "probeMediaMetadata",
+                         std::move(probeMediaMetadata));
+
+  auto setTracingEnabled = jsi::Function::createFromHostFunction(
+      jsiRuntime, jsi::PropNameID::forAscii(jsiRuntime, "setTracingEnabled"),
+      1,
+      [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+         const jsi::Value* arguments, size_t count) -> jsi::Value {
+        TraceHelpers::setEnabled(count > 0 && arguments[0].getBool());
+        return jsi::Value::undefined();
+      });
+  RNSVModule.setProperty(jsiRuntime, "setTracingEnabled",
+                         std::move(setTracingEnabled));
+
+  auto configureProxyCache = jsi::Function::createFromHostFunction(
+      jsiRuntime, jsi::PropNameID::forAscii(jsiRuntime, "configureProxyCache"),
+      1,
+      [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+         const jsi::Value* arguments, size_t count) -> jsi::Value {
+        if (count == 0 || !arguments[0].isObject()) {
+          return jsi::Value::undefined();
+        }
+        auto options = arguments[0].asObject(runtime);
+        auto maxCacheSize = options.getProperty(runtime, "maxCacheSize");
+        if (maxCacheSize.isNumber()) {
+          ProxyCache::setMaxCacheSize((jlong)maxCacheSize.asNumber());
+        }
+        auto enabled = options.getProperty(runtime, "enabled");
+        if (enabled.isBool()) {
+          ProxyCache::setEnabled(enabled.getBool());
+        }
+        return jsi::Value::undefined();
+      });
+  RNSVModule.setProperty(jsiRuntime, "configureProxyCache",
+                         std::move(configureProxyCache));
+
+  auto clearProxyCache = jsi::Function::createFromHostFunction(
+      jsiRuntime, jsi::PropNameID::forAscii(jsiRuntime, "clearProxyCache"), 0,
+      [](jsi::Runtime& runtime, const jsi::Value& thisValue,
+         const jsi::Value* arguments, size_t count) -> jsi::Value {
+        ProxyCache::clear();
+        return jsi::Value::undefined();
+      });
+  RNSVModule.setProperty(jsiRuntime, "clearProxyCache",
+                         std::move(clearProxyCache));
+
   auto runWithJNIClassLoader = jsi::Function::createFromHostFunction(
       jsiRuntime,
       jsi::PropNameID::forAscii(jsiRuntime, "runWithJNIClassLoader"), 1,
@@ -0,0 +1,67 @@
+package com.azzapp.rnskv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of direct buffers used to read pixels back from the GPU. Direct buffers of the size
+ * of a frame are costly to allocate and are only freed by the garbage collector, so released
+ * buffers are kept for the next reads until the pool reaches its maximum size.
+ */
+public class DirectBufferPool {
+
+  private static final long MAX_POOL_SIZE = 32L * 1024 * 1024;
+
+  private static final List<ByteBuffer> buffers = new ArrayList<>();
+
+  private static long poolSize = 0;
+
+  /**
+   * Returns a direct buffer in native byte order from the pool, allocating it if the pool has
+   * no buffer large enough.
+   *
+   * @param capacity the minimum capacity of the buffer in bytes
+   * @return a cleared buffer whose limit is the requested capacity
+   */
+  public static synchronized ByteBuffer acquire(int capacity) {
+    ByteBuffer bestBuffer = null;
+    for (ByteBuffer buffer : buffers) {
+      if (buffer.capacity() >= capacity
+        && (bestBuffer == null || buffer.capacity() < bestBuffer.capacity())) {
+        bestBuffer = buffer;
+      }
+    }
+    if (bestBuffer == null) {
+      return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+    buffers.remove(bestBuffer);
+    poolSize -= bestBuffer.capacity();
+    bestBuffer.clear();
+    bestBuffer.limit(capacity);
+    return bestBuffer;
+  }
+
+  /**
+   * Returns a buffer acquired with {@link #acquire(int)} to the pool, the buffer must not be
+   * used anymore by the caller.
+   *
+   * @param buffer the buffer to release
+   */
+  public static synchronized void release(ByteBuffer buffer) {
+    if (poolSize + buffer.capacity() > MAX_POOL_SIZE) {
+      return;
+    }
+    buffers.add(buffer);
+    poolSize += buffer.capacity();
+  }
+
+  /**
+   * Drops the pooled buffers so that they can be collected.
+   */
+  public static synchronized void clear() {
+    buffers.clear();
+    poolSize = 0;
+  }
+}
@@ -2,6 +2,8 @@ package com.azzapp.rnskv;
 
 import android.opengl.EGL14;
 import android.opengl.EGLExt;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
 import android.view.Surface;
 
 import javax.microedition.khronos.egl.EGL10;
@@ -23,6 +25,10 @@ public class EGLResourcesHolder {
 
   private final EGLSurface eglSurface;
 
+  private final EGLConfig eglConfig;
+
+  // whether the context supports fences, checked the first time a fence is inserted
+  private Boolean fencesSupported = null;
 
   /**
    * Create a new EGLResourcesHolder holder with a Windowed surface
@@ -75,7 +81,7 @@ public class EGLResourcesHolder {
     EGLSurface eglSurface = egl.eglCreateWindowSurface(eglDisplay, config, surface, surfaceAttributes);
     EGLUtils.checkGlError("eglCreateWindowSurface");
 
-    return new EGLResourcesHolder(egl, eglContext, eglSurface, eglDisplay);
+    return new EGLResourcesHolder(egl, eglContext, eglSurface, eglDisplay, config);
   }
 
   /**
@@ -131,14 +137,77 @@ public class EGLResourcesHolder {
     EGLSurface eglSurface = egl.eglCreatePbufferSurface(eglDisplay, config, surfaceAttributes);
     EGLUtils.checkGlError("eglCreatePbufferSurface");
 
-    return new EGLResourcesHolder(egl, eglContext, eglSurface, eglDisplay);
+    return new EGLResourcesHolder(egl, eglContext, eglSurface, eglDisplay, config);
   }
 
-  private EGLResourcesHolder(EGL10 egl, EGLContext eglContext, EGLSurface eglSurface, EGLDisplay eglDisplay) {
+  private EGLResourcesHolder(
+    EGL10 egl,
+    EGLContext eglContext,
+    EGLSurface eglSurface,
+    EGLDisplay eglDisplay,
+    EGLConfig eglConfig
+  ) {
     this.egl = egl;
     this.eglContext = eglContext;
     this.eglSurface = eglSurface;
     this.eglDisplay = eglDisplay;
+    this.eglConfig = eglConfig;
+  }
+
+  /**
+   * Create an additional windowed surface sharing the display, config and context holded
+   *
+   * @param surface the native android surface used to create the windowed surface
+   * @return the created surface, to be released with {@link #releaseSurface(EGLSurface)}
+   */
+  public EGLSurface createWindowSurface(Surface surface) {
+    EGLUtils.purgeOpenGLError();
+    int[] surfaceAttributes = {
+      EGL10.EGL_NONE
+    };
+    EGLSurface windowSurface =
+      egl.eglCreateWindowSurface(eglDisplay, eglConfig, surface, surfaceAttributes);
+    EGLUtils.checkGlError("eglCreateWindowSurface");
+    return windowSurface;
+  }
+
+  /**
+   * Make the opengl display and context holded current with the given surface
+   *
+   * @param surface a surface created with {@link #createWindowSurface(Surface)}
+   * @return true if the operation was successful
+   */
+  public boolean makeCurrent(EGLSurface surface) {
+    return egl.eglMakeCurrent(eglDisplay, surface, surface, eglContext);
+  }
+
+  /**
+   * swap the buffer of the given windowed surface
+   *
+   * @param surface a surface created with {@link #createWindowSurface(Surface)}
+   * @return true if the operation was successful
+   */
+  public boolean swapBuffers(EGLSurface surface) {
+    EGLUtils.purgeOpenGLError();
+    boolean result = egl.eglSwapBuffers(eglDisplay, surface);
+    EGLUtils.checkGlError("eglSwapBuffers");
+    return result;
+  }
+
+  /**
+   * release a surface created with {@link #createWindowSurface(Surface)}
+   */
+  public void releaseSurface(EGLSurface surface) {
+    if (surface != EGL10.EGL_NO_SURFACE) {
+      egl.eglDestroySurface(eglDisplay, surface);
+    }
+  }
+
+  /**
+   * @return the surface holded
+   */
+  public EGLSurface getEGLSurface() {
+    return eglSurface;
   }
 
   /**
@@ -176,6 +245,25 @@ public class EGLResourcesHolder {
     EGLUtils.checkGlError("eglPresentationTimeANDROID");
   }
 
+  /**
+   * Inserts a fence after the commands issued so far in the context, which must be current,
+   * and flushes them. Another context sharing the textures of this one can then wait for the
+   * fence on the GPU before sampling them, without blocking the CPU of either thread.
+   *
+   * @return the fence, to be deleted by the context waiting for it, or 0 if the context does
+   * not support fences, the ordering then relying on the flush alone
+   */
+  public long insertFence() {
+    if (fencesSupported == null) {
+      fencesSupported = EGLUtils.isCurrentContextGLES3();
+    }
+    long fence = fencesSupported
+      ? GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0)
+      : 0;
+    GLES20.glFlush();
+    return fence;
+  }
+
   /**
    * release the holed opengl resources
    */
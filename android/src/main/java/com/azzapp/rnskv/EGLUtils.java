@@ -2,6 +2,7 @@ package com.azzapp.rnskv;
 
 import android.graphics.Bitmap;
 import android.opengl.GLES20;
+import android.opengl.GLES30;
 import android.opengl.GLU;
 import android.opengl.Matrix;
 import android.util.Log;
@@ -12,6 +13,8 @@ import java.nio.FloatBuffer;
 
 import javax.microedition.khronos.egl.EGL10;
 import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
 
 public class EGLUtils {
 
@@ -40,6 +43,61 @@ public class EGLUtils {
     return context;
   }
 
+  /**
+   * Runs an action with the context of the given EGL resources current, the context current
+   * on the calling thread before being restored afterward, or no context being left current
+   * if there was none.
+   *
+   * @param eglResourcesHolder the EGL resources to make current
+   * @param action             the action to run
+   */
+  public static void runWithContext(EGLResourcesHolder eglResourcesHolder, Runnable action) {
+    EGL10 egl = (EGL10) EGLContext.getEGL();
+    EGLContext context = egl.eglGetCurrentContext();
+    EGLDisplay display = egl.eglGetCurrentDisplay();
+    EGLSurface drawSurface = egl.eglGetCurrentSurface(EGL10.EGL_DRAW);
+    EGLSurface readSurface = egl.eglGetCurrentSurface(EGL10.EGL_READ);
+    eglResourcesHolder.makeCurrent();
+    try {
+      action.run();
+    } finally {
+      if (context != EGL10.EGL_NO_CONTEXT) {
+        egl.eglMakeCurrent(display, drawSurface, readSurface, context);
+      } else {
+        egl.eglMakeCurrent(
+          egl.eglGetCurrentDisplay(),
+          EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT
+        );
+      }
+    }
+  }
+
+  /**
+   * @return true if the current context supports OpenGL ES 3.0 or higher, contexts created for
+   * OpenGL ES 2.0 being usually of the highest version supported by the device
+   */
+  public static boolean isCurrentContextGLES3() {
+    // formatted as "OpenGL ES <major>.<minor> <vendor-specific information>"
+    String version = GLES20.glGetString(GLES20.GL_VERSION);
+    String prefix = "OpenGL ES ";
+    if (version == null || !version.startsWith(prefix) || version.length() <= prefix.length()) {
+      return false;
+    }
+    return Character.digit(version.charAt(prefix.length()), 10) >= 3;
+  }
+
+  /**
+   * Deletes a fence created by {@link EGLResourcesHolder#insertFence()} that no context will
+   * wait for, a context sharing the one that created it must be current.
+   *
+   * @param fence the fence to delete, ignored if 0
+   */
+  public static void deleteFence(long fence) {
+    if (fence != 0) {
+      GLES30.glDeleteSync(fence);
+    }
+  }
+
   /**
    * Create an OpenGL program from the given vertex and fragment shaders.
    *
@@ -185,6 +243,8 @@ public class EGLUtils {
 
   /**
    * Save the texture to a bitmap. (Useful for debugging purposes)
+   * The pixels are read synchronously, use a {@link FrameCapturer} to capture frames without
+   * stalling the rendering.
    *
    * @param texture the texture identifier
    * @param width   the width of the texture
@@ -199,7 +259,7 @@ public class EGLUtils {
       GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, texture,
       0
     );
-    ByteBuffer buffer = ByteBuffer.allocate(width * height * 4);
+    ByteBuffer buffer = DirectBufferPool.acquire(width * height * 4);
     GLES20.glReadPixels(
       0, 0, width, height, GLES20.GL_RGBA,
       GLES20.GL_UNSIGNED_BYTE, buffer
@@ -209,6 +269,7 @@ public class EGLUtils {
       Bitmap.Config.ARGB_8888
     );
     bitmap.copyPixelsFromBuffer(buffer);
+    DirectBufferPool.release(buffer);
     GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
     GLES20.glDeleteFramebuffers(1, frame, 0);
     return bitmap;
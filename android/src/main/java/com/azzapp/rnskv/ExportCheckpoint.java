@@ -0,0 +1,160 @@
+package com.azzapp.rnskv;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The persisted state of a segmented export, allowing an interrupted export to be resumed
+ * from the end of its last completed segment.
+ */
+public class ExportCheckpoint {
+
+  private static final String TAG = "ExportCheckpoint";
+
+  private static final int VERSION = 1;
+
+  private final String configuration;
+
+  private final List<SegmentedMuxer.Segment> segments = new ArrayList<>();
+
+  private long resumeTimeUs = 0;
+
+  /**
+   * Creates an empty checkpoint.
+   *
+   * @param configuration a description of the export settings, a persisted checkpoint is only
+   *                      resumed if it has been created with the same configuration
+   */
+  public ExportCheckpoint(String configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * Loads the checkpoint persisted at the given path.
+   *
+   * @param path          the path of the checkpoint file
+   * @param configuration the configuration of the export to resume
+   * @return the loaded checkpoint, or an empty checkpoint if there is no valid checkpoint
+   * at this path for the given configuration
+   */
+  public static ExportCheckpoint load(String path, String configuration) {
+    ExportCheckpoint checkpoint = new ExportCheckpoint(configuration);
+    File file = new File(path);
+    if (!file.exists()) {
+      return checkpoint;
+    }
+    try {
+      String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      JSONObject json = new JSONObject(content);
+      if (json.getInt("version") != VERSION ||
+        !configuration.equals(json.getString("configuration"))) {
+        return checkpoint;
+      }
+      JSONArray jsonSegments = json.getJSONArray("segments");
+      List<SegmentedMuxer.Segment> segments = new ArrayList<>();
+      for (int i = 0; i < jsonSegments.length(); i++) {
+        JSONObject jsonSegment = jsonSegments.getJSONObject(i);
+        SegmentedMuxer.Segment segment = new SegmentedMuxer.Segment(
+          jsonSegment.getInt("index"),
+          jsonSegment.getString("location"),
+          jsonSegment.getLong("startTimeUs"),
+          jsonSegment.getLong("durationUs")
+        );
+        // a segment removed since the checkpoint invalidates the following ones
+        if (!new File(segment.getLocation()).exists()) {
+          break;
+        }
+        segments.add(segment);
+      }
+      for (SegmentedMuxer.Segment segment : segments) {
+        checkpoint.addSegment(segment);
+      }
+    } catch (IOException | JSONException e) {
+      Log.w(TAG, "Ignoring invalid checkpoint " + path, e);
+    }
+    return checkpoint;
+  }
+
+  /**
+   * Records a completed segment, the export will be resumed at the end of this segment.
+   *
+   * @param segment the completed segment
+   */
+  public void addSegment(SegmentedMuxer.Segment segment) {
+    segments.add(segment);
+    resumeTimeUs = segment.getStartTimeUs() + segment.getDurationUs();
+  }
+
+  /**
+   * @return the completed segments
+   */
+  public List<SegmentedMuxer.Segment> getSegments() {
+    return segments;
+  }
+
+  /**
+   * @return the time in microseconds of the first frame that still needs to be encoded
+   */
+  public long getResumeTimeUs() {
+    return resumeTimeUs;
+  }
+
+  /**
+   * Atomically writes the checkpoint to the given path.
+   *
+   * @param path the path of the checkpoint file
+   */
+  public void save(String path) throws IOException {
+    JSONObject json = new JSONObject();
+    try {
+      JSONArray jsonSegments = new JSONArray();
+      for (SegmentedMuxer.Segment segment : segments) {
+        JSONObject jsonSegment = new JSONObject();
+        jsonSegment.put("index", segment.getIndex());
+        jsonSegment.put("location", segment.getLocation());
+        jsonSegment.put("startTimeUs", segment.getStartTimeUs());
+        jsonSegment.put("durationUs", segment.getDurationUs());
+        jsonSegments.put(jsonSegment);
+      }
+      json.put("version", VERSION);
+      json.put("configuration", configuration);
+      json.put("resumeTimeUs", resumeTimeUs);
+      json.put("segments", jsonSegments);
+    } catch (JSONException e) {
+      throw new IOException(e);
+    }
+
+    File file = new File(path);
+    File tmpFile = new File(path + ".tmp");
+    try (FileOutputStream outputStream = new FileOutputStream(tmpFile)) {
+      outputStream.write(json.toString().getBytes(StandardCharsets.UTF_8));
+      outputStream.getFD().sync();
+    }
+    if (!tmpFile.renameTo(file)) {
+      throw new IOException("Failed to write checkpoint " + path);
+    }
+  }
+
+  /**
+   * Removes the checkpoint persisted at the given path.
+   *
+   * @param path the path of the checkpoint file
+   */
+  public static void delete(String path) {
+    File file = new File(path);
+    if (file.exists() && !file.delete()) {
+      Log.w(TAG, "Failed to delete checkpoint " + path);
+    }
+  }
+}
@@ -0,0 +1,527 @@
+package com.azzapp.rnskv;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Decodes the video of a composition item for on-device analysis, delivering its frames as raw
+ * pixels without going through OpenGL or JS.
+ * <p>
+ * The decoder renders the selected frames into an {@link ImageReader}, the frames skipped to
+ * honor the requested rate never leaving the codec. Each frame is scaled to the requested size
+ * and converted to I420 or RGBA into a direct buffer provided by the caller with
+ * {@link #queueBuffer(ByteBuffer)}, then handed to the listener. The decoder is only fed with
+ * new frames while there are free buffers, so a slow analysis throttles the decoding instead of
+ * accumulating frames, and at most {@link #setMaxInFlightFrames(int)} frames are rendered and
+ * waiting for their conversion at any time.
+ * <p>
+ * The listener is called on the thread of the analyzer, one analyzer per item being needed to
+ * analyze a whole composition. The analyzer is exposed to JS by the module through
+ * {@link #setEventDispatcher(NativeEventDispatcher)}.
+ */
+public class FrameAnalyzer implements VideoDecoderBackend.Callback,
+  ImageReader.OnImageAvailableListener {
+
+  /**
+   * Planar YUV 4:2:0, the full resolution Y plane being followed by the U and V planes.
+   */
+  public static final int FORMAT_I420 = 0;
+
+  /**
+   * 8 bits per channel RGBA, converted from the BT.601 limited range YUV of the decoder.
+   */
+  public static final int FORMAT_RGBA = 1;
+
+  private static final int DEFAULT_MAX_IN_FLIGHT_FRAMES = 2;
+
+  private final VideoComposition.Item item;
+
+  private final int width;
+
+  private final int height;
+
+  private final int format;
+
+  private final long frameIntervalUs;
+
+  private final VideoDecoderBackend backend;
+
+  private int maxInFlightFrames = DEFAULT_MAX_IN_FLIGHT_FRAMES;
+
+  private Listener listener;
+
+  private HandlerThread handlerThread;
+
+  private Handler handler;
+
+  private ImageReader imageReader;
+
+  private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+
+  // indexes and presentation times of the decoded frames waiting for a free buffer
+  private final ArrayDeque<long[]> decodedFrames = new ArrayDeque<>();
+
+  private int renderingFrames = 0;
+
+  private long nextFrameTimeUs;
+
+  private long endTimeUs;
+
+  private boolean inputEnded = false;
+
+  private boolean endOfStream = false;
+
+  private boolean released = false;
+
+  // source coordinates of each column and row of the output, computed for the first image
+  private int[] columns;
+
+  private int[] rows;
+
+  // the source rows read from the planes and the output rows written to the buffers
+  private byte[] yRow;
+
+  private byte[] uRow;
+
+  private byte[] vRow;
+
+  private byte[] outputRow;
+
+  /**
+   * Creates a new frame analyzer.
+   *
+   * @param item      the item whose video is analyzed, from its start time to its end
+   * @param width     the width of the delivered frames, must be even
+   * @param height    the height of the delivered frames, must be even
+   * @param format    the format of the delivered frames, {@link #FORMAT_I420} or
+   *                  {@link #FORMAT_RGBA}
+   * @param frameRate the number of frames per second of video to deliver, 0 to deliver
+   *                  every frame
+   */
+  public FrameAnalyzer(
+    VideoComposition.Item item,
+    int width,
+    int height,
+    int format,
+    double frameRate
+  ) {
+    if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+      throw new IllegalArgumentException("The size of the frames must be even");
+    }
+    if (format != FORMAT_I420 && format != FORMAT_RGBA) {
+      throw new IllegalArgumentException("Unsupported frame format: " + format);
+    }
+    this.item = item;
+    this.width = width;
+    this.height = height;
+    this.format = format;
+    this.frameIntervalUs = frameRate > 0 ? Math.round(1000000 / frameRate) : 0;
+    // analysis is not bound to the display, the codec runs as fast as possible
+    this.backend = new MediaCodecDecoderBackend(true);
+  }
+
+  /**
+   * Sets the maximum number of frames rendered by the decoder and not converted yet.
+   * Must be called before {@link #start()}.
+   */
+  public void setMaxInFlightFrames(int maxInFlightFrames) {
+    this.maxInFlightFrames = Math.max(1, maxInFlightFrames);
+  }
+
+  /**
+   * Sets the listener receiving the frames, must be called before {@link #start()}.
+   */
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Sets a listener dispatching the frames to native code: a "frame" event with a
+   * {@link Frame} for each delivered frame, an "end" event once the last frame has been
+   * delivered, and an "error" event with the message of the error if the video cannot be
+   * decoded. Must be called before {@link #start()}.
+   */
+  public void setEventDispatcher(NativeEventDispatcher eventDispatcher) {
+    setListener(new Listener() {
+      @Override
+      public void onFrame(ByteBuffer buffer, long timeUs) {
+        eventDispatcher.dispatchEvent("frame", new Frame(buffer, timeUs));
+      }
+
+      @Override
+      public void onEndReached() {
+        eventDispatcher.dispatchEvent("end", null);
+      }
+
+      @Override
+      public void onError(Exception error) {
+        eventDispatcher.dispatchEvent("error", error.getMessage());
+      }
+    });
+  }
+
+  /**
+   * @return the size in bytes of a delivered frame, the minimum capacity of the buffers
+   */
+  public int getFrameSize() {
+    return format == FORMAT_I420 ? width * height * 3 / 2 : width * height * 4;
+  }
+
+  /**
+   * @return the rotation in degrees to apply to the frames to display them upright,
+   * available once the first frame is delivered
+   */
+  public int getRotation() {
+    return backend.getRotation();
+  }
+
+  /**
+   * Opens the video and starts decoding in the background.
+   */
+  public synchronized void start() {
+    if (handlerThread != null) {
+      return;
+    }
+    handlerThread = new HandlerThread("ReactNativeSkiaVideo-FrameAnalyzer");
+    handlerThread.start();
+    handler = new Handler(handlerThread.getLooper());
+    handler.post(() -> {
+      try {
+        long startTimeUs = getSourceStartTimeUs();
+        nextFrameTimeUs = startTimeUs;
+        endTimeUs = getSourceEndTimeUs();
+        backend.prepare(item.getPath(), startTimeUs);
+        imageReader = ImageReader.newInstance(
+          backend.getVideoWidth(),
+          backend.getVideoHeight(),
+          ImageFormat.YUV_420_888,
+          maxInFlightFrames
+        );
+        imageReader.setOnImageAvailableListener(this, handler);
+        backend.configure(imageReader.getSurface(), this, handler);
+        backend.start();
+      } catch (Exception e) {
+        onError(e);
+      }
+    });
+  }
+
+  private long getSourceStartTimeUs() {
+    long sourceStartTimeUs = Long.MAX_VALUE;
+    for (long compositionTimeUs : getTimingPoints()) {
+      sourceStartTimeUs = Math.min(sourceStartTimeUs, item.getSourceTimeUs(compositionTimeUs));
+    }
+    return sourceStartTimeUs;
+  }
+
+  private long getSourceEndTimeUs() {
+    long sourceEndTimeUs = Long.MIN_VALUE;
+    for (long compositionTimeUs : getTimingPoints()) {
+      sourceEndTimeUs = Math.max(sourceEndTimeUs, item.getSourceTimeUs(compositionTimeUs));
+    }
+    return sourceEndTimeUs;
+  }
+
+  // the composition times at which the video time played by the item can reach its extremes
+  private long[] getTimingPoints() {
+    long compositionStartTimeUs = TimeHelpers.secToUs(item.getCompositionStartTime());
+    double[] timeRemap = item.getTimeRemap();
+    if (timeRemap == null) {
+      return new long[]{
+        compositionStartTimeUs,
+        compositionStartTimeUs + TimeHelpers.secToUs(item.getCompositionDuration())
+      };
+    }
+    long[] points = new long[timeRemap.length / 2];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = compositionStartTimeUs + TimeHelpers.secToUs(timeRemap[i * 2]);
+    }
+    return points;
+  }
+
+  /**
+   * Provides a buffer to receive a frame. The buffer is handed back to the caller with the
+   * frame written in it, and can be queued again once the frame is analyzed.
+   *
+   * @param buffer a direct buffer of at least {@link #getFrameSize()} bytes
+   */
+  public synchronized void queueBuffer(ByteBuffer buffer) {
+    if (!buffer.isDirect() || buffer.capacity() < getFrameSize()) {
+      throw new IllegalArgumentException(
+        "The buffers must be direct and hold at least " + getFrameSize() + " bytes");
+    }
+    if (handler == null) {
+      throw new IllegalStateException("The analyzer is not started");
+    }
+    handler.post(() -> {
+      if (released) {
+        return;
+      }
+      freeBuffers.add(buffer);
+      renderDecodedFrames();
+    });
+  }
+
+  /**
+   * Stops the decoding and releases the analyzer, the queued buffers being dropped.
+   */
+  public synchronized void release() {
+    if (handlerThread == null) {
+      backend.release();
+      return;
+    }
+    handler.post(() -> {
+      released = true;
+      backend.release();
+      if (imageReader != null) {
+        imageReader.close();
+        imageReader = null;
+      }
+      freeBuffers.clear();
+      decodedFrames.clear();
+    });
+    handlerThread.quitSafely();
+  }
+
+  @Override
+  public void onFrameDecoded(
+    int index,
+    long presentationTimeUs,
+    boolean empty,
+    boolean endOfStream
+  ) {
+    if (released) {
+      return;
+    }
+    if (empty || inputEnded) {
+      backend.releaseOutputBuffer(index, false);
+    } else if (presentationTimeUs > endTimeUs) {
+      backend.releaseOutputBuffer(index, false);
+      backend.endInput();
+      inputEnded = true;
+    } else if (presentationTimeUs < nextFrameTimeUs) {
+      // skipped frames are never rendered, so they cost no copy nor conversion
+      backend.releaseOutputBuffer(index, false);
+    } else {
+      decodedFrames.add(new long[]{index, presentationTimeUs});
+      if (frameIntervalUs > 0) {
+        while (nextFrameTimeUs <= presentationTimeUs) {
+          nextFrameTimeUs += frameIntervalUs;
+        }
+      }
+    }
+    if (endOfStream) {
+      this.endOfStream = true;
+    }
+    renderDecodedFrames();
+  }
+
+  @Override
+  public void onError(Exception error) {
+    if (listener != null && !released) {
+      listener.onError(error);
+    }
+  }
+
+  @Override
+  public void onImageAvailable(ImageReader reader) {
+    if (released) {
+      return;
+    }
+    Image image = reader.acquireNextImage();
+    if (image == null) {
+      return;
+    }
+    renderingFrames--;
+    ByteBuffer buffer = freeBuffers.poll();
+    long timeUs = TimeHelpers.nsecToUs(image.getTimestamp());
+    try {
+      boolean traced = TraceHelpers.beginSection("RNSkiaVideo.FrameAnalyzer.convert");
+      try {
+        convert(image, buffer);
+      } finally {
+        TraceHelpers.endSection(traced);
+      }
+    } catch (Exception e) {
+      freeBuffers.addFirst(buffer);
+      onError(e);
+      return;
+    } finally {
+      image.close();
+    }
+    if (listener != null) {
+      listener.onFrame(buffer, timeUs);
+    }
+    renderDecodedFrames();
+  }
+
+  private void renderDecodedFrames() {
+    while (!decodedFrames.isEmpty()
+      && renderingFrames < maxInFlightFrames
+      && renderingFrames < freeBuffers.size()) {
+      long[] frame = decodedFrames.poll();
+      backend.releaseOutputBuffer((int) frame[0], true);
+      renderingFrames++;
+    }
+    if (endOfStream && decodedFrames.isEmpty() && renderingFrames == 0) {
+      endOfStream = false;
+      if (listener != null) {
+        listener.onEndReached();
+      }
+    }
+  }
+
+  private void convert(Image image, ByteBuffer buffer) {
+    Rect crop = image.getCropRect();
+    if (columns == null) {
+      int cropLeft = crop != null ? crop.left : 0;
+      int cropTop = crop != null ? crop.top : 0;
+      int cropWidth = crop != null ? crop.width() : image.getWidth();
+      int cropHeight = crop != null ? crop.height() : image.getHeight();
+      columns = new int[width];
+      for (int x = 0; x < width; x++) {
+        columns[x] = cropLeft + (int) ((long) x * cropWidth / width);
+      }
+      rows = new int[height];
+      for (int y = 0; y < height; y++) {
+        rows[y] = cropTop + (int) ((long) y * cropHeight / height);
+      }
+      outputRow = new byte[format == FORMAT_I420 ? width : width * 4];
+    }
+    Image.Plane[] planes = image.getPlanes();
+    buffer.clear();
+    if (format == FORMAT_I420) {
+      convertToI420(planes, buffer);
+    } else {
+      convertToRGBA(planes, buffer);
+    }
+    buffer.position(0);
+    buffer.limit(getFrameSize());
+  }
+
+  // the rows are copied in bulk between the buffers and arrays, the sampling and the conversion
+  // of the pixels being done on the arrays
+  private void convertToI420(Image.Plane[] planes, ByteBuffer output) {
+    ByteBuffer yBuffer = planes[0].getBuffer();
+    int yRowStride = planes[0].getRowStride();
+    int yPixelStride = planes[0].getPixelStride();
+    for (int y = 0; y < height; y++) {
+      yRow = readRow(yBuffer, rows[y] * yRowStride, yRowStride, yRow);
+      for (int x = 0; x < width; x++) {
+        outputRow[x] = yRow[columns[x] * yPixelStride];
+      }
+      output.put(outputRow, 0, width);
+    }
+    for (int plane = 1; plane <= 2; plane++) {
+      ByteBuffer chromaBuffer = planes[plane].getBuffer();
+      int rowStride = planes[plane].getRowStride();
+      int pixelStride = planes[plane].getPixelStride();
+      for (int y = 0; y < height; y += 2) {
+        uRow = readRow(chromaBuffer, (rows[y] / 2) * rowStride, rowStride, uRow);
+        for (int x = 0; x < width; x += 2) {
+          outputRow[x / 2] = uRow[(columns[x] / 2) * pixelStride];
+        }
+        output.put(outputRow, 0, width / 2);
+      }
+    }
+  }
+
+  private void convertToRGBA(Image.Plane[] planes, ByteBuffer output) {
+    ByteBuffer yBuffer = planes[0].getBuffer();
+    ByteBuffer uBuffer = planes[1].getBuffer();
+    ByteBuffer vBuffer = planes[2].getBuffer();
+    int yRowStride = planes[0].getRowStride();
+    int yPixelStride = planes[0].getPixelStride();
+    int uvRowStride = planes[1].getRowStride();
+    int uvPixelStride = planes[1].getPixelStride();
+    for (int y = 0; y < height; y++) {
+      yRow = readRow(yBuffer, rows[y] * yRowStride, yRowStride, yRow);
+      int uvRowOffset = (rows[y] / 2) * uvRowStride;
+      uRow = readRow(uBuffer, uvRowOffset, uvRowStride, uRow);
+      vRow = readRow(vBuffer, uvRowOffset, uvRowStride, vRow);
+      int offset = 0;
+      for (int x = 0; x < width; x++) {
+        int uvOffset = (columns[x] / 2) * uvPixelStride;
+        int c = (yRow[columns[x] * yPixelStride] & 0xFF) - 16;
+        int d = (uRow[uvOffset] & 0xFF) - 128;
+        int e = (vRow[uvOffset] & 0xFF) - 128;
+        outputRow[offset++] = clamp((298 * c + 409 * e + 128) >> 8);
+        outputRow[offset++] = clamp((298 * c - 100 * d - 208 * e + 128) >> 8);
+        outputRow[offset++] = clamp((298 * c + 516 * d + 128) >> 8);
+        outputRow[offset++] = (byte) 0xFF;
+      }
+      output.put(outputRow, 0, offset);
+    }
+  }
+
+  // the last row of a plane can be shorter than its stride
+  private static byte[] readRow(ByteBuffer buffer, int offset, int rowStride, byte[] row) {
+    if (row == null || row.length < rowStride) {
+      row = new byte[rowStride];
+    }
+    buffer.position(offset);
+    buffer.get(row, 0, Math.min(rowStride, buffer.limit() - offset));
+    return row;
+  }
+
+  private static byte clamp(int value) {
+    return (byte) Math.max(0, Math.min(255, value));
+  }
+
+  /**
+   * A frame dispatched by the listener set with {@link #setEventDispatcher}.
+   */
+  public static class Frame {
+    private final ByteBuffer buffer;
+    private final long timeUs;
+
+    private Frame(ByteBuffer buffer, long timeUs) {
+      this.buffer = buffer;
+      this.timeUs = timeUs;
+    }
+
+    /**
+     * @return the buffer holding the frame, to queue again once the frame is read
+     */
+    public ByteBuffer getBuffer() {
+      return buffer;
+    }
+
+    /**
+     * @return the presentation time of the frame in the video in microseconds
+     */
+    public long getTimeUs() {
+      return timeUs;
+    }
+  }
+
+  /**
+   * The listener receiving the analyzed frames, called on the thread of the analyzer.
+   */
+  public interface Listener {
+    /**
+     * Called when a frame has been written into a buffer.
+     *
+     * @param buffer the buffer holding the frame, between its position and its limit
+     * @param timeUs the presentation time of the frame in the video in microseconds
+     */
+    void onFrame(ByteBuffer buffer, long timeUs);
+
+    /**
+     * Called once the last frame of the item has been delivered.
+     */
+    void onEndReached();
+
+    /**
+     * Called when the video cannot be decoded.
+     */
+    void onError(Exception error);
+  }
+}
@@ -0,0 +1,220 @@
+package com.azzapp.rnskv;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES30;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * Captures textures drawn by Skia into image files.
+ * <p>
+ * The pixels are read back in a context of the capturer sharing the Skia context, with a
+ * {@link PixelBufferReader}, so that on OpenGL ES 3.0 a capture only queues the read on the GPU
+ * and returns. The queued reads are completed by the next capture or by {@link #poll()} once
+ * the GPU is done with them, and by {@link #flush()}, then the images are compressed and
+ * written on a background thread. A "capture" event is dispatched with the path of each
+ * written image, and an "error" event with the path and the error message of each failed one.
+ */
+public class FrameCapturer {
+
+  private static final String TAG = "FrameCapturer";
+
+  private static ExecutorService executor;
+
+  private final NativeEventDispatcher eventDispatcher;
+
+  private EGLResourcesHolder eglResourcesHolder;
+
+  private PixelBufferReader pixelBufferReader;
+
+  private boolean released = false;
+
+  private static class Request {
+    final String path;
+    final Bitmap.CompressFormat format;
+    final int quality;
+
+    Request(String path, Bitmap.CompressFormat format, int quality) {
+      this.path = path;
+      this.format = format;
+      this.quality = quality;
+    }
+  }
+
+  /**
+   * Creates a new frame capturer.
+   *
+   * @param eventDispatcher the dispatcher of the events of the capturer
+   */
+  public FrameCapturer(NativeEventDispatcher eventDispatcher) {
+    this.eventDispatcher = eventDispatcher;
+  }
+
+  /**
+   * Creates the context of the capturer, the Skia context must be current.
+   */
+  public void prepare() {
+    EGLContext sharedContext = EGLUtils.getCurrentContextOrThrows();
+    eglResourcesHolder = EGLResourcesHolder.createWithPBBufferSurface(sharedContext);
+    EGLUtils.runWithContext(eglResourcesHolder, () -> {
+      pixelBufferReader = new PixelBufferReader();
+    });
+  }
+
+  /**
+   * Captures a texture into an image file, the Skia context must be current.
+   *
+   * @param texture the texture to capture
+   * @param width   the width of the texture
+   * @param height  the height of the texture
+   * @param path    the path of the image file
+   * @param format  the format of the image, "jpeg", "png" or "webp"
+   * @param quality the quality of the compression between 0 and 100, ignored for png
+   * @param fence   the fence inserted by the Skia context after drawing the texture, deleted
+   *                by the capturer, or 0 if there is none
+   */
+  public void capture(
+    int texture,
+    int width,
+    int height,
+    String path,
+    String format,
+    int quality,
+    long fence
+  ) {
+    Request request = new Request(path, getCompressFormat(format), quality);
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.FrameCapturer.capture");
+    try {
+      EGLUtils.runWithContext(eglResourcesHolder, () -> {
+        if (fence != 0) {
+          GLES30.glWaitSync(fence, 0, GLES30.GL_TIMEOUT_IGNORED);
+          GLES30.glDeleteSync(fence);
+        }
+        compress(pixelBufferReader.read(texture, width, height, request));
+      });
+      // Skia must not draw into the texture again before the queued read is done
+      long readFence = pixelBufferReader.getLastReadFence();
+      if (readFence != 0) {
+        GLES30.glWaitSync(readFence, 0, GLES30.GL_TIMEOUT_IGNORED);
+      }
+    } finally {
+      TraceHelpers.endSection(traced);
+    }
+  }
+
+  /**
+   * Completes the captures whose pixels have been read by the GPU, without blocking.
+   *
+   * @return the number of captures whose pixels are still being read
+   */
+  public int poll() {
+    if (pixelBufferReader == null || pixelBufferReader.getPendingReadCount() == 0) {
+      return 0;
+    }
+    EGLUtils.runWithContext(eglResourcesHolder, () -> compress(pixelBufferReader.poll(false)));
+    return pixelBufferReader.getPendingReadCount();
+  }
+
+  /**
+   * Completes all the captures, blocking until their pixels are read. Their images are still
+   * compressed and written in the background.
+   */
+  public void flush() {
+    if (pixelBufferReader == null || pixelBufferReader.getPendingReadCount() == 0) {
+      return;
+    }
+    EGLUtils.runWithContext(eglResourcesHolder, () -> compress(pixelBufferReader.poll(true)));
+  }
+
+  /**
+   * Releases the context of the capturer, the queued captures being dropped.
+   */
+  public void release() {
+    synchronized (this) {
+      released = true;
+    }
+    if (eglResourcesHolder == null) {
+      return;
+    }
+    EGLUtils.runWithContext(eglResourcesHolder, pixelBufferReader::release);
+    eglResourcesHolder.release();
+    eglResourcesHolder = null;
+    pixelBufferReader = null;
+  }
+
+  private void compress(List<PixelBufferReader.Result> results) {
+    for (PixelBufferReader.Result result : results) {
+      getExecutor().execute(() -> {
+        Request request = (Request) result.getTag();
+        ByteBuffer pixels = result.getPixels();
+        Bitmap bitmap = null;
+        try {
+          bitmap = Bitmap.createBitmap(
+            result.getWidth(), result.getHeight(), Bitmap.Config.ARGB_8888);
+          bitmap.copyPixelsFromBuffer(pixels);
+          DirectBufferPool.release(pixels);
+          pixels = null;
+          try (OutputStream outputStream = new FileOutputStream(request.path)) {
+            if (!bitmap.compress(request.format, request.quality, outputStream)) {
+              throw new IOException("Could not compress the image");
+            }
+          }
+          dispatchEvent("capture", request.path);
+        } catch (Exception e) {
+          Log.w(TAG, "Failed to write the capture " + request.path, e);
+          dispatchEvent("error", new String[]{request.path, e.getMessage()});
+        } finally {
+          if (pixels != null) {
+            DirectBufferPool.release(pixels);
+          }
+          if (bitmap != null) {
+            bitmap.recycle();
+          }
+        }
+      });
+    }
+  }
+
+  private synchronized void dispatchEvent(String eventName, Object data) {
+    // the native receiver of the events is deleted once the capturer is released
+    if (!released) {
+      eventDispatcher.dispatchEvent(eventName, data);
+    }
+  }
+
+  private static Bitmap.CompressFormat getCompressFormat(String format) {
+    switch (format) {
+      case "jpeg":
+        return Bitmap.CompressFormat.JPEG;
+      case "png":
+        return Bitmap.CompressFormat.PNG;
+      case "webp":
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+          ? Bitmap.CompressFormat.WEBP_LOSSY
+          : Bitmap.CompressFormat.WEBP;
+      default:
+        throw new IllegalArgumentException("Unsupported image format: " + format);
+    }
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ReactNativeSkiaVideo-FrameCapturer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+}
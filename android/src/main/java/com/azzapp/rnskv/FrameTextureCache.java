@@ -0,0 +1,358 @@
+package com.azzapp.rnskv;
+
+import android.opengl.GLES20;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A least recently used cache of the frames displayed by the items of a composition, copied
+ * into downscaled textures so that seeking back to a position displayed recently does not go
+ * through the decoders. The frames of an item are keyed by their presentation time in the item
+ * video, a cached frame covering the source times until the next cached frame of the item or
+ * until the shortest interval between two frames of the item seen by the cache.
+ * <p>
+ * All the methods must be called with the same context current.
+ */
+public class FrameTextureCache {
+
+  /**
+   * The default memory budget of the cached textures, in bytes.
+   */
+  public static final long DEFAULT_BUDGET_BYTES = 32L * 1024 * 1024;
+
+  // the longest side of the cached textures, frames being only displayed while scrubbing
+  private static final int MAX_FRAME_SIZE = 720;
+
+  // interval assumed until two adjacent frames of an item have been cached, short enough to
+  // never cover the next frame of a 60fps video
+  private static final long DEFAULT_FRAME_INTERVAL_US = 16666;
+
+  private static final int BYTES_PER_PIXEL = 4;
+
+  // the frames are copied as is, the texture coordinates of the renderer being flipped
+  private static final float[] FLIP_MATRIX = {
+    1f, 0f, 0f, 0f,
+    0f, -1f, 0f, 0f,
+    0f, 0f, 1f, 0f,
+    0f, 1f, 0f, 1f
+  };
+
+  private final long budgetBytes;
+
+  private final int framebuffer;
+
+  private final TextureRenderer textureRenderer;
+
+  // all the entries, from the least recently used
+  private final LinkedHashMap<Entry, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final HashMap<String, ItemFrames> itemsFrames = new HashMap<>();
+
+  private long usedBytes = 0;
+
+  private long hits = 0;
+
+  private long misses = 0;
+
+  private static class ItemFrames {
+    final TreeMap<Long, Entry> frames = new TreeMap<>();
+    long frameIntervalUs = DEFAULT_FRAME_INTERVAL_US;
+  }
+
+  /**
+   * A frame of the cache.
+   */
+  public static class Entry {
+    private final String itemId;
+    private final long presentationTimeUs;
+    private final int texture;
+    private final int width;
+    private final int height;
+
+    private Entry(String itemId, long presentationTimeUs, int texture, int width, int height) {
+      this.itemId = itemId;
+      this.presentationTimeUs = presentationTimeUs;
+      this.texture = texture;
+      this.width = width;
+      this.height = height;
+    }
+
+    /**
+     * @return the presentation time in microseconds of the frame in the item video
+     */
+    public long getPresentationTimeUs() {
+      return presentationTimeUs;
+    }
+
+    private long getBytes() {
+      return (long) width * height * BYTES_PER_PIXEL;
+    }
+  }
+
+  /**
+   * The usage of the cache since it was created.
+   */
+  public static class Stats {
+    private final long hits;
+    private final long misses;
+    private final long usedBytes;
+    private final long budgetBytes;
+    private final int frameCount;
+
+    private Stats(long hits, long misses, long usedBytes, long budgetBytes, int frameCount) {
+      this.hits = hits;
+      this.misses = misses;
+      this.usedBytes = usedBytes;
+      this.budgetBytes = budgetBytes;
+      this.frameCount = frameCount;
+    }
+
+    /**
+     * @return the number of lookups served by the cache
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * @return the number of lookups not served by the cache
+     */
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return the memory used by the cached textures, in bytes
+     */
+    public long getUsedBytes() {
+      return usedBytes;
+    }
+
+    /**
+     * @return the memory budget of the cached textures, in bytes
+     */
+    public long getBudgetBytes() {
+      return budgetBytes;
+    }
+
+    /**
+     * @return the number of cached frames
+     */
+    public int getFrameCount() {
+      return frameCount;
+    }
+  }
+
+  /**
+   * Creates a cache for the current context.
+   *
+   * @param budgetBytes the memory budget of the cached textures, in bytes
+   */
+  public FrameTextureCache(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+    int[] framebuffers = new int[1];
+    GLES20.glGenFramebuffers(1, framebuffers, 0);
+    framebuffer = framebuffers[0];
+    textureRenderer = new TextureRenderer(false);
+  }
+
+  /**
+   * Copies a displayed frame of an item into the cache, evicting the least recently used frames
+   * if the budget is exceeded. Nothing is copied if the frame is already cached.
+   *
+   * @param itemId             the id of the item
+   * @param presentationTimeUs the presentation time in microseconds of the frame in the item video
+   * @param texture            the 2D texture containing the frame
+   * @param width              the width of the texture
+   * @param height             the height of the texture
+   */
+  public void put(String itemId, long presentationTimeUs, int texture, int width, int height) {
+    ItemFrames itemFrames = itemsFrames.get(itemId);
+    if (itemFrames == null) {
+      itemFrames = new ItemFrames();
+      itemsFrames.put(itemId, itemFrames);
+    }
+    Entry existing = itemFrames.frames.get(presentationTimeUs);
+    if (existing != null) {
+      entries.get(existing);
+      return;
+    }
+    float scale = Math.min(1f, (float) MAX_FRAME_SIZE / Math.max(width, height));
+    int cachedWidth = Math.max(1, Math.round(width * scale));
+    int cachedHeight = Math.max(1, Math.round(height * scale));
+    long bytes = (long) cachedWidth * cachedHeight * BYTES_PER_PIXEL;
+    if (bytes > budgetBytes) {
+      return;
+    }
+
+    // the texture of an evicted frame of the same size is reused
+    int cachedTexture = 0;
+    Iterator<Entry> iterator = entries.keySet().iterator();
+    while (usedBytes + bytes > budgetBytes && iterator.hasNext()) {
+      Entry evicted = iterator.next();
+      iterator.remove();
+      removeFromItem(evicted);
+      usedBytes -= evicted.getBytes();
+      if (cachedTexture == 0 && evicted.width == cachedWidth && evicted.height == cachedHeight) {
+        cachedTexture = evicted.texture;
+      } else {
+        GLES20.glDeleteTextures(1, new int[]{evicted.texture}, 0);
+      }
+    }
+    if (cachedTexture == 0) {
+      int[] textures = new int[1];
+      GLES20.glGenTextures(1, textures, 0);
+      cachedTexture = textures[0];
+      EGLUtils.configureTexture(GLES20.GL_TEXTURE_2D, cachedTexture);
+      GLES20.glTexImage2D(
+        GLES20.GL_TEXTURE_2D,
+        0,
+        GLES20.GL_RGBA,
+        cachedWidth, cachedHeight,
+        0,
+        GLES20.GL_RGBA,
+        GLES20.GL_UNSIGNED_BYTE,
+        null
+      );
+    }
+    copy(texture, cachedTexture, cachedWidth, cachedHeight);
+
+    Entry entry = new Entry(itemId, presentationTimeUs, cachedTexture, cachedWidth, cachedHeight);
+    entries.put(entry, entry);
+    usedBytes += bytes;
+    itemFrames.frames.put(presentationTimeUs, entry);
+    Long lower = itemFrames.frames.lowerKey(presentationTimeUs);
+    Long higher = itemFrames.frames.higherKey(presentationTimeUs);
+    if (lower != null) {
+      itemFrames.frameIntervalUs =
+        Math.min(itemFrames.frameIntervalUs, presentationTimeUs - lower);
+    }
+    if (higher != null) {
+      itemFrames.frameIntervalUs =
+        Math.min(itemFrames.frameIntervalUs, higher - presentationTimeUs);
+    }
+  }
+
+  /**
+   * Finds the cached frame of an item displayed at a given time of the item video, marking it
+   * as recently used. The lookup is not counted in the hits and misses of the cache, see
+   * {@link #recordLookup(boolean)}.
+   *
+   * @param itemId       the id of the item
+   * @param sourceTimeUs the time in microseconds in the item video
+   * @return the cached frame, or null if there is none
+   */
+  public Entry find(String itemId, long sourceTimeUs) {
+    ItemFrames itemFrames = itemsFrames.get(itemId);
+    if (itemFrames == null) {
+      return null;
+    }
+    Map.Entry<Long, Entry> floor = itemFrames.frames.floorEntry(sourceTimeUs);
+    if (floor == null || sourceTimeUs - floor.getKey() >= itemFrames.frameIntervalUs) {
+      return null;
+    }
+    Long higher = itemFrames.frames.higherKey(floor.getKey());
+    if (higher != null && sourceTimeUs >= higher) {
+      return null;
+    }
+    return entries.get(floor.getValue());
+  }
+
+  /**
+   * Records whether a lookup of the cache has been served by it.
+   *
+   * @param hit true if the lookup has been served by the cache
+   */
+  public void recordLookup(boolean hit) {
+    if (hit) {
+      hits++;
+    } else {
+      misses++;
+    }
+  }
+
+  /**
+   * Draws a cached frame into a 2D texture, upscaling it to the size of the texture.
+   *
+   * @param entry   the cached frame
+   * @param texture the texture to draw into
+   * @param width   the width of the texture
+   * @param height  the height of the texture
+   */
+  public void draw(Entry entry, int texture, int width, int height) {
+    copy(entry.texture, texture, width, height);
+  }
+
+  private void copy(int sourceTexture, int targetTexture, int width, int height) {
+    GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+    GLES20.glFramebufferTexture2D(
+      GLES20.GL_FRAMEBUFFER,
+      GLES20.GL_COLOR_ATTACHMENT0,
+      GLES20.GL_TEXTURE_2D,
+      targetTexture,
+      0
+    );
+    GLES20.glViewport(0, 0, width, height);
+    textureRenderer.draw(sourceTexture, FLIP_MATRIX);
+    EGLUtils.checkGlError("FrameTextureCache.copy()");
+    GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+  }
+
+  /**
+   * Removes the cached frames of an item.
+   *
+   * @param itemId the id of the item
+   */
+  public void removeItem(String itemId) {
+    ItemFrames itemFrames = itemsFrames.remove(itemId);
+    if (itemFrames == null) {
+      return;
+    }
+    for (Entry entry : itemFrames.frames.values()) {
+      entries.remove(entry);
+      usedBytes -= entry.getBytes();
+      GLES20.glDeleteTextures(1, new int[]{entry.texture}, 0);
+    }
+  }
+
+  /**
+   * Removes all the cached frames, keeping the hits and misses counts.
+   */
+  public void clear() {
+    List<String> itemIds = new ArrayList<>(itemsFrames.keySet());
+    itemIds.forEach(this::removeItem);
+  }
+
+  /**
+   * @return the usage of the cache
+   */
+  public Stats getStats() {
+    return new Stats(hits, misses, usedBytes, budgetBytes, entries.size());
+  }
+
+  /**
+   * Releases the cached textures and the resources of the cache.
+   */
+  public void release() {
+    clear();
+    GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+    textureRenderer.release();
+  }
+
+  private void removeFromItem(Entry entry) {
+    ItemFrames itemFrames = itemsFrames.get(entry.itemId);
+    if (itemFrames == null) {
+      return;
+    }
+    itemFrames.frames.remove(entry.presentationTimeUs);
+    if (itemFrames.frames.isEmpty()) {
+      itemsFrames.remove(entry.itemId);
+    }
+  }
+}
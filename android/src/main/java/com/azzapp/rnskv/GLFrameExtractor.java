@@ -32,7 +32,7 @@ public class GLFrameExtractor implements SurfaceTexture.OnFrameAvailableListener
 
   private final TextureRenderer textureRenderer;
 
-  private OnFrameAvailableListener onFrameAvailableListener;
+  private volatile OnFrameAvailableListener onFrameAvailableListener;
 
   private long latestTimeStampNs = -1;
 
@@ -79,9 +79,45 @@ public class GLFrameExtractor implements SurfaceTexture.OnFrameAvailableListener
     if(!frameAvailable.compareAndSet(true, false)) {
       return false;
     }
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.GLFrameExtractor.decodeNextFrame");
+    try {
+      extractFrame(width, height);
+    } finally {
+      TraceHelpers.endSection(traced);
+    }
+    return true;
+  }
 
+  /**
+   * Discard the next frame without rendering it to the output texture.
+   */
+  public void discardFrame() {
+    if (frameAvailable.compareAndSet(true, false)) {
+      surfaceTexture.updateTexImage();
+    }
+  }
+
+  /**
+   * Render a frame of a {@link FrameTextureCache} to the output texture in place of a decoded
+   * frame.
+   * @param cache the cache containing the frame
+   * @param entry the cached frame
+   * @param width the width of the frame
+   * @param height the height of the frame
+   */
+  public void renderCachedFrame(
+    FrameTextureCache cache,
+    FrameTextureCache.Entry entry,
+    int width,
+    int height
+  ) {
     EGLUtils.purgeOpenGLError();
+    allocateOutputTexture(width, height);
+    cache.draw(entry, outputTexId, width, height);
+    latestTimeStampNs = entry.getPresentationTimeUs() * 1000;
+  }
 
+  private void allocateOutputTexture(int width, int height) {
     if (width != frameWidth || height != frameHeight) {
       frameWidth = width;
       frameHeight = height;
@@ -97,6 +133,12 @@ public class GLFrameExtractor implements SurfaceTexture.OnFrameAvailableListener
         null
       );
     }
+  }
+
+  private void extractFrame(int width, int height) {
+    EGLUtils.purgeOpenGLError();
+
+    allocateOutputTexture(width, height);
     surfaceTexture.updateTexImage();
     latestTimeStampNs = surfaceTexture.getTimestamp();
     surfaceTexture.getTransformMatrix(transformMatrix);
@@ -115,7 +157,6 @@ public class GLFrameExtractor implements SurfaceTexture.OnFrameAvailableListener
     textureRenderer.draw(inputTexId, transformMatrix);
     EGLUtils.checkGlError("GLFrameExtractor.draw()");
     GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
-    return true;
   }
 
 
@@ -136,8 +177,9 @@ public class GLFrameExtractor implements SurfaceTexture.OnFrameAvailableListener
   @Override
   public void onFrameAvailable(SurfaceTexture surfaceTexture) {
     frameAvailable.set(true);
-    if (onFrameAvailableListener != null) {
-      onFrameAvailableListener.onFrameAvailable();
+    OnFrameAvailableListener listener = onFrameAvailableListener;
+    if (listener != null) {
+      listener.onFrameAvailable();
     }
   }
 
@@ -0,0 +1,128 @@
+package com.azzapp.rnskv;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size histogram of non negative values (usually durations in microseconds).
+ * Values are recorded into log-linear buckets (16 sub-buckets per power of two), so recording
+ * is allocation free and percentiles are reported with a relative error below 1/16.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  // values below this threshold are stored in their own bucket
+  private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+
+  private static final int LINEAR_LIMIT_BITS = 5;
+
+  private static final int BUCKET_COUNT =
+    LINEAR_LIMIT + (Long.SIZE - LINEAR_LIMIT_BITS) * SUB_BUCKET_COUNT;
+
+  private final long[] buckets = new long[BUCKET_COUNT];
+
+  private long count = 0;
+
+  private long max = 0;
+
+  /**
+   * Records a value, negative values are recorded as 0.
+   *
+   * @param value the value to record
+   */
+  public synchronized void record(long value) {
+    value = Math.max(0, value);
+    buckets[bucketIndex(value)]++;
+    count++;
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Records all the values recorded by another histogram.
+   *
+   * @param other the histogram whose values are added to this one
+   */
+  public void add(LatencyHistogram other) {
+    long[] otherBuckets;
+    long otherCount;
+    long otherMax;
+    synchronized (other) {
+      otherBuckets = other.buckets.clone();
+      otherCount = other.count;
+      otherMax = other.max;
+    }
+    synchronized (this) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        buckets[i] += otherBuckets[i];
+      }
+      count += otherCount;
+      max = Math.max(max, otherMax);
+    }
+  }
+
+  /**
+   * @return the number of recorded values
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the highest recorded value, 0 if no value has been recorded
+   */
+  public synchronized long getMax() {
+    return max;
+  }
+
+  /**
+   * Returns the value below which the given percentage of recorded values fall.
+   *
+   * @param percentile the percentile between 0 and 100
+   * @return the approximated value at the given percentile, 0 if no value has been recorded
+   */
+  public synchronized long getValueAtPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+    long cumulated = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulated += buckets[i];
+      if (cumulated >= target) {
+        return Math.min(max, bucketMidValue(i));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Removes all the recorded values.
+   */
+  public synchronized void reset() {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    max = 0;
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return LINEAR_LIMIT + (exponent - LINEAR_LIMIT_BITS) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  private static long bucketMidValue(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int exponent = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + LINEAR_LIMIT_BITS;
+    int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+    long bucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+    long lowerBound = (1L << exponent) + subBucket * bucketWidth;
+    return lowerBound + bucketWidth / 2;
+  }
+}
@@ -0,0 +1,356 @@
+package com.azzapp.rnskv;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Bundle;
+import android.os.Handler;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link VideoDecoderBackend} reading samples with a MediaExtractor and decoding them
+ * with an asynchronous MediaCodec.
+ */
+public class MediaCodecDecoderBackend extends MediaCodec.Callback implements VideoDecoderBackend {
+
+  private static final float DEFAULT_FRAME_RATE = 30;
+
+  private MediaExtractor extractor;
+
+  private MediaCodec codec;
+
+  private MediaFormat format;
+
+  private int trackIndex = -1;
+
+  private final boolean offline;
+
+  private String mime;
+
+  private volatile double playbackSpeed = 1;
+
+  private Callback callback;
+
+  private boolean inputEOS = false;
+
+  private volatile boolean inputEnded = false;
+
+  private int videoWidth;
+
+  private int videoHeight;
+
+  private int rotation;
+
+  private boolean configured = false;
+
+  private boolean started = false;
+
+  private boolean released = false;
+
+  /**
+   * Creates a backend for realtime playback.
+   */
+  public MediaCodecDecoderBackend() {
+    this(false);
+  }
+
+  /**
+   * Creates a new MediaCodecDecoderBackend.
+   *
+   * @param offline whether the decoding is not bound to the display, in which case the codec
+   *                is configured to decode as fast as possible
+   */
+  public MediaCodecDecoderBackend(boolean offline) {
+    this.offline = offline;
+  }
+
+  @Override
+  synchronized public void prepare(String path, long startTimeUs) throws IOException {
+    extractor = new MediaExtractor();
+    extractor.setDataSource(path);
+    // the tracks are only scanned the first time a video is opened
+    MediaMetadataProbe.MediaMetadata metadata = MediaMetadataProbe.getCached(path);
+    if (metadata == null) {
+      metadata = MediaMetadataProbe.read(path, extractor);
+    }
+    trackIndex = metadata.getTrackIndex();
+    format = extractor.getTrackFormat(trackIndex);
+    mime = metadata.getMimeType();
+    if (mime == null) {
+      throw new IOException("Could not determine file mime type");
+    }
+    codec = MediaCodec.createDecoderByType(mime);
+    extractor.selectTrack(trackIndex);
+    extractor.seekTo(startTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+    videoWidth = metadata.getWidth();
+    videoHeight = metadata.getHeight();
+    rotation = metadata.getRotation();
+  }
+
+  @Override
+  public int getVideoWidth() {
+    return videoWidth;
+  }
+
+  @Override
+  public int getVideoHeight() {
+    return videoHeight;
+  }
+
+  @Override
+  public int getRotation() {
+    return rotation;
+  }
+
+  @Override
+  synchronized public void configure(Surface surface, Callback callback, Handler handler) {
+    if (configured) {
+      return;
+    }
+    this.callback = callback;
+    if (offline) {
+      OfflineCodecProfile.configure(
+        codec,
+        format,
+        extractor.getTrackFormat(trackIndex),
+        codecFormat -> {
+          codec.setCallback(this, handler);
+          codec.configure(codecFormat, surface, null, 0);
+        }
+      );
+      configured = true;
+      return;
+    }
+    codec.setCallback(this, handler);
+    if (playbackSpeed != 1) {
+      format.setFloat(MediaFormat.KEY_OPERATING_RATE, getOperatingRate(playbackSpeed));
+    }
+    codec.configure(format, surface, null, 0);
+    configured = true;
+  }
+
+  @Override
+  synchronized public void start() {
+    if (!configured || started) {
+      return;
+    }
+    codec.start();
+    started = true;
+  }
+
+  @Override
+  public void endInput() {
+    inputEnded = true;
+  }
+
+  @Override
+  synchronized public void seekTo(long timeUs) {
+    // a codec can only be flushed once started, before that only the extractor is moved
+    if (started) {
+      codec.flush();
+    }
+    extractor.seekTo(timeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+    inputEOS = false;
+    inputEnded = false;
+    if (started) {
+      codec.start();
+    }
+  }
+
+  @Override
+  synchronized public void setPlaybackSpeed(double speed) {
+    playbackSpeed = speed;
+    if (!configured || released || offline) {
+      return;
+    }
+    // lets the codec run faster than the video frame rate so that it keeps up with the playback
+    Bundle params = new Bundle();
+    params.putFloat(MediaFormat.KEY_OPERATING_RATE, getOperatingRate(speed));
+    try {
+      codec.setParameters(params);
+    } catch (Throwable e) {
+      // the operating rate is only a hint
+    }
+  }
+
+  private float getOperatingRate(double speed) {
+    float frameRate = DEFAULT_FRAME_RATE;
+    if (format.containsKey(MediaFormat.KEY_FRAME_RATE)) {
+      try {
+        frameRate = format.getInteger(MediaFormat.KEY_FRAME_RATE);
+      } catch (ClassCastException e) {
+        frameRate = format.getFloat(MediaFormat.KEY_FRAME_RATE);
+      }
+    }
+    return (float) (frameRate * Math.max(1, speed));
+  }
+
+  @Override
+  public void releaseOutputBuffer(int index, boolean render) {
+    try {
+      codec.releaseOutputBuffer(index, render);
+    } catch (Throwable e) {
+      // the buffer has been invalidated by a flush or a release
+    }
+  }
+
+  @Override
+  synchronized public void release() {
+    if (!released) {
+      released = true;
+      if (extractor != null) {
+        extractor.release();
+      }
+      if (codec != null) {
+        codec.release();
+        codec = null;
+      }
+    }
+  }
+
+  @Override
+  synchronized public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.DecoderBackend.onInputBufferAvailable");
+    try {
+      if (!configured || released) {
+        return;
+      }
+
+      if (inputEOS || inputEnded) {
+        try {
+          this.codec.queueInputBuffer(index, 0, 0, 0,
+            MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        } catch (Throwable e) {}
+        return;
+      }
+
+      ByteBuffer inputBuffer;
+      try {
+        inputBuffer = this.codec.getInputBuffer(index);
+      } catch (Throwable e) {
+        return;
+      }
+      if (inputBuffer == null) {
+        return;
+      }
+
+      double speed = playbackSpeed;
+      int sampleSize = extractor.readSampleData(inputBuffer, 0);
+      // when the video is played a lot faster than normal speed, frames that no other frame
+      // depends on are skipped since most of them would be dropped after decoding
+      while (speed >= SKIP_NON_REFERENCE_FRAMES_SPEED && sampleSize > 0 && isDisposableSample(inputBuffer, sampleSize)) {
+        extractor.advance();
+        inputBuffer.clear();
+        sampleSize = extractor.readSampleData(inputBuffer, 0);
+      }
+      if (sampleSize <= 0) {
+        this.codec.queueInputBuffer(index, 0, 0, 0,
+          MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        return;
+      }
+      long sampleTime = extractor.getSampleTime();
+      int sampleFlags = extractor.getSampleFlags();
+      try {
+        this.codec.queueInputBuffer(
+          index,
+          0,
+          sampleSize,
+          sampleTime,
+          sampleFlags
+        );
+      } catch (Throwable e) {
+        return;
+      }
+      if (speed >= SYNC_FRAMES_ONLY_SPEED
+        && (sampleFlags & MediaExtractor.SAMPLE_FLAG_SYNC) != 0) {
+        // for extreme time-lapses, jump to the next sync frame, skipping the whole group
+        extractor.seekTo(sampleTime + 1, MediaExtractor.SEEK_TO_NEXT_SYNC);
+        if (extractor.getSampleTime() <= sampleTime) {
+          extractor.advance();
+        }
+      } else {
+        extractor.advance();
+      }
+      inputEOS = extractor.getSampleTime() == -1;
+    } finally {
+      TraceHelpers.endSection(traced);
+    }
+  }
+
+  @Override
+  public void onOutputBufferAvailable(
+    @NonNull MediaCodec codec, int index, @NonNull MediaCodec.BufferInfo info) {
+    if (released) {
+      return;
+    }
+    boolean endOfStream = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+    boolean empty = info.size == 0;
+    if (!empty) {
+      ByteBuffer buffer;
+      try {
+        buffer = codec.getOutputBuffer(index);
+      } catch (Throwable e) {
+        return;
+      }
+      if (buffer == null) {
+        return;
+      }
+      buffer.position(info.offset);
+      buffer.limit(info.offset + info.size);
+    }
+    callback.onFrameDecoded(index, info.presentationTimeUs, empty, endOfStream);
+  }
+
+  @Override
+  public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+    if (callback != null) {
+      callback.onError(e);
+    }
+  }
+
+  @Override
+  public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+    // Do nothing
+  }
+
+  /**
+   * Checks if a sample of an H.264 or HEVC video contains a picture that is not used as
+   * a reference by other pictures, and can be skipped without corrupting the decoding.
+   * Samples of other codecs are never considered disposable.
+   */
+  private boolean isDisposableSample(ByteBuffer buffer, int size) {
+    boolean avc = MediaFormat.MIMETYPE_VIDEO_AVC.equals(mime);
+    boolean hevc = MediaFormat.MIMETYPE_VIDEO_HEVC.equals(mime);
+    if (!avc && !hevc) {
+      return false;
+    }
+    // samples are returned by the extractor in Annex B format, look for the first
+    // slice NAL unit following a start code
+    for (int i = 0; i + 3 < size; i++) {
+      if (buffer.get(i) != 0 || buffer.get(i + 1) != 0 || buffer.get(i + 2) != 1) {
+        continue;
+      }
+      int header = buffer.get(i + 3) & 0xFF;
+      if (avc) {
+        int nalType = header & 0x1F;
+        if (nalType == 1 || nalType == 5) {
+          // nal_ref_idc equal to 0 means that the picture is not a reference
+          return (header & 0x60) == 0;
+        }
+      } else {
+        int nalType = (header >> 1) & 0x3F;
+        if (nalType <= 31) {
+          // even slice types below 16 are sub-layer non-reference pictures
+          return nalType <= 14 && nalType % 2 == 0;
+        }
+      }
+      i += 3;
+    }
+    return false;
+  }
+}
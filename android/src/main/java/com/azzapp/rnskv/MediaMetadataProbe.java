@@ -0,0 +1,342 @@
+package com.azzapp.rnskv;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the metadata of videos from their container headers, without creating any codec.
+ * The metadata are cached by path, size and modification date of the file or of the content
+ * URI, so that the decoders opening a video that has already been probed skip the scanning of
+ * its tracks. The videos whose size is unknown, such as remote ones, are not cached.
+ */
+public class MediaMetadataProbe {
+
+  private static final String TAG = "MediaMetadataProbe";
+
+  private static final int MAX_CACHE_ENTRIES = 256;
+
+  private static final int MAX_PARALLEL_PROBES = 4;
+
+  private static final Map<String, MediaMetadata> cache =
+    new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, MediaMetadata> eldest) {
+        return size() > MAX_CACHE_ENTRIES;
+      }
+    };
+
+  private static ExecutorService executor;
+
+  /**
+   * The metadata of the video track of a media.
+   */
+  public static class MediaMetadata {
+    private final int trackIndex;
+    private final String mimeType;
+    private final long durationUs;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final float frameRate;
+    private final long keyFrameIntervalUs;
+
+    public MediaMetadata(
+      int trackIndex,
+      String mimeType,
+      long durationUs,
+      int width,
+      int height,
+      int rotation,
+      float frameRate,
+      long keyFrameIntervalUs
+    ) {
+      this.trackIndex = trackIndex;
+      this.mimeType = mimeType;
+      this.durationUs = durationUs;
+      this.width = width;
+      this.height = height;
+      this.rotation = rotation;
+      this.frameRate = frameRate;
+      this.keyFrameIntervalUs = keyFrameIntervalUs;
+    }
+
+    /**
+     * @return the index of the video track in the container
+     */
+    public int getTrackIndex() {
+      return trackIndex;
+    }
+
+    /**
+     * @return the mime type of the video track
+     */
+    public String getMimeType() {
+      return mimeType;
+    }
+
+    /**
+     * @return the duration of the video track in microseconds, -1 if unknown
+     */
+    public long getDurationUs() {
+      return durationUs;
+    }
+
+    /**
+     * @return the coded width of the video in pixels, before rotation
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * @return the coded height of the video in pixels, before rotation
+     */
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * @return the rotation of the video in degrees
+     */
+    public int getRotation() {
+      return rotation;
+    }
+
+    /**
+     * @return the frame rate of the video, 0 if unknown
+     */
+    public float getFrameRate() {
+      return frameRate;
+    }
+
+    /**
+     * @return the interval between the first two sync frames in microseconds, the duration
+     * of the video if it has a single sync frame, -1 if unknown or if the metadata have been
+     * read by a decoder, see {@link #read(String, MediaExtractor)}
+     */
+    public long getKeyFrameIntervalUs() {
+      return keyFrameIntervalUs;
+    }
+  }
+
+  /**
+   * Probes the metadata of several videos in parallel, blocking until all of them are read.
+   *
+   * @param paths the paths of the videos
+   * @return the metadata of each video, null for the videos that could not be read
+   */
+  public static List<MediaMetadata> probeAll(List<String> paths) {
+    List<Future<MediaMetadata>> futures = new ArrayList<>();
+    for (String path : paths) {
+      futures.add(getExecutor().submit(() -> probe(path)));
+    }
+    List<MediaMetadata> results = new ArrayList<>();
+    for (int i = 0; i < futures.size(); i++) {
+      MediaMetadata metadata = null;
+      try {
+        metadata = futures.get(i).get();
+      } catch (ExecutionException e) {
+        Log.w(TAG, "Failed to probe " + paths.get(i), e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      results.add(metadata);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the metadata of a video, reading them if they are not cached.
+   *
+   * @param path the path of the video
+   * @return the metadata of the video
+   * @throws IOException if the video cannot be read or has no video track
+   */
+  public static MediaMetadata probe(String path) throws IOException {
+    MediaMetadata metadata = getCached(path);
+    if (metadata != null && metadata.getKeyFrameIntervalUs() >= 0) {
+      return metadata;
+    }
+    MediaExtractor extractor = new MediaExtractor();
+    try {
+      extractor.setDataSource(path);
+      return read(path, extractor, true);
+    } finally {
+      extractor.release();
+    }
+  }
+
+  /**
+   * Returns the cached metadata of a video.
+   *
+   * @param path the path of the video
+   * @return the metadata of the video, or null if the video has not been probed since its
+   * last modification
+   */
+  public static MediaMetadata getCached(String path) {
+    String key = getCacheKey(path);
+    if (key == null) {
+      return null;
+    }
+    synchronized (cache) {
+      return cache.get(key);
+    }
+  }
+
+  /**
+   * Reads the metadata of a video from an extractor opened on it and caches them. The key frame
+   * interval is not read, since it requires seeking the extractor, so that a decoder can read
+   * the metadata of the video it opens without delaying its first frame.
+   *
+   * @param path      the path of the video
+   * @param extractor an extractor whose data source is the video
+   * @return the metadata of the video
+   * @throws IOException if the video has no video track
+   */
+  public static MediaMetadata read(String path, MediaExtractor extractor) throws IOException {
+    return read(path, extractor, false);
+  }
+
+  private static MediaMetadata read(
+    String path,
+    MediaExtractor extractor,
+    boolean withKeyFrameInterval
+  ) throws IOException {
+    int trackIndex = selectTrack(extractor);
+    if (trackIndex == -1) {
+      throw new IOException("No video track");
+    }
+    MediaFormat format = extractor.getTrackFormat(trackIndex);
+    long durationUs = format.containsKey(MediaFormat.KEY_DURATION)
+      ? format.getLong(MediaFormat.KEY_DURATION)
+      : -1;
+    MediaMetadata metadata = new MediaMetadata(
+      trackIndex,
+      format.getString(MediaFormat.KEY_MIME),
+      durationUs,
+      format.getInteger(MediaFormat.KEY_WIDTH),
+      format.getInteger(MediaFormat.KEY_HEIGHT),
+      format.containsKey(MediaFormat.KEY_ROTATION) ? format.getInteger(MediaFormat.KEY_ROTATION) : 0,
+      getFrameRate(format),
+      withKeyFrameInterval ? readKeyFrameInterval(extractor, trackIndex, durationUs) : -1
+    );
+    String key = getCacheKey(path);
+    if (key != null) {
+      synchronized (cache) {
+        cache.put(key, metadata);
+      }
+    }
+    return metadata;
+  }
+
+  private static long readKeyFrameInterval(
+    MediaExtractor extractor,
+    int trackIndex,
+    long durationUs
+  ) {
+    // only the sample table of the container is read when seeking to sync samples
+    extractor.selectTrack(trackIndex);
+    extractor.seekTo(0, MediaExtractor.SEEK_TO_NEXT_SYNC);
+    long firstSyncTimeUs = extractor.getSampleTime();
+    extractor.seekTo(firstSyncTimeUs + 1, MediaExtractor.SEEK_TO_NEXT_SYNC);
+    long secondSyncTimeUs = extractor.getSampleTime();
+    extractor.unselectTrack(trackIndex);
+    if (firstSyncTimeUs < 0 || secondSyncTimeUs <= firstSyncTimeUs) {
+      return durationUs;
+    }
+    return secondSyncTimeUs - firstSyncTimeUs;
+  }
+
+  private static float getFrameRate(MediaFormat format) {
+    if (!format.containsKey(MediaFormat.KEY_FRAME_RATE)) {
+      return 0;
+    }
+    try {
+      return format.getInteger(MediaFormat.KEY_FRAME_RATE);
+    } catch (ClassCastException e) {
+      return format.getFloat(MediaFormat.KEY_FRAME_RATE);
+    }
+  }
+
+  private static String getCacheKey(String path) {
+    Uri uri = Uri.parse(path);
+    String scheme = uri.getScheme();
+    if (scheme == null || ContentResolver.SCHEME_FILE.equals(scheme)) {
+      File file = new File(scheme == null ? path : uri.getPath());
+      return path + ":" + file.length() + ":" + file.lastModified();
+    }
+    if (ContentResolver.SCHEME_CONTENT.equals(scheme)) {
+      return getContentCacheKey(path, uri);
+    }
+    return null;
+  }
+
+  private static String getContentCacheKey(String path, Uri uri) {
+    Context context = ReactNativeSkiaVideoModule.currentReactApplicationContext();
+    if (context == null) {
+      return null;
+    }
+    try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
+      if (cursor == null || !cursor.moveToFirst()) {
+        return null;
+      }
+      int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+      if (sizeIndex == -1 || cursor.isNull(sizeIndex)) {
+        return null;
+      }
+      // documents providers and the media store name the modification date differently
+      int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+      if (modifiedIndex == -1) {
+        modifiedIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+      }
+      long lastModified =
+        modifiedIndex == -1 || cursor.isNull(modifiedIndex) ? 0 : cursor.getLong(modifiedIndex);
+      return path + ":" + cursor.getLong(sizeIndex) + ":" + lastModified;
+    } catch (Exception e) {
+      Log.w(TAG, "Failed to query " + path, e);
+      return null;
+    }
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(MAX_PARALLEL_PROBES, runnable -> {
+        Thread thread = new Thread(runnable, "ReactNativeSkiaVideo-Probe");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  private static int selectTrack(MediaExtractor extractor) {
+    int numTracks = extractor.getTrackCount();
+    for (int i = 0; i < numTracks; i++) {
+      MediaFormat format = extractor.getTrackFormat(i);
+      String mime = format.getString(MediaFormat.KEY_MIME);
+      if (mime != null && mime.startsWith("video/")) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
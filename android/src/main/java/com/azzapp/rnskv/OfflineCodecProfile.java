@@ -0,0 +1,86 @@
+package com.azzapp.rnskv;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Helpers to configure the codecs of an export, which is not bound to the display and
+ * should run as fast as possible instead of at the frame rate of the video.
+ */
+public class OfflineCodecProfile {
+
+  private static final String TAG = "OfflineCodecProfile";
+
+  // MediaFormat.KEY_PRIORITY value for non realtime work
+  private static final int PRIORITY_NON_REALTIME = 1;
+
+  // largest operating rate accepted by all codecs, meaning "as fast as possible"
+  private static final int MAX_OPERATING_RATE = Short.MAX_VALUE;
+
+  /**
+   * Adds the keys of the offline profile supported by the codec to the given format.
+   *
+   * @param codec  the codec that will be configured with the format
+   * @param format the format to update
+   */
+  public static void apply(MediaCodec codec, MediaFormat format) {
+    format.setInteger(MediaFormat.KEY_PRIORITY, PRIORITY_NON_REALTIME);
+    format.setInteger(MediaFormat.KEY_OPERATING_RATE, MAX_OPERATING_RATE);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+      && isFeatureSupported(codec, format, MediaCodecInfo.CodecCapabilities.FEATURE_LowLatency)) {
+      // outputs each frame as soon as it is decoded instead of buffering them
+      format.setInteger(MediaFormat.KEY_LOW_LATENCY, 1);
+    }
+  }
+
+  /**
+   * Configures the codec with the offline profile, falling back to the given base format
+   * if the codec rejects it.
+   *
+   * @param codec          the codec to configure
+   * @param format         the format to configure the codec with
+   * @param fallbackFormat a copy of the format without the offline profile keys
+   * @param configurator   the function configuring the codec with a format
+   */
+  public static void configure(
+    MediaCodec codec,
+    MediaFormat format,
+    MediaFormat fallbackFormat,
+    Configurator configurator
+  ) {
+    apply(codec, format);
+    try {
+      configurator.configure(format);
+      return;
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      Log.w(TAG, "Codec rejected the offline profile, falling back to the default one", e);
+    }
+    codec.reset();
+    configurator.configure(fallbackFormat);
+  }
+
+  private static boolean isFeatureSupported(MediaCodec codec, MediaFormat format, String feature) {
+    String mime = format.getString(MediaFormat.KEY_MIME);
+    if (mime == null) {
+      return false;
+    }
+    try {
+      MediaCodecInfo.CodecCapabilities capabilities =
+        codec.getCodecInfo().getCapabilitiesForType(mime);
+      return capabilities != null && capabilities.isFeatureSupported(feature);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Configures a codec with a format, the callback of the codec being set again since
+   * it is cleared when the codec is reset.
+   */
+  public interface Configurator {
+    void configure(MediaFormat format);
+  }
+}
@@ -0,0 +1,271 @@
+package com.azzapp.rnskv;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the pixels of textures back from the GPU into buffers of the {@link DirectBufferPool}.
+ * <p>
+ * On OpenGL ES 3.0 the pixels are read into two pixel buffer objects used in turn, the read
+ * of a texture being only queued on the GPU and mapped once its fence is signaled, so that the
+ * pixels of a frame are copied while the next one is drawn. Otherwise the pixels are read
+ * synchronously. All the methods must be called with the same context current.
+ */
+public class PixelBufferReader {
+
+  private static final int BUFFER_COUNT = 2;
+
+  private static final int BYTES_PER_PIXEL = 4;
+
+  private final int framebuffer;
+
+  private final Slot[] slots;
+
+  // index of the slot used by the next read
+  private int nextSlot = 0;
+
+  private static class Slot {
+    int buffer;
+    int capacity = 0;
+    long fence = 0;
+    PendingRead read;
+  }
+
+  private static class PendingRead {
+    final int width;
+    final int height;
+    final Object tag;
+
+    PendingRead(int width, int height, Object tag) {
+      this.width = width;
+      this.height = height;
+      this.tag = tag;
+    }
+  }
+
+  /**
+   * The pixels of a texture read back from the GPU.
+   */
+  public static class Result {
+    private final ByteBuffer pixels;
+    private final int width;
+    private final int height;
+    private final Object tag;
+
+    private Result(ByteBuffer pixels, int width, int height, Object tag) {
+      this.pixels = pixels;
+      this.width = width;
+      this.height = height;
+      this.tag = tag;
+    }
+
+    /**
+     * @return the RGBA pixels of the texture, row by row from the first row of the texture,
+     * to be released to the {@link DirectBufferPool} once used
+     */
+    public ByteBuffer getPixels() {
+      return pixels;
+    }
+
+    /**
+     * @return the width of the texture
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * @return the height of the texture
+     */
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * @return the tag passed to {@link #read(int, int, int, Object)}
+     */
+    public Object getTag() {
+      return tag;
+    }
+  }
+
+  /**
+   * Creates a reader for the current context.
+   */
+  public PixelBufferReader() {
+    int[] framebuffers = new int[1];
+    GLES20.glGenFramebuffers(1, framebuffers, 0);
+    framebuffer = framebuffers[0];
+    if (EGLUtils.isCurrentContextGLES3()) {
+      int[] buffers = new int[BUFFER_COUNT];
+      GLES30.glGenBuffers(BUFFER_COUNT, buffers, 0);
+      slots = new Slot[BUFFER_COUNT];
+      for (int i = 0; i < BUFFER_COUNT; i++) {
+        slots[i] = new Slot();
+        slots[i].buffer = buffers[i];
+      }
+    } else {
+      slots = null;
+    }
+  }
+
+  /**
+   * @return true if the reads are asynchronous
+   */
+  public boolean isAsync() {
+    return slots != null;
+  }
+
+  /**
+   * Reads the pixels of a texture. When the reads are asynchronous, the read is queued and its
+   * result is returned by a later call to {@link #poll(boolean)}, the oldest queued read being
+   * completed first if both pixel buffers are in use.
+   *
+   * @param texture the texture to read
+   * @param width   the width of the texture
+   * @param height  the height of the texture
+   * @param tag     an object identifying the read in its result
+   * @return the completed reads, including this one if the reads are synchronous
+   */
+  public List<Result> read(int texture, int width, int height, Object tag) {
+    List<Result> results = new ArrayList<>();
+    GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+    GLES20.glFramebufferTexture2D(
+      GLES20.GL_FRAMEBUFFER,
+      GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, texture,
+      0
+    );
+    int size = width * height * BYTES_PER_PIXEL;
+    if (slots == null) {
+      ByteBuffer pixels = DirectBufferPool.acquire(size);
+      GLES20.glReadPixels(
+        0, 0, width, height, GLES20.GL_RGBA,
+        GLES20.GL_UNSIGNED_BYTE, pixels
+      );
+      GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+      results.add(new Result(pixels, width, height, tag));
+      return results;
+    }
+    Slot slot = slots[nextSlot];
+    if (slot.read != null) {
+      results.add(complete(slot));
+    }
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, slot.buffer);
+    if (slot.capacity < size) {
+      GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, size, null, GLES30.GL_STREAM_READ);
+      slot.capacity = size;
+    }
+    // with a pack buffer bound, the pixels are written at the given offset of the buffer
+    // by the GPU instead of being returned
+    GLES30.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 0);
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+    GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    slot.fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    GLES20.glFlush();
+    slot.read = new PendingRead(width, height, tag);
+    nextSlot = (nextSlot + 1) % slots.length;
+    return results;
+  }
+
+  /**
+   * @return the fence signaled once the last queued read is complete, or 0 if there is none,
+   * owned by the reader
+   */
+  public long getLastReadFence() {
+    if (slots == null) {
+      return 0;
+    }
+    Slot slot = slots[(nextSlot + slots.length - 1) % slots.length];
+    return slot.read != null ? slot.fence : 0;
+  }
+
+  /**
+   * @return the number of queued reads not completed yet
+   */
+  public int getPendingReadCount() {
+    int count = 0;
+    if (slots != null) {
+      for (Slot slot : slots) {
+        if (slot.read != null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Completes the queued reads, in the order they were queued.
+   *
+   * @param wait true to wait for all the queued reads, false to only complete the reads
+   *             already done by the GPU
+   * @return the completed reads
+   */
+  public List<Result> poll(boolean wait) {
+    List<Result> results = new ArrayList<>();
+    if (slots == null) {
+      return results;
+    }
+    // the oldest read is in the slot used by the next read
+    for (int i = 0; i < slots.length; i++) {
+      Slot slot = slots[(nextSlot + i) % slots.length];
+      if (slot.read == null) {
+        continue;
+      }
+      if (!wait) {
+        int status = GLES30.glClientWaitSync(slot.fence, 0, 0);
+        if (status != GLES30.GL_ALREADY_SIGNALED && status != GLES30.GL_CONDITION_SATISFIED) {
+          break;
+        }
+      }
+      results.add(complete(slot));
+    }
+    return results;
+  }
+
+  private Result complete(Slot slot) {
+    PendingRead read = slot.read;
+    GLES30.glClientWaitSync(
+      slot.fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, GLES30.GL_TIMEOUT_IGNORED);
+    GLES30.glDeleteSync(slot.fence);
+    slot.fence = 0;
+    slot.read = null;
+    int size = read.width * read.height * BYTES_PER_PIXEL;
+    ByteBuffer pixels = DirectBufferPool.acquire(size);
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, slot.buffer);
+    ByteBuffer mapped = (ByteBuffer) GLES30.glMapBufferRange(
+      GLES30.GL_PIXEL_PACK_BUFFER, 0, size, GLES30.GL_MAP_READ_BIT);
+    if (mapped != null) {
+      pixels.put(mapped);
+      pixels.flip();
+    }
+    GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+    if (mapped == null) {
+      DirectBufferPool.release(pixels);
+      throw new RuntimeException("Could not map the pixel buffer");
+    }
+    return new Result(pixels, read.width, read.height, read.tag);
+  }
+
+  /**
+   * Releases the buffers of the reader, the queued reads being dropped.
+   */
+  public void release() {
+    GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+    if (slots != null) {
+      int[] buffers = new int[slots.length];
+      for (int i = 0; i < slots.length; i++) {
+        buffers[i] = slots[i].buffer;
+        EGLUtils.deleteFence(slots[i].fence);
+        slots[i].fence = 0;
+        slots[i].read = null;
+      }
+      GLES30.glDeleteBuffers(buffers.length, buffers, 0);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.azzapp.rnskv;
+
+import java.util.Map;
+
+/**
+ * The frame pacing statistics of a player or of a composition preview, since it was created.
+ */
+public class PlaybackStats {
+
+  /**
+   * The delay in microseconds past which a displayed frame is considered late.
+   */
+  public static final long LATE_FRAME_THRESHOLD_US = 50000;
+
+  private final long renderedFrames;
+
+  private final long droppedFrames;
+
+  private final long lateFrames;
+
+  private final long loopOverruns;
+
+  private final LatencyHistogram displayLatencyHistogram;
+
+  private final Map<String, LatencyHistogram> itemsDisplayLatencyHistograms;
+
+  private final FrameTextureCache.Stats frameCacheStats;
+
+  public PlaybackStats(
+    long renderedFrames,
+    long droppedFrames,
+    long lateFrames,
+    long loopOverruns,
+    LatencyHistogram displayLatencyHistogram,
+    Map<String, LatencyHistogram> itemsDisplayLatencyHistograms,
+    FrameTextureCache.Stats frameCacheStats
+  ) {
+    this.renderedFrames = renderedFrames;
+    this.droppedFrames = droppedFrames;
+    this.lateFrames = lateFrames;
+    this.loopOverruns = loopOverruns;
+    this.displayLatencyHistogram = displayLatencyHistogram;
+    this.itemsDisplayLatencyHistograms = itemsDisplayLatencyHistograms;
+    this.frameCacheStats = frameCacheStats;
+  }
+
+  /**
+   * @return the number of frames rendered to the output surfaces
+   */
+  public long getRenderedFrames() {
+    return renderedFrames;
+  }
+
+  /**
+   * @return the number of decoded frames skipped without being rendered
+   */
+  public long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  /**
+   * @return the number of frames rendered more than {@link #LATE_FRAME_THRESHOLD_US} after
+   * their presentation time
+   */
+  public long getLateFrames() {
+    return lateFrames;
+  }
+
+  /**
+   * @return the number of playback loop ticks that took longer than the loop interval
+   */
+  public long getLoopOverruns() {
+    return loopOverruns;
+  }
+
+  /**
+   * @return the delays in microseconds between the decoding and the display of the frames,
+   * null for compositions
+   */
+  public LatencyHistogram getDisplayLatencyHistogram() {
+    return displayLatencyHistogram;
+  }
+
+  /**
+   * @return the delays in microseconds between the decoding and the display of the frames
+   * of each item by item id, null for players
+   */
+  public Map<String, LatencyHistogram> getItemsDisplayLatencyHistograms() {
+    return itemsDisplayLatencyHistograms;
+  }
+
+  /**
+   * @return the usage of the cache of the frames displayed while paused, null for players
+   * and until a composition has displayed its first frames
+   */
+  public FrameTextureCache.Stats getFrameCacheStats() {
+    return frameCacheStats;
+  }
+}
@@ -0,0 +1,238 @@
+package com.azzapp.rnskv;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A cache of low resolution proxies of the videos previewed in compositions.
+ * Proxies of heavy videos are transcoded in the background by a {@link ProxyTranscoder} and
+ * stored in the application cache directory, the least recently used ones being evicted
+ * when the cache exceeds its maximum size. The cache is disabled by default.
+ */
+public class ProxyCache {
+
+  private static final String TAG = "ProxyCache";
+
+  private static final String DIRECTORY_NAME = "rnskv-proxies";
+
+  private static final String PROXY_EXTENSION = ".mp4";
+
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  // videos whose largest side is above this size get a proxy
+  private static final int HEAVY_VIDEO_SIZE = 1920;
+
+  // largest side of the proxies
+  private static final int PROXY_SIZE = 960;
+
+  private static final long DEFAULT_MAX_CACHE_SIZE = 512L * 1024 * 1024;
+
+  private static volatile boolean enabled = false;
+
+  private static volatile long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+  private static final Set<String> pendingKeys = new HashSet<>();
+
+  private static final Set<String> lightKeys = new HashSet<>();
+
+  private static ExecutorService executor;
+
+  /**
+   * Enables or disables the use and the creation of proxies.
+   */
+  public static void setEnabled(boolean enabled) {
+    ProxyCache.enabled = enabled;
+  }
+
+  /**
+   * @return true if proxies are used for the preview of compositions
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets the maximum size of the cache, the least recently used proxies being evicted
+   * once it is exceeded.
+   *
+   * @param maxCacheSize the maximum size of the cache in bytes
+   */
+  public static void setMaxCacheSize(long maxCacheSize) {
+    ProxyCache.maxCacheSize = Math.max(0, maxCacheSize);
+    if (enabled) {
+      getExecutor().execute(ProxyCache::trim);
+    }
+  }
+
+  /**
+   * Returns the path of the proxy of a video, if the cache is enabled and the proxy has
+   * already been transcoded.
+   *
+   * @param path the path of the video
+   * @return the path of the proxy, or null if there is none
+   */
+  public static String getProxyPath(String path) {
+    if (!enabled) {
+      return null;
+    }
+    File proxyFile = getProxyFile(path);
+    if (proxyFile == null || !proxyFile.exists()) {
+      return null;
+    }
+    // marks the proxy as recently used
+    proxyFile.setLastModified(System.currentTimeMillis());
+    return proxyFile.getAbsolutePath();
+  }
+
+  /**
+   * Transcodes the proxy of a video in the background if the cache is enabled, the video is
+   * heavy enough to need one and it has not already been transcoded.
+   *
+   * @param path the path of the video
+   */
+  public static void requestProxy(String path) {
+    if (!enabled) {
+      return;
+    }
+    File proxyFile = getProxyFile(path);
+    if (proxyFile == null || proxyFile.exists()) {
+      return;
+    }
+    String key = proxyFile.getName();
+    synchronized (ProxyCache.class) {
+      if (lightKeys.contains(key) || !pendingKeys.add(key)) {
+        return;
+      }
+    }
+    getExecutor().execute(() -> {
+      try {
+        if (!isHeavyVideo(path)) {
+          synchronized (ProxyCache.class) {
+            lightKeys.add(key);
+          }
+          return;
+        }
+        File tempFile = new File(proxyFile.getParentFile(), key + TEMP_EXTENSION);
+        new ProxyTranscoder(path, tempFile, PROXY_SIZE).transcode();
+        if (!tempFile.renameTo(proxyFile)) {
+          tempFile.delete();
+          throw new IOException("Could not move proxy to " + proxyFile);
+        }
+        trim();
+      } catch (Exception e) {
+        Log.w(TAG, "Failed to transcode the proxy of " + path, e);
+      } finally {
+        synchronized (ProxyCache.class) {
+          pendingKeys.remove(key);
+        }
+      }
+    });
+  }
+
+  /**
+   * Deletes all the proxies of the cache.
+   */
+  public static void clear() {
+    getExecutor().execute(() -> {
+      File[] files = listProxyFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+    });
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ReactNativeSkiaVideo-ProxyCache");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  private static void trim() {
+    File[] files = listProxyFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+      if (size > maxCacheSize) {
+        file.delete();
+      }
+    }
+  }
+
+  private static File[] listProxyFiles() {
+    File directory = getDirectory();
+    if (directory == null) {
+      return null;
+    }
+    return directory.listFiles((dir, name) -> name.endsWith(PROXY_EXTENSION));
+  }
+
+  private static File getDirectory() {
+    Context context = ReactNativeSkiaVideoModule.currentReactApplicationContext();
+    if (context == null) {
+      return null;
+    }
+    File directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    if (!directory.exists() && !directory.mkdirs()) {
+      return null;
+    }
+    return directory;
+  }
+
+  private static File getProxyFile(String path) {
+    File directory = getDirectory();
+    if (directory == null) {
+      return null;
+    }
+    // the key changes with the content of the source and with the proxy settings,
+    // so that outdated proxies are never used and end up evicted
+    File source = new File(path);
+    String key = hash(
+      source.getAbsolutePath() + ":" + source.length() + ":" + source.lastModified()
+        + ":" + PROXY_SIZE
+    );
+    return new File(directory, key + PROXY_EXTENSION);
+  }
+
+  private static boolean isHeavyVideo(String path) throws IOException {
+    MediaMetadataProbe.MediaMetadata metadata = MediaMetadataProbe.probe(path);
+    return Math.max(metadata.getWidth(), metadata.getHeight()) > HEAVY_VIDEO_SIZE;
+  }
+
+  private static String hash(String value) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1")
+        .digest(value.getBytes(StandardCharsets.UTF_8));
+      StringBuilder builder = new StringBuilder();
+      for (byte b : digest) {
+        builder.append(String.format("%02x", b));
+      }
+      return builder.toString();
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(value.hashCode());
+    }
+  }
+}
@@ -0,0 +1,319 @@
+package com.azzapp.rnskv;
+
+import android.graphics.SurfaceTexture;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Surface;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.microedition.khronos.egl.EGL10;
+
+/**
+ * Transcodes a video into a low resolution proxy with short groups of pictures, cheap to decode
+ * and to seek in. The proxy keeps the presentation times and the rotation of the source video,
+ * so that it can replace it in a composition without changing the timing of the items.
+ */
+public class ProxyTranscoder {
+
+  private static final String MIME_TYPE = "video/avc";
+
+  private static final float I_FRAME_INTERVAL_SECONDS = 0.25f;
+
+  private static final int BITS_PER_PIXEL = 4;
+
+  private static final int DEFAULT_FRAME_RATE = 30;
+
+  private static final long TIMEOUT_US = 10000;
+
+  private static final long FRAME_WAIT_TIMEOUT_MS = 2500;
+
+  private final String sourcePath;
+
+  private final File outputFile;
+
+  private final int maxSize;
+
+  private final Object frameLock = new Object();
+
+  private boolean frameAvailable = false;
+
+  /**
+   * Creates a new ProxyTranscoder.
+   *
+   * @param sourcePath the path of the video to transcode
+   * @param outputFile the file to write the proxy to
+   * @param maxSize    the maximum size in pixels of the largest side of the proxy
+   */
+  public ProxyTranscoder(String sourcePath, File outputFile, int maxSize) {
+    this.sourcePath = sourcePath;
+    this.outputFile = outputFile;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Transcodes the video, blocking the current thread until the proxy is written.
+   *
+   * @throws IOException if the video cannot be read or the proxy cannot be written
+   */
+  public void transcode() throws IOException {
+    MediaExtractor extractor = null;
+    MediaCodec decoder = null;
+    MediaCodec encoder = null;
+    MediaMuxer muxer = null;
+    EGLResourcesHolder eglResourcesHolder = null;
+    TextureRenderer textureRenderer = null;
+    SurfaceTexture surfaceTexture = null;
+    Surface decoderSurface = null;
+    Surface encoderSurface = null;
+    HandlerThread frameThread = new HandlerThread("ReactNativeSkiaVideo-ProxyFrames");
+    boolean succeeded = false;
+    try {
+      extractor = new MediaExtractor();
+      extractor.setDataSource(sourcePath);
+      int trackIndex = selectTrack(extractor);
+      if (trackIndex == -1) {
+        throw new IOException("No video track");
+      }
+      extractor.selectTrack(trackIndex);
+      MediaFormat inputFormat = extractor.getTrackFormat(trackIndex);
+      String inputMime = inputFormat.getString(MediaFormat.KEY_MIME);
+      if (inputMime == null) {
+        throw new IOException("Could not determine file mime type");
+      }
+      int sourceWidth = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+      int sourceHeight = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+      int rotation = inputFormat.containsKey(MediaFormat.KEY_ROTATION)
+        ? inputFormat.getInteger(MediaFormat.KEY_ROTATION)
+        : 0;
+      int frameRate = inputFormat.containsKey(MediaFormat.KEY_FRAME_RATE)
+        ? getFrameRate(inputFormat)
+        : DEFAULT_FRAME_RATE;
+
+      // the proxy is encoded in the coded orientation of the source, the rotation being
+      // written in the proxy metadata like in the source
+      float scale = Math.min(1, (float) maxSize / Math.max(sourceWidth, sourceHeight));
+      int width = Math.max(2, Math.round(sourceWidth * scale / 2) * 2);
+      int height = Math.max(2, Math.round(sourceHeight * scale / 2) * 2);
+
+      MediaFormat outputFormat = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+      outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+        MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+      outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, width * height * BITS_PER_PIXEL);
+      outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+      outputFormat.setFloat(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SECONDS);
+      encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+      encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+      encoderSurface = encoder.createInputSurface();
+
+      eglResourcesHolder =
+        EGLResourcesHolder.createWithWindowedSurface(EGL10.EGL_NO_CONTEXT, encoderSurface);
+      eglResourcesHolder.makeCurrent();
+      textureRenderer = new TextureRenderer(true);
+      int[] texIds = new int[1];
+      GLES20.glGenTextures(1, texIds, 0);
+      EGLUtils.configureTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, texIds[0]);
+      frameThread.start();
+      surfaceTexture = new SurfaceTexture(texIds[0]);
+      surfaceTexture.setOnFrameAvailableListener(texture -> {
+        synchronized (frameLock) {
+          frameAvailable = true;
+          frameLock.notifyAll();
+        }
+      }, new Handler(frameThread.getLooper()));
+      decoderSurface = new Surface(surfaceTexture);
+
+      decoder = MediaCodec.createDecoderByType(inputMime);
+      decoder.configure(inputFormat, decoderSurface, null, 0);
+
+      muxer = new MediaMuxer(outputFile.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+      muxer.setOrientationHint(rotation);
+
+      encoder.start();
+      decoder.start();
+      transcodeLoop(
+        extractor,
+        decoder,
+        encoder,
+        muxer,
+        eglResourcesHolder,
+        textureRenderer,
+        surfaceTexture,
+        texIds[0],
+        width,
+        height
+      );
+      succeeded = true;
+    } finally {
+      if (decoder != null) {
+        decoder.release();
+      }
+      if (encoder != null) {
+        encoder.release();
+      }
+      if (muxer != null) {
+        try {
+          if (succeeded) {
+            muxer.stop();
+          }
+          muxer.release();
+        } catch (IllegalStateException e) {
+          succeeded = false;
+        }
+      }
+      if (extractor != null) {
+        extractor.release();
+      }
+      if (textureRenderer != null) {
+        textureRenderer.release();
+      }
+      if (decoderSurface != null) {
+        decoderSurface.release();
+      }
+      if (surfaceTexture != null) {
+        surfaceTexture.release();
+      }
+      if (eglResourcesHolder != null) {
+        eglResourcesHolder.release();
+      }
+      if (encoderSurface != null) {
+        encoderSurface.release();
+      }
+      frameThread.quitSafely();
+      if (!succeeded) {
+        outputFile.delete();
+      }
+    }
+  }
+
+  private void transcodeLoop(
+    MediaExtractor extractor,
+    MediaCodec decoder,
+    MediaCodec encoder,
+    MediaMuxer muxer,
+    EGLResourcesHolder eglResourcesHolder,
+    TextureRenderer textureRenderer,
+    SurfaceTexture surfaceTexture,
+    int texId,
+    int width,
+    int height
+  ) throws IOException {
+    MediaCodec.BufferInfo decoderInfo = new MediaCodec.BufferInfo();
+    MediaCodec.BufferInfo encoderInfo = new MediaCodec.BufferInfo();
+    float[] transformMatrix = new float[16];
+    boolean inputDone = false;
+    boolean decoderDone = false;
+    boolean encoderDone = false;
+    int muxerTrackIndex = -1;
+    while (!encoderDone) {
+      if (!inputDone) {
+        int inputIndex = decoder.dequeueInputBuffer(TIMEOUT_US);
+        if (inputIndex >= 0) {
+          ByteBuffer inputBuffer = decoder.getInputBuffer(inputIndex);
+          int sampleSize = inputBuffer != null ? extractor.readSampleData(inputBuffer, 0) : -1;
+          if (sampleSize < 0) {
+            decoder.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputDone = true;
+          } else {
+            decoder.queueInputBuffer(
+              inputIndex, 0, sampleSize, extractor.getSampleTime(), extractor.getSampleFlags());
+            extractor.advance();
+          }
+        }
+      }
+
+      boolean encoderOutputAvailable = true;
+      while (encoderOutputAvailable) {
+        int outputIndex = encoder.dequeueOutputBuffer(encoderInfo, 0);
+        if (outputIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
+          encoderOutputAvailable = false;
+        } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+          muxerTrackIndex = muxer.addTrack(encoder.getOutputFormat());
+          muxer.start();
+        } else if (outputIndex >= 0) {
+          ByteBuffer encodedData = encoder.getOutputBuffer(outputIndex);
+          boolean codecConfig = (encoderInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+          if (encodedData != null && encoderInfo.size != 0 && !codecConfig && muxerTrackIndex != -1) {
+            encodedData.position(encoderInfo.offset);
+            encodedData.limit(encoderInfo.offset + encoderInfo.size);
+            muxer.writeSampleData(muxerTrackIndex, encodedData, encoderInfo);
+          }
+          encoder.releaseOutputBuffer(outputIndex, false);
+          if ((encoderInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            encoderDone = true;
+            encoderOutputAvailable = false;
+          }
+        }
+      }
+
+      if (!decoderDone) {
+        int outputIndex = decoder.dequeueOutputBuffer(decoderInfo, TIMEOUT_US);
+        if (outputIndex >= 0) {
+          boolean render = decoderInfo.size != 0;
+          decoder.releaseOutputBuffer(outputIndex, render);
+          if (render) {
+            awaitFrame();
+            surfaceTexture.updateTexImage();
+            surfaceTexture.getTransformMatrix(transformMatrix);
+            GLES20.glViewport(0, 0, width, height);
+            textureRenderer.draw(texId, transformMatrix);
+            eglResourcesHolder.setPresentationTime(decoderInfo.presentationTimeUs * 1000);
+            eglResourcesHolder.swapBuffers();
+          }
+          if ((decoderInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            encoder.signalEndOfInputStream();
+            decoderDone = true;
+          }
+        }
+      }
+    }
+  }
+
+  private void awaitFrame() throws IOException {
+    synchronized (frameLock) {
+      long deadline = System.currentTimeMillis() + FRAME_WAIT_TIMEOUT_MS;
+      while (!frameAvailable) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          throw new IOException("Timed out waiting for a decoded frame");
+        }
+        try {
+          frameLock.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Proxy transcoding interrupted", e);
+        }
+      }
+      frameAvailable = false;
+    }
+  }
+
+  private static int getFrameRate(MediaFormat format) {
+    try {
+      return format.getInteger(MediaFormat.KEY_FRAME_RATE);
+    } catch (ClassCastException e) {
+      return Math.round(format.getFloat(MediaFormat.KEY_FRAME_RATE));
+    }
+  }
+
+  private static int selectTrack(MediaExtractor extractor) {
+    int numTracks = extractor.getTrackCount();
+    for (int i = 0; i < numTracks; i++) {
+      MediaFormat format = extractor.getTrackFormat(i);
+      String mime = format.getString(MediaFormat.KEY_MIME);
+      if (mime != null && mime.startsWith("video/")) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
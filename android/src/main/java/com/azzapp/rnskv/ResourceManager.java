@@ -0,0 +1,109 @@
+package com.azzapp.rnskv;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Releases the decoders of the idle players and extractors when the system is running low on
+ * memory. The released resources are restored by each of them on their next use, seeking back
+ * to the position they had.
+ */
+public class ResourceManager implements ComponentCallbacks2 {
+
+  private static final String TAG = "ResourceManager";
+
+  private static final ResourceManager instance = new ResourceManager();
+
+  // weakly referenced so that a resource never released by its owner can still be collected
+  private final Set<TrimmableResource> resources =
+    Collections.newSetFromMap(new WeakHashMap<>());
+
+  private boolean registered = false;
+
+  /**
+   * Registers a resource to be trimmed on memory pressure.
+   *
+   * @param resource the resource to register
+   */
+  public static void register(TrimmableResource resource) {
+    synchronized (instance) {
+      instance.resources.add(resource);
+      if (!instance.registered) {
+        Context context = ReactNativeSkiaVideoModule.currentReactApplicationContext();
+        if (context != null) {
+          context.getApplicationContext().registerComponentCallbacks(instance);
+          instance.registered = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Unregisters a resource, must be called when the resource is released.
+   *
+   * @param resource the resource to unregister
+   */
+  public static void unregister(TrimmableResource resource) {
+    synchronized (instance) {
+      instance.resources.remove(resource);
+    }
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+      trimAll(true);
+    } else if (level == TRIM_MEMORY_RUNNING_CRITICAL) {
+      // while the application is visible, the displayed resources would be restored right
+      // away, only the ones that are not displayed anymore are released
+      trimAll(false);
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    trimAll(false);
+  }
+
+  @Override
+  public void onConfigurationChanged(@NonNull Configuration newConfig) {
+  }
+
+  private void trimAll(boolean uiHidden) {
+    List<TrimmableResource> resourcesToTrim;
+    synchronized (this) {
+      resourcesToTrim = new ArrayList<>(resources);
+    }
+    for (TrimmableResource resource : resourcesToTrim) {
+      try {
+        resource.trimMemory(uiHidden);
+      } catch (Exception e) {
+        Log.w(TAG, "Failed to trim resource", e);
+      }
+    }
+    DirectBufferPool.clear();
+  }
+
+  /**
+   * A resource that can release its decoders and textures while it is idle.
+   */
+  public interface TrimmableResource {
+    /**
+     * Releases the decoders of the resource if it is not in use, called on the main thread.
+     *
+     * @param uiHidden true if the user interface of the application is hidden, false if the
+     *                 resource should only be released if it is not displayed
+     */
+    void trimMemory(boolean uiHidden);
+  }
+}
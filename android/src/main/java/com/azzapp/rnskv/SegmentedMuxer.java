@@ -0,0 +1,303 @@
+package com.azzapp.rnskv;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A muxer that splits an encoded video stream into self-contained MP4 segments.
+ * Each segment starts on a key frame and is finalized as soon as the next one starts,
+ * so completed segments can be consumed while the encoding is still running and remain
+ * playable if the encoding is interrupted.
+ */
+public class SegmentedMuxer {
+
+  private final SegmentSink sink;
+
+  private final long segmentDurationUs;
+
+  private final List<Segment> completedSegments = new ArrayList<>();
+
+  private MediaFormat format;
+
+  private MediaMuxer muxer;
+
+  private int trackIndex = -1;
+
+  private int segmentIndex = -1;
+
+  private long segmentStartTimeUs = 0;
+
+  private long lastSampleTimeUs = -1;
+
+  private long lastSampleDurationUs = 0;
+
+  private boolean keyFrameRequested = false;
+
+  private OnSegmentCompleteListener onSegmentCompleteListener;
+
+  /**
+   * Creates a new SegmentedMuxer.
+   *
+   * @param sink              the sink providing the output of each segment
+   * @param segmentDurationUs the minimum duration of a segment in microseconds, segments are cut
+   *                          on the first key frame following this duration
+   */
+  public SegmentedMuxer(SegmentSink sink, long segmentDurationUs) {
+    this.sink = sink;
+    this.segmentDurationUs = segmentDurationUs;
+  }
+
+  /**
+   * Sets the index of the first segment written by this muxer, used when appending
+   * to the segments of a previous export.
+   *
+   * @param index the index of the first segment
+   */
+  public void setFirstSegmentIndex(int index) {
+    segmentIndex = index - 1;
+  }
+
+  /**
+   * Sets the listener called on the muxing thread each time a segment has been finalized.
+   *
+   * @param onSegmentCompleteListener the listener to be called
+   */
+  public void setOnSegmentCompleteListener(OnSegmentCompleteListener onSegmentCompleteListener) {
+    this.onSegmentCompleteListener = onSegmentCompleteListener;
+  }
+
+  /**
+   * Sets the format of the muxed track, must be called before writing any sample.
+   *
+   * @param format the output format of the encoder
+   */
+  public void setOutputFormat(MediaFormat format) {
+    this.format = format;
+  }
+
+  /**
+   * Returns whether the encoder should be asked for a key frame so that the current segment
+   * can be closed. Returns true only once per segment.
+   *
+   * @param presentationTimeUs the presentation time of the next encoded frame
+   */
+  public boolean shouldRequestKeyFrame(long presentationTimeUs) {
+    if (muxer == null || keyFrameRequested) {
+      return false;
+    }
+    if (presentationTimeUs - segmentStartTimeUs >= segmentDurationUs) {
+      keyFrameRequested = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Writes an encoded sample, starting a new segment if needed.
+   *
+   * @param buffer the encoded data
+   * @param info   the buffer info of the encoded data
+   */
+  public void writeSampleData(ByteBuffer buffer, MediaCodec.BufferInfo info) throws IOException {
+    if (format == null) {
+      throw new IllegalStateException("output format has not been set");
+    }
+    boolean keyFrame = (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+    if (muxer == null ||
+      (keyFrame && info.presentationTimeUs - segmentStartTimeUs >= segmentDurationUs)) {
+      finishSegment(info.presentationTimeUs);
+      startSegment(info.presentationTimeUs);
+    }
+    muxer.writeSampleData(trackIndex, buffer, info);
+    if (lastSampleTimeUs >= 0) {
+      lastSampleDurationUs = info.presentationTimeUs - lastSampleTimeUs;
+    }
+    lastSampleTimeUs = info.presentationTimeUs;
+  }
+
+  /**
+   * Finalizes the current segment.
+   */
+  public void finish() throws IOException {
+    finishSegment(lastSampleTimeUs + lastSampleDurationUs);
+  }
+
+  /**
+   * @return the segments completed since the last call to this method
+   */
+  public synchronized List<Segment> pollCompletedSegments() {
+    List<Segment> segments = new ArrayList<>(completedSegments);
+    completedSegments.clear();
+    return segments;
+  }
+
+  /**
+   * Releases the muxer, finalizing the current segment if any so that it stays playable.
+   */
+  public void release() {
+    try {
+      finish();
+    } catch (Exception e) {
+      // the segment is lost, but the previous ones are still valid
+    }
+  }
+
+  private void startSegment(long presentationTimeUs) throws IOException {
+    segmentIndex++;
+    FileDescriptor fd = sink.openSegment(segmentIndex);
+    muxer = new MediaMuxer(fd, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    trackIndex = muxer.addTrack(format);
+    muxer.start();
+    segmentStartTimeUs = presentationTimeUs;
+    keyFrameRequested = false;
+  }
+
+  private void finishSegment(long endTimeUs) throws IOException {
+    if (muxer == null) {
+      return;
+    }
+    try {
+      muxer.stop();
+    } finally {
+      muxer.release();
+      muxer = null;
+      sink.closeSegment(segmentIndex);
+    }
+    Segment segment = new Segment(
+      segmentIndex,
+      sink.getSegmentLocation(segmentIndex),
+      segmentStartTimeUs,
+      Math.max(0, endTimeUs - segmentStartTimeUs)
+    );
+    synchronized (this) {
+      completedSegments.add(segment);
+    }
+    if (onSegmentCompleteListener != null) {
+      onSegmentCompleteListener.onSegmentComplete(segment);
+    }
+  }
+
+  /**
+   * Listener called when a segment has been finalized.
+   */
+  public interface OnSegmentCompleteListener {
+    void onSegmentComplete(Segment segment) throws IOException;
+  }
+
+  /**
+   * The destination of the segments produced by a SegmentedMuxer.
+   */
+  public interface SegmentSink {
+    /**
+     * Opens the output of a segment, the returned file descriptor must be seekable and writable.
+     *
+     * @param index the index of the segment
+     * @return the file descriptor to write the segment to
+     */
+    FileDescriptor openSegment(int index) throws IOException;
+
+    /**
+     * Called once the segment has been fully written.
+     *
+     * @param index the index of the segment
+     */
+    void closeSegment(int index) throws IOException;
+
+    /**
+     * @param index the index of the segment
+     * @return a description of the segment location (usually its path) reported to listeners
+     */
+    String getSegmentLocation(int index);
+  }
+
+  /**
+   * A sink writing each segment to a file next to the given output path,
+   * `/path/video.mp4` being split into `/path/video_00000.mp4`, `/path/video_00001.mp4`...
+   */
+  public static class FileSegmentSink implements SegmentSink {
+    private final String basePath;
+
+    private final String extension;
+
+    private final Map<Integer, RandomAccessFile> openedFiles = new HashMap<>();
+
+    public FileSegmentSink(String outputPath) {
+      int extensionIndex = outputPath.lastIndexOf('.');
+      if (extensionIndex > outputPath.lastIndexOf('/')) {
+        basePath = outputPath.substring(0, extensionIndex);
+        extension = outputPath.substring(extensionIndex);
+      } else {
+        basePath = outputPath;
+        extension = ".mp4";
+      }
+    }
+
+    @Override
+    public FileDescriptor openSegment(int index) throws IOException {
+      RandomAccessFile file = new RandomAccessFile(getSegmentLocation(index), "rw");
+      file.setLength(0);
+      openedFiles.put(index, file);
+      return file.getFD();
+    }
+
+    @Override
+    public void closeSegment(int index) throws IOException {
+      RandomAccessFile file = openedFiles.remove(index);
+      if (file != null) {
+        file.close();
+      }
+    }
+
+    @Override
+    public String getSegmentLocation(int index) {
+      return String.format(Locale.ROOT, "%s_%05d%s", basePath, index, extension);
+    }
+  }
+
+  /**
+   * A completed segment.
+   */
+  public static class Segment {
+    private final int index;
+
+    private final String location;
+
+    private final long startTimeUs;
+
+    private final long durationUs;
+
+    public Segment(int index, String location, long startTimeUs, long durationUs) {
+      this.index = index;
+      this.location = location;
+      this.startTimeUs = startTimeUs;
+      this.durationUs = durationUs;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    public long getStartTimeUs() {
+      return startTimeUs;
+    }
+
+    public long getDurationUs() {
+      return durationUs;
+    }
+  }
+}
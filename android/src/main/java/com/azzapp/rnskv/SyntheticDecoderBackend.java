@@ -0,0 +1,289 @@
+package com.azzapp.rnskv;
+
+import android.os.Handler;
+import android.view.Surface;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A deterministic {@link VideoDecoderBackend} that does not read any file and emits timestamped
+ * empty frames at a fixed frame rate, with a configurable decoding latency and jitter.
+ * Frames are never drawn to the surface, this backend is meant to measure and regression test
+ * the scheduling, pending frames, seek and synchronisation logic of the composition decoders
+ * independently of the device codecs.
+ */
+public class SyntheticDecoderBackend implements VideoDecoderBackend {
+
+  private static final int DEFAULT_MAX_PENDING_FRAMES = 8;
+
+  private static final long DEFAULT_SYNC_FRAME_INTERVAL_US = 1000000;
+
+  private final int width;
+
+  private final int height;
+
+  private final double frameRate;
+
+  private final long durationUs;
+
+  private final long latencyUs;
+
+  private final long jitterUs;
+
+  private final int maxPendingFrames;
+
+  private final long syncFrameIntervalUs;
+
+  private final long seed;
+
+  private Random random;
+
+  private ScheduledExecutorService executor;
+
+  private ScheduledFuture<?> scheduledFrame;
+
+  private Callback callback;
+
+  private Handler callbackHandler;
+
+  private long nextFrameIndex = 0;
+
+  private int pendingFrames = 0;
+
+  private int generation = 0;
+
+  private boolean syncFramesOnly = false;
+
+  private boolean inputEnded = false;
+
+  private boolean ended = false;
+
+  private boolean started = false;
+
+  private boolean released = false;
+
+  /**
+   * Creates a new SyntheticDecoderBackend.
+   *
+   * @param width               the width of the emitted frames
+   * @param height              the height of the emitted frames
+   * @param frameRate           the frame rate of the synthetic video
+   * @param durationUs          the duration of the synthetic video in microseconds
+   * @param latencyUs           the mean delay in microseconds between two decoded frames
+   * @param jitterUs            the maximum random deviation in microseconds of this delay
+   * @param maxPendingFrames    the maximum number of decoded frames not yet released, like the
+   *                            output buffers count of a codec
+   * @param syncFrameIntervalUs the interval in microseconds between two sync frames, seeks
+   *                            restart from the previous sync frame
+   * @param seed                the seed of the jitter random generator
+   */
+  public SyntheticDecoderBackend(
+    int width,
+    int height,
+    double frameRate,
+    long durationUs,
+    long latencyUs,
+    long jitterUs,
+    int maxPendingFrames,
+    long syncFrameIntervalUs,
+    long seed
+  ) {
+    this.width = width;
+    this.height = height;
+    this.frameRate = frameRate;
+    this.durationUs = durationUs;
+    this.latencyUs = latencyUs;
+    this.jitterUs = jitterUs;
+    this.maxPendingFrames = maxPendingFrames;
+    this.syncFrameIntervalUs = syncFrameIntervalUs;
+    this.seed = seed;
+  }
+
+  /**
+   * Returns a factory creating backends with the same settings for all the items of
+   * a composition, the duration of each synthetic video covering the item.
+   *
+   * @param width     the width of the emitted frames
+   * @param height    the height of the emitted frames
+   * @param frameRate the frame rate of the synthetic videos
+   * @param latencyUs the mean delay in microseconds between two decoded frames
+   * @param jitterUs  the maximum random deviation in microseconds of this delay
+   * @return the factory
+   */
+  public static Factory factory(
+    int width,
+    int height,
+    double frameRate,
+    long latencyUs,
+    long jitterUs
+  ) {
+    return item -> new SyntheticDecoderBackend(
+      width,
+      height,
+      frameRate,
+      TimeHelpers.secToUs(item.getStartTime() + item.getDuration()),
+      latencyUs,
+      jitterUs,
+      DEFAULT_MAX_PENDING_FRAMES,
+      DEFAULT_SYNC_FRAME_INTERVAL_US,
+      item.getId().hashCode()
+    );
+  }
+
+  @Override
+  public synchronized void prepare(String path, long startTimeUs) {
+    random = new Random(seed);
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ReactNativeSkiaVideo-SyntheticDecoder");
+      thread.setDaemon(true);
+      return thread;
+    });
+    nextFrameIndex = syncFrameIndexBefore(startTimeUs);
+  }
+
+  @Override
+  public int getVideoWidth() {
+    return width;
+  }
+
+  @Override
+  public int getVideoHeight() {
+    return height;
+  }
+
+  @Override
+  public int getRotation() {
+    return 0;
+  }
+
+  @Override
+  public synchronized void configure(Surface surface, Callback callback, Handler handler) {
+    this.callback = callback;
+    this.callbackHandler = handler;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (started || released) {
+      return;
+    }
+    started = true;
+    scheduleNextFrame();
+  }
+
+  @Override
+  public synchronized void endInput() {
+    inputEnded = true;
+  }
+
+  @Override
+  public synchronized void seekTo(long timeUs) {
+    if (scheduledFrame != null) {
+      scheduledFrame.cancel(false);
+      scheduledFrame = null;
+    }
+    // frames emitted before the seek are invalidated, like a codec flush
+    generation++;
+    pendingFrames = 0;
+    inputEnded = false;
+    ended = false;
+    nextFrameIndex = syncFrameIndexBefore(timeUs);
+    if (started) {
+      scheduleNextFrame();
+    }
+  }
+
+  @Override
+  public synchronized void setPlaybackSpeed(double speed) {
+    syncFramesOnly = speed >= SYNC_FRAMES_ONLY_SPEED;
+  }
+
+  @Override
+  public synchronized void releaseOutputBuffer(int index, boolean render) {
+    if (index >>> 16 != (generation & 0xFFFF) || pendingFrames == 0) {
+      return;
+    }
+    pendingFrames--;
+    if (scheduledFrame == null) {
+      scheduleNextFrame();
+    }
+  }
+
+  @Override
+  public synchronized void release() {
+    if (released) {
+      return;
+    }
+    released = true;
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private long syncFrameIndexBefore(long timeUs) {
+    long syncTimeUs = syncFrameIntervalUs > 0
+      ? (Math.max(0, timeUs) / syncFrameIntervalUs) * syncFrameIntervalUs
+      : Math.max(0, timeUs);
+    return (long) Math.ceil(syncTimeUs * frameRate / 1000000);
+  }
+
+  private long frameTimeUs(long frameIndex) {
+    return Math.round(frameIndex * 1000000 / frameRate);
+  }
+
+  private void scheduleNextFrame() {
+    if (released || ended || executor == null || pendingFrames >= maxPendingFrames) {
+      return;
+    }
+    long delayUs = latencyUs;
+    if (jitterUs > 0) {
+      delayUs += Math.round((random.nextDouble() * 2 - 1) * jitterUs);
+    }
+    int frameGeneration = generation;
+    scheduledFrame = executor.schedule(
+      () -> emitFrame(frameGeneration),
+      Math.max(0, delayUs),
+      TimeUnit.MICROSECONDS
+    );
+  }
+
+  private void emitFrame(int frameGeneration) {
+    int index;
+    long presentationTimeUs;
+    boolean endOfStream;
+    Callback callback;
+    Handler handler;
+    synchronized (this) {
+      if (released || frameGeneration != generation) {
+        return;
+      }
+      scheduledFrame = null;
+      presentationTimeUs = frameTimeUs(nextFrameIndex);
+      endOfStream = inputEnded || presentationTimeUs >= durationUs;
+      index = ((generation & 0xFFFF) << 16) | (int) (nextFrameIndex & 0xFFFF);
+      nextFrameIndex = syncFramesOnly
+        ? Math.max(nextFrameIndex + 1, syncFrameIndexBefore(presentationTimeUs + syncFrameIntervalUs))
+        : nextFrameIndex + 1;
+      pendingFrames++;
+      callback = this.callback;
+      handler = callbackHandler;
+      ended = endOfStream;
+      scheduleNextFrame();
+    }
+    // the callback is called outside of the lock, like MediaCodec callbacks
+    if (callback == null) {
+      return;
+    }
+    if (handler != null) {
+      handler.post(() ->
+        callback.onFrameDecoded(index, presentationTimeUs, endOfStream, endOfStream));
+    } else {
+      callback.onFrameDecoded(index, presentationTimeUs, endOfStream, endOfStream);
+    }
+  }
+}
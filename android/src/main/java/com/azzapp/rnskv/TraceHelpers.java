@@ -0,0 +1,65 @@
+package com.azzapp.rnskv;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Helpers to emit systrace / perfetto sections and counters from the decoding, rendering and
+ * encoding paths. Tracing is disabled by default and can be switched on at runtime, so that
+ * it costs a single volatile read when not in use.
+ */
+public class TraceHelpers {
+
+  private static volatile boolean enabled = false;
+
+  /**
+   * Enables or disables tracing.
+   */
+  public static void setEnabled(boolean enabled) {
+    TraceHelpers.enabled = enabled;
+  }
+
+  /**
+   * @return true if tracing is enabled
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Begins a trace section if tracing is enabled.
+   *
+   * @param sectionName the name of the section
+   * @return true if a section has been begun, to be passed to {@link #endSection(boolean)}
+   */
+  public static boolean beginSection(String sectionName) {
+    if (!enabled) {
+      return false;
+    }
+    Trace.beginSection(sectionName);
+    return true;
+  }
+
+  /**
+   * Ends a section begun with {@link #beginSection(String)}.
+   *
+   * @param begun the value returned by {@link #beginSection(String)}
+   */
+  public static void endSection(boolean begun) {
+    if (begun) {
+      Trace.endSection();
+    }
+  }
+
+  /**
+   * Updates a counter track if tracing is enabled (requires Android Q).
+   *
+   * @param counterName the name of the counter
+   * @param value       the value of the counter
+   */
+  public static void setCounter(String counterName, long value) {
+    if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      Trace.setCounter(counterName, value);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.azzapp.rnskv;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -28,6 +29,9 @@ public class VideoComposition {
   }
 
   public static class Item {
+    // maximum gap in seconds between two items considered contiguous, below a frame duration
+    private static final double CONTIGUITY_TOLERANCE = 0.001;
+
     private String id;
     private String path;
     private double compositionStartTime;
@@ -35,6 +39,10 @@ public class VideoComposition {
     private double duration;
     private int width = -1;
     private int height = -1;
+    private double speed = 1;
+    // pairs of (time, sourceTime) in seconds relative to the item start in the composition
+    // and in the video, flattened as [time0, sourceTime0, time1, sourceTime1, ...]
+    private double[] timeRemap;
 
     public Item() {
     }
@@ -80,5 +88,137 @@ public class VideoComposition {
     public int getHeight() {
       return height;
     }
+
+    /**
+     * @return the playback speed of the item, 2 meaning that the item video is played
+     * twice as fast in the composition
+     */
+    public double getSpeed() {
+      return speed;
+    }
+
+    /**
+     * @return the time remapping curve of the item, or null if the item is played at
+     * a constant speed
+     */
+    public double[] getTimeRemap() {
+      return timeRemap;
+    }
+
+    /**
+     * @return the duration in seconds of the item in the composition, which differs from
+     * its duration in the video when the item is not played at normal speed
+     */
+    public double getCompositionDuration() {
+      if (hasTimeRemap()) {
+        return timeRemap[timeRemap.length - 2];
+      }
+      return speed > 0 ? duration / speed : duration;
+    }
+
+    /**
+     * Converts a composition time to the time of the item video that should be displayed.
+     * Times before the item start are converted at normal speed, and times after the item
+     * end are clamped to the end of the item.
+     *
+     * @param compositionTimeUs the composition time in microseconds
+     * @return the presentation time in microseconds of the video
+     */
+    public long getSourceTimeUs(long compositionTimeUs) {
+      long startTimeUs = TimeHelpers.secToUs(startTime);
+      long itemTimeUs = compositionTimeUs - TimeHelpers.secToUs(compositionStartTime);
+      if (itemTimeUs <= 0) {
+        return startTimeUs + itemTimeUs;
+      }
+      double itemTime = Math.min(itemTimeUs / 1000000.0, getCompositionDuration());
+      double sourceTime;
+      if (hasTimeRemap()) {
+        sourceTime = timeRemap[timeRemap.length - 1];
+        for (int i = 2; i < timeRemap.length; i += 2) {
+          if (itemTime <= timeRemap[i]) {
+            double t0 = timeRemap[i - 2];
+            double s0 = timeRemap[i - 1];
+            double t1 = timeRemap[i];
+            double s1 = timeRemap[i + 1];
+            sourceTime = t1 > t0 ? s0 + (itemTime - t0) * (s1 - s0) / (t1 - t0) : s1;
+            break;
+          }
+        }
+      } else {
+        sourceTime = itemTime * speed;
+      }
+      return startTimeUs + TimeHelpers.secToUs(Math.max(0, Math.min(sourceTime, duration)));
+    }
+
+    /**
+     * Returns the speed at which the item video is played at the given composition time.
+     *
+     * @param compositionTimeUs the composition time in microseconds
+     * @return the ratio between the video time and the composition time elapsed
+     */
+    public double getSpeedAt(long compositionTimeUs) {
+      if (!hasTimeRemap()) {
+        return speed;
+      }
+      double itemTime =
+        (compositionTimeUs - TimeHelpers.secToUs(compositionStartTime)) / 1000000.0;
+      for (int i = 2; i < timeRemap.length; i += 2) {
+        if (itemTime <= timeRemap[i] || i == timeRemap.length - 2) {
+          double t0 = timeRemap[i - 2];
+          double t1 = timeRemap[i];
+          return t1 > t0 ? (timeRemap[i + 1] - timeRemap[i - 1]) / (t1 - t0) : 1;
+        }
+      }
+      return 1;
+    }
+
+    /**
+     * @param other another item
+     * @return true if the other item is played at the same times from the same times
+     * of its video
+     */
+    public boolean hasSameTiming(Item other) {
+      return compositionStartTime == other.compositionStartTime
+        && startTime == other.startTime
+        && duration == other.duration
+        && speed == other.speed
+        && Arrays.equals(timeRemap, other.timeRemap);
+    }
+
+    /**
+     * @param next another item
+     * @return true if the other item plays the video of this item from where this item ends,
+     * starting in the composition when this item ends, at normal speed and the same resolution,
+     * so that both items can be decoded as a single stream
+     */
+    public boolean isContinuedBy(Item next) {
+      // before its start, an item is converted to video times at normal speed, so the items
+      // of a stream only expect the frames of the stream at their own times at normal speed
+      return path.equals(next.path)
+        && !hasTimeRemap() && !next.hasTimeRemap()
+        && speed == 1 && next.speed == 1
+        && width == next.width
+        && height == next.height
+        && Math.abs(next.compositionStartTime - (compositionStartTime + getCompositionDuration()))
+        < CONTIGUITY_TOLERANCE
+        && Math.abs(next.startTime - (startTime + duration)) < CONTIGUITY_TOLERANCE;
+    }
+
+    /**
+     * @param next an item continuing this item, see {@link #isContinuedBy(Item)}
+     * @return an item with the id of this item playing this item then the other one
+     */
+    public Item joinWith(Item next) {
+      Item item = new Item(
+        id, path, compositionStartTime, startTime, next.startTime + next.duration - startTime);
+      item.width = width;
+      item.height = height;
+      item.speed = speed;
+      return item;
+    }
+
+    private boolean hasTimeRemap() {
+      return timeRemap != null && timeRemap.length >= 4;
+    }
   }
 }
@@ -1,21 +1,71 @@
 package com.azzapp.rnskv;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import javax.microedition.khronos.egl.EGLContext;
 
 /**
  * A class to decode a video composition and extract frames from the video items.
+ * <p>
+ * Contiguous items playing the same video, such as the parts of a split clip, are decoded as
+ * a single stream (see {@link VideoComposition.Item#isContinuedBy}) so that the decoding goes
+ * on across their cuts. The frames of a stream are reported for all its items, an item of a
+ * stream reporting the frames of the other items outside of its own time range.
  */
 public class VideoCompositionDecoder {
 
-  private final VideoComposition composition;
+  private static final String TAG = "VideoCompositionDecoder";
+
+  /**
+   * The duration before the end of the composition from which its start can be pre-rolled
+   * with {@link #prerollLoop()}, the items starting later having as long to be seeked.
+   */
+  public static final long LOOP_PREROLL_US = 1000000;
+
+  // maximum number of items opened at the same time, shared by all the compositions
+  private static final int MAX_PARALLEL_PREPARES =
+    Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+  private static final long PREPARE_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+  private static ExecutorService prepareExecutor;
+
+  private VideoComposition composition;
+
+  // the items as decoded, each of them playing one or several items of the composition
+  private List<VideoComposition.Item> streamItems;
+
+  // the items of the composition played by each stream item, replaced on each update so that
+  // it can be read without locking by the listeners of the items decoders
+  private volatile Map<VideoComposition.Item, List<VideoComposition.Item>> streamsMembers;
+
+  private final VideoDecoderBackend.Factory backendFactory;
 
   private final HashMap<VideoComposition.Item, VideoCompositionItemDecoder> decoders;
 
   private EGLResourcesHolder eglResourcesHolder;
 
+  // the looper of the preparing thread, on which the items codecs report their frames
+  private Handler callbackHandler;
+
   private final HashMap<VideoComposition.Item, GLFrameExtractor> glFrameExtractors;
 
   private final HashMap<String, VideoFrame> videoFrames = new HashMap<>();
@@ -26,73 +76,455 @@ public class VideoCompositionDecoder {
 
   private OnErrorListener onErrorListener;
 
+  private boolean started = false;
+
+  private double playbackRate = 1;
+
   private OnItemEndReachedListener onItemEndReachedListener;
 
+  private OnItemPreparedListener onItemPreparedListener;
+
+  private OnPreparedListener onPreparedListener;
+
+  private final Set<VideoCompositionItemDecoder> preparingDecoders = new HashSet<>();
+
+  private boolean preparedDispatched = false;
+
+  private boolean trimmed = false;
+
+  // fence signaled once the last updated frames are rendered, until handed over to a frame table
+  private long framesFence = 0;
+
+  private FrameTextureCache frameTextureCache;
+
+  private boolean frameCachingEnabled = false;
+
+  // frames of the cache served by the last seek, rendered by the next update of the frames
+  private Map<String, FrameTextureCache.Entry> pendingCachedFrames;
+
+  // position of the last seek served by the frame cache, the decoders being only seeked to it
+  // once their frames are needed again, -1 if none
+  private long deferredSeekPosition = -1;
+
+  // second decoders of the items starting the composition, decoding its start before it loops
+  private final HashMap<VideoComposition.Item, LoopPreroll> loopPrerolls = new HashMap<>();
+
+  private boolean loopPrerollRequested = false;
+
+  // image readers replaced by pre-rolled ones, released once the new ones have a frame
+  private final HashMap<String, GLFrameExtractor> swappedOutFrameExtractors = new HashMap<>();
+
+  // image readers to release on the next update of the frames, where the context is current
+  private final List<GLFrameExtractor> retiredFrameExtractors = new ArrayList<>();
+
+  private static class LoopPreroll {
+    VideoCompositionItemDecoder decoder;
+    final GLFrameExtractor glFrameExtractor = new GLFrameExtractor();
+    boolean firstFrameRendered = false;
+    // the events of the decoder are only dispatched once it replaces the item decoder
+    volatile boolean promoted = false;
+  }
+
   /**
-   * Creates a new video composition decoder.
+   * Creates a new video composition decoder decoding the items with MediaCodec.
    *
    * @param composition The video composition to decode.
    */
   public VideoCompositionDecoder(VideoComposition composition) {
+    this(composition, item -> new MediaCodecDecoderBackend());
+  }
+
+  /**
+   * Creates a new video composition decoder.
+   *
+   * @param composition    The video composition to decode.
+   * @param backendFactory The factory creating the backend decoding each item.
+   */
+  public VideoCompositionDecoder(
+    VideoComposition composition,
+    VideoDecoderBackend.Factory backendFactory
+  ) {
     this.composition = composition;
+    this.backendFactory = backendFactory;
     decoders = new HashMap<>();
     glFrameExtractors = new HashMap<>();
-    composition.getItems().forEach(item -> {
-      VideoCompositionItemDecoder decoder = new VideoCompositionItemDecoder(item);
-      decoder.setOnErrorListener(error -> {
-        if (onErrorListener != null) {
-          onErrorListener.onError(error);
-        }
-      });
+    setStreams(composition);
+    streamItems.forEach(item -> decoders.put(item, createItemDecoder(item)));
+  }
 
-      decoder.setOnFrameAvailableListener(presentationTimeUs -> {
-        if (onFrameAvailableListener != null) {
-          onFrameAvailableListener.onFrameAvailable(item, presentationTimeUs);
+  private void setStreams(VideoComposition composition) {
+    List<VideoComposition.Item> sortedItems = new ArrayList<>(composition.getItems());
+    sortedItems.sort(Comparator.comparingDouble(VideoComposition.Item::getCompositionStartTime));
+    List<List<VideoComposition.Item>> chains = new ArrayList<>();
+    for (VideoComposition.Item item : sortedItems) {
+      List<VideoComposition.Item> continuedChain = null;
+      for (List<VideoComposition.Item> chain : chains) {
+        if (chain.get(chain.size() - 1).isContinuedBy(item)) {
+          continuedChain = chain;
+          break;
         }
-      });
+      }
+      if (continuedChain != null) {
+        continuedChain.add(item);
+      } else {
+        List<VideoComposition.Item> chain = new ArrayList<>();
+        chain.add(item);
+        chains.add(chain);
+      }
+    }
+    List<VideoComposition.Item> items = new ArrayList<>();
+    Map<VideoComposition.Item, List<VideoComposition.Item>> members = new HashMap<>();
+    for (List<VideoComposition.Item> chain : chains) {
+      // an item decoded alone is its own stream item
+      VideoComposition.Item streamItem = chain.get(0);
+      for (int i = 1; i < chain.size(); i++) {
+        streamItem = streamItem.joinWith(chain.get(i));
+      }
+      items.add(streamItem);
+      members.put(streamItem, Collections.unmodifiableList(chain));
+    }
+    streamItems = items;
+    streamsMembers = members;
+  }
 
-      decoder.setOnEndReachedListener(() -> {
-        if (onItemEndReachedListener != null) {
-          onItemEndReachedListener.onItemEndReached(item);
-        }
-      });
-      decoders.put(item, decoder);
+  private List<VideoComposition.Item> getMembers(VideoComposition.Item streamItem) {
+    List<VideoComposition.Item> members = streamsMembers.get(streamItem);
+    return members != null ? members : Collections.singletonList(streamItem);
+  }
+
+  private VideoCompositionItemDecoder createItemDecoder(VideoComposition.Item item) {
+    return createItemDecoder(item, () -> true);
+  }
+
+  private VideoCompositionItemDecoder createItemDecoder(
+    VideoComposition.Item item, BooleanSupplier dispatchEvents) {
+    VideoCompositionItemDecoder decoder =
+      new VideoCompositionItemDecoder(item, backendFactory.create(item));
+    decoder.setPlaybackRate(playbackRate);
+    decoder.setOnErrorListener(error -> {
+      if (onErrorListener != null) {
+        onErrorListener.onError(error);
+      }
+    });
+
+    // the item of a decoder changes when the composition is updated, so it is read
+    // from the decoder when the events are dispatched
+    decoder.setOnFrameAvailableListener(presentationTimeUs -> {
+      if (onFrameAvailableListener != null && dispatchEvents.getAsBoolean()) {
+        getMembers(decoder.getItem()).forEach(member ->
+          onFrameAvailableListener.onFrameAvailable(member, presentationTimeUs));
+      }
+    });
+
+    decoder.setOnEndReachedListener(() -> {
+      if (onItemEndReachedListener != null && dispatchEvents.getAsBoolean()) {
+        getMembers(decoder.getItem()).forEach(onItemEndReachedListener::onItemEndReached);
+      }
     });
+    return decoder;
   }
 
   /**
-   * Prepares the items decoders and the image readers.
+   * Prepares the items decoders and the image readers, blocking until all the items
+   * are prepared. The items are opened in parallel, their decoded frames being reported
+   * on the looper of the calling thread.
    */
   public void prepare(EGLContext sharedContext) {
+    List<Future<?>> futures = new ArrayList<>();
+    synchronized (this) {
+      prepareEGL(sharedContext);
+      decoders.values().forEach(decoder -> futures.add(prepareItemDecoder(decoder, true)));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Prepares the image readers and starts opening the items in parallel in the background,
+   * returning immediately. Each item is started as soon as it is prepared if the decoder has
+   * been started, the listeners being notified of each prepared item and once all the items
+   * are prepared. The decoded frames are reported on the looper of the calling thread.
+   */
+  public synchronized void prepareAsync(EGLContext sharedContext) {
+    prepareEGL(sharedContext);
+    decoders.values().forEach(decoder -> prepareItemDecoder(decoder, false));
+    if (preparingDecoders.isEmpty()) {
+      dispatchPrepared();
+    }
+  }
+
+  private void prepareEGL(EGLContext sharedContext) {
     eglResourcesHolder = EGLResourcesHolder.createWithPBBufferSurface(sharedContext);
     eglResourcesHolder.makeCurrent();
-    decoders.values().forEach(decoder -> {
+    Looper looper = Looper.myLooper();
+    callbackHandler = looper != null ? new Handler(looper) : null;
+  }
+
+  /**
+   * Prepares an item decoder in the background, a failure being either rethrown by the
+   * returned future when it is awaited, or reported to the error listener.
+   */
+  private Future<?> prepareItemDecoder(VideoCompositionItemDecoder decoder, boolean awaited) {
+    // the image readers need the EGL context, only the opening of the video is done
+    // in the background
+    GLFrameExtractor glFrameExtractor = new GLFrameExtractor();
+    listenImageAvailable(glFrameExtractor, decoder);
+    glFrameExtractors.put(decoder.getItem(), glFrameExtractor);
+    decoder.setCallbackHandler(callbackHandler);
+    decoder.setSurface(glFrameExtractor.getSurface());
+    preparingDecoders.add(decoder);
+    return getPrepareExecutor().submit(() -> {
       try {
         decoder.prepare();
-
-        VideoComposition.Item item = decoder.getItem();
-        GLFrameExtractor glFrameExtractor = new GLFrameExtractor();
-
-        glFrameExtractor.setOnFrameAvailableListener(() -> {
-          if (onItemImageAvailableListener != null) {
-            onItemImageAvailableListener.onItemImageAvailable(item);
-          }
-        });
-        glFrameExtractors.put(item, glFrameExtractor);
-        decoder.setSurface(glFrameExtractor.getSurface());
       } catch (Exception e) {
-        throw new RuntimeException(e);
+        onItemDecoderPrepareFailed(decoder);
+        if (awaited) {
+          throw e;
+        }
+        if (onErrorListener != null) {
+          onErrorListener.onError(e);
+        }
+        return null;
       }
+      onItemDecoderPrepared(decoder);
+      return null;
     });
   }
 
+  private void listenImageAvailable(
+    GLFrameExtractor glFrameExtractor, VideoCompositionItemDecoder decoder) {
+    glFrameExtractor.setOnFrameAvailableListener(() -> {
+      if (onItemImageAvailableListener != null) {
+        getMembers(decoder.getItem())
+          .forEach(onItemImageAvailableListener::onItemImageAvailable);
+      }
+    });
+  }
+
+  private synchronized void onItemDecoderPrepareFailed(VideoCompositionItemDecoder decoder) {
+    // the other items can still be played
+    if (preparingDecoders.remove(decoder) && preparingDecoders.isEmpty()) {
+      dispatchPrepared();
+    }
+  }
+
+  private synchronized void onItemDecoderPrepared(VideoCompositionItemDecoder decoder) {
+    if (!preparingDecoders.remove(decoder)) {
+      // the item has been removed while it was prepared
+      return;
+    }
+    if (started) {
+      decoder.start();
+    }
+    if (onItemPreparedListener != null) {
+      getMembers(decoder.getItem()).forEach(onItemPreparedListener::onItemPrepared);
+    }
+    if (preparingDecoders.isEmpty()) {
+      dispatchPrepared();
+    }
+  }
+
+  private void dispatchPrepared() {
+    if (preparedDispatched) {
+      return;
+    }
+    preparedDispatched = true;
+    if (onPreparedListener != null) {
+      onPreparedListener.onPrepared();
+    }
+  }
+
+  private static synchronized ExecutorService getPrepareExecutor() {
+    if (prepareExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        MAX_PARALLEL_PREPARES,
+        MAX_PARALLEL_PREPARES,
+        PREPARE_THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "ReactNativeSkiaVideo-Prepare");
+          thread.setDaemon(true);
+          return thread;
+        }
+      );
+      executor.allowCoreThreadTimeOut(true);
+      prepareExecutor = executor;
+    }
+    return prepareExecutor;
+  }
+
   /**
    * Starts the decoders.
    */
-  public void start() {
+  public synchronized void start() {
+    started = true;
     decoders.values().forEach(VideoCompositionItemDecoder::start);
   }
 
+  /**
+   * Updates the decoded composition, the decoders of the items whose id and path are unchanged
+   * are kept, retimed items being only seeked to the given position. Decoders are only created
+   * for added items and released for removed ones, the items decoded as a single stream being
+   * identified by the id of their first item.
+   * Must be called on the thread that prepared the decoder.
+   *
+   * @param composition     The new video composition.
+   * @param currentPosition The current position in microseconds in the composition.
+   */
+  public synchronized void update(VideoComposition composition, long currentPosition) {
+    HashMap<String, VideoComposition.Item> previousItems = new HashMap<>();
+    streamItems.forEach(item -> previousItems.put(item.getId(), item));
+    this.composition = composition;
+    setStreams(composition);
+
+    applyDeferredSeek();
+    cancelLoopPreroll();
+    if (eglResourcesHolder != null) {
+      eglResourcesHolder.makeCurrent();
+    }
+    for (VideoComposition.Item item : streamItems) {
+      VideoComposition.Item previousItem = previousItems.get(item.getId());
+      if (previousItem == null
+        || !previousItem.getPath().equals(item.getPath())
+        || previousItem.getWidth() != item.getWidth()
+        || previousItem.getHeight() != item.getHeight()) {
+        removeCachedFrames(item.getId());
+      }
+      if (previousItem != null && previousItem.getPath().equals(item.getPath())) {
+        previousItems.remove(item.getId());
+        VideoCompositionItemDecoder decoder = decoders.remove(previousItem);
+        GLFrameExtractor glFrameExtractor = glFrameExtractors.remove(previousItem);
+        if (decoder == null) {
+          continue;
+        }
+        decoder.setItem(item);
+        decoders.put(item, decoder);
+        if (glFrameExtractor != null) {
+          glFrameExtractors.put(item, glFrameExtractor);
+        }
+        if (!previousItem.hasSameTiming(item)) {
+          decoder.seekTo(currentPosition);
+        }
+        continue;
+      }
+      VideoCompositionItemDecoder decoder = createItemDecoder(item);
+      decoders.put(item, decoder);
+      // a trimmed decoder prepares its items when restored
+      if (eglResourcesHolder != null && !trimmed) {
+        // the seek is applied once the item is prepared, and the item started if needed
+        if (currentPosition > TimeHelpers.secToUs(item.getCompositionStartTime())) {
+          decoder.seekTo(currentPosition);
+        }
+        prepareItemDecoder(decoder, false);
+      }
+    }
+    // remaining items have been removed or their video has changed
+    previousItems.values().forEach(item -> {
+      VideoCompositionItemDecoder decoder = decoders.remove(item);
+      if (decoder != null) {
+        preparingDecoders.remove(decoder);
+        decoder.release();
+      }
+      GLFrameExtractor glFrameExtractor = glFrameExtractors.remove(item);
+      if (glFrameExtractor != null) {
+        glFrameExtractor.release();
+      }
+      GLFrameExtractor swappedOutFrameExtractor = swappedOutFrameExtractors.remove(item.getId());
+      if (swappedOutFrameExtractor != null) {
+        swappedOutFrameExtractor.release();
+      }
+      if (streamItems.stream().noneMatch(it -> it.getId().equals(item.getId()))) {
+        removeCachedFrames(item.getId());
+      }
+    });
+    videoFrames.keySet().removeIf(id ->
+      composition.getItems().stream().noneMatch(it -> it.getId().equals(id)));
+    if (eglResourcesHolder != null && preparingDecoders.isEmpty()) {
+      dispatchPrepared();
+    }
+  }
+
+  private void removeCachedFrames(String itemId) {
+    if (frameTextureCache != null) {
+      frameTextureCache.removeItem(itemId);
+      pendingCachedFrames = null;
+    }
+  }
+
+  /**
+   * Releases the items decoders, keeping the EGL context, so that they can be restored with
+   * {@link #restore(long)}. The image readers holding the displayed frames are kept until the
+   * restored items have a frame, the frame cache being discarded.
+   */
+  public synchronized void trim() {
+    if (trimmed || eglResourcesHolder == null) {
+      return;
+    }
+    trimmed = true;
+    // the item decoders are replaced by unprepared ones, restored by preparing them again
+    new ArrayList<>(decoders.keySet()).forEach(item -> {
+      VideoCompositionItemDecoder decoder = decoders.get(item);
+      preparingDecoders.remove(decoder);
+      decoder.release();
+      decoders.put(item, createItemDecoder(item));
+    });
+    cancelLoopPreroll();
+    EGLUtils.runWithContext(eglResourcesHolder, () -> {
+      glFrameExtractors.forEach((item, glFrameExtractor) -> {
+        // an image reader without any frame yet is not the one displayed
+        if (swappedOutFrameExtractors.containsKey(item.getId())) {
+          glFrameExtractor.release();
+        } else {
+          swappedOutFrameExtractors.put(item.getId(), glFrameExtractor);
+        }
+      });
+      releaseRetiredFrameExtractors();
+      if (frameTextureCache != null) {
+        frameTextureCache.clear();
+      }
+    });
+    glFrameExtractors.clear();
+    pendingCachedFrames = null;
+    deferredSeekPosition = -1;
+  }
+
+  /**
+   * Prepares again the items decoders and image readers released by {@link #trim()}, the
+   * items being opened in the background and seeked to the given position.
+   * Must be called on the thread that prepared the decoder.
+   *
+   * @param currentPosition The current position in microseconds in the composition.
+   */
+  public synchronized void restore(long currentPosition) {
+    if (!trimmed) {
+      return;
+    }
+    trimmed = false;
+    eglResourcesHolder.makeCurrent();
+    decoders.forEach((item, decoder) -> {
+      if (currentPosition > TimeHelpers.secToUs(item.getCompositionStartTime())) {
+        decoder.seekTo(currentPosition);
+      }
+      prepareItemDecoder(decoder, false);
+    });
+  }
+
+  /**
+   * @return true if the resources of the decoder have been released by {@link #trim()}
+   */
+  public synchronized boolean isTrimmed() {
+    return trimmed;
+  }
+
   /**
    * Sets the listener to be called when an image is available.
    *
@@ -129,6 +561,26 @@ public class VideoCompositionDecoder {
     this.onItemEndReachedListener = onItemEndReachedListener;
   }
 
+  /**
+   * Sets the listener to be called when an item prepared in the background is ready
+   * to be decoded.
+   *
+   * @param onItemPreparedListener The listener to be called.
+   */
+  public void setOnItemPreparedListener(OnItemPreparedListener onItemPreparedListener) {
+    this.onItemPreparedListener = onItemPreparedListener;
+  }
+
+  /**
+   * Sets the listener to be called once all the items prepared in the background are ready
+   * to be decoded.
+   *
+   * @param onPreparedListener The listener to be called.
+   */
+  public void setOnPreparedListener(OnPreparedListener onPreparedListener) {
+    this.onPreparedListener = onPreparedListener;
+  }
+
   /**
    * Renders the video composition at the given position.
    *
@@ -137,25 +589,102 @@ public class VideoCompositionDecoder {
    */
   public synchronized Map<String, Long> render(long currentPositionUs) {
     Map<String, Long> renderedTimes = new HashMap<>();
+    if (deferredSeekPosition != -1) {
+      // the decoders still hold the frames of their position before the seek
+      return renderedTimes;
+    }
     decoders.forEach((item, decoder) -> {
-      renderedTimes.put(item.getId(), decoder.render(currentPositionUs));
+      Long renderedTime = decoder.render(currentPositionUs);
+      getMembers(item).forEach(member -> renderedTimes.put(member.getId(), renderedTime));
+    });
+    // the first frame of the pre-rolled items is rendered to their image reader in advance,
+    // the next ones being kept by their decoder until the composition loops
+    loopPrerolls.values().forEach(preroll -> {
+      if (!preroll.firstFrameRendered && preroll.decoder.render(0) != null) {
+        preroll.firstFrameRendered = true;
+      }
     });
     return renderedTimes;
   }
 
+  /**
+   * Sets the rate at which the composition is played.
+   *
+   * @param rate The playback rate, 1 being the normal speed.
+   */
+  public synchronized void setPlaybackRate(double rate) {
+    playbackRate = rate;
+    decoders.values().forEach(decoder -> decoder.setPlaybackRate(rate));
+    loopPrerolls.values().forEach(preroll -> preroll.decoder.setPlaybackRate(rate));
+  }
+
+  /**
+   * @return the number of decoded frames that have been skipped without being rendered
+   * because a more recent frame was due
+   */
+  public synchronized long getDroppedFrames() {
+    long droppedFrames = 0;
+    for (VideoCompositionItemDecoder decoder : decoders.values()) {
+      droppedFrames += decoder.getDroppedFrames();
+    }
+    return droppedFrames;
+  }
+
+  /**
+   * @return the number of frames rendered by the items decoders
+   */
+  public synchronized long getRenderedFrames() {
+    long renderedFrames = 0;
+    for (VideoCompositionItemDecoder decoder : decoders.values()) {
+      renderedFrames += decoder.getRenderedFrames();
+    }
+    return renderedFrames;
+  }
+
+  /**
+   * @return the number of frames rendered late by the items decoders
+   */
+  public synchronized long getLateFrames() {
+    long lateFrames = 0;
+    for (VideoCompositionItemDecoder decoder : decoders.values()) {
+      lateFrames += decoder.getLateFrames();
+    }
+    return lateFrames;
+  }
+
+  /**
+   * @return the delays between the decoding and the rendering of the frames of each item,
+   * by item id
+   */
+  public synchronized Map<String, LatencyHistogram> getItemsDisplayLatencyHistograms() {
+    Map<String, LatencyHistogram> histograms = new HashMap<>();
+    decoders.forEach((item, decoder) -> getMembers(item).forEach(member ->
+      histograms.put(member.getId(), decoder.getDisplayLatencyHistogram())));
+    return histograms;
+  }
+
   /**
    * Updates the video frames of the composition and return them
    *
    * @return A map with the updated video frames.
    */
-  public Map<String, VideoFrame> updateVideosFrames() {
-    for (VideoComposition.Item item : composition.getItems()) {
+  public synchronized Map<String, VideoFrame> updateVideosFrames() {
+    boolean updated = false;
+    if (eglResourcesHolder != null && !trimmed) {
+      eglResourcesHolder.makeCurrent();
+      releaseRetiredFrameExtractors();
+      createLoopPrerolls();
+    }
+    for (VideoComposition.Item item : streamItems) {
       GLFrameExtractor glFrameExtractor = glFrameExtractors.get(item);
       VideoCompositionItemDecoder decoder = decoders.get(item);
       if (eglResourcesHolder == null || glFrameExtractor == null || decoder == null) {
         continue;
       }
       eglResourcesHolder.makeCurrent();
+      if (frameCachingEnabled && frameTextureCache == null) {
+        frameTextureCache = new FrameTextureCache(FrameTextureCache.DEFAULT_BUDGET_BYTES);
+      }
       int itemWidth = item.getWidth();
       int itemHeight = item.getHeight();
       boolean shouldDownScale = itemWidth > 0 && itemHeight > 0;
@@ -165,42 +694,260 @@ public class VideoCompositionDecoder {
         int temp = frameWidth;
         frameWidth = frameHeight;
         frameHeight = temp;
-      } 
-      if (!glFrameExtractor.decodeNextFrame(frameWidth, frameHeight)) {
+      }
+      FrameTextureCache.Entry cachedFrame =
+        pendingCachedFrames != null ? pendingCachedFrames.get(item.getId()) : null;
+      if (cachedFrame != null) {
+        glFrameExtractor.renderCachedFrame(
+          frameTextureCache, cachedFrame, frameWidth, frameHeight);
+      } else if (deferredSeekPosition != -1) {
+        // a frame released before the seek must not replace the cached one
+        glFrameExtractor.discardFrame();
+        continue;
+      } else if (!glFrameExtractor.decodeNextFrame(frameWidth, frameHeight)) {
         continue;
+      } else if (frameCachingEnabled) {
+        frameTextureCache.put(
+          item.getId(),
+          TimeHelpers.nsecToUs(glFrameExtractor.getLatestTimeStampNs()),
+          glFrameExtractor.getOutputTexId(),
+          frameWidth,
+          frameHeight
+        );
       }
       VideoFrame nextFrame = new VideoFrame(
         glFrameExtractor.getOutputTexId(),
         frameWidth, frameHeight, 0,
         glFrameExtractor.getLatestTimeStampNs()
       );
-      String id = item.getId();
-      videoFrames.put(id, nextFrame);
+      getMembers(item).forEach(member -> videoFrames.put(member.getId(), nextFrame));
+      updated = true;
+      GLFrameExtractor swappedOutFrameExtractor = swappedOutFrameExtractors.remove(item.getId());
+      if (swappedOutFrameExtractor != null) {
+        swappedOutFrameExtractor.release();
+      }
+    }
+    pendingCachedFrames = null;
+    if (updated) {
+      // a fence that was not handed over is covered by the new one
+      EGLUtils.deleteFence(framesFence);
+      framesFence = eglResourcesHolder.insertFence();
     }
     return videoFrames;
   }
 
   /**
-   * Seeks to the given position.
+   * Writes the current video frames of the composition items to a frame table, along with the
+   * fence signaled once the frames updated since the last call are rendered. The reader of the
+   * table is responsible for waiting for the fence and deleting it.
+   *
+   * @param table The table to write the frames to.
+   */
+  public synchronized void writeVideosFrames(VideoFrameTable table) {
+    table.write(composition.getItems(), videoFrames, framesFence);
+    framesFence = 0;
+  }
+
+  /**
+   * Seeks to the given position. When the frame caching is enabled and the frames of all the
+   * items at this position are cached, they are rendered by the next update of the frames and
+   * the decoders are left untouched until {@link #applyDeferredSeek()} is called.
    *
    * @param position The position to seek to in microseconds.
    */
   synchronized public void seekTo(long position) {
+    if (seekToCachedFrames(position)) {
+      return;
+    }
+    deferredSeekPosition = -1;
+    pendingCachedFrames = null;
+    cancelLoopPreroll();
     decoders.values().forEach(itemDecoder -> itemDecoder.seekTo(position));
   }
 
+  /**
+   * Starts decoding the start of the composition in the background with a second decoder for
+   * each item starting before {@link #LOOP_PREROLL_US}, so that {@link #loopToStart()} displays
+   * their first frames without waiting for a seek. The decoders are created on the next update
+   * of the frames, calling this method again being a no-op until the pre-roll is cancelled.
+   */
+  synchronized public void prerollLoop() {
+    if (!trimmed) {
+      loopPrerollRequested = true;
+    }
+  }
+
+  private void createLoopPrerolls() {
+    if (!loopPrerollRequested) {
+      return;
+    }
+    loopPrerollRequested = false;
+    for (VideoComposition.Item item : streamItems) {
+      if (TimeHelpers.secToUs(item.getCompositionStartTime()) >= LOOP_PREROLL_US
+        || loopPrerolls.containsKey(item)
+        || !decoders.containsKey(item)) {
+        continue;
+      }
+      LoopPreroll preroll = new LoopPreroll();
+      preroll.decoder = createItemDecoder(item, () -> preroll.promoted);
+      preroll.decoder.setCallbackHandler(callbackHandler);
+      preroll.decoder.setSurface(preroll.glFrameExtractor.getSurface());
+      loopPrerolls.put(item, preroll);
+      // the decoder is prepared without any seek, from the start of the item
+      getPrepareExecutor().execute(() -> {
+        try {
+          preroll.decoder.prepare();
+        } catch (Exception e) {
+          // the item is seeked when the composition loops
+          Log.w(TAG, "Failed to pre-roll the loop of item " + item.getId(), e);
+          return;
+        }
+        synchronized (this) {
+          if (started && loopPrerolls.get(item) == preroll) {
+            preroll.decoder.start();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Seeks to the start of the composition when it loops. The items whose first frame has been
+   * pre-rolled by {@link #prerollLoop()} switch to their second decoder, already positioned at
+   * the start, the other items being seeked.
+   */
+  synchronized public void loopToStart() {
+    deferredSeekPosition = -1;
+    pendingCachedFrames = null;
+    for (VideoComposition.Item item : new ArrayList<>(decoders.keySet())) {
+      VideoCompositionItemDecoder decoder = decoders.get(item);
+      LoopPreroll preroll = loopPrerolls.remove(item);
+      if (preroll == null || !preroll.firstFrameRendered) {
+        if (preroll != null) {
+          releaseLoopPreroll(preroll);
+        }
+        decoder.seekTo(0);
+        continue;
+      }
+      decoder.release();
+      preroll.decoder.carryOverStats(decoder);
+      preroll.promoted = true;
+      listenImageAvailable(preroll.glFrameExtractor, preroll.decoder);
+      decoders.put(item, preroll.decoder);
+      // the previous image reader still holds the displayed frame of the item
+      GLFrameExtractor previous = glFrameExtractors.put(item, preroll.glFrameExtractor);
+      if (previous != null) {
+        GLFrameExtractor replaced = swappedOutFrameExtractors.put(item.getId(), previous);
+        if (replaced != null) {
+          retiredFrameExtractors.add(replaced);
+        }
+      }
+    }
+    cancelLoopPreroll();
+  }
+
+  /**
+   * Releases the decoders started by {@link #prerollLoop()}, if any.
+   */
+  synchronized public void cancelLoopPreroll() {
+    loopPrerollRequested = false;
+    loopPrerolls.values().forEach(this::releaseLoopPreroll);
+    loopPrerolls.clear();
+  }
+
+  private void releaseLoopPreroll(LoopPreroll preroll) {
+    preroll.decoder.release();
+    retiredFrameExtractors.add(preroll.glFrameExtractor);
+  }
+
+  private void releaseRetiredFrameExtractors() {
+    retiredFrameExtractors.forEach(GLFrameExtractor::release);
+    retiredFrameExtractors.clear();
+  }
+
+  private boolean seekToCachedFrames(long position) {
+    if (!frameCachingEnabled || frameTextureCache == null || trimmed) {
+      return false;
+    }
+    Map<String, FrameTextureCache.Entry> cachedFrames = new HashMap<>();
+    for (VideoComposition.Item item : streamItems) {
+      long sourceTimeUs = Math.max(
+        TimeHelpers.secToUs(item.getStartTime()),
+        item.getSourceTimeUs(position)
+      );
+      FrameTextureCache.Entry entry = frameTextureCache.find(item.getId(), sourceTimeUs);
+      if (entry == null) {
+        frameTextureCache.recordLookup(false);
+        return false;
+      }
+      cachedFrames.put(item.getId(), entry);
+    }
+    frameTextureCache.recordLookup(true);
+    pendingCachedFrames = cachedFrames;
+    deferredSeekPosition = position;
+    return true;
+  }
+
+  /**
+   * Seeks the decoders to the position of the last seek served by the frame cache, if any,
+   * so that they decode from the displayed frames. Must be called before the decoded frames
+   * are needed again, when the playback starts, or once the seeks have settled so that the
+   * cached frames are replaced by full resolution ones.
+   */
+  synchronized public void applyDeferredSeek() {
+    if (deferredSeekPosition == -1) {
+      return;
+    }
+    long position = deferredSeekPosition;
+    deferredSeekPosition = -1;
+    decoders.values().forEach(itemDecoder -> itemDecoder.seekTo(position));
+  }
+
+  /**
+   * Enables or disables the caching of the displayed frames, used to serve the seeks to
+   * positions displayed recently without decoding. The frames are copied into a
+   * {@link FrameTextureCache} of {@link FrameTextureCache#DEFAULT_BUDGET_BYTES} created on the
+   * first update of the frames with the caching enabled.
+   *
+   * @param enabled true to cache the displayed frames and serve the seeks from the cache
+   */
+  synchronized public void setFrameCachingEnabled(boolean enabled) {
+    frameCachingEnabled = enabled;
+  }
+
+  /**
+   * @return the usage of the frame cache, or null if it has never been enabled
+   */
+  synchronized public FrameTextureCache.Stats getFrameCacheStats() {
+    return frameTextureCache != null ? frameTextureCache.getStats() : null;
+  }
+
   /**
    * Releases the resources.
    */
   synchronized public void release() {
     decoders.values().forEach(VideoCompositionItemDecoder::release);
     decoders.clear();
+    preparingDecoders.clear();
     videoFrames.clear();
     glFrameExtractors.values().forEach(GLFrameExtractor::release);
     glFrameExtractors.clear();
+    cancelLoopPreroll();
+    releaseRetiredFrameExtractors();
+    swappedOutFrameExtractors.values().forEach(GLFrameExtractor::release);
+    swappedOutFrameExtractors.clear();
+    if (frameTextureCache != null) {
+      frameTextureCache.release();
+      frameTextureCache = null;
+    }
+    pendingCachedFrames = null;
     if (eglResourcesHolder != null) {
+      if (framesFence != 0) {
+        EGLUtils.runWithContext(eglResourcesHolder, () -> EGLUtils.deleteFence(framesFence));
+      }
       eglResourcesHolder.release();
     }
+    framesFence = 0;
   }
 
   /**
@@ -217,6 +964,20 @@ public class VideoCompositionDecoder {
     void onItemEndReached(VideoComposition.Item item);
   }
 
+  /**
+   * Listener to be called when an item is prepared.
+   */
+  public interface OnItemPreparedListener {
+    void onItemPrepared(VideoComposition.Item item);
+  }
+
+  /**
+   * Listener to be called when all the items are prepared.
+   */
+  public interface OnPreparedListener {
+    void onPrepared();
+  }
+
   /**
    * Listener to be called when a frame is available.
    */
@@ -8,13 +8,14 @@ import android.os.SystemClock;
 import android.util.Log;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import javax.microedition.khronos.egl.EGLContext;
 
 /**
  * A class that previews a video composition.
  */
-public class VideoCompositionFramesExtractor {
+public class VideoCompositionFramesExtractor implements ResourceManager.TrimmableResource {
   private static final String TAG = "VideoCompositionFramesExtractor";
 
   private static final int PLAYBACK_PREPARE = 1;
@@ -23,11 +24,26 @@ public class VideoCompositionFramesExtractor {
   private static final int PLAYBACK_LOOP = 4;
   private static final int PLAYBACK_SEEK = 5;
   private static final int PLAYBACK_RELEASE = 6;
+  private static final int PLAYBACK_SET_SPEED = 7;
+  private static final int PLAYBACK_READY = 8;
 
-  private final VideoComposition composition;
+  private static final long LOOP_INTERVAL_MS = 10;
+
+  private static final long STATS_INTERVAL_MS = 1000;
+
+  // delay without any seek after which the scrubbing is considered settled, the decoders
+  // being then seeked to replace the cached frames by full resolution ones
+  private static final long SEEK_SETTLE_DELAY_MS = 100;
+
+  // delay without any decoding of the frames after which the preview is considered detached
+  private static final long DETACHED_DELAY_MS = 1000;
+
+  private volatile VideoComposition composition;
 
   private final VideoCompositionDecoder decoder;
 
+  private final VideoFrameTable frameTable = new VideoFrameTable();
+
   private final PlaybackThread playbackThread;
 
   private final Handler handler;
@@ -36,18 +52,31 @@ public class VideoCompositionFramesExtractor {
 
   private boolean playWhenReady = false;
 
+  private boolean prepareRequested;
   private boolean prepared;
-  private boolean releasing;
+  private boolean ready;
+  private volatile boolean releasing;
   private boolean looping;
 
 
   private long pendingSeek = 0;
-  private boolean isPlaying = false;
+  private volatile boolean isPlaying = false;
 
   private long startTime = 0;
   private long pausePosition = 0;
+  private float playbackSpeed = 1f;
   private boolean isEOS = false;
 
+  private final Set<String> readyItemIds = new HashSet<>();
+
+  private volatile long loopOverruns = 0;
+
+  private volatile long lastDecodeTime = 0;
+
+  private long lastStatsTime = 0;
+
+  private long lastSeekTime = 0;
+
   /**
    * Create a new VideoCompositionFramesExtractor.
    *
@@ -56,19 +85,31 @@ public class VideoCompositionFramesExtractor {
   public VideoCompositionFramesExtractor(VideoComposition composition, NativeEventDispatcher eventDispatcher) {
     this.eventDispatcher = eventDispatcher;
     this.composition = composition;
-    decoder = new VideoCompositionDecoder(composition);
+    decoder = new VideoCompositionDecoder(composition, VideoCompositionFramesExtractor::createBackend);
+    // the frames displayed while paused are cached so that scrubbing back to them is instant
+    decoder.setFrameCachingEnabled(true);
     playbackThread = new PlaybackThread();
     playbackThread.start();
     handler = new Handler(playbackThread.getLooper(), playbackThread);
+    decoder.setOnPreparedListener(() -> handler.sendEmptyMessage(PLAYBACK_READY));
+    decoder.setOnItemImageAvailableListener(this::onItemImageAvailable);
+    decoder.setOnErrorListener(error -> eventDispatcher.dispatchEvent("error", error.getMessage()));
+    ResourceManager.register(this);
   }
 
+  /**
+   * Prepare the extractor, the items are opened in parallel in the background and the method
+   * returns immediately. An "itemReady" event is dispatched with the id of each item once its
+   * first frame is decoded, and the "ready" event once all the items are prepared.
+   */
   public void prepare() {
-    if (prepared) {
+    if (prepareRequested) {
       return;
     }
     EGLContext sharedContext = EGLUtils.getCurrentContextOrThrows();
-    decoder.prepare(sharedContext);
+    prepareRequested = true;
     handler.sendEmptyMessage(PLAYBACK_PREPARE);
+    decoder.prepareAsync(sharedContext);
   }
 
   /**
@@ -93,20 +134,118 @@ public class VideoCompositionFramesExtractor {
     handler.obtainMessage(PLAYBACK_SEEK, position).sendToTarget();
   }
 
+  /**
+   * Update the previewed composition, keeping the decoders of the unchanged items.
+   * Must be called on the thread that prepared the extractor.
+   *
+   * @param composition the updated video composition
+   */
+  public void update(VideoComposition composition) {
+    VideoComposition previousComposition = this.composition;
+    this.composition = composition;
+    restoreIfTrimmed();
+    // the items whose video changed get new decoders, their first frame is reported again
+    synchronized (readyItemIds) {
+      readyItemIds.removeIf(id -> {
+        String previousPath = getItemPath(previousComposition, id);
+        return previousPath == null || !previousPath.equals(getItemPath(composition, id));
+      });
+    }
+    decoder.update(composition, getCurrentPosition());
+  }
+
+  private static String getItemPath(VideoComposition composition, String itemId) {
+    for (VideoComposition.Item item : composition.getItems()) {
+      if (item.getId().equals(itemId)) {
+        return item.getPath();
+      }
+    }
+    return null;
+  }
+
   /**
    * Decode the next frame of each composition item according to the current position of the player.
    *
-   * @return a map of item id to video frame
+   * @return the table of the frames of the items, the same instance being returned on each call
    */
-  public Map<String, VideoFrame> decodeCompositionFrames() {
-    return decoder.updateVideosFrames();
+  public VideoFrameTable decodeCompositionFrames() {
+    lastDecodeTime = SystemClock.elapsedRealtime();
+    restoreIfTrimmed();
+    decoder.updateVideosFrames();
+    decoder.writeVideosFrames(frameTable);
+    return frameTable;
+  }
+
+  /**
+   * Releases the decoders of the items while the composition is paused, they are restored on
+   * the next call to {@link #decodeCompositionFrames()}. While the user interface is visible,
+   * the decoders are only released if the frames have not been decoded for a while, since the
+   * preview decodes them on each frame as long as it is displayed.
+   */
+  @Override
+  public void trimMemory(boolean uiHidden) {
+    if (!prepareRequested || isPlaying || releasing) {
+      return;
+    }
+    if (!uiHidden && SystemClock.elapsedRealtime() - lastDecodeTime < DETACHED_DELAY_MS) {
+      return;
+    }
+    decoder.trim();
+    // the restored decoders report their first frame again
+    synchronized (readyItemIds) {
+      readyItemIds.clear();
+    }
+  }
+
+  private void restoreIfTrimmed() {
+    if (decoder.isTrimmed()) {
+      decoder.restore(getCurrentPosition());
+    }
   }
 
   /**
    * @return the current position of the player in microseconds
    */
   public long getCurrentPosition() {
-    return isPlaying ? microTime() - startTime : pausePosition;
+    return isPlaying ? (long) ((microTime() - startTime) * playbackSpeed) : pausePosition;
+  }
+
+  /**
+   * @return the playback speed of the composition
+   */
+  public float getPlaybackSpeed() {
+    return playbackSpeed;
+  }
+
+  /**
+   * Set the playback speed of the composition
+   *
+   * @param value the playback speed to set (must be greater than 0)
+   */
+  public void setPlaybackSpeed(float value) {
+    handler.obtainMessage(PLAYBACK_SET_SPEED, Math.max(0.1f, value)).sendToTarget();
+  }
+
+  /**
+   * @return the number of decoded frames skipped because the playback was ahead of them
+   */
+  public long getDroppedFrames() {
+    return decoder.getDroppedFrames();
+  }
+
+  /**
+   * @return the frame pacing statistics of the preview
+   */
+  public PlaybackStats getStats() {
+    return new PlaybackStats(
+      decoder.getRenderedFrames(),
+      decoder.getDroppedFrames(),
+      decoder.getLateFrames(),
+      loopOverruns,
+      null,
+      decoder.getItemsDisplayLatencyHistograms(),
+      decoder.getFrameCacheStats()
+    );
   }
 
   /**
@@ -121,6 +260,9 @@ public class VideoCompositionFramesExtractor {
    */
   public void setIsLooping(boolean value) {
     looping = value;
+    if (!value) {
+      decoder.cancelLoopPreroll();
+    }
     if (prepared && isEOS && value) {
       play();
     }
@@ -134,6 +276,7 @@ public class VideoCompositionFramesExtractor {
   }
 
   public void release() {
+    ResourceManager.unregister(this);
     if (!playbackThread.isAlive()) {
       decoder.release();
       return;
@@ -144,29 +287,52 @@ public class VideoCompositionFramesExtractor {
   }
 
   private void prepareInternal() {
+    // the items already prepared start decoding while the others are still being opened,
+    // so that their first frames are displayed as soon as possible
     decoder.start();
     prepared = true;
-    eventDispatcher.dispatchEvent("ready", null);
     handler.sendEmptyMessage(PLAYBACK_LOOP);
     if (pendingSeek != 0) {
       seekInternal(pendingSeek);
     }
+  }
+
+  private void readyInternal() {
+    ready = true;
+    eventDispatcher.dispatchEvent("ready", null);
     if (playWhenReady) {
       playInternal();
     }
   }
 
+  private void onItemImageAvailable(VideoComposition.Item item) {
+    boolean firstFrame;
+    synchronized (readyItemIds) {
+      firstFrame = readyItemIds.add(item.getId());
+    }
+    if (firstFrame) {
+      eventDispatcher.dispatchEvent("itemReady", item.getId());
+    }
+  }
+
   private void playInternal() {
-    if (!prepared) {
+    if (!ready) {
       playWhenReady = true;
       return;
     }
+    decoder.setFrameCachingEnabled(false);
     if (isEOS) {
       isEOS = false;
       pausePosition = 0;
-      seekInternal(0);
+      if (looping) {
+        // the start of the composition has been pre-rolled while reaching its end
+        decoder.loopToStart();
+      } else {
+        seekInternal(0);
+      }
     }
-    startTime = microTime() - pausePosition;
+    decoder.applyDeferredSeek();
+    startTime = clockStartTime(pausePosition);
     isPlaying = true;
     pausePosition = 0;
   }
@@ -178,27 +344,44 @@ public class VideoCompositionFramesExtractor {
     }
     pausePosition = getCurrentPosition();
     isPlaying = false;
+    decoder.setFrameCachingEnabled(true);
   }
 
   private void loopInternal() throws IOException, InterruptedException {
     long loopStartTime = SystemClock.elapsedRealtime();
 
     long currentPosition = getCurrentPosition();
+    long durationUs = TimeHelpers.secToUs(composition.getDuration());
 
-    isEOS = currentPosition >= TimeHelpers.secToUs(composition.getDuration());
+    isEOS = currentPosition >= durationUs;
     if (isEOS) {
       eventDispatcher.dispatchEvent("complete", null);
       isPlaying = false;
-      pausePosition = TimeHelpers.secToUs(composition.getDuration());
+      pausePosition = durationUs;
       currentPosition = pausePosition;
+      decoder.setFrameCachingEnabled(true);
+    }
+    if (looping && isPlaying && currentPosition >= durationUs / 2
+      && durationUs - currentPosition <= VideoCompositionDecoder.LOOP_PREROLL_US) {
+      decoder.prerollLoop();
+    }
+    if (!isPlaying && loopStartTime - lastSeekTime >= SEEK_SETTLE_DELAY_MS
+      && !handler.hasMessages(PLAYBACK_SEEK)) {
+      decoder.applyDeferredSeek();
     }
     decoder.render(currentPosition);
     if (isEOS && looping) {
       playInternal();
     }
-    long delay = 10;
     long duration = (SystemClock.elapsedRealtime() - loopStartTime);
-    delay = delay - duration;
+    long delay = LOOP_INTERVAL_MS - duration;
+    if (delay < 0) {
+      loopOverruns++;
+    }
+    if (isPlaying && loopStartTime - lastStatsTime >= STATS_INTERVAL_MS) {
+      lastStatsTime = loopStartTime;
+      eventDispatcher.dispatchEvent("stats", getStats());
+    }
     if (delay > 0) {
       handler.sendEmptyMessageDelayed(PLAYBACK_LOOP, delay);
     } else {
@@ -212,13 +395,27 @@ public class VideoCompositionFramesExtractor {
       return;
     }
     decoder.seekTo(position);
+    lastSeekTime = SystemClock.elapsedRealtime();
     if (isPlaying) {
-      startTime = microTime() - position;
+      startTime = clockStartTime(position);
     } else {
       pausePosition = position;
     }
   }
 
+  private void setPlaybackSpeedInternal(float value) {
+    long position = getCurrentPosition();
+    playbackSpeed = value;
+    if (isPlaying) {
+      startTime = clockStartTime(position);
+    }
+    decoder.setPlaybackRate(value);
+  }
+
+  private long clockStartTime(long position) {
+    return microTime() - (long) (position / playbackSpeed);
+  }
+
   private void releaseInternal() {
     playbackThread.interrupt();
     playbackThread.quit();
@@ -260,6 +457,14 @@ public class VideoCompositionFramesExtractor {
             seekInternal((Long) msg.obj);
             return true;
           }
+          case PLAYBACK_READY -> {
+            readyInternal();
+            return true;
+          }
+          case PLAYBACK_SET_SPEED -> {
+            setPlaybackSpeedInternal((Float) msg.obj);
+            return true;
+          }
           case PLAYBACK_RELEASE -> {
             releaseInternal();
             return true;
@@ -278,6 +483,45 @@ public class VideoCompositionFramesExtractor {
     }
   }
 
+  private static VideoDecoderBackend createBackend(VideoComposition.Item item) {
+    return new ProxyDecoderBackend();
+  }
+
+  /**
+   * A backend reading the proxy of the item video when there is one in the {@link ProxyCache},
+   * and requesting it otherwise so that it can be used by the next previews. The cache is only
+   * looked up when the item is prepared in the background. The originals are still used by the
+   * exports.
+   */
+  private static class ProxyDecoderBackend extends MediaCodecDecoderBackend {
+
+    private MediaMetadataProbe.MediaMetadata sourceMetadata;
+
+    @Override
+    synchronized public void prepare(String path, long startTimeUs) throws IOException {
+      String proxyPath = ProxyCache.getProxyPath(path);
+      if (proxyPath == null) {
+        ProxyCache.requestProxy(path);
+        super.prepare(path, startTimeUs);
+        return;
+      }
+      // the frames of the proxy are scaled to the size of the source video, so that the
+      // items without an explicit size are displayed as with the original
+      sourceMetadata = MediaMetadataProbe.probe(path);
+      super.prepare(proxyPath, startTimeUs);
+    }
+
+    @Override
+    public int getVideoWidth() {
+      return sourceMetadata != null ? sourceMetadata.getWidth() : super.getVideoWidth();
+    }
+
+    @Override
+    public int getVideoHeight() {
+      return sourceMetadata != null ? sourceMetadata.getHeight() : super.getVideoHeight();
+    }
+  }
+
   private static long microTime() {
     return System.nanoTime() / 1000;
   }
@@ -16,6 +16,8 @@ public class VideoCompositionFramesExtractorSync {
 
   private final VideoCompositionDecoder decoder;
 
+  private final VideoFrameTable frameTable = new VideoFrameTable();
+
   private boolean decoding = false;
   private long decodingTimeUs;
 
@@ -31,9 +33,33 @@ public class VideoCompositionFramesExtractorSync {
 
   private CompletableFuture<Map<String, VideoFrame>> future;
 
+  private final LatencyHistogram decodeWaitHistogram = new LatencyHistogram();
+
+  private final Map<String, LatencyHistogram> itemsDecodeWaitHistograms = new HashMap<>();
+
+  private final Set<String> pendingItems = new HashSet<>();
+
+  private long decodeRequestTimeNs;
+
   public VideoCompositionFramesExtractorSync(VideoComposition composition) {
+    this(composition, false);
+  }
+
+  /**
+   * Creates a new VideoCompositionFramesExtractorSync.
+   *
+   * @param composition the video composition to extract frames from
+   * @param offline     whether the decoders should be configured to decode as fast as possible
+   */
+  public VideoCompositionFramesExtractorSync(VideoComposition composition, boolean offline) {
     this.composition = composition;
-    this.decoder = new VideoCompositionDecoder(composition);
+    this.decoder = new VideoCompositionDecoder(
+      composition,
+      item -> new MediaCodecDecoderBackend(offline)
+    );
+    for (VideoComposition.Item item : composition.getItems()) {
+      itemsDecodeWaitHistograms.put(item.getId(), new LatencyHistogram());
+    }
   }
 
   public void start() throws Exception {
@@ -60,20 +86,74 @@ public class VideoCompositionFramesExtractorSync {
     future.get();
   }
 
+  /**
+   * Seek the decoders to the given time, used to start decoding in the middle of the composition
+   * (for example when resuming an export).
+   *
+   * @param time the composition time in seconds
+   */
+  public void seekTo(double time) throws Exception {
+    long timeUs = TimeHelpers.secToUs(time);
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    handler.post(() -> {
+      try {
+        itemsTimes.clear();
+        itemsEnded.clear();
+        renderedTimes.clear();
+        decoder.seekTo(timeUs);
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+        return;
+      }
+      future.complete(null);
+    });
+    future.get();
+  }
+
   /**
    * Decode the next frame of each composition item according to the current position of the player.
    *
-   * @return a map of item id to video frame
+   * @return the table of the frames of the items, the same instance being returned on each call
    */
-  public Map<String, VideoFrame> decodeCompositionFrames(double time) throws Exception {
+  public VideoFrameTable decodeCompositionFrames(double time) throws Exception {
     decodingTimeUs = TimeHelpers.secToUs(time);
     future = new CompletableFuture<>();
+    long startTimeNs = System.nanoTime();
     handler.post(() -> {
       decoding = true;
+      decodeRequestTimeNs = startTimeNs;
+      pendingItems.addAll(itemsDecodeWaitHistograms.keySet());
       renderedTimes.clear();
       checkIfFrameDecoded();
     });
-    return future.get();
+    future.get();
+    decodeWaitHistogram.record(TimeHelpers.nsecToUs(System.nanoTime() - startTimeNs));
+    decoder.writeVideosFrames(frameTable);
+    return frameTable;
+  }
+
+  /**
+   * @return the histogram of the time in microseconds spent waiting in
+   * {@link #decodeCompositionFrames(double)} for the frames of all items
+   */
+  public LatencyHistogram getDecodeWaitHistogram() {
+    return decodeWaitHistogram;
+  }
+
+  /**
+   * @return for each item id, the histogram of the time in microseconds between a call to
+   * {@link #decodeCompositionFrames(double)} and the decoding of the item frame
+   */
+  public Map<String, LatencyHistogram> getItemsDecodeWaitHistograms() {
+    return itemsDecodeWaitHistograms;
+  }
+
+  /**
+   * @return the number of decoded frames skipped without being rendered because a more recent
+   * frame was requested
+   */
+  public long getDroppedFrames() {
+    return decoder.getDroppedFrames();
   }
 
   public void release() {
@@ -108,6 +188,7 @@ public class VideoCompositionFramesExtractorSync {
         continue;
       }
       if (itemsEnded.contains(item)) {
+        recordItemDecoded(item);
         continue;
       }
       Long itemTime = itemsTimes.get(item);
@@ -116,11 +197,11 @@ public class VideoCompositionFramesExtractorSync {
         continue;
       }
       long itemCurrentTimeUs = itemTime;
-      long startTimeUs = TimeHelpers.secToUs(item.getStartTime());
-      long compositionStartTimeUs = TimeHelpers.secToUs(item.getCompositionStartTime());
-      if (itemCurrentTimeUs - startTimeUs < decodingTimeUs - compositionStartTimeUs) {
+      if (itemCurrentTimeUs < item.getSourceTimeUs(decodingTimeUs)) {
         allItemsReady = false;
+        continue;
       }
+      recordItemDecoded(item);
     }
     Map<String, Long> renderedTimes = decoder.render(decodingTimeUs);
     renderedTimes.forEach((itemId, time) -> {
@@ -134,6 +215,15 @@ public class VideoCompositionFramesExtractorSync {
     }
   }
 
+  private void recordItemDecoded(VideoComposition.Item item) {
+    if (decoding && pendingItems.remove(item.getId())) {
+      LatencyHistogram histogram = itemsDecodeWaitHistograms.get(item.getId());
+      if (histogram != null) {
+        histogram.record(TimeHelpers.nsecToUs(System.nanoTime() - decodeRequestTimeNs));
+      }
+    }
+  }
+
   private void onItemImageAvailable(VideoComposition.Item item) {
     if (!decoding) {
       resolveIfReady();
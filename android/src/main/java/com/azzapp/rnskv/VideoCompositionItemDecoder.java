@@ -1,14 +1,9 @@
 package com.azzapp.rnskv;
 
-import android.media.MediaCodec;
-import android.media.MediaExtractor;
-import android.media.MediaFormat;
+import android.os.Handler;
 import android.view.Surface;
 
-import androidx.annotation.NonNull;
-
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
@@ -16,30 +11,47 @@ import java.util.Stack;
 /**
  * A class that decodes a video item from a video composition asynchronously.
  */
-public class VideoCompositionItemDecoder extends MediaCodec.Callback {
+public class VideoCompositionItemDecoder implements VideoDecoderBackend.Callback {
 
-  private final VideoComposition.Item item;
+  // lag between the displayed frame and the playback position above which the decoder
+  // starts skipping frames to catch up with the playback
+  private static final long FRAME_SKIPPING_LAG_US = 100000;
 
-  private MediaExtractor extractor;
+  private static final long SYNC_FRAMES_ONLY_LAG_US = 500000;
 
-  private MediaCodec codec;
+  private static final long CAUGHT_UP_LAG_US = 40000;
 
-  private MediaFormat format;
+  private volatile VideoComposition.Item item;
 
-  private boolean inputEOS = false;
+  private final VideoDecoderBackend backend;
 
   private boolean hasRenderedFrame = false;
 
-  private boolean itemEndReached = false;
+  private long droppedFrames = 0;
+
+  private long renderedFrames = 0;
+
+  private long lateFrames = 0;
 
-  private int videoWidth;
+  private final LatencyHistogram displayLatencyHistogram = new LatencyHistogram();
 
-  private int videoHeight;
+  private double playbackRate = 1;
 
-  private int rotation;
+  private double catchUpSpeed = 1;
+
+  private double playbackSpeed = 1;
+
+  private long lastRenderedTimeUs = 0;
+
+  private boolean itemEndReached = false;
 
   private boolean prepared = false;
 
+  private boolean preparing = false;
+
+  // composition time of a seek requested before the decoder was prepared, -1 if none
+  private long pendingSeekTimeUs = -1;
+
   private boolean configured = false;
 
   private boolean started = false;
@@ -48,6 +60,8 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
 
   private Surface surface;
 
+  private Handler callbackHandler;
+
   private final Stack<Frame> freeFrames = new Stack<>();
 
   private final List<Frame> pendingFrames = new ArrayList<>();
@@ -58,46 +72,78 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
 
   private OnFrameAvailableListener onFrameAvailableListener;
 
+  private final String pendingFramesCounterName;
+
+  private final String freeFramesCounterName;
+
   /**
-   * Create a new VideoCompositionItemDecoder.
+   * Create a new VideoCompositionItemDecoder decoding the item with MediaCodec.
    *
    * @param item the video composition item to decode
    */
   public VideoCompositionItemDecoder(VideoComposition.Item item) {
+    this(item, new MediaCodecDecoderBackend());
+  }
+
+  /**
+   * Create a new VideoCompositionItemDecoder.
+   *
+   * @param item    the video composition item to decode
+   * @param backend the backend decoding the item video
+   */
+  public VideoCompositionItemDecoder(VideoComposition.Item item, VideoDecoderBackend backend) {
     this.item = item;
+    this.backend = backend;
+    pendingFramesCounterName = "RNSkiaVideo.pendingFrames." + item.getId();
+    freeFramesCounterName = "RNSkiaVideo.freeFrames." + item.getId();
   }
 
   /**
-   * Prepare the decoder.
+   * Prepare the decoder. The video is opened without holding the lock of the decoder, so
+   * that it can be prepared on a background thread while the other items are rendered.
    *
    * @throws IOException if the decoder cannot be prepared
    */
-  synchronized public void prepare() throws IOException {
-    if (prepared) {
-      return;
-    }
-    extractor = new MediaExtractor();
-    extractor.setDataSource(item.getPath());
-    int trackIndex = selectTrack(extractor);
-    if (trackIndex == -1) {
-      throw new RuntimeException("No video track");
+  public void prepare() throws IOException {
+    long startSeekTimeUs;
+    synchronized (this) {
+      if (prepared || preparing || released) {
+        return;
+      }
+      preparing = true;
+      startSeekTimeUs = pendingSeekTimeUs;
     }
-    format = extractor.getTrackFormat(trackIndex);
-    String mime = format.getString(MediaFormat.KEY_MIME);
-    if (mime == null) {
-      throw new IOException("Could not determine file mime type");
+    try {
+      backend.prepare(item.getPath(), getSeekTimeUs(startSeekTimeUs));
+    } catch (IOException | RuntimeException e) {
+      synchronized (this) {
+        preparing = false;
+      }
+      throw e;
     }
-    codec = MediaCodec.createDecoderByType(mime);
-    extractor.selectTrack(trackIndex);
-    if (item.getStartTime() != 0) {
-      extractor.seekTo(
-        TimeHelpers.secToUs(item.getStartTime()), MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+    synchronized (this) {
+      preparing = false;
+      if (released) {
+        return;
+      }
+      prepared = true;
+      // the decoder has been seeked while the video was being opened
+      if (pendingSeekTimeUs != startSeekTimeUs) {
+        backend.seekTo(getSeekTimeUs(pendingSeekTimeUs));
+      }
+      updatePlaybackSpeed(pendingSeekTimeUs != -1
+        ? pendingSeekTimeUs
+        : TimeHelpers.secToUs(item.getCompositionStartTime()));
+      pendingSeekTimeUs = -1;
+      configure();
     }
-    videoWidth = format.getInteger(MediaFormat.KEY_WIDTH);
-    videoHeight = format.getInteger(MediaFormat.KEY_HEIGHT);
-    rotation = format.containsKey(MediaFormat.KEY_ROTATION) ? format.getInteger(MediaFormat.KEY_ROTATION) : 0;
-    prepared = true;
-    configure();
+  }
+
+  /**
+   * @return true if the decoder has been prepared
+   */
+  synchronized public boolean isPrepared() {
+    return prepared;
   }
 
   /**
@@ -107,7 +153,7 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
     if (!prepared || !configured || started) {
       return;
     }
-    codec.start();
+    backend.start();
     started = true;
   }
 
@@ -121,6 +167,16 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
     configure();
   }
 
+  /**
+   * Sets the handler on whose thread the decoded frames are reported, the decoder being
+   * prepared on a background thread without looper. Must be called before {@link #prepare()}.
+   *
+   * @param callbackHandler the handler receiving the codec callbacks
+   */
+  public void setCallbackHandler(Handler callbackHandler) {
+    this.callbackHandler = callbackHandler;
+  }
+
 
   public void setOnErrorListener(OnErrorListener onErrorListener) {
     this.onErrorListener = onErrorListener;
@@ -141,114 +197,77 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
     return item;
   }
 
+  /**
+   * Replaces the decoded item by an updated version of it with the same video, the decoder
+   * must be seeked afterward if the timing of the item has changed.
+   *
+   * @param item the updated item
+   */
+  synchronized public void setItem(VideoComposition.Item item) {
+    this.item = item;
+    // forces the speed hint of the updated item to be sent on the next render
+    playbackSpeed = -1;
+  }
+
   /**
    * @return the width of the decoded video in pixels after rotation
    */
   public int getVideoWidth() {
-    return videoWidth;
+    return backend.getVideoWidth();
   }
 
   /**
    * @return the height of the decoded video in pixels after rotation
    */
   public int getVideoHeight() {
-    return videoHeight;
+    return backend.getVideoHeight();
   }
 
   /**
    * @return the rotation of the decoded video in degrees
    */
   public int getRotation() {
-    return rotation;
+    return backend.getRotation();
   }
 
   @Override
-  synchronized public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
-    if (!prepared || !configured || released) {
-      return;
-    }
-
-    if (inputEOS || itemEndReached) {
-      try {
-        this.codec.queueInputBuffer(index, 0, 0, 0,
-          MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-      } catch (Throwable e) {}
-      return;
-    }
-
-    ByteBuffer inputBuffer;
+  synchronized public void onFrameDecoded(
+    int index, long presentationTimeUs, boolean empty, boolean endOfStream) {
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.ItemDecoder.onOutputBufferAvailable");
     try {
-      inputBuffer = this.codec.getInputBuffer(index);
-    } catch (Throwable e) {
-      return;
+      handleDecodedFrame(index, presentationTimeUs, empty, endOfStream);
+    } finally {
+      TraceHelpers.endSection(traced);
     }
-    if (inputBuffer == null) {
-      return;
-    }
-
-    int sampleSize = extractor.readSampleData(inputBuffer, 0);
-    if (sampleSize <= 0) {
-      this.codec.queueInputBuffer(index, 0, 0, 0,
-        MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-      return;
-    }
-    try {
-      this.codec.queueInputBuffer(
-        index,
-        0,
-        sampleSize,
-        extractor.getSampleTime(),
-        extractor.getSampleFlags()
-      );
-    } catch (Throwable e) {
-      return;
-    }
-    extractor.advance();
-    inputEOS = extractor.getSampleTime() == -1;
   }
 
-  @Override
-  synchronized public void onOutputBufferAvailable(
-    @NonNull MediaCodec codec, int index, @NonNull MediaCodec.BufferInfo info) {
+  private void handleDecodedFrame(
+    int index, long presentationTimeUs, boolean empty, boolean endOfStream) {
     if (released) {
       return;
     }
-    boolean outputEOS = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
     boolean sampleOutOfBounds =
-      info.presentationTimeUs > TimeHelpers.secToUs(item.getStartTime() + item.getDuration());
+      presentationTimeUs > TimeHelpers.secToUs(item.getStartTime() + item.getDuration());
     boolean sampleBeforeStartTime =
-      info.presentationTimeUs < TimeHelpers.secToUs(item.getStartTime());
-
-    if (!itemEndReached && info.size != 0 && !sampleOutOfBounds && !sampleBeforeStartTime) {
-      ByteBuffer buffer;
-      try {
-        buffer = this.codec.getOutputBuffer(index);
-      } catch (Throwable e) {
-        return;
-      }
-      if (buffer == null) {
-        return;
-      }
-      buffer.position(info.offset);
-      buffer.limit(info.offset + info.size);
+      presentationTimeUs < TimeHelpers.secToUs(item.getStartTime());
 
+    if (!itemEndReached && !empty && !sampleOutOfBounds && !sampleBeforeStartTime) {
       Frame frame = getFreeFrame();
       frame.outputBufferIndex = index;
-      frame.presentationTimeUs = info.presentationTimeUs;
+      frame.presentationTimeUs = presentationTimeUs;
+      frame.decodedTimeNs = System.nanoTime();
       pendingFrames.add(frame);
+      traceFramesCounters();
       if (onFrameAvailableListener != null) {
         onFrameAvailableListener.onFrameAvailable(frame.presentationTimeUs);
       }
     } else {
-      try {
-        codec.releaseOutputBuffer(index, false);
-      } catch (Throwable e) {
-        return;
-      }
+      backend.releaseOutputBuffer(index, false);
     }
 
-    itemEndReached = outputEOS || sampleOutOfBounds;
+    itemEndReached = endOfStream || sampleOutOfBounds;
     if (itemEndReached) {
+      backend.endInput();
       if (onEndReachedListener != null) {
         onEndReachedListener.onEndReached();
       }
@@ -256,27 +275,35 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
   }
 
   @Override
-  public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+  public void onError(Exception e) {
     if (onErrorListener != null) {
       onErrorListener.onError(e);
     }
   }
 
-  @Override
-  public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
-    // Do nothing
+  synchronized public Long render(long compositionTimeUs) {
+    if (!prepared) {
+      return null;
+    }
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.ItemDecoder.render");
+    try {
+      return renderDueFrames(compositionTimeUs);
+    } finally {
+      TraceHelpers.endSection(traced);
+    }
   }
 
-  synchronized public Long render(long compositionTimeUs) {
+  private Long renderDueFrames(long compositionTimeUs) {
+    long sourceTimeUs = item.getSourceTimeUs(compositionTimeUs);
+    updateCatchUpSpeed(sourceTimeUs);
+    updatePlaybackSpeed(compositionTimeUs);
     if (pendingFrames.isEmpty()) {
       return null;
     }
-    long compositionStartTimeUs = TimeHelpers.secToUs(item.getCompositionStartTime());
-    long startTimeUs = TimeHelpers.secToUs(item.getStartTime());
 
     List<Frame> framesToRenders = new ArrayList<>();
     for (Frame frame : pendingFrames) {
-      if (frame.presentationTimeUs - startTimeUs <= compositionTimeUs - compositionStartTimeUs || !hasRenderedFrame) {
+      if (frame.presentationTimeUs <= sourceTimeUs || !hasRenderedFrame) {
         framesToRenders.add(frame);
         hasRenderedFrame = true;
       }
@@ -284,35 +311,138 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
     if (framesToRenders.isEmpty()) {
       return null;
     }
-    framesToRenders.forEach(frame -> {
-      try {
-        codec.releaseOutputBuffer(frame.outputBufferIndex, true);
-      } catch (Throwable e) {
-        return;
-      }
-    });
+    // only the latest due frame will ever be displayed, the previous ones are released
+    // without going through the surface
+    int lastIndex = framesToRenders.size() - 1;
+    for (int i = 0; i < lastIndex; i++) {
+      backend.releaseOutputBuffer(framesToRenders.get(i).outputBufferIndex, false);
+    }
+    Frame renderedFrame = framesToRenders.get(lastIndex);
+    backend.releaseOutputBuffer(renderedFrame.outputBufferIndex, true);
+    droppedFrames += lastIndex;
+    renderedFrames++;
+    displayLatencyHistogram.record(
+      TimeHelpers.nsecToUs(System.nanoTime() - renderedFrame.decodedTimeNs));
+    if (sourceTimeUs - renderedFrame.presentationTimeUs > PlaybackStats.LATE_FRAME_THRESHOLD_US) {
+      lateFrames++;
+    }
     freeFrames.addAll(framesToRenders);
     pendingFrames.removeAll(framesToRenders);
+    traceFramesCounters();
 
-    return framesToRenders.get(framesToRenders.size() - 1).presentationTimeUs;
+    lastRenderedTimeUs = renderedFrame.presentationTimeUs;
+    return lastRenderedTimeUs;
   }
 
   /**
-   * Seek to a specific time in the video.
+   * Sets the rate at which the composition is played, the item decoding speed being
+   * the product of this rate and of the item speed.
    *
-   * @param time the time in microseconds to seek to
+   * @param rate the playback rate of the composition, 1 being the normal speed
+   */
+  synchronized public void setPlaybackRate(double rate) {
+    playbackRate = rate;
+    catchUpSpeed = 1;
+  }
+
+  private void updateCatchUpSpeed(long sourceTimeUs) {
+    // when the playback is faster than what the decoder sustains, frames are skipped so
+    // that the displayed frames keep up with the playback clock instead of drifting
+    if (playbackRate <= 1 || !hasRenderedFrame) {
+      catchUpSpeed = 1;
+      return;
+    }
+    long lagUs = sourceTimeUs - lastRenderedTimeUs;
+    if (lagUs > SYNC_FRAMES_ONLY_LAG_US) {
+      catchUpSpeed = VideoDecoderBackend.SYNC_FRAMES_ONLY_SPEED;
+    } else if (lagUs > FRAME_SKIPPING_LAG_US) {
+      catchUpSpeed = Math.max(catchUpSpeed, VideoDecoderBackend.SKIP_NON_REFERENCE_FRAMES_SPEED);
+    } else if (lagUs < CAUGHT_UP_LAG_US) {
+      catchUpSpeed = 1;
+    }
+  }
+
+  private void updatePlaybackSpeed(long compositionTimeUs) {
+    double speed = Math.max(item.getSpeedAt(compositionTimeUs) * playbackRate, catchUpSpeed);
+    if (speed != playbackSpeed) {
+      playbackSpeed = speed;
+      backend.setPlaybackSpeed(speed);
+    }
+  }
+
+  /**
+   * @return the number of decoded frames that have been skipped because a more recent frame
+   * was due at the time of rendering
+   */
+  synchronized public long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  /**
+   * @return the number of frames rendered to the surface
+   */
+  synchronized public long getRenderedFrames() {
+    return renderedFrames;
+  }
+
+  /**
+   * @return the number of frames rendered more than
+   * {@link PlaybackStats#LATE_FRAME_THRESHOLD_US} after their presentation time
+   */
+  synchronized public long getLateFrames() {
+    return lateFrames;
+  }
+
+  /**
+   * @return the delays in microseconds between the decoding and the rendering of the frames
+   */
+  public LatencyHistogram getDisplayLatencyHistogram() {
+    return displayLatencyHistogram;
+  }
+
+  /**
+   * Adds the frame counters and the display latencies of a decoder replaced by this one to
+   * the stats of this decoder, so that the stats of the item survive the replacement.
+   *
+   * @param previous the replaced decoder
+   */
+  public void carryOverStats(VideoCompositionItemDecoder previous) {
+    long previousDroppedFrames = previous.getDroppedFrames();
+    long previousRenderedFrames = previous.getRenderedFrames();
+    long previousLateFrames = previous.getLateFrames();
+    synchronized (this) {
+      droppedFrames += previousDroppedFrames;
+      renderedFrames += previousRenderedFrames;
+      lateFrames += previousLateFrames;
+    }
+    displayLatencyHistogram.add(previous.getDisplayLatencyHistogram());
+  }
+
+  /**
+   * Seek to a specific time in the composition.
+   *
+   * @param time the composition time in microseconds to seek to
    */
   synchronized public void seekTo(long time) {
+    if (!prepared) {
+      pendingSeekTimeUs = time;
+      return;
+    }
+    freeFrames.addAll(pendingFrames);
     pendingFrames.clear();
-    codec.flush();
-    long seekTime = time + TimeHelpers.secToUs(item.getStartTime());
-    extractor.seekTo(seekTime, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
-    itemEndReached = false;
     hasRenderedFrame = false;
-    inputEOS = false;
-    if (started) {
-      codec.start();
+    catchUpSpeed = 1;
+    updatePlaybackSpeed(time);
+    backend.seekTo(getSeekTimeUs(time));
+    itemEndReached = false;
+  }
+
+  private long getSeekTimeUs(long compositionTimeUs) {
+    long startTimeUs = TimeHelpers.secToUs(item.getStartTime());
+    if (compositionTimeUs == -1) {
+      return startTimeUs;
     }
+    return Math.max(startTimeUs, item.getSourceTimeUs(compositionTimeUs));
   }
 
   /**
@@ -321,34 +451,20 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
   synchronized public void release() {
     if (!released) {
       released = true;
-      if (extractor != null) {
-        extractor.release();
-      }
-      if (codec != null) {
-        codec.release();
-        codec = null;
-      }
+      backend.release();
     }
   }
 
   private synchronized void configure() {
     if (prepared && surface != null && !configured) {
-      codec.setCallback(this);
-      codec.configure(format, surface, null, 0);
+      backend.configure(surface, this, callbackHandler);
       configured = true;
     }
   }
 
-  private static int selectTrack(MediaExtractor extractor) {
-    int numTracks = extractor.getTrackCount();
-    for (int i = 0; i < numTracks; i++) {
-      MediaFormat format = extractor.getTrackFormat(i);
-      String mime = format.getString(MediaFormat.KEY_MIME);
-      if (mime != null && mime.startsWith("video/")) {
-        return i;
-      }
-    }
-    return -1;
+  private void traceFramesCounters() {
+    TraceHelpers.setCounter(pendingFramesCounterName, pendingFrames.size());
+    TraceHelpers.setCounter(freeFramesCounterName, freeFrames.size());
   }
 
   private Frame getFreeFrame() {
@@ -373,5 +489,6 @@ public class VideoCompositionItemDecoder extends MediaCodec.Callback {
   private static class Frame {
     private int outputBufferIndex;
     private long presentationTimeUs;
+    private long decodedTimeNs;
   }
 }
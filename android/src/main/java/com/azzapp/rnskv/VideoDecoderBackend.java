@@ -0,0 +1,125 @@
+package com.azzapp.rnskv;
+
+import android.os.Handler;
+import android.view.Surface;
+
+import java.io.IOException;
+
+/**
+ * The source of decoded frames of a {@link VideoCompositionItemDecoder}.
+ * The backend is responsible for reading and decoding the samples of the item video, while
+ * the item decoder schedules the rendering of the decoded frames.
+ */
+public interface VideoDecoderBackend {
+
+  /**
+   * The playback speed from which frames not used as reference should not be decoded.
+   */
+  double SKIP_NON_REFERENCE_FRAMES_SPEED = 2;
+
+  /**
+   * The playback speed from which only the sync frames of the video should be decoded.
+   */
+  double SYNC_FRAMES_ONLY_SPEED = 8;
+
+  /**
+   * Opens the video of the item and reads its format.
+   *
+   * @param path        the path of the video
+   * @param startTimeUs the time in microseconds from which the video will be decoded
+   * @throws IOException if the video cannot be opened
+   */
+  void prepare(String path, long startTimeUs) throws IOException;
+
+  /**
+   * @return the width of the video in pixels, available once prepared
+   */
+  int getVideoWidth();
+
+  /**
+   * @return the height of the video in pixels, available once prepared
+   */
+  int getVideoHeight();
+
+  /**
+   * @return the rotation of the video in degrees, available once prepared
+   */
+  int getRotation();
+
+  /**
+   * Configures the backend to render the decoded frames to the given surface.
+   *
+   * @param surface  the surface to render the frames to
+   * @param callback the callback receiving the decoded frames
+   * @param handler  the handler on whose thread the callback is called, the looper of the
+   *                 thread that prepared the backend if null
+   */
+  void configure(Surface surface, Callback callback, Handler handler);
+
+  /**
+   * Starts decoding.
+   */
+  void start();
+
+  /**
+   * Stops feeding samples to the decoder, the decoder will then reach the end of the stream.
+   */
+  void endInput();
+
+  /**
+   * Discards the pending frames and restarts decoding from the sync frame preceding
+   * the given time.
+   *
+   * @param timeUs the time in microseconds to seek to
+   */
+  void seekTo(long timeUs);
+
+  /**
+   * Hints the backend about the speed at which the decoded frames will be consumed, so that
+   * it can skip decoding the frames that will never be rendered.
+   *
+   * @param speed the ratio between the video time and the playback time elapsed
+   */
+  void setPlaybackSpeed(double speed);
+
+  /**
+   * Returns a decoded frame to the backend.
+   *
+   * @param index  the index of the frame as passed to {@link Callback#onFrameDecoded}
+   * @param render whether the frame should be rendered to the surface
+   */
+  void releaseOutputBuffer(int index, boolean render);
+
+  /**
+   * Releases the backend resources.
+   */
+  void release();
+
+  /**
+   * The callback receiving the output of a backend.
+   */
+  interface Callback {
+    /**
+     * Called when a frame has been decoded, the frame must be returned to the backend
+     * with {@link #releaseOutputBuffer(int, boolean)}.
+     *
+     * @param index              the index of the frame
+     * @param presentationTimeUs the presentation time of the frame in microseconds
+     * @param empty              true if the output contains no frame
+     * @param endOfStream        true if this is the last output of the stream
+     */
+    void onFrameDecoded(int index, long presentationTimeUs, boolean empty, boolean endOfStream);
+
+    /**
+     * Called when an error occurs.
+     */
+    void onError(Exception error);
+  }
+
+  /**
+   * A factory creating the backend of each item of a composition.
+   */
+  interface Factory {
+    VideoDecoderBackend create(VideoComposition.Item item);
+  }
+}
@@ -1,18 +1,13 @@
 package com.azzapp.rnskv;
 
 import android.graphics.Bitmap;
-import android.media.MediaCodec;
-import android.media.MediaCodecInfo;
-import android.media.MediaFormat;
-import android.media.MediaMuxer;
 import android.opengl.GLES20;
-import android.util.Log;
-import android.view.Surface;
+import android.opengl.GLES30;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
-import javax.microedition.khronos.egl.EGL10;
 import javax.microedition.khronos.egl.EGLContext;
 
 
@@ -39,21 +34,36 @@ public class VideoEncoder {
 
   private final String encoderName;
 
-  private MediaCodec encoder;
-
-  private Surface inputSurface;
-
   private EGLResourcesHolder eglResourcesHolder;
 
   private TextureRenderer textureRenderer;
 
-  private MediaMuxer muxer;
+  // framebuffer reading the frames when they are blitted into the input surfaces,
+  // 0 if blitting is not supported and the frames are drawn with the texture renderer
+  private int blitFramebuffer = 0;
+
+  private final VideoEncoderOutput mainOutput;
+
+  private final List<VideoEncoderOutput> outputs = new ArrayList<>();
+
+  private long segmentDurationUs = 0;
+
+  private SegmentedMuxer.SegmentSink segmentSink;
+
+  private String checkpointPath;
+
+  private String checkpointKey;
 
-  private int trackIndex;
+  private boolean offline = false;
 
-  private boolean muxerStarted;
+  private ExportCheckpoint checkpoint;
+
+  private final LatencyHistogram encodeHistogram = new LatencyHistogram();
+
+  private final LatencyHistogram drainHistogram = new LatencyHistogram();
+
+  private final LatencyHistogram queueDepthHistogram = new LatencyHistogram();
 
-  private final MediaCodec.BufferInfo bufferInfo;
 
 
   /**
@@ -80,132 +90,283 @@ public class VideoEncoder {
     this.frameRate = frameRate;
     this.bitRate = bitRate;
     this.encoderName = encoderName;
-    bufferInfo = new MediaCodec.BufferInfo();
+    mainOutput = new VideoEncoderOutput(
+      outputPath, MIME_TYPE, width, height, frameRate, bitRate, encoderName);
+    outputs.add(mainOutput);
   }
 
   /**
-   * Configures encoder and muxer state, and prepares the input Surface.
+   * Adds an output encoding the same frames at another resolution, bit rate or codec,
+   * must be called before {@link #prepare()}. Each frame is rendered once and scaled
+   * on the GPU into the input surface of each rendition, so adding renditions does not
+   * require decoding and compositing the video again. The renditions are encoded at the frame
+   * rate of the main output.
+   *
+   * @param outputPath  the path to write the encoded rendition to
+   * @param width       the width of the rendition
+   * @param height      the height of the rendition
+   * @param bitRate     the bit rate of the rendition
+   * @param mimeType    the mime type of the rendition, or null to use {@link #MIME_TYPE}
+   * @param encoderName the name of the encoder to use, or null to use the default encoder
    */
-  public void prepare() throws IOException {
-    EGLContext sharedContext = EGLUtils.getCurrentContextOrThrows();
-    encoder = encoderName != null
-      ? MediaCodec.createByCodecName(encoderName)
-      : MediaCodec.createEncoderByType(MIME_TYPE);
+  public void addRendition(
+    String outputPath,
+    int width,
+    int height,
+    int bitRate,
+    String mimeType,
+    String encoderName
+  ) {
+    outputs.add(new VideoEncoderOutput(
+      outputPath,
+      mimeType != null ? mimeType : MIME_TYPE,
+      width,
+      height,
+      frameRate,
+      bitRate,
+      encoderName
+    ));
+  }
 
-    MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
-    format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
-      MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
-    format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
-    format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
-    format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, DEFAULT_I_FRAME_INTERVAL_SECONDS);
+  /**
+   * Configures the encoders of all the outputs to encode as fast as possible rather than
+   * at the frame rate of the video, must be called before {@link #prepare()}.
+   *
+   * @param offline whether the offline codec profile should be used
+   */
+  public void setOffline(boolean offline) {
+    this.offline = offline;
+  }
 
-    encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+  /**
+   * Enables the segmented output mode, must be called before {@link #prepare()}.
+   * In this mode the video is written as a sequence of self-contained MP4 files, a new segment
+   * being started on the first key frame following the given duration.
+   *
+   * @param segmentDuration the duration of the segments in seconds, 0 to disable segmentation
+   */
+  public void setSegmentDuration(double segmentDuration) {
+    segmentDurationUs = TimeHelpers.secToUs(segmentDuration);
+  }
 
-    inputSurface = encoder.createInputSurface();
-    eglResourcesHolder = EGLResourcesHolder.createWithWindowedSurface(sharedContext, inputSurface);
-    eglResourcesHolder.makeCurrent();
-    textureRenderer = new TextureRenderer();
-    encoder.start();
+  /**
+   * Sets the sink receiving the segments in segmented output mode, by default segments
+   * are written next to the output path.
+   *
+   * @param segmentSink the sink receiving the segments
+   */
+  public void setSegmentSink(SegmentedMuxer.SegmentSink segmentSink) {
+    this.segmentSink = segmentSink;
+  }
 
-    try {
-      muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
-    } catch (IOException ioe) {
-      throw new RuntimeException("MediaMuxer creation failed", ioe);
-    }
+  /**
+   * Enables checkpointing, must be called before {@link #prepare()} and requires the segmented
+   * output mode. Each time a segment is completed the list of completed segments is persisted
+   * to the given path, and if a checkpoint created with the same settings already exists at
+   * this path the encoder appends to its segments instead of starting over.
+   * The encoding should then start at {@link #getResumeTime()}.
+   *
+   * @param checkpointPath the path of the checkpoint file
+   */
+  public void setCheckpointPath(String checkpointPath) {
+    this.checkpointPath = checkpointPath;
+  }
 
-    trackIndex = -1;
-    muxerStarted = false;
+  /**
+   * Sets a key identifying the content being encoded, a checkpoint is only resumed if it has
+   * been created with the same key. Must be called before {@link #prepare()}.
+   *
+   * @param checkpointKey the key of the encoded content
+   */
+  public void setCheckpointKey(String checkpointKey) {
+    this.checkpointKey = checkpointKey;
   }
 
-  public void makeGLContextCurrent() {
-    eglResourcesHolder.makeCurrent();
+  /**
+   * @return the time in seconds of the first frame to encode, 0 unless a checkpoint has been
+   * resumed
+   */
+  public double getResumeTime() {
+    return checkpoint != null ? checkpoint.getResumeTimeUs() / 1000000.0 : 0;
   }
 
-  public void encodeFrame(int texture, double time) {
-    long timeUS = TimeHelpers.secToUs(time);
-    GLES20.glClearColor(0, 0, 0, 0);
-    GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-    GLES20.glViewport(0, 0, width, height);
-    textureRenderer.draw(texture, EGLUtils.IDENTITY_MATRIX);
-    eglResourcesHolder.setPresentationTime(timeUS * 1000);
-    if (!eglResourcesHolder.swapBuffers()) {
-      throw new RuntimeException("eglSwapBuffer failed");
+  /**
+   * Configures encoder and muxer state, and prepares the input Surface.
+   */
+  public void prepare() throws IOException {
+    if (checkpointPath != null && segmentDurationUs <= 0) {
+      throw new IllegalStateException("Checkpointing requires a segment duration");
+    }
+    if (checkpointPath != null && outputs.size() > 1) {
+      throw new IllegalStateException("Checkpointing is not supported with renditions");
+    }
+    EGLContext sharedContext = EGLUtils.getCurrentContextOrThrows();
+
+    if (segmentDurationUs > 0) {
+      SegmentedMuxer segmentedMuxer = new SegmentedMuxer(
+        segmentSink != null ? segmentSink : new SegmentedMuxer.FileSegmentSink(outputPath),
+        segmentDurationUs
+      );
+      if (checkpointPath != null) {
+        String configuration = outputPath + "|" + width + "x" + height + "|" + frameRate + "|" +
+          bitRate + "|" + encoderName + "|" + segmentDurationUs + "|" + checkpointKey;
+        checkpoint = ExportCheckpoint.load(checkpointPath, configuration);
+        segmentedMuxer.setFirstSegmentIndex(checkpoint.getSegments().size());
+        segmentedMuxer.setOnSegmentCompleteListener(segment -> {
+          checkpoint.addSegment(segment);
+          checkpoint.save(checkpointPath);
+        });
+      }
+      mainOutput.setSegmentedMuxer(segmentedMuxer);
+    }
+
+    for (VideoEncoderOutput output : outputs) {
+      output.setOffline(offline);
+      output.prepare();
+    }
+    eglResourcesHolder = EGLResourcesHolder.createWithWindowedSurface(
+      sharedContext, mainOutput.getInputSurface());
+    mainOutput.setEGLSurface(eglResourcesHolder.getEGLSurface());
+    for (VideoEncoderOutput output : outputs) {
+      if (output != mainOutput) {
+        output.setEGLSurface(eglResourcesHolder.createWindowSurface(output.getInputSurface()));
+      }
+    }
+    eglResourcesHolder.makeCurrent();
+    textureRenderer = new TextureRenderer();
+    if (EGLUtils.isCurrentContextGLES3()) {
+      int[] framebuffers = new int[1];
+      GLES20.glGenFramebuffers(1, framebuffers, 0);
+      blitFramebuffer = framebuffers[0];
     }
-    drainEncoder(false);
   }
 
-  public void finishWriting() {
-    drainEncoder(true);
+  public void makeGLContextCurrent() {
+    eglResourcesHolder.makeCurrent();
   }
 
   /**
-   * Extracts all pending data from the encoder.
+   * Encodes a frame into each output, scaling the texture to the size of the outputs.
    *
-   * @param endOfStream true if this is the end of the stream
+   * @param texture       the texture of the frame
+   * @param time          the time of the frame in seconds
+   * @param textureWidth  the width of the texture, 0 if unknown
+   * @param textureHeight the height of the texture, 0 if unknown
    */
-  private void drainEncoder(boolean endOfStream) {
-    final int TIMEOUT_USEC = 10000;
-
-    if (endOfStream) {
-      encoder.signalEndOfInputStream();
+  public void encodeFrame(int texture, double time, int textureWidth, int textureHeight) {
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.VideoEncoder.encodeFrame");
+    try {
+      renderFrame(texture, time, textureWidth, textureHeight);
+    } finally {
+      TraceHelpers.endSection(traced);
     }
+  }
 
-    while (true) {
-      int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
-      if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
-        // no output available yet
-        if (!endOfStream) {
-          break; // out of while
-        }
+  private void renderFrame(int texture, double time, int textureWidth, int textureHeight) {
+    long timeUS = TimeHelpers.secToUs(time);
+    long startTimeNs = System.nanoTime();
+    int queueDepth = 0;
+    for (VideoEncoderOutput output : outputs) {
+      if (outputs.size() > 1 && !eglResourcesHolder.makeCurrent(output.getEGLSurface())) {
+        throw new RuntimeException("eglMakeCurrent failed");
       }
-      if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-        // should happen before receiving buffers, and should only happen once
-        if (muxerStarted) {
-          throw new RuntimeException("format changed twice");
-        }
-        MediaFormat newFormat = encoder.getOutputFormat();
-
-        // now that we have the Magic Goodies, start the muxer
-        trackIndex = muxer.addTrack(newFormat);
-        muxer.start();
-        muxerStarted = true;
-      } else if (encoderStatus < 0) {
-        Log.w(TAG, "unexpected result from encoder.dequeueOutputBuffer: " + encoderStatus);
-        // let's ignore it
+      // the blit needs the size of the texture, which cannot be queried on OpenGL ES 3.0
+      if (blitFramebuffer != 0 && textureWidth > 0 && textureHeight > 0) {
+        blitTexture(texture, textureWidth, textureHeight, output);
       } else {
-        ByteBuffer encodedData = encoder.getOutputBuffer(encoderStatus);
-        if (encodedData == null) {
-          throw new RuntimeException("encoderOutputBuffer " + encoderStatus + " was null");
-        }
+        GLES20.glClearColor(0, 0, 0, 0);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glViewport(0, 0, output.getWidth(), output.getHeight());
+        textureRenderer.draw(texture, EGLUtils.IDENTITY_MATRIX);
+      }
+      output.requestKeyFrameIfNeeded(timeUS);
+      eglResourcesHolder.setPresentationTime(timeUS * 1000);
+      if (!eglResourcesHolder.swapBuffers(output.getEGLSurface())) {
+        throw new RuntimeException("eglSwapBuffer failed");
+      }
+      output.onFrameSubmitted();
+      queueDepth = Math.max(queueDepth, output.getPendingFrames());
+    }
+    long drainStartTimeNs = System.nanoTime();
+    encodeHistogram.record(TimeHelpers.nsecToUs(drainStartTimeNs - startTimeNs));
+    queueDepthHistogram.record(queueDepth);
+    // drain once every encoder has been fed so that they work concurrently
+    for (VideoEncoderOutput output : outputs) {
+      output.drain(false);
+    }
+    drainHistogram.record(TimeHelpers.nsecToUs(System.nanoTime() - drainStartTimeNs));
+    if (outputs.size() > 1) {
+      eglResourcesHolder.makeCurrent();
+    }
+  }
 
-        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
-          // The codec config data was pulled out and fed to the muxer when we got
-          // the INFO_OUTPUT_FORMAT_CHANGED status.  Ignore it.
-          bufferInfo.size = 0;
-        }
+  /**
+   * Copies the texture into the input surface of an output with a single blit, which replaces
+   * the clear and the shader draw of the texture renderer and leaves no program or vertex state
+   * to set up per frame.
+   */
+  private void blitTexture(
+    int texture, int textureWidth, int textureHeight, VideoEncoderOutput output) {
+    // the texture is attached on each frame since the renderer may recreate it under the same id
+    GLES20.glBindFramebuffer(GLES30.GL_READ_FRAMEBUFFER, blitFramebuffer);
+    GLES20.glFramebufferTexture2D(
+      GLES30.GL_READ_FRAMEBUFFER,
+      GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, texture,
+      0
+    );
+    GLES20.glBindFramebuffer(GLES30.GL_DRAW_FRAMEBUFFER, 0);
+    int outputWidth = output.getWidth();
+    int outputHeight = output.getHeight();
+    boolean scaled = outputWidth != textureWidth || outputHeight != textureHeight;
+    // rows are flipped like when drawn by the texture renderer
+    GLES30.glBlitFramebuffer(
+      0, 0, textureWidth, textureHeight,
+      0, outputHeight, outputWidth, 0,
+      GLES20.GL_COLOR_BUFFER_BIT,
+      scaled ? GLES20.GL_LINEAR : GLES20.GL_NEAREST
+    );
+  }
 
-        if (bufferInfo.size != 0) {
-          if (!muxerStarted) {
-            throw new RuntimeException("muxer hasn't started");
-          }
+  public void finishWriting() {
+    for (VideoEncoderOutput output : outputs) {
+      output.finish();
+    }
+    if (checkpointPath != null) {
+      // the export is complete, there is nothing left to resume
+      ExportCheckpoint.delete(checkpointPath);
+    }
+  }
 
-          // adjust the ByteBuffer values to match BufferInfo (not needed?)
-          encodedData.position(bufferInfo.offset);
-          encodedData.limit(bufferInfo.offset + bufferInfo.size);
+  /**
+   * @return the segments completed since the last call in segmented output mode,
+   * an empty list otherwise
+   */
+  public List<SegmentedMuxer.Segment> pollCompletedSegments() {
+    return mainOutput.pollCompletedSegments();
+  }
 
-          muxer.writeSampleData(trackIndex, encodedData, bufferInfo);
-        }
+  /**
+   * @return the histogram of the time in microseconds spent drawing the frames into
+   * the encoders input surfaces
+   */
+  public LatencyHistogram getEncodeHistogram() {
+    return encodeHistogram;
+  }
 
-        encoder.releaseOutputBuffer(encoderStatus, false);
+  /**
+   * @return the histogram of the time in microseconds spent draining the encoders
+   * and writing the encoded samples to the muxers
+   */
+  public LatencyHistogram getDrainHistogram() {
+    return drainHistogram;
+  }
 
-        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-          if (!endOfStream) {
-            Log.w(TAG, "reached end of stream unexpectedly");
-          }
-          break; // out of while
-        }
-      }
-    }
+  /**
+   * @return the histogram of the number of frames queued in the encoder when a new frame
+   * is submitted
+   */
+  public LatencyHistogram getQueueDepthHistogram() {
+    return queueDepthHistogram;
   }
 
   /**
@@ -213,46 +374,26 @@ public class VideoEncoder {
    */
   public void release() {
     if (eglResourcesHolder != null) {
+      if (blitFramebuffer != 0) {
+        int framebuffer = blitFramebuffer;
+        EGLUtils.runWithContext(eglResourcesHolder, () ->
+          GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0));
+        blitFramebuffer = 0;
+      }
+      for (VideoEncoderOutput output : outputs) {
+        if (output != mainOutput && output.getEGLSurface() != null) {
+          eglResourcesHolder.releaseSurface(output.getEGLSurface());
+          output.setEGLSurface(null);
+        }
+      }
       eglResourcesHolder.release();
     }
-    if (encoder != null) {
-      encoder.stop();
-      encoder.release();
-      encoder = null;
-    }
-    if (inputSurface != null) {
-      inputSurface.release();
-      inputSurface = null;
-    }
-    if (muxer != null) {
-      muxer.stop();
-      muxer.release();
-      muxer = null;
+    for (VideoEncoderOutput output : outputs) {
+      output.release();
     }
   }
 
   public Bitmap saveTexture(int texture, int width, int height) {
-    int[] frame = new int[1];
-    GLES20.glGenFramebuffers(1, frame, 0);
-    GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frame[0]);
-    GLES20.glFramebufferTexture2D(
-      GLES20.GL_FRAMEBUFFER,
-      GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, texture,
-      0
-    );
-
-    ByteBuffer buffer = ByteBuffer.allocate(width * height * 4);
-    GLES20.glReadPixels(
-      0, 0, width, height, GLES20.GL_RGBA,
-      GLES20.GL_UNSIGNED_BYTE, buffer
-    );
-
-    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-    bitmap.copyPixelsFromBuffer(buffer);
-
-    GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
-    GLES20.glDeleteFramebuffers(1, frame, 0);
-
-    return bitmap;
+    return EGLUtils.saveTexture(texture, width, height);
   }
 }
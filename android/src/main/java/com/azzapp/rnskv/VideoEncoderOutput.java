@@ -0,0 +1,357 @@
+package com.azzapp.rnskv;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Surface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import javax.microedition.khronos.egl.EGLSurface;
+
+/**
+ * An output of a {@link VideoEncoder}: a MediaCodec encoder fed through its input surface
+ * and the muxer writing its encoded samples.
+ */
+public class VideoEncoderOutput {
+
+  private static final String TAG = "VideoEncoderOutput";
+
+  private final String outputPath;
+
+  private final String mimeType;
+
+  private final int width;
+
+  private final int height;
+
+  private final int frameRate;
+
+  private final int bitRate;
+
+  private final String encoderName;
+
+  private MediaCodec encoder;
+
+  private Surface inputSurface;
+
+  private EGLSurface eglSurface;
+
+  private MediaMuxer muxer;
+
+  private SegmentedMuxer segmentedMuxer;
+
+  private boolean offline = false;
+
+  private int trackIndex = -1;
+
+  private boolean muxerStarted = false;
+
+  private int pendingFrames = 0;
+
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+  private final String pendingFramesCounterName;
+
+  /**
+   * Creates a new VideoEncoderOutput.
+   *
+   * @param outputPath  the path to write the encoded video to
+   * @param mimeType    the mime type of the encoded video
+   * @param width       the width of the video
+   * @param height      the height of the video
+   * @param frameRate   the frame rate of the video
+   * @param bitRate     the bit rate of the video
+   * @param encoderName the name of the encoder to use, or null to use the default encoder
+   */
+  public VideoEncoderOutput(
+    String outputPath,
+    String mimeType,
+    int width,
+    int height,
+    int frameRate,
+    int bitRate,
+    String encoderName
+  ) {
+    this.outputPath = outputPath;
+    this.mimeType = mimeType;
+    this.width = width;
+    this.height = height;
+    this.frameRate = frameRate;
+    this.bitRate = bitRate;
+    this.encoderName = encoderName;
+    pendingFramesCounterName = "RNSkiaVideo.encoderBacklog." + outputPath;
+  }
+
+  /**
+   * Writes the output through the given segmented muxer instead of a single MP4 file,
+   * must be called before {@link #prepare()}.
+   *
+   * @param segmentedMuxer the segmented muxer to use
+   */
+  public void setSegmentedMuxer(SegmentedMuxer segmentedMuxer) {
+    this.segmentedMuxer = segmentedMuxer;
+  }
+
+  /**
+   * Configures the encoder to encode as fast as possible rather than at the frame rate
+   * of the video, must be called before {@link #prepare()}.
+   *
+   * @param offline whether the offline codec profile should be used
+   */
+  public void setOffline(boolean offline) {
+    this.offline = offline;
+  }
+
+  /**
+   * Configures and starts the encoder, and creates the muxer.
+   */
+  public void prepare() throws IOException {
+    encoder = encoderName != null
+      ? MediaCodec.createByCodecName(encoderName)
+      : MediaCodec.createEncoderByType(mimeType);
+
+    if (offline) {
+      OfflineCodecProfile.configure(
+        encoder,
+        createFormat(),
+        createFormat(),
+        format -> encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+      );
+    } else {
+      encoder.configure(createFormat(), null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+    }
+    inputSurface = encoder.createInputSurface();
+    encoder.start();
+
+    if (segmentedMuxer == null) {
+      try {
+        muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+      } catch (IOException ioe) {
+        throw new RuntimeException("MediaMuxer creation failed", ioe);
+      }
+    }
+  }
+
+  private MediaFormat createFormat() {
+    MediaFormat format = MediaFormat.createVideoFormat(mimeType, width, height);
+    format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+      MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+    format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+    format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+    format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, VideoEncoder.DEFAULT_I_FRAME_INTERVAL_SECONDS);
+    return format;
+  }
+
+  /**
+   * @return the width of the encoded video
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return the height of the encoded video
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return the surface feeding the encoder
+   */
+  public Surface getInputSurface() {
+    return inputSurface;
+  }
+
+  /**
+   * @return the EGL surface wrapping the input surface
+   */
+  public EGLSurface getEGLSurface() {
+    return eglSurface;
+  }
+
+  /**
+   * Sets the EGL surface wrapping the input surface.
+   */
+  public void setEGLSurface(EGLSurface eglSurface) {
+    this.eglSurface = eglSurface;
+  }
+
+  /**
+   * Notifies that a frame has been submitted to the encoder input surface.
+   */
+  public void onFrameSubmitted() {
+    pendingFrames++;
+    TraceHelpers.setCounter(pendingFramesCounterName, pendingFrames);
+  }
+
+  /**
+   * @return the number of frames submitted to the encoder that have not been output yet
+   */
+  public int getPendingFrames() {
+    return pendingFrames;
+  }
+
+  /**
+   * Asks the encoder to produce a key frame if the segmented muxer needs one to start
+   * a new segment.
+   *
+   * @param presentationTimeUs the presentation time of the frame about to be encoded
+   */
+  public void requestKeyFrameIfNeeded(long presentationTimeUs) {
+    if (segmentedMuxer != null && segmentedMuxer.shouldRequestKeyFrame(presentationTimeUs)) {
+      Bundle params = new Bundle();
+      params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+      encoder.setParameters(params);
+    }
+  }
+
+  /**
+   * Signals the end of the stream, writes the remaining samples and finalizes the last segment
+   * in segmented mode.
+   */
+  public void finish() {
+    drain(true);
+    if (segmentedMuxer != null) {
+      try {
+        segmentedMuxer.finish();
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to finalize the last segment", e);
+      }
+    }
+  }
+
+  /**
+   * @return the segments completed since the last call in segmented output mode,
+   * an empty list otherwise
+   */
+  public List<SegmentedMuxer.Segment> pollCompletedSegments() {
+    if (segmentedMuxer == null) {
+      return List.of();
+    }
+    return segmentedMuxer.pollCompletedSegments();
+  }
+
+  /**
+   * Extracts all pending data from the encoder.
+   *
+   * @param endOfStream true if this is the end of the stream
+   */
+  public void drain(boolean endOfStream) {
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.VideoEncoder.drainEncoder");
+    try {
+      drainEncoder(endOfStream);
+    } finally {
+      TraceHelpers.endSection(traced);
+    }
+  }
+
+  private void drainEncoder(boolean endOfStream) {
+    final int TIMEOUT_USEC = 10000;
+
+    if (endOfStream) {
+      encoder.signalEndOfInputStream();
+    }
+
+    while (true) {
+      int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
+      if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
+        // no output available yet
+        if (!endOfStream) {
+          break; // out of while
+        }
+      }
+      if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+        // should happen before receiving buffers, and should only happen once
+        if (muxerStarted) {
+          throw new RuntimeException("format changed twice");
+        }
+        MediaFormat newFormat = encoder.getOutputFormat();
+
+        // now that we have the Magic Goodies, start the muxer
+        if (segmentedMuxer != null) {
+          segmentedMuxer.setOutputFormat(newFormat);
+        } else {
+          trackIndex = muxer.addTrack(newFormat);
+          muxer.start();
+        }
+        muxerStarted = true;
+      } else if (encoderStatus < 0) {
+        Log.w(TAG, "unexpected result from encoder.dequeueOutputBuffer: " + encoderStatus);
+        // let's ignore it
+      } else {
+        ByteBuffer encodedData = encoder.getOutputBuffer(encoderStatus);
+        if (encodedData == null) {
+          throw new RuntimeException("encoderOutputBuffer " + encoderStatus + " was null");
+        }
+
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+          // The codec config data was pulled out and fed to the muxer when we got
+          // the INFO_OUTPUT_FORMAT_CHANGED status.  Ignore it.
+          bufferInfo.size = 0;
+        }
+
+        if (bufferInfo.size != 0) {
+          if (!muxerStarted) {
+            throw new RuntimeException("muxer hasn't started");
+          }
+
+          // adjust the ByteBuffer values to match BufferInfo (not needed?)
+          encodedData.position(bufferInfo.offset);
+          encodedData.limit(bufferInfo.offset + bufferInfo.size);
+
+          pendingFrames = Math.max(0, pendingFrames - 1);
+          TraceHelpers.setCounter(pendingFramesCounterName, pendingFrames);
+          if (segmentedMuxer != null) {
+            try {
+              segmentedMuxer.writeSampleData(encodedData, bufferInfo);
+            } catch (IOException e) {
+              throw new RuntimeException("Failed to write segment", e);
+            }
+          } else {
+            muxer.writeSampleData(trackIndex, encodedData, bufferInfo);
+          }
+        }
+
+        encoder.releaseOutputBuffer(encoderStatus, false);
+
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+          if (!endOfStream) {
+            Log.w(TAG, "reached end of stream unexpectedly");
+          }
+          break; // out of while
+        }
+      }
+    }
+  }
+
+  /**
+   * Releases encoder resources.  May be called after partial / failed initialization.
+   */
+  public void release() {
+    if (encoder != null) {
+      encoder.stop();
+      encoder.release();
+      encoder = null;
+    }
+    if (inputSurface != null) {
+      inputSurface.release();
+      inputSurface = null;
+    }
+    if (muxer != null) {
+      muxer.stop();
+      muxer.release();
+      muxer = null;
+    }
+    if (segmentedMuxer != null) {
+      segmentedMuxer.release();
+      segmentedMuxer = null;
+    }
+  }
+}
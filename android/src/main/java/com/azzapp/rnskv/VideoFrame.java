@@ -9,6 +9,7 @@ public class VideoFrame {
   private final int height;
   private final int rotation;
   private final long timestampNs;
+  private final long fence;
 
   public VideoFrame(
     int texture,
@@ -16,12 +17,30 @@ public class VideoFrame {
     int height,
     int rotation,
     long timestampNs
+  ) {
+    this(texture, width, height, rotation, timestampNs, 0);
+  }
+
+  /**
+   * Creates a new VideoFrame rendered in another context than the one that will draw it.
+   *
+   * @param fence the fence signaled once the texture is rendered, see
+   *              {@link EGLResourcesHolder#insertFence()}
+   */
+  public VideoFrame(
+    int texture,
+    int width,
+    int height,
+    int rotation,
+    long timestampNs,
+    long fence
   ) {
     this.texture = texture;
     this.width = width;
     this.height = height;
     this.rotation = rotation;
     this.timestampNs = timestampNs;
+    this.fence = fence;
   }
 
   public int getTexture() {
@@ -43,4 +62,12 @@ public class VideoFrame {
   public long getTimestampNs() {
     return timestampNs;
   }
+
+  /**
+   * @return the fence to wait for before drawing the texture, to be deleted by the drawing
+   * context, or 0 if there is none
+   */
+  public long getFence() {
+    return fence;
+  }
 }
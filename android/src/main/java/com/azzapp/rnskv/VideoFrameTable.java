@@ -0,0 +1,110 @@
+package com.azzapp.rnskv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of the frames of the items of a composition, written in a direct buffer so that
+ * the native side can read them without calling back into Java for each frame.
+ * <p>
+ * The buffer starts with a header made of the layout version and the number of slots as ints,
+ * and of the fence to wait for before drawing the frames as a long (0 if there is none),
+ * followed by one record per slot: the texture id (0 if the item has no frame yet), the width,
+ * the height and the rotation of the frame, all as ints in native byte order. Slots follow the
+ * order of the items in the composition. When the items change, the layout version is
+ * incremented and the buffer may be replaced, the version of the replaced buffer being set
+ * to {@link #STALE_LAYOUT_VERSION}.
+ */
+public class VideoFrameTable {
+
+  public static final int HEADER_SIZE = 16;
+
+  public static final int RECORD_SIZE = 16;
+
+  public static final int STALE_LAYOUT_VERSION = -1;
+
+  private ByteBuffer buffer = allocate(0);
+
+  private String[] itemIds = new String[0];
+
+  private int layoutVersion = 0;
+
+  /**
+   * Writes the frames of the items to the table.
+   *
+   * @param items  the items of the composition, in slot order
+   * @param frames the frames of the items by item id
+   * @param fence  the fence to wait for before drawing the frames, or 0 if there is none
+   */
+  public synchronized void write(
+    List<VideoComposition.Item> items,
+    Map<String, VideoFrame> frames,
+    long fence
+  ) {
+    if (!hasLayout(items)) {
+      updateLayout(items);
+    }
+    buffer.putLong(8, fence);
+    for (int i = 0; i < itemIds.length; i++) {
+      VideoFrame frame = frames.get(itemIds[i]);
+      int offset = HEADER_SIZE + i * RECORD_SIZE;
+      buffer.putInt(offset, frame != null ? frame.getTexture() : 0);
+      buffer.putInt(offset + 4, frame != null ? frame.getWidth() : 0);
+      buffer.putInt(offset + 8, frame != null ? frame.getHeight() : 0);
+      buffer.putInt(offset + 12, frame != null ? frame.getRotation() : 0);
+    }
+  }
+
+  /**
+   * @return the buffer of the table, replaced when its layout version becomes stale
+   */
+  public synchronized ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * @return the ids of the items of each slot of the table
+   */
+  public synchronized String[] getItemIds() {
+    return itemIds;
+  }
+
+  private boolean hasLayout(List<VideoComposition.Item> items) {
+    if (items.size() != itemIds.length) {
+      return false;
+    }
+    for (int i = 0; i < itemIds.length; i++) {
+      if (!items.get(i).getId().equals(itemIds[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void updateLayout(List<VideoComposition.Item> items) {
+    String[] ids = new String[items.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = items.get(i).getId();
+    }
+    int capacity = HEADER_SIZE + ids.length * RECORD_SIZE;
+    if (buffer.capacity() < capacity) {
+      buffer.putInt(0, STALE_LAYOUT_VERSION);
+      buffer = allocate(Math.max(capacity, buffer.capacity() * 2));
+    }
+    itemIds = ids;
+    layoutVersion++;
+    buffer.putInt(0, layoutVersion);
+    buffer.putInt(4, ids.length);
+  }
+
+  private static ByteBuffer allocate(int capacity) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE, capacity))
+      .order(ByteOrder.nativeOrder());
+    buffer.putInt(0, 0);
+    buffer.putInt(4, 0);
+    buffer.putLong(8, 0);
+    return buffer;
+  }
+}
@@ -11,6 +11,7 @@ import androidx.media3.common.Player;
 import androidx.media3.common.VideoSize;
 import androidx.media3.common.PlaybackParameters;
 import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DecoderCounters;
 import androidx.media3.exoplayer.ExoPlayer;
 
 import javax.microedition.khronos.egl.EGLContext;
@@ -19,7 +20,9 @@ import javax.microedition.khronos.egl.EGLContext;
  * A class that wraps ExoPlayer to play video, and extract frames from it using OpenGL
  */
 @UnstableApi
-public class VideoPlayer {
+public class VideoPlayer implements ResourceManager.TrimmableResource {
+
+  private static final long STATS_INTERVAL_MS = 1000;
 
   private ExoPlayer player;
 
@@ -35,7 +38,7 @@ public class VideoPlayer {
 
   private long currentPosition = 0L;
 
-  private boolean isPlaying = false;
+  private volatile boolean isPlaying = false;
 
   private Boolean isLooping = false;
 
@@ -53,6 +56,18 @@ public class VideoPlayer {
 
   private boolean released = false;
 
+  private boolean trimmed = false;
+
+  private long trimmedPosition = 0L;
+
+  private volatile long renderedFrames = 0;
+
+  private volatile long droppedFrames = 0;
+
+  private volatile long lateFrames = 0;
+
+  private final LatencyHistogram displayLatencyHistogram = new LatencyHistogram();
+
   private final NativeEventDispatcher eventDispatcher;
 
   /**
@@ -137,7 +152,9 @@ public class VideoPlayer {
       player.prepare();
 
       dispatchBufferingUpdate();
+      dispatchStats();
     });
+    ResourceManager.register(this);
   }
 
   long previousBufferedPosition = 0;
@@ -164,14 +181,54 @@ public class VideoPlayer {
       return;
     }
     this.currentPosition = player.getCurrentPosition();
+    updateDecoderCounters();
     mainHandler.postDelayed(this::updateCurrentPosition, 50);
   }
 
+  private void updateDecoderCounters() {
+    DecoderCounters counters = player.getVideoDecoderCounters();
+    if (counters == null) {
+      return;
+    }
+    counters.ensureUpdated();
+    renderedFrames = counters.renderedOutputBufferCount;
+    droppedFrames = counters.droppedBufferCount;
+  }
+
+  private void dispatchStats() {
+    if (released || player == null) {
+      return;
+    }
+    if (isPlaying) {
+      dispatchEventIfNoReleased("stats", getStats());
+    }
+    mainHandler.postDelayed(this::dispatchStats, STATS_INTERVAL_MS);
+  }
+
+  /**
+   * @return the frame pacing statistics of the player, the rendered and dropped frames
+   * being counted by the video decoder
+   */
+  public PlaybackStats getStats() {
+    return new PlaybackStats(
+      renderedFrames,
+      droppedFrames,
+      lateFrames,
+      0,
+      displayLatencyHistogram,
+      null,
+      null
+    );
+  }
+
   /**
    * Start playing the video
    */
   public void play() {
-    mainHandler.post(() -> player.play());
+    mainHandler.post(() -> {
+      restoreIfTrimmed();
+      player.play();
+    });
   }
 
   /**
@@ -186,7 +243,36 @@ public class VideoPlayer {
    */
   public void seekTo(long location) {
     isSeeking = true;
-    mainHandler.post(() -> player.seekTo(location));
+    mainHandler.post(() -> {
+      restoreIfTrimmed();
+      player.seekTo(location);
+    });
+  }
+
+  /**
+   * Releases the decoders and the buffers of the player while it is paused, the player is
+   * prepared again at the same position the next time it is played or seeked.
+   * The output texture is kept since it holds the displayed frame.
+   */
+  @Override
+  public void trimMemory(boolean uiHidden) {
+    // the displayed frame of a paused player is not decoded again, so the player is only
+    // known not to be displayed when the user interface is hidden
+    if (!uiHidden || released || trimmed || player == null || !isInitialized || isPlaying) {
+      return;
+    }
+    trimmedPosition = player.getCurrentPosition();
+    player.stop();
+    trimmed = true;
+  }
+
+  private void restoreIfTrimmed() {
+    if (!trimmed || player == null) {
+      return;
+    }
+    trimmed = false;
+    player.seekTo(trimmedPosition);
+    player.prepare();
   }
 
   public void setupGL() {
@@ -284,6 +370,15 @@ public class VideoPlayer {
    * @return whether the frame was decoded successfully
    */
   public VideoFrame decodeNextFrame() {
+    boolean traced = TraceHelpers.beginSection("RNSkiaVideo.VideoPlayer.decodeNextFrame");
+    try {
+      return extractFrame();
+    } finally {
+      TraceHelpers.endSection(traced);
+    }
+  }
+
+  private VideoFrame extractFrame() {
     if (Looper.myLooper() != Looper.getMainLooper()) {
       throw new RuntimeException("decodeNextFrame should be called on UI Thread");
     }
@@ -295,12 +390,20 @@ public class VideoPlayer {
     int width = downscale ? outputWidth : videoWidth;
     int height = downscale ? outputHeight : videoHeight;
     if (width > 0 && height > 0 && glFrameExtractor.decodeNextFrame(width, height)) {
+      // the timestamp of the frame is the time at which the player released it to the surface
+      long latencyUs =
+        TimeHelpers.nsecToUs(System.nanoTime() - glFrameExtractor.getLatestTimeStampNs());
+      displayLatencyHistogram.record(latencyUs);
+      if (latencyUs > PlaybackStats.LATE_FRAME_THRESHOLD_US) {
+        lateFrames++;
+      }
       return new VideoFrame(
         glFrameExtractor.getOutputTexId(),
         width,
         height,
         0,
-        glFrameExtractor.getLatestTimeStampNs()
+        glFrameExtractor.getLatestTimeStampNs(),
+        eglResourcesHolder.insertFence()
       );
     }
     return null;
@@ -311,6 +414,7 @@ public class VideoPlayer {
    */
   public void release() {
     released = true;
+    ResourceManager.unregister(this);
     if (glFrameExtractor != null) {
       glFrameExtractor.release();
       glFrameExtractor = null;
@@ -0,0 +1,124 @@
+package com.azzapp.rnskv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.SurfaceTexture;
+import android.view.Surface;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class VideoCompositionItemDecoderTest {
+
+  private static final double FRAME_RATE = 30;
+
+  private static final long SYNC_FRAME_INTERVAL_US = 1000000;
+
+  private final BlockingQueue<Long> availableFrames = new LinkedBlockingQueue<>();
+
+  private VideoCompositionItemDecoder decoder;
+
+  /**
+   * Creates a decoder of an item starting at the beginning of the composition and of its
+   * video, decoding a synthetic video without jitter.
+   */
+  private VideoCompositionItemDecoder createDecoder(double duration) {
+    VideoComposition.Item item =
+      new VideoComposition.Item("item", "/videos/synthetic.mp4", 0, 0, duration);
+    SyntheticDecoderBackend backend = new SyntheticDecoderBackend(
+      640,
+      360,
+      FRAME_RATE,
+      TimeHelpers.secToUs(duration),
+      1000,
+      0,
+      8,
+      SYNC_FRAME_INTERVAL_US,
+      0
+    );
+    decoder = new VideoCompositionItemDecoder(item, backend);
+    decoder.setOnFrameAvailableListener(availableFrames::add);
+    // the synthetic backend does not draw the frames
+    decoder.setSurface(new Surface((SurfaceTexture) null));
+    return decoder;
+  }
+
+  private static long frameTimeUs(long frameIndex) {
+    return Math.round(frameIndex * 1000000 / FRAME_RATE);
+  }
+
+  private void awaitFrame(long presentationTimeUs) throws InterruptedException {
+    while (true) {
+      Long frameTimeUs = availableFrames.poll(5, TimeUnit.SECONDS);
+      assertNotNull("no frame decoded at " + presentationTimeUs, frameTimeUs);
+      if (frameTimeUs >= presentationTimeUs) {
+        return;
+      }
+    }
+  }
+
+  @After
+  public void releaseDecoder() {
+    if (decoder != null) {
+      decoder.release();
+    }
+  }
+
+  @Test
+  public void rendersTheLatestDueFrame() throws Exception {
+    createDecoder(2);
+    decoder.prepare();
+    decoder.start();
+    awaitFrame(frameTimeUs(3));
+
+    assertEquals(Long.valueOf(frameTimeUs(3)), decoder.render(frameTimeUs(3)));
+    assertEquals(1, decoder.getRenderedFrames());
+    assertEquals(3, decoder.getDroppedFrames());
+    // no frame is due until the next one
+    assertNull(decoder.render(frameTimeUs(4) - 1));
+  }
+
+  @Test
+  public void seekBeforePrepareStartsFromThePreviousSyncFrame() throws Exception {
+    createDecoder(2);
+    decoder.seekTo(1500000);
+    decoder.prepare();
+    decoder.start();
+
+    Long firstFrameTimeUs = availableFrames.poll(5, TimeUnit.SECONDS);
+    assertEquals(Long.valueOf(SYNC_FRAME_INTERVAL_US), firstFrameTimeUs);
+  }
+
+  @Test
+  public void reachesTheEndOfTheItem() throws Exception {
+    CountDownLatch endReached = new CountDownLatch(1);
+    createDecoder(0.5);
+    decoder.setOnEndReachedListener(endReached::countDown);
+    decoder.prepare();
+    decoder.start();
+
+    // the decoded frames are released as they are rendered until the end of the video
+    Long lastRenderedTimeUs = null;
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!endReached.await(10, TimeUnit.MILLISECONDS)) {
+      assertTrue("end of item not reached", System.currentTimeMillis() < deadline);
+      Long renderedTimeUs = decoder.render(500000);
+      if (renderedTimeUs != null) {
+        lastRenderedTimeUs = renderedTimeUs;
+      }
+    }
+    Long renderedTimeUs = decoder.render(500000);
+    if (renderedTimeUs != null) {
+      lastRenderedTimeUs = renderedTimeUs;
+    }
+    assertEquals(Long.valueOf(frameTimeUs(14)), lastRenderedTimeUs);
+  }
+}
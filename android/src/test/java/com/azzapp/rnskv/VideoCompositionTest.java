@@ -0,0 +1,80 @@
+package com.azzapp.rnskv;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+public class VideoCompositionTest {
+
+  private static final String PATH = "/videos/clip.mp4";
+
+  /**
+   * Creates the two parts of a clip split at 5 seconds of its video, played at the given speed.
+   */
+  private static VideoComposition.Item[] splitClip(double speed) throws Exception {
+    double firstDuration = 5 / speed;
+    VideoComposition.Item first = new VideoComposition.Item("first", PATH, 0, 0, 5);
+    VideoComposition.Item second =
+      new VideoComposition.Item("second", PATH, firstDuration, 5, 5);
+    setSpeed(first, speed);
+    setSpeed(second, speed);
+    return new VideoComposition.Item[]{first, second};
+  }
+
+  // the items are created with reflection from the native side, so they have no setters
+  private static void setSpeed(VideoComposition.Item item, double speed) throws Exception {
+    Field field = VideoComposition.Item.class.getDeclaredField("speed");
+    field.setAccessible(true);
+    field.set(item, speed);
+  }
+
+  @Test
+  public void splitClipAtNormalSpeedIsJoined() throws Exception {
+    VideoComposition.Item[] items = splitClip(1);
+    assertTrue(items[0].isContinuedBy(items[1]));
+    assertFalse(items[1].isContinuedBy(items[0]));
+  }
+
+  @Test
+  public void splitClipAtOtherSpeedIsNotJoined() throws Exception {
+    VideoComposition.Item[] items = splitClip(2);
+    assertFalse(items[0].isContinuedBy(items[1]));
+    items = splitClip(0.5);
+    assertFalse(items[0].isContinuedBy(items[1]));
+  }
+
+  /**
+   * The export waits at each composition time until the frame decoded for each item reaches
+   * the video time of the item, the frames of a stream must therefore reach the video times
+   * of all its items or the export never completes.
+   */
+  @Test
+  public void joinedStreamReachesTheTimesOfAllItsItems() throws Exception {
+    VideoComposition.Item[] items = splitClip(1);
+    VideoComposition.Item stream = items[0].joinWith(items[1]);
+    for (long timeUs = 0; timeUs <= 10000000; timeUs += 100000) {
+      long streamTimeUs = stream.getSourceTimeUs(timeUs);
+      for (VideoComposition.Item item : items) {
+        assertTrue(
+          "stream behind " + item.getId() + " at " + timeUs,
+          streamTimeUs >= item.getSourceTimeUs(timeUs)
+        );
+      }
+    }
+  }
+
+  /**
+   * Exporting a clip split at twice the normal speed as a single stream would never be ready,
+   * the stream lagging behind the times expected for the second part before its start.
+   */
+  @Test
+  public void splitClipAtOtherSpeedCouldNotBeExportedAsOneStream() throws Exception {
+    VideoComposition.Item[] items = splitClip(2);
+    VideoComposition.Item stream = items[0].joinWith(items[1]);
+    long timeUs = 1000000;
+    assertTrue(stream.getSourceTimeUs(timeUs) < items[1].getSourceTimeUs(timeUs));
+  }
+}
@@ -39,15 +39,73 @@ void EventEmitter::emit(std::string eventName, jsi::Value data) {
 
 void EventEmitter::emit(std::string eventName,
                         std::function<jsi::Value(jsi::Runtime&)> dataFactory) {
-  callInvoker->invokeAsync([=, this]() {
-    if (jsListeners.count(eventName) != 0) {
-      auto listeners = jsListeners[eventName];
-      auto data = dataFactory(*runtime);
-      for (const auto& listener : listeners) {
-        listener->call(*runtime, data);
+  enqueue({std::move(eventName), std::move(dataFactory)}, false);
+}
+
+void EventEmitter::emitLatest(
+    std::string eventName,
+    std::function<jsi::Value(jsi::Runtime&)> dataFactory) {
+  enqueue({std::move(eventName), std::move(dataFactory)}, true);
+}
+
+void EventEmitter::enqueue(PendingEvent event, bool coalesce) {
+  std::lock_guard<std::mutex> lock(pendingEventsMutex);
+  if (coalesce) {
+    // the replaced value is dropped and the latest one is delivered in the
+    // order it was emitted relatively to the other events
+    for (auto it = pendingEvents.begin(); it != pendingEvents.end(); ++it) {
+      if (it->eventName == event.eventName) {
+        pendingEvents.erase(it);
+        break;
       }
     }
-  });
+  }
+  pendingEvents.push_back(std::move(event));
+  if (!flushScheduled) {
+    flushScheduled = true;
+    callInvoker->invokeAsync([this]() { flush(); });
+  }
+}
+
+void EventEmitter::flush() {
+  std::deque<PendingEvent> events;
+  {
+    std::lock_guard<std::mutex> lock(pendingEventsMutex);
+    events.swap(pendingEvents);
+    flushScheduled = false;
+  }
+  // a throwing listener is reported without preventing the delivery of the
+  // other events of the batch
+  for (auto& event : events) {
+    if (jsListeners.count(event.eventName) != 0) {
+      auto listeners = jsListeners[event.eventName];
+      try {
+        auto data = event.dataFactory(*runtime);
+        for (const auto& listener : listeners) {
+          try {
+            listener->call(*runtime, data);
+          } catch (const std::exception& error) {
+            reportError(event.eventName, error.what());
+          }
+        }
+      } catch (const std::exception& error) {
+        reportError(event.eventName, error.what());
+      }
+    }
+  }
+}
+
+void EventEmitter::reportError(const std::string& eventName,
+                               const std::string& message) {
+  try {
+    auto text =
+        "Error in a listener of the \"" + eventName + "\" event: " + message;
+    auto console = runtime->global().getPropertyAsObject(*runtime, "console");
+    auto consoleError = console.getPropertyAsFunction(*runtime, "error");
+    consoleError.call(*runtime, jsi::String::createFromUtf8(*runtime, text));
+  } catch (...) {
+    // there is no way to report the error
+  }
 }
 
 jsi::Runtime* EventEmitter::getRuntime() {
@@ -56,6 +114,8 @@ jsi::Runtime* EventEmitter::getRuntime() {
 
 void EventEmitter::removeAllListeners() {
   jsListeners.clear();
+  std::lock_guard<std::mutex> lock(pendingEventsMutex);
+  pendingEvents.clear();
 }
 
 } // namespace RNSkiaVideo
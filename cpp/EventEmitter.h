@@ -2,8 +2,10 @@
 
 #include <ReactCommon/CallInvoker.h>
 #include <jsi/jsi.h>
+#include <deque>
 #include <list>
 #include <map>
+#include <mutex>
 
 namespace RNSkiaVideo {
 using namespace facebook;
@@ -17,6 +19,13 @@ public:
   void emit(std::string eventName, jsi::Value data);
   void emit(std::string eventName,
             std::function<jsi::Value(jsi::Runtime&)> dataFactory);
+  /**
+   * Emits an event reporting a state, replacing the event of the same name
+   * queued since the last flush if any, so that listeners only receive the
+   * latest value.
+   */
+  void emitLatest(std::string eventName,
+                  std::function<jsi::Value(jsi::Runtime&)> dataFactory);
   void removeAllListeners();
   jsi::Runtime* getRuntime();
 
@@ -25,7 +34,19 @@ protected:
   std::shared_ptr<react::CallInvoker> callInvoker;
 
 private:
+  struct PendingEvent {
+    std::string eventName;
+    std::function<jsi::Value(jsi::Runtime&)> dataFactory;
+  };
+
   std::map<std::string, std::list<std::shared_ptr<facebook::jsi::Function>>>
       jsListeners;
+  // events are queued and delivered in a single call on the JS thread
+  std::mutex pendingEventsMutex;
+  std::deque<PendingEvent> pendingEvents;
+  bool flushScheduled = false;
+  void enqueue(PendingEvent event, bool coalesce);
+  void flush();
+  void reportError(const std::string& eventName, const std::string& message);
 };
 } // namespace RNSkiaVideo
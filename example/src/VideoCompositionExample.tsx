@@ -24,6 +24,7 @@ import {
   useVideoCompositionPlayer,
 } from '@azzapp/react-native-skia-video';
 import {
+  type ExportCodecProfile,
   type FrameDrawer,
   type VideoComposition,
 } from '@azzapp/react-native-skia-video';
@@ -368,6 +369,58 @@ const VideoCompositionPreview = ({
     }, 100);
   }, [videoComposition]);
 
+  // Exports the composition with each codec profile and compares the export speed
+  const benchmarkExport = useCallback(() => {
+    if (!videoComposition) {
+      return;
+    }
+    setExporting(true);
+    setTimeout(async () => {
+      const requestedConfigs = {
+        bitRate: 12000000,
+        frameRate: 60,
+        width: 1920,
+        height: 1920,
+      };
+      const encoderConfigs = getValidEncoderConfigurations(
+        requestedConfigs.width,
+        requestedConfigs.height,
+        requestedConfigs.frameRate,
+        requestedConfigs.bitRate
+      )?.[0];
+      if (!encoderConfigs) {
+        Alert.alert("Couldn't find a valid encoder configuration");
+        setExporting(false);
+        return;
+      }
+      const profiles: ExportCodecProfile[] = ['default', 'offline'];
+      const results: string[] = [];
+      try {
+        for (const codecProfile of profiles) {
+          setExportProgress(0);
+          const outPath =
+            ReactNativeBlobUtil.fs.dirs.CacheDir + '/' + createId() + '.mp4';
+          const stats = await exportVideoComposition({
+            videoComposition,
+            drawFrame,
+            onProgress: (progress) =>
+              setExportProgress(progress.framesCompleted / progress.nbFrames),
+            outPath,
+            codecProfile,
+            ...encoderConfigs,
+          });
+          await ReactNativeBlobUtil.fs.unlink(outPath);
+          const fps = (stats.framesCompleted * 1000) / stats.totalTime;
+          results.push(`${codecProfile}: ${fps.toFixed(1)} fps`);
+        }
+        Alert.alert('Export benchmark', results.join('\n'));
+      } catch (error: any) {
+        Alert.alert('Error exporting video', error.message);
+      }
+      setExporting(false);
+    }, 100);
+  }, [videoComposition]);
+
   const { width: windowWidth } = useWindowDimensions();
 
   const { currentFrame } = useVideoCompositionPlayer({
@@ -412,6 +465,9 @@ const VideoCompositionPreview = ({
                   exportCurrentComposition();
                 }}
               />
+              {Platform.OS === 'android' && (
+                <Button title="Benchmark export" onPress={benchmarkExport} />
+              )}
             </View>
           </View>
           {!videoComposition && (
@@ -0,0 +1,129 @@
+import { runOnJS } from 'react-native-reanimated';
+import { Skia, BlendMode } from '@shopify/react-native-skia';
+import type { SkSurface } from '@shopify/react-native-skia';
+import type {
+  FrameCaptureOptions,
+  FrameDrawer,
+  VideoComposition,
+  VideoCompositionFramesExtractorSync,
+} from './types';
+import RNSkiaVideoModule from './RNSkiaVideoModule';
+import createCaptureTracker from './utils/captureTracker';
+import { runOnNewThread } from './utils/thread';
+
+const Promise = global.Promise;
+
+/**
+ * Draws the frame of a video composition at the specified time
+ * and writes it to an image file.
+ *
+ * @platform android
+ * @returns A promise that resolves with the path of the image
+ * once it has been written.
+ */
+export const captureVideoCompositionFrame = async <T = undefined>({
+  videoComposition,
+  drawFrame,
+  beforeDrawFrame,
+  afterDrawFrame,
+  time,
+  width,
+  height,
+  ...options
+}: {
+  /**
+   * The video composition to capture.
+   */
+  videoComposition: VideoComposition;
+  /**
+   * The function used to draw the video frames.
+   */
+  drawFrame: FrameDrawer<T>;
+  /**
+   * A function that is called before drawing the frame.
+   * The return value will be passed to the drawFrame function as context.
+   */
+  beforeDrawFrame?: () => T;
+  /**
+   * A function that is called after drawing the frame.
+   * @param context The context returned by the beforeDrawFrame function.
+   */
+  afterDrawFrame?: (context: T) => void;
+  /**
+   * The time in seconds of the frame to capture.
+   */
+  time: number;
+  /**
+   * The width of the captured image.
+   */
+  width: number;
+  /**
+   * The height of the captured image.
+   */
+  height: number;
+} & FrameCaptureOptions): Promise<string> => {
+  const capturer = RNSkiaVideoModule.createFrameCapturer?.();
+  if (!capturer) {
+    throw new Error(
+      'captureVideoCompositionFrame is only available on Android'
+    );
+  }
+  const tracker = createCaptureTracker(capturer);
+  const capture = tracker.waitForCapture(options.path);
+  const drawn = new Promise<void>((resolve, reject) => {
+    runOnNewThread(() => {
+      'worklet';
+
+      let surface: SkSurface | null = null;
+      let frameExtractor: VideoCompositionFramesExtractorSync | null = null;
+      try {
+        surface = Skia.Surface.MakeOffscreen(width, height);
+        if (!surface) {
+          throw new Error('Failed to create Skia surface');
+        }
+        frameExtractor =
+          RNSkiaVideoModule.createVideoCompositionFramesExtractorSync(
+            videoComposition
+          );
+        frameExtractor.start();
+        frameExtractor.seekTo?.(time);
+        const frames = frameExtractor.decodeCompositionFrames(time);
+        const canvas = surface.getCanvas();
+        canvas.drawColor(Skia.Color('#00000000'), BlendMode.Clear);
+        const context = beforeDrawFrame?.() as any;
+        drawFrame({
+          context,
+          canvas,
+          videoComposition,
+          currentTime: time,
+          frames,
+          width,
+          height,
+        });
+        surface.flush();
+        capturer.capture(
+          surface.getNativeTextureUnstable(),
+          width,
+          height,
+          options
+        );
+        capturer.flush();
+        afterDrawFrame?.(context);
+      } catch (e) {
+        runOnJS(reject)(e);
+        return;
+      } finally {
+        frameExtractor?.dispose();
+        surface?.dispose();
+      }
+      runOnJS(resolve)();
+    });
+  });
+  try {
+    const [, path] = await Promise.all([drawn, capture]);
+    return path;
+  } finally {
+    tracker.dispose();
+    capturer.dispose();
+  }
+};
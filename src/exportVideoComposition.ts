@@ -4,6 +4,8 @@ import { Skia, BlendMode } from '@shopify/react-native-skia';
 import type { SkSurface } from '@shopify/react-native-skia';
 import type {
   ExportOptions,
+  ExportSegment,
+  ExportStats,
   FrameDrawer,
   VideoComposition,
   VideoEncoder,
@@ -11,15 +13,35 @@ import type {
 } from './types';
 import RNSkiaVideoModule from './RNSkiaVideoModule';
 import { runOnNewThread } from './utils/thread';
+import {
+  createLatencyHistogram,
+  getLatencyStats,
+  recordLatency,
+} from './utils/latencyHistogram';
 
 const Promise = global.Promise;
 
 const OS = Platform.OS;
 
+const getCheckpointKey = (
+  videoComposition: VideoComposition,
+  drawFrameVersion: string | number | null | undefined
+) => {
+  // FNV-1a hash of the serialized composition
+  const serialized = JSON.stringify(videoComposition);
+  let hash = 0x811c9dc5;
+  for (let i = 0; i < serialized.length; i++) {
+    hash ^= serialized.charCodeAt(i);
+    hash = Math.imul(hash, 0x01000193);
+  }
+  return `${(hash >>> 0).toString(16)}-${drawFrameVersion ?? ''}`;
+};
+
 /**
  * Exports a video composition to a video file.
  *
- * @returns A promise that resolves when the export is complete.
+ * @returns A promise that resolves with the timings of the export
+ * when the export is complete.
  */
 export const exportVideoComposition = async <T = undefined>({
   videoComposition,
@@ -27,6 +49,8 @@ export const exportVideoComposition = async <T = undefined>({
   beforeDrawFrame,
   afterDrawFrame,
   onProgress,
+  onSegmentComplete,
+  drawFrameVersion,
   ...options
 }: {
   /**
@@ -57,8 +81,23 @@ export const exportVideoComposition = async <T = undefined>({
     framesCompleted: number;
     nbFrames: number;
   }) => void;
-} & ExportOptions): Promise<void> =>
-  new Promise<void>((resolve, reject) => {
+  /**
+   * A callback that is called each time a segment has been completely written
+   * when exporting with a `segmentDuration`.
+   * @platform android
+   */
+  onSegmentComplete?: (segment: ExportSegment) => void;
+  /**
+   * The version of the drawFrame function, to change when its output changes
+   * so that a checkpoint created with a previous version is not resumed.
+   * @platform android
+   */
+  drawFrameVersion?: string | number | null;
+} & ExportOptions): Promise<ExportStats> => {
+  const checkpointKey = options.checkpointPath
+    ? getCheckpointKey(videoComposition, drawFrameVersion)
+    : null;
+  return new Promise<ExportStats>((resolve, reject) => {
     runOnNewThread(() => {
       'worklet';
 
@@ -66,71 +105,112 @@ export const exportVideoComposition = async <T = undefined>({
       let frameExtractor: VideoCompositionFramesExtractorSync | null = null;
       let encoder: VideoEncoder | null = null;
       const { width, height } = options;
-      try {
-        surface = Skia.Surface.MakeOffscreen(width, height);
-        if (!surface) {
-          throw new Error('Failed to create Skia surface');
+      const exportStartTime = performance.now();
+      const drawHistogram = createLatencyHistogram();
+      let stats: ExportStats | null = null;
+      const dispatchCompletedSegments = () => {
+        if (!onSegmentComplete || !encoder?.getCompletedSegments) {
+          return;
         }
+        const segments = encoder.getCompletedSegments();
+        for (let j = 0; j < segments.length; j++) {
+          runOnJS(onSegmentComplete)(segments[j]!);
+        }
+      };
+      try {
+        try {
+          surface = Skia.Surface.MakeOffscreen(width, height);
+          if (!surface) {
+            throw new Error('Failed to create Skia surface');
+          }
 
-        encoder = RNSkiaVideoModule.createVideoEncoder(options);
-        encoder.prepare();
-
-        frameExtractor =
-          RNSkiaVideoModule.createVideoCompositionFramesExtractorSync(
-            videoComposition
-          );
-        frameExtractor.start();
-
-        const nbFrames = videoComposition.duration * options.frameRate;
-        const canvas = surface.getCanvas();
-        const clearColor = Skia.Color('#00000000');
-        for (let i = 0; i < nbFrames; i++) {
-          const currentTime = i / options.frameRate;
-          const frames = frameExtractor.decodeCompositionFrames(currentTime);
-          canvas.drawColor(clearColor, BlendMode.Clear);
-          const context = beforeDrawFrame?.() as any;
-          drawFrame({
-            context,
-            canvas,
-            videoComposition,
-            currentTime,
-            frames,
-            width: options.width,
-            height: options.height,
+          encoder = RNSkiaVideoModule.createVideoEncoder({
+            ...options,
+            checkpointKey,
           });
-          surface.flush();
+          encoder.prepare();
+          const startFrame = Math.round(
+            (encoder.resumeTime ?? 0) * options.frameRate
+          );
 
-          // On iOS and macOS, the first flush is not synchronous,
-          // so we need to wait for the next frame
-          if (i === 0 && (OS === 'ios' || OS === 'macos')) {
-            RNSkiaVideoModule.usleep?.(1000);
+          frameExtractor =
+            RNSkiaVideoModule.createVideoCompositionFramesExtractorSync(
+              videoComposition,
+              { codecProfile: options.codecProfile }
+            );
+          frameExtractor.start();
+          if (startFrame > 0) {
+            frameExtractor.seekTo?.(startFrame / options.frameRate);
           }
-          const texture = surface.getNativeTextureUnstable();
-          encoder.encodeFrame(texture, currentTime);
-          afterDrawFrame?.(context);
-          if (onProgress) {
-            runOnJS(onProgress)({
-              framesCompleted: i + 1,
-              nbFrames,
+
+          const nbFrames = videoComposition.duration * options.frameRate;
+          const canvas = surface.getCanvas();
+          const clearColor = Skia.Color('#00000000');
+          for (let i = startFrame; i < nbFrames; i++) {
+            const currentTime = i / options.frameRate;
+            const frames = frameExtractor.decodeCompositionFrames(currentTime);
+            const drawStartTime = performance.now();
+            canvas.drawColor(clearColor, BlendMode.Clear);
+            const context = beforeDrawFrame?.() as any;
+            drawFrame({
+              context,
+              canvas,
+              videoComposition,
+              currentTime,
+              frames,
+              width: options.width,
+              height: options.height,
             });
+            surface.flush();
+            recordLatency(drawHistogram, performance.now() - drawStartTime);
+
+            // On iOS and macOS, the first flush is not synchronous,
+            // so we need to wait for the next frame
+            if (i === 0 && (OS === 'ios' || OS === 'macos')) {
+              RNSkiaVideoModule.usleep?.(1000);
+            }
+            const texture = surface.getNativeTextureUnstable();
+            encoder.encodeFrame(texture, currentTime, width, height);
+            dispatchCompletedSegments();
+            afterDrawFrame?.(context);
+            if (onProgress) {
+              runOnJS(onProgress)({
+                framesCompleted: i + 1,
+                nbFrames,
+              });
+            }
           }
+          stats = {
+            totalTime: 0,
+            framesCompleted: drawHistogram.count,
+            draw: getLatencyStats(drawHistogram),
+            ...frameExtractor.getStats?.(),
+          };
+        } catch (e) {
+          runOnJS(reject)(e);
+          return;
+        } finally {
+          frameExtractor?.dispose();
+          surface?.dispose();
         }
-      } catch (e) {
-        runOnJS(reject)(e);
-        return;
-      } finally {
-        frameExtractor?.dispose();
-        surface?.dispose();
-      }
 
-      try {
-        encoder!.finishWriting();
-      } catch (e) {
-        runOnJS(reject)(e);
-        return;
+        try {
+          encoder!.finishWriting();
+          dispatchCompletedSegments();
+          stats = {
+            ...stats!,
+            ...encoder!.getStats?.(),
+            totalTime: performance.now() - exportStartTime,
+          };
+        } catch (e) {
+          runOnJS(reject)(e);
+          return;
+        }
+        runOnJS(resolve)(stats!);
       } finally {
+        // finalizes the segment being written so that the export can be resumed
         encoder?.dispose();
       }
-      runOnJS(resolve)();
     });
   });
+};
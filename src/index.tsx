@@ -1,5 +1,6 @@
 import RNSkiaVideoModule from './RNSkiaVideoModule';
 import { Platform } from 'react-native';
+import type { MediaMetadata, ProxyCacheOptions } from './types';
 
 export { RNSkiaVideoModule as __RNSkiaVideoPrivateAPI };
 
@@ -7,6 +8,7 @@ export * from './types';
 export * from './videoPlayer';
 export * from './videoCompositionPlayer';
 export * from './exportVideoComposition';
+export * from './captureVideoCompositionFrame';
 
 export const getValidEncoderConfigurations: typeof RNSkiaVideoModule.getValidEncoderConfigurations =
   (...args) => {
@@ -29,3 +31,39 @@ export const getDecodingCapabilitiesFor: typeof RNSkiaVideoModule.getDecodingCap
       );
     }
   };
+
+export const probeMediaMetadata = async (
+  paths: string[]
+): Promise<(MediaMetadata | null)[]> => {
+  if (Platform.OS === 'android' && RNSkiaVideoModule.probeMediaMetadata) {
+    return RNSkiaVideoModule.probeMediaMetadata(paths);
+  } else {
+    throw new Error('probeMediaMetadata is only available on Android');
+  }
+};
+
+/**
+ * Enables or disables the emission of systrace / perfetto trace sections
+ * and counters by the decoding, rendering and encoding pipelines.
+ * Does nothing on platforms other than Android.
+ */
+export const setTracingEnabled = (enabled: boolean) => {
+  RNSkiaVideoModule.setTracingEnabled?.(enabled);
+};
+
+/**
+ * Configures the cache of low resolution proxies used by the previews of
+ * compositions of heavy videos.
+ * Does nothing on platforms other than Android.
+ */
+export const configureProxyCache = (options: ProxyCacheOptions) => {
+  RNSkiaVideoModule.configureProxyCache?.(options);
+};
+
+/**
+ * Deletes all the proxies of the proxy cache.
+ * Does nothing on platforms other than Android.
+ */
+export const clearProxyCache = () => {
+  RNSkiaVideoModule.clearProxyCache?.();
+};
@@ -144,6 +144,18 @@ export type VideoPlayer = {
    * Events dispatched by the video player when an error occurs.
    */
   on(name: 'error', listener: (error: any) => void): () => void;
+  /**
+   * Returns the frame pacing statistics of the player since its creation,
+   * or null if it has been disposed.
+   * @platform android
+   */
+  getStats?(): PlaybackStats | null;
+  /**
+   * Events dispatched by the video player every second while it is playing,
+   * with its frame pacing statistics.
+   * @platform android
+   */
+  on(name: 'stats', listener: (stats: PlaybackStats) => void): () => void;
 };
 
 /**
@@ -179,9 +191,27 @@ export type VideoCompositionItem = {
    */
   startTime: number;
   /**
-   * The duration in seconds of the item.
+   * The duration in seconds of the item within the video.
+   * When the item is not played at normal speed, the item lasts
+   * `duration / speed` seconds in the composition.
    */
   duration: number;
+  /**
+   * The playback speed of the item, 2 meaning the video is played twice as fast.
+   * At high speeds, frames that would not be displayed are not decoded.
+   * Defaults to 1.
+   * @platform android
+   */
+  speed?: number;
+  /**
+   * A piecewise linear curve mapping the time in seconds elapsed since the item
+   * start in the composition to the time in seconds elapsed since `startTime`
+   * in the video. Both times must be non-decreasing, and the first point
+   * should be `{ time: 0, sourceTime: 0 }`.
+   * When provided, `speed` is ignored.
+   * @platform android
+   */
+  timeRemap?: Array<{ time: number; sourceTime: number }>;
   /**
    * If provided, the resolution to scale the video to.
    * If not provided, the original resolution of the video will be used.
@@ -249,10 +279,20 @@ export type VideoCompositionFramesExtractor = {
   /**
    * Decodes the frames of the video composition items.
    * This method should only be called from the ui thread.
+   * On Android, the returned object and its frames are reused and updated
+   * by the next calls, they should not be kept across frames.
    *
    * @returns The decoded video frames of the composition items.
    */
   decodeCompositionFrames(): Record<string, VideoFrame>;
+  /**
+   * Updates the composition being played, keeping the decoders of the items
+   * whose id and path are unchanged. Retimed items are only seeked, and
+   * decoders are only created or released for added or removed items.
+   * Must be called on the UI thread.
+   * @platform android
+   */
+  update?(composition: VideoComposition): void;
   /**
    * Disposes of the video composition frames extractor.
    */
@@ -265,14 +305,47 @@ export type VideoCompositionFramesExtractor = {
    * Whether the video composition frames extractor is currently playing.
    */
   readonly isPlaying: boolean;
+  /**
+   * The number of decoded frames that were skipped without being rendered
+   * because the playback was already ahead of them.
+   * @platform android
+   */
+  readonly droppedFrames?: number;
   /**
    * Whether the video composition frames extractor is set to loop.
    */
   isLooping: boolean;
+  /**
+   * The playback speed of the composition.
+   * The value should be greater than 0. 1.0 is normal speed, 2.0 is double speed, 0.5 is half speed.
+   * When the decoders cannot keep up with the speed, frames are skipped
+   * so that the playback does not drift.
+   * @platform android
+   */
+  playbackSpeed?: number;
   /**
    * Events dispatched by the video composition frames extractor when the extraction is ready.
    */
   on(name: 'ready', listener: () => void): () => void;
+  /**
+   * Events dispatched by the video composition frames extractor when the first frame
+   * of an item is decoded, with the id of the item. Items are prepared in parallel,
+   * so this event may be dispatched before the 'ready' event.
+   * @platform android
+   */
+  on(name: 'itemReady', listener: (itemId: string) => void): () => void;
+  /**
+   * Returns the frame pacing statistics of the preview since its creation,
+   * or null if it has been disposed.
+   * @platform android
+   */
+  getStats?(): PlaybackStats | null;
+  /**
+   * Events dispatched by the video composition frames extractor every second
+   * while it is playing, with its frame pacing statistics.
+   * @platform android
+   */
+  on(name: 'stats', listener: (stats: PlaybackStats) => void): () => void;
   /**
    * Events dispatched by the video composition frames extractor process completes.
    */
@@ -294,10 +367,27 @@ export type VideoCompositionFramesExtractorSync = {
   /**
    * Decodes the frames until reaching the specified time.
    * This method will block the current thread until the frames are decoded.
+   * On Android, the returned object and its frames are reused and updated
+   * by the next calls, they should not be kept across frames.
    *
    * @returns The decoded video frames of the composition items.
    */
   decodeCompositionFrames(currentTime: number): Record<string, VideoFrame>;
+  /**
+   * Seeks the decoders to the specified time in seconds,
+   * allowing to start decoding in the middle of the composition.
+   * @platform android
+   */
+  seekTo?(time: number): void;
+  /**
+   * Returns the time spent waiting for decoded frames since the extractor started.
+   * @platform android
+   */
+  getStats?(): {
+    decodeWait: LatencyStats;
+    itemsDecodeWait: Record<string, LatencyStats>;
+    droppedFrames: number;
+  } | null;
   /**
    * Disposes of the video composition frames extractor.
    */
@@ -314,18 +404,366 @@ export type VideoEncoder = {
   prepare(): void;
   /**
    * Encodes the video frame to the video composition.
-   */
-  encodeFrame(texture: unknown, time: number): void;
+   * The texture is scaled to the size of the encoded video. On android, passing its
+   * size allows it to be copied with a single blit instead of being drawn.
+   */
+  encodeFrame(
+    texture: unknown,
+    time: number,
+    textureWidth?: number,
+    textureHeight?: number
+  ): void;
   /*
    * Finish writing the video to the output file.
    */
   finishWriting(): void;
+  /**
+   * Returns the segments completed since the last call,
+   * when the encoder has been created with a `segmentDuration`.
+   * @platform android
+   */
+  getCompletedSegments?(): ExportSegment[];
+  /**
+   * The time in seconds of the first frame to encode,
+   * 0 unless an export has been resumed from a checkpoint.
+   * @platform android
+   */
+  readonly resumeTime?: number;
+  /**
+   * Returns the time spent encoding frames since the encoder was prepared.
+   * @platform android
+   */
+  getStats?(): {
+    encode: LatencyStats;
+    drain: LatencyStats;
+    encoderQueueDepth: LatencyStats;
+  } | null;
   /**
    * Disposes of the video composition encoder.
    */
   dispose(): void;
 };
 
+/**
+ * The options of a frame capture.
+ */
+export type FrameCaptureOptions = {
+  /**
+   * The path of the image file to write.
+   */
+  path: string;
+  /**
+   * The format of the image. Defaults to `jpeg`.
+   */
+  format?: 'jpeg' | 'png' | 'webp';
+  /**
+   * The quality of the compression between 0 and 100,
+   * ignored for `png`. Defaults to 90.
+   */
+  quality?: number;
+};
+
+/**
+ * Captures textures drawn by Skia into image files.
+ * The pixels are read back from the GPU asynchronously when the device
+ * supports OpenGL ES 3.0, and the images are compressed and written
+ * on a background thread.
+ */
+export type FrameCapturer = {
+  /**
+   * Captures a texture into an image file, must be called on the thread
+   * that drew the texture. A `capture` event is emitted once the image
+   * has been written.
+   *
+   * @param texture The texture to capture,
+   * as returned by `SkSurface.getNativeTextureUnstable()`.
+   * @param width The width of the texture.
+   * @param height The height of the texture.
+   * @param options The options of the capture.
+   */
+  capture(
+    texture: unknown,
+    width: number,
+    height: number,
+    options: FrameCaptureOptions
+  ): void;
+  /**
+   * Completes the captures whose pixels have been read back by the GPU,
+   * without blocking. Must be called on the thread that drew the textures.
+   *
+   * @returns The number of captures whose pixels are still being read back.
+   */
+  poll(): number;
+  /**
+   * Completes all the captures, blocking until their pixels are read back.
+   * Must be called on the thread that drew the textures.
+   */
+  flush(): void;
+  /**
+   * Registers a listener called when an image has been written.
+   */
+  on(name: 'capture', listener: (event: { path: string }) => void): () => void;
+  /**
+   * Registers a listener called when an image could not be written.
+   */
+  on(
+    name: 'error',
+    listener: (event: { path: string; message: string }) => void
+  ): () => void;
+  /**
+   * Disposes of the frame capturer, the pending captures being dropped.
+   */
+  dispose(): void;
+};
+
+/**
+ * The options of a frame analyzer.
+ */
+export type FrameAnalyzerOptions = {
+  /**
+   * The width of the delivered frames, must be even.
+   */
+  width: number;
+  /**
+   * The height of the delivered frames, must be even.
+   */
+  height: number;
+  /**
+   * The format of the delivered frames, planar YUV 4:2:0 or 8 bits per
+   * channel RGBA. Defaults to `i420`.
+   */
+  format?: 'i420' | 'rgba';
+  /**
+   * The number of frames per second of video to deliver, every frame being
+   * delivered if not specified.
+   */
+  frameRate?: number;
+  /**
+   * The maximum number of frames decoded and not read by the listeners yet,
+   * the decoding being throttled once it is reached. Defaults to 2.
+   */
+  maxInFlightFrames?: number;
+};
+
+/**
+ * A frame delivered by a frame analyzer.
+ */
+export type AnalyzedFrame = {
+  /**
+   * The pixels of the frame, in the format of the analyzer.
+   */
+  data: ArrayBuffer;
+  /**
+   * The presentation time of the frame in the video in seconds.
+   */
+  time: number;
+};
+
+/**
+ * Decodes the video of a composition item as fast as the hardware decoder
+ * allows, delivering its frames scaled to the requested size as raw pixels,
+ * without going through the GPU.
+ */
+export type FrameAnalyzer = {
+  /**
+   * Opens the video and starts decoding in the background.
+   */
+  start(): void;
+  /**
+   * The rotation in degrees to apply to the frames to display them upright,
+   * available once the first frame is delivered.
+   */
+  readonly rotation: number;
+  /**
+   * Registers a listener called with each delivered frame.
+   */
+  on(name: 'frame', listener: (frame: AnalyzedFrame) => void): () => void;
+  /**
+   * Registers a listener called once the last frame of the item has been
+   * delivered.
+   */
+  on(name: 'end', listener: () => void): () => void;
+  /**
+   * Registers a listener called when the video cannot be decoded.
+   */
+  on(
+    name: 'error',
+    listener: (event: { message: string }) => void
+  ): () => void;
+  /**
+   * Stops the decoding and disposes of the analyzer.
+   */
+  dispose(): void;
+};
+
+/**
+ * A segment of a video exported with a `segmentDuration`.
+ * Each segment is a self-contained MP4 file.
+ */
+export type ExportSegment = {
+  /**
+   * The index of the segment.
+   */
+  index: number;
+  /**
+   * The path of the segment file.
+   */
+  path: string;
+  /**
+   * The start time in seconds of the segment within the exported video.
+   */
+  startTime: number;
+  /**
+   * The duration in seconds of the segment.
+   */
+  duration: number;
+};
+
+/**
+ * The distribution of a measure recorded during an export,
+ * in milliseconds unless specified otherwise.
+ */
+export type LatencyStats = {
+  /**
+   * The number of recorded values.
+   */
+  count: number;
+  /**
+   * The median value.
+   */
+  p50: number;
+  /**
+   * The 95th percentile.
+   */
+  p95: number;
+  /**
+   * The highest value.
+   */
+  max: number;
+};
+
+/**
+ * The frame pacing statistics of a video player or of a composition preview.
+ */
+export type PlaybackStats = {
+  /**
+   * The number of frames rendered.
+   */
+  renderedFrames: number;
+  /**
+   * The number of decoded frames skipped without being rendered.
+   */
+  droppedFrames: number;
+  /**
+   * The number of frames displayed more than 50ms after their presentation time.
+   */
+  lateFrames: number;
+  /**
+   * The number of ticks of the playback loop that took longer than its interval,
+   * always 0 for video players.
+   */
+  loopOverruns: number;
+  /**
+   * The delay between the decoding and the display of the frames,
+   * only reported by video players.
+   */
+  displayLatency?: LatencyStats;
+  /**
+   * The delay between the decoding and the display of the frames of each item
+   * by item id, only reported by composition previews.
+   */
+  itemsDisplayLatency?: Record<string, LatencyStats>;
+  /**
+   * The usage of the cache of the frames displayed while the preview is paused,
+   * serving the seeks to recently displayed positions without decoding.
+   * Only reported by composition previews.
+   * @platform android
+   */
+  frameCache?: FrameCacheStats;
+};
+
+/**
+ * The usage of the frame cache of a composition preview.
+ */
+export type FrameCacheStats = {
+  /**
+   * The number of seeks served by the cache.
+   */
+  hits: number;
+  /**
+   * The number of seeks that went through the decoders.
+   */
+  misses: number;
+  /**
+   * The ratio of the seeks served by the cache, between 0 and 1.
+   */
+  hitRate: number;
+  /**
+   * The memory used by the cached frames in bytes.
+   */
+  usedBytes: number;
+  /**
+   * The memory budget of the cached frames in bytes.
+   */
+  budgetBytes: number;
+  /**
+   * The number of cached frames.
+   */
+  frameCount: number;
+};
+
+/**
+ * The timings of a video export, allowing to find which stage of the pipeline
+ * is slowing it down.
+ */
+export type ExportStats = {
+  /**
+   * The total duration of the export in milliseconds.
+   */
+  totalTime: number;
+  /**
+   * The number of encoded frames.
+   */
+  framesCompleted: number;
+  /**
+   * The time spent drawing each frame with Skia (`beforeDrawFrame`,
+   * `drawFrame` and the flush of the surface).
+   */
+  draw: LatencyStats;
+  /**
+   * The time spent waiting for the decoded frames of all the items.
+   * @platform android
+   */
+  decodeWait?: LatencyStats;
+  /**
+   * For each item id, the time between the request of a frame and its decoding.
+   * @platform android
+   */
+  itemsDecodeWait?: Record<string, LatencyStats>;
+  /**
+   * The number of decoded frames that were skipped without being rendered,
+   * because the source frame rate is higher than the export one.
+   * @platform android
+   */
+  droppedFrames?: number;
+  /**
+   * The time spent drawing each frame into the encoder input surface.
+   * @platform android
+   */
+  encode?: LatencyStats;
+  /**
+   * The time spent retrieving encoded data and writing it to the output file.
+   * @platform android
+   */
+  drain?: LatencyStats;
+  /**
+   * The number of frames waiting to be encoded when a new frame is submitted.
+   * Not expressed in milliseconds.
+   * @platform android
+   */
+  encoderQueueDepth?: LatencyStats;
+};
+
 /**
  * The export options for a video composition.
  */
@@ -355,6 +793,86 @@ export type ExportOptions = {
    * @platform android
    */
   encoderName?: string | null;
+  /**
+   * If provided, the video is written as a sequence of self-contained MP4 segments
+   * of (at least) this duration in seconds instead of a single file.
+   * Segments are written next to `outPath`, `/path/video.mp4` producing
+   * `/path/video_00000.mp4`, `/path/video_00001.mp4`...
+   * Completed segments can be uploaded while the export is still running,
+   * and stay playable if the export is interrupted.
+   * @platform android
+   */
+  segmentDuration?: number | null;
+  /**
+   * If provided, the export state is persisted to this path each time a segment is completed.
+   * Running the same export again with the same options resumes it from the end of the
+   * last completed segment instead of starting over, the previously completed segments
+   * being kept. The checkpoint is removed once the export completes.
+   * Requires `segmentDuration`.
+   * @platform android
+   */
+  checkpointPath?: string | null;
+  /**
+   * A key identifying the exported content, a checkpoint is only resumed if it has been
+   * created with the same key. `exportVideoComposition` derives it from the composition
+   * and its `drawFrameVersion`.
+   * @platform android
+   */
+  checkpointKey?: string | null;
+  /**
+   * Additional outputs encoded from the same rendered frames, at another resolution,
+   * bit rate or codec. Each frame is decoded and drawn once, then scaled into each rendition.
+   * Renditions are not segmented and cannot be combined with `checkpointPath`.
+   * @platform android
+   */
+  renditions?: ExportRendition[] | null;
+  /**
+   * The configuration of the decoders and encoders of the export.
+   * - `default`: the codecs are configured with their default realtime settings.
+   * - `offline`: the codecs are told that the work is not realtime and should run
+   *   as fast as possible, using the non-realtime priority, the maximum operating rate
+   *   and low latency decoding where supported. Codecs rejecting these settings
+   *   fall back to the default ones.
+   * Defaults to `default`.
+   * @platform android
+   */
+  codecProfile?: ExportCodecProfile | null;
+};
+
+/**
+ * The codec configuration of an export.
+ */
+export type ExportCodecProfile = 'default' | 'offline';
+
+/**
+ * An additional output of a video export, encoded at the frame rate of the
+ * export.
+ */
+export type ExportRendition = {
+  /**
+   * The path to write the rendition to.
+   */
+  outPath: string;
+  /**
+   * The width of the rendition.
+   */
+  width: number;
+  /**
+   * The height of the rendition.
+   */
+  height: number;
+  /**
+   * The bit rate of the rendition.
+   */
+  bitRate: number;
+  /**
+   * The mime type of the rendition, defaults to `video/avc`.
+   */
+  mimeType?: string | null;
+  /**
+   * The name of the encoder to use for the rendition.
+   */
+  encoderName?: string | null;
 };
 
 export type RNSkiaVideoModule = {
@@ -391,7 +909,12 @@ export type RNSkiaVideoModule = {
     /**
      * The video composition to extract frames from.
      */
-    composition: VideoComposition
+    composition: VideoComposition,
+    /**
+     * The options of the extraction.
+     * @platform android
+     */
+    options?: { codecProfile?: ExportCodecProfile | null }
   ) => VideoCompositionFramesExtractorSync;
 
   /**
@@ -405,6 +928,20 @@ export type RNSkiaVideoModule = {
      */
     options: ExportOptions
   ) => VideoEncoder;
+  /**
+   * Creates a frame capturer, writing textures drawn by Skia to image files.
+   * @platform android
+   */
+  createFrameCapturer?: () => FrameCapturer;
+  /**
+   * Creates a frame analyzer, decoding the video of a composition item from
+   * its start to its end for on-device analysis.
+   * @platform android
+   */
+  createFrameAnalyzer?: (
+    item: VideoCompositionItem,
+    options: FrameAnalyzerOptions
+  ) => FrameAnalyzer;
   /**
    * Returns the decoding capabilities of the current platform for the specified mimetype.
    *
@@ -470,12 +1007,46 @@ export type RNSkiaVideoModule = {
       }[]
     | null;
 
+  /**
+   * Reads the metadata of several videos from their container headers,
+   * without decoding them. The videos are probed in parallel and the results
+   * are cached until the files are modified, the composition decoders
+   * reusing them when opening the videos. The videos are read in the
+   * background, without blocking the JS thread.
+   *
+   * @platform android
+   * @param paths The paths of the videos.
+   * @returns A promise resolved with the metadata of each video, null for the
+   * videos that could not be read.
+   */
+  probeMediaMetadata?(paths: string[]): Promise<(MediaMetadata | null)[]>;
+
   /**
    * Runs the specified function with the JNI class loader.
    * @platform android
    */
   runWithJNIClassLoader?(fn: () => void): void;
 
+  /**
+   * Enables or disables the emission of systrace / perfetto sections and counters
+   * by the decoding, rendering and encoding pipelines.
+   * @platform android
+   */
+  setTracingEnabled?(enabled: boolean): void;
+
+  /**
+   * Configures the cache of low resolution proxies used to preview
+   * compositions of heavy videos.
+   * @platform android
+   */
+  configureProxyCache?(options: ProxyCacheOptions): void;
+
+  /**
+   * Deletes all the proxies of the proxy cache.
+   * @platform android
+   */
+  clearProxyCache?(): void;
+
   /**
    * Sleeps for the specified number of microseconds.
    * @param usec The number of microseconds to sleep.
@@ -483,3 +1054,60 @@ export type RNSkiaVideoModule = {
    */
   usleep?(usec: number): void;
 };
+
+/**
+ * Options of the cache of low resolution proxies.
+ */
+export type ProxyCacheOptions = {
+  /**
+   * Whether the previews of compositions should use proxies of the videos
+   * larger than 1080p, transcoded in the background the first time such a
+   * video is previewed. Exports always use the original videos.
+   * Defaults to false.
+   */
+  enabled?: boolean;
+  /**
+   * The maximum size of the cache in bytes, the least recently used proxies
+   * being deleted when it is exceeded. Defaults to 512MB.
+   */
+  maxCacheSize?: number;
+};
+
+/**
+ * The metadata of the video track of a media.
+ */
+export type MediaMetadata = {
+  /**
+   * The path of the media.
+   */
+  path: string;
+  /**
+   * The mime type of the video track.
+   */
+  mimeType: string;
+  /**
+   * The duration of the video track in seconds, null if unknown.
+   */
+  duration: number | null;
+  /**
+   * The coded width of the video in pixels, before rotation.
+   */
+  width: number;
+  /**
+   * The coded height of the video in pixels, before rotation.
+   */
+  height: number;
+  /**
+   * The rotation of the video in degrees.
+   */
+  rotation: number;
+  /**
+   * The frame rate of the video, 0 if unknown.
+   */
+  frameRate: number;
+  /**
+   * The interval in seconds between the first two key frames of the video,
+   * null if unknown.
+   */
+  keyFrameInterval: number | null;
+};
@@ -0,0 +1,50 @@
+import type { FrameCapturer } from '../types';
+
+type PendingCapture = {
+  resolve: (path: string) => void;
+  reject: (error: Error) => void;
+};
+
+/**
+ * Tracks the captures of a frame capturer, allowing to wait for the image
+ * of a capture to be written from the JS thread.
+ */
+const createCaptureTracker = (capturer: FrameCapturer) => {
+  const pendingCaptures = new Map<string, PendingCapture>();
+  const removeCaptureListener = capturer.on('capture', ({ path }) => {
+    pendingCaptures.get(path)?.resolve(path);
+    pendingCaptures.delete(path);
+  });
+  const removeErrorListener = capturer.on('error', ({ path, message }) => {
+    pendingCaptures.get(path)?.reject(new Error(message));
+    pendingCaptures.delete(path);
+  });
+  return {
+    /**
+     * Returns a promise resolved with the path of the image once written.
+     */
+    waitForCapture(path: string) {
+      if (pendingCaptures.has(path)) {
+        return Promise.reject(
+          new Error(`A capture to ${path} is already in progress`)
+        );
+      }
+      return new Promise<string>((resolve, reject) => {
+        pendingCaptures.set(path, { resolve, reject });
+      });
+    },
+    /**
+     * Stops tracking the captures, rejecting the pending ones.
+     */
+    dispose() {
+      removeCaptureListener();
+      removeErrorListener();
+      pendingCaptures.forEach(({ reject }) =>
+        reject(new Error('The frame capturer has been disposed'))
+      );
+      pendingCaptures.clear();
+    },
+  };
+};
+
+export default createCaptureTracker;
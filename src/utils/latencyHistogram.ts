@@ -0,0 +1,99 @@
+import type { LatencyStats } from '../types';
+
+// Same layout as the native LatencyHistogram: values are recorded into
+// log-linear buckets (16 sub-buckets per power of two), values below
+// LINEAR_LIMIT having their own bucket.
+const SUB_BUCKET_BITS = 4;
+const SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+const LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+const LINEAR_LIMIT_BITS = 5;
+// values are recorded as 32 bits integers
+const MAX_VALUE = 0xffffffff;
+const BUCKET_COUNT = LINEAR_LIMIT + (32 - LINEAR_LIMIT_BITS) * SUB_BUCKET_COUNT;
+
+/**
+ * A fixed size histogram of durations in microseconds.
+ */
+export type LatencyHistogram = {
+  buckets: number[];
+  count: number;
+  max: number;
+};
+
+/**
+ * Creates an empty latency histogram.
+ */
+export const createLatencyHistogram = (): LatencyHistogram => {
+  'worklet';
+  return {
+    buckets: new Array(BUCKET_COUNT).fill(0),
+    count: 0,
+    max: 0,
+  };
+};
+
+const bucketIndex = (value: number) => {
+  'worklet';
+  if (value < LINEAR_LIMIT) {
+    return value;
+  }
+  const exponent = 31 - Math.clz32(value);
+  const subBucket =
+    (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+  return (
+    LINEAR_LIMIT + (exponent - LINEAR_LIMIT_BITS) * SUB_BUCKET_COUNT + subBucket
+  );
+};
+
+const bucketMidValue = (index: number) => {
+  'worklet';
+  if (index < LINEAR_LIMIT) {
+    return index;
+  }
+  const exponent =
+    Math.floor((index - LINEAR_LIMIT) / SUB_BUCKET_COUNT) + LINEAR_LIMIT_BITS;
+  const subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+  const bucketWidth = 2 ** (exponent - SUB_BUCKET_BITS);
+  return 2 ** exponent + subBucket * bucketWidth + bucketWidth / 2;
+};
+
+/**
+ * Records a duration in milliseconds into a histogram.
+ */
+export const recordLatency = (histogram: LatencyHistogram, value: number) => {
+  'worklet';
+  const valueUs = Math.min(MAX_VALUE, Math.max(0, Math.round(value * 1000)));
+  const index = bucketIndex(valueUs);
+  histogram.buckets[index] = histogram.buckets[index]! + 1;
+  histogram.count++;
+  histogram.max = Math.max(histogram.max, valueUs);
+};
+
+/**
+ * Returns the distribution of the durations recorded into a histogram,
+ * in milliseconds.
+ */
+export const getLatencyStats = (histogram: LatencyHistogram): LatencyStats => {
+  'worklet';
+  const { buckets, count, max } = histogram;
+  const percentile = (p: number) => {
+    if (count === 0) {
+      return 0;
+    }
+    const target = Math.max(1, Math.ceil((count * p) / 100));
+    let cumulated = 0;
+    for (let i = 0; i < BUCKET_COUNT; i++) {
+      cumulated += buckets[i]!;
+      if (cumulated >= target) {
+        return Math.min(max, bucketMidValue(i));
+      }
+    }
+    return max;
+  };
+  return {
+    count,
+    p50: percentile(50) / 1000,
+    p95: percentile(95) / 1000,
+    max: max / 1000,
+  };
+};
@@ -6,15 +6,19 @@ import {
   runOnUI,
   type DerivedValue,
 } from 'react-native-reanimated';
-import { useCallback, useEffect, useMemo, useState } from 'react';
+import { useCallback, useEffect, useMemo, useRef, useState } from 'react';
 import type {
+  FrameCaptureOptions,
   FrameDrawer,
   VideoComposition,
   VideoCompositionFramesExtractor,
 } from './types';
 import RNSkiaVideoModule from './RNSkiaVideoModule';
+import createCaptureTracker from './utils/captureTracker';
 import useEventListener from './utils/useEventListener';
-import { PixelRatio } from 'react-native';
+import { PixelRatio, Platform } from 'react-native';
+
+const OS = Platform.OS;
 
 type UseVideoCompositionPlayerOptions<T = undefined> = {
   /**
@@ -53,6 +57,12 @@ type UseVideoCompositionPlayerOptions<T = undefined> = {
    * Weather the composition should loop.
    */
   isLooping?: boolean;
+  /**
+   * The playback speed of the composition.
+   * The value should be greater than 0. 1.0 is normal speed, 2.0 is double speed, 0.5 is half speed.
+   * @platform android
+   */
+  playbackSpeed?: number;
   /**
    * Callback that is called when the composition is ready to play.
    */
@@ -83,6 +93,16 @@ type UseVideoCompositionPlayerReturnType = {
    * The video player controller.
    */
   player: VideoCompositionPlayerController | null;
+  /**
+   * Captures the next drawn frame of the video composition into an image file,
+   * at the resolution of the rendered frames.
+   * Null on platforms that do not support frame captures.
+   *
+   * @platform android
+   * @returns A promise that resolves with the path of the image
+   * once it has been written.
+   */
+  captureFrame: ((options: FrameCaptureOptions) => Promise<string>) | null;
 };
 
 /**
@@ -97,19 +117,26 @@ export const useVideoCompositionPlayer = ({
   height,
   autoPlay = false,
   isLooping = false,
+  playbackSpeed = 1,
   onReadyToPlay,
   onComplete,
   onError,
 }: UseVideoCompositionPlayerOptions): UseVideoCompositionPlayerReturnType => {
   const [isErrored, setIsErrored] = useState(false);
+  // On Android, the frames extractor is only recreated when the composition is
+  // set or unset, later edits are applied to the existing extractor.
+  const extractorKey = OS === 'android' ? composition == null : composition;
+  const extractorComposition = useRef(composition);
   const framesExtractor = useMemo(() => {
+    extractorComposition.current = composition;
     if (composition && !isErrored) {
       return RNSkiaVideoModule.createVideoCompositionFramesExtractor(
         composition
       );
     }
     return null;
-  }, [isErrored, composition]);
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [isErrored, extractorKey]);
 
   useEffect(() => {
     runOnUI(() => {
@@ -117,6 +144,20 @@ export const useVideoCompositionPlayer = ({
     })();
   }, [framesExtractor]);
 
+  useEffect(() => {
+    if (
+      !framesExtractor ||
+      !composition ||
+      composition === extractorComposition.current
+    ) {
+      return;
+    }
+    extractorComposition.current = composition;
+    runOnUI(() => {
+      framesExtractor.update?.(composition);
+    })();
+  }, [framesExtractor, composition]);
+
   const currentFrame = useSharedValue<SkImage | null>(null);
   useEffect(
     () => () => {
@@ -144,6 +185,12 @@ export const useVideoCompositionPlayer = ({
     }
   }, [framesExtractor, isLooping]);
 
+  useEffect(() => {
+    if (framesExtractor) {
+      framesExtractor.playbackSpeed = playbackSpeed;
+    }
+  }, [framesExtractor, playbackSpeed]);
+
   useEventListener(framesExtractor, 'ready', onReadyToPlay);
   useEventListener(framesExtractor, 'complete', onComplete);
   useEventListener(framesExtractor, 'error', errorHandler);
@@ -154,6 +201,40 @@ export const useVideoCompositionPlayer = ({
     }
   }, [framesExtractor, autoPlay]);
 
+  const capturer = useMemo(
+    () => RNSkiaVideoModule.createFrameCapturer?.() ?? null,
+    []
+  );
+  const captureTracker = useMemo(
+    () => (capturer ? createCaptureTracker(capturer) : null),
+    [capturer]
+  );
+  const captureRequests = useSharedValue<FrameCaptureOptions[]>([]);
+  const capturesPending = useSharedValue(false);
+  useEffect(
+    () => () => {
+      captureTracker?.dispose();
+      // released on the UI thread, where the captures are done
+      runOnUI(() => {
+        capturer?.dispose();
+      })();
+    },
+    [capturer, captureTracker]
+  );
+
+  const captureFrame = useMemo(() => {
+    if (!captureTracker) {
+      return null;
+    }
+    return (options: FrameCaptureOptions) => {
+      const capture = captureTracker.waitForCapture(options.path);
+      runOnUI(() => {
+        captureRequests.value = [...captureRequests.value, options];
+      })();
+      return capture;
+    };
+  }, [captureTracker, captureRequests]);
+
   const surfaceSharedValue = useSharedValue<SkSurface | null>(null);
   const pixelRatio = PixelRatio.get();
   useFrameCallback(() => {
@@ -188,10 +269,28 @@ export const useVideoCompositionPlayer = ({
       height: height * pixelRatio,
     });
     surface.flush();
+    const texture = surface.getNativeTextureUnstable();
+    if (capturer) {
+      const requests = captureRequests.value;
+      if (requests.length > 0) {
+        captureRequests.value = [];
+        for (let i = 0; i < requests.length; i++) {
+          capturer.capture(
+            texture,
+            width * pixelRatio,
+            height * pixelRatio,
+            requests[i]!
+          );
+        }
+        capturesPending.value = true;
+      } else if (capturesPending.value) {
+        capturesPending.value = capturer.poll() > 0;
+      }
+    }
     const previousFrame = currentFrame.value;
     try {
       currentFrame.value = Skia.Image.MakeImageFromNativeTextureUnstable(
-        surface.getNativeTextureUnstable(),
+        texture,
         width * pixelRatio,
         height * pixelRatio
       );
@@ -206,5 +305,6 @@ export const useVideoCompositionPlayer = ({
   return {
     currentFrame,
     player: framesExtractor,
+    captureFrame,
   };
 };